@@ -1,3 +1,16 @@
+import java.util.Properties
+import javax.xml.parsers.DocumentBuilderFactory
+import org.w3c.dom.Element
+
+buildscript {
+    repositories {
+        mavenCentral()
+    }
+    dependencies {
+        classpath(libs.sqlite.jdbc)
+    }
+}
+
 plugins {
     alias(libs.plugins.android.application)
 }
@@ -31,10 +44,241 @@ android {
     }
 }
 
+/**
+ * Builds the seed database that is shipped in the assets. It holds the whole schema and the
+ * immutable tables parsed from the XML resources, so the app only has to copy it on first launch.
+ *
+ * The statements are read from the same SQL resources as 'BiteNoteSQLiteTableHelper', and the
+ * version and the ingredient name delimiter from the Java sources that declare them, so the seed
+ * can't drift from a database created on the device.
+ */
+abstract class GenerateSeedDatabaseTask : DefaultTask() {
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val utensilsXml: RegularFileProperty
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val measurementTypesXml: RegularFileProperty
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val ingredientsXml: RegularFileProperty
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val schemaSql: RegularFileProperty
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val ingredientTypesSql: RegularFileProperty
+
+    // 'BiteNoteSQLiteHelper.java', which declares DATABASE_VERSION
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val helperSource: RegularFileProperty
+
+    // 'Ingredient.java', which declares NAME_DELIMITER
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val ingredientSource: RegularFileProperty
+
+    @get:OutputDirectory
+    abstract val outputDirectory: DirectoryProperty
+
+    private val seedDatabaseName = "bitenote_seed.db"
+
+    @TaskAction
+    fun generate() {
+        val seedFile = outputDirectory.file(seedDatabaseName).get().asFile
+        seedFile.delete()
+
+        val databaseVersion = readConstant(helperSource, "int DATABASE_VERSION = (\\d+);").toInt()
+        val nameDelimiter = readConstant(ingredientSource, "String NAME_DELIMITER = \"(.+)\";")
+
+        val utensilNames = parseRoot(utensilsXml).childElements()
+            .filter { it.tagName == "utensil" }
+            .map { it.getAttribute("name") }
+        val measurementTypeNames = parseRoot(measurementTypesXml).childElements()
+            .filter { it.tagName == "type" }
+            .map { it.getAttribute("name") }
+        val ingredients = mutableListOf<Element>()
+        val ingredientNames = mutableListOf<String>()
+        collectIngredients(
+            parseRoot(ingredientsXml),
+            emptyList(),
+            nameDelimiter,
+            ingredients,
+            ingredientNames
+        )
+
+        val url = "jdbc:sqlite:${seedFile.absolutePath}"
+
+        org.sqlite.JDBC().connect(url, Properties()).use { connection ->
+            connection.autoCommit = false
+
+            // Android registers LOCALIZED on every connection and reindexes it when the locale
+            // changes, so this stand-in only has to exist for the empty index to be created
+            org.sqlite.Collation.create(connection, "LOCALIZED", object : org.sqlite.Collation() {
+                override fun xCompare(str1: String, str2: String): Int = str1.compareTo(str2)
+            })
+
+            connection.createStatement().use { statement ->
+                readStatements(schemaSql).forEach(statement::executeUpdate)
+            }
+
+            connection.prepareStatement(
+                "INSERT INTO utensils(name) VALUES (?);"
+            ).use { insert ->
+                utensilNames.forEach { name ->
+                    insert.setString(1, name)
+                    insert.executeUpdate()
+                }
+            }
+
+            connection.prepareStatement(
+                "INSERT INTO measurement_types(name) VALUES (?);"
+            ).use { insert ->
+                measurementTypeNames.forEach { name ->
+                    insert.setString(1, name)
+                    insert.executeUpdate()
+                }
+            }
+
+            connection.prepareStatement(
+                "INSERT INTO ingredients" +
+                        "(name, measurement_id, can_be_measured_in_units) VALUES (?, ?, ?);"
+            ).use { insert ->
+                ingredients.forEachIndexed { i, ingredient ->
+                    // ids are assigned in insertion order, so the id is the index plus one
+                    val measurementId =
+                        measurementTypeNames.indexOf(ingredient.getAttribute("measurement")) + 1
+
+                    insert.setString(1, ingredientNames[i])
+                    insert.setInt(2, measurementId)
+                    insert.setBoolean(
+                        3,
+                        ingredient.getAttribute("can_be_measured_in_units").toBoolean()
+                    )
+                    insert.executeUpdate()
+                }
+            }
+
+            readStatements(ingredientTypesSql).forEach { sql ->
+                connection.prepareStatement(sql).use { statement ->
+                    statement.setString(1, nameDelimiter)
+                    statement.executeUpdate()
+                }
+            }
+
+            connection.createStatement().use { statement ->
+                statement.executeUpdate("PRAGMA user_version = $databaseVersion;")
+            }
+
+            connection.commit()
+        }
+
+        logger.info(
+            "Seed database: ${utensilNames.size} utensils, ${measurementTypeNames.size} " +
+                    "measurement types, ${ingredients.size} ingredients."
+        )
+    }
+
+    /**
+     * Walks the type/subtype hierarchy, joining the names with the ingredient name delimiter,
+     * in the same order the XML parser in 'BiteNoteSQLiteTableHelper' inserts them.
+     */
+    private fun collectIngredients(
+        parent: Element,
+        path: List<String>,
+        nameDelimiter: String,
+        ingredients: MutableList<Element>,
+        names: MutableList<String>
+    ) {
+        parent.childElements().forEach { element ->
+            val elementPath = path + element.getAttribute("name")
+
+            if (element.tagName == "ingredient") {
+                ingredients.add(element)
+                names.add(elementPath.joinToString(nameDelimiter))
+            } else {
+                collectIngredients(element, elementPath, nameDelimiter, ingredients, names)
+            }
+        }
+    }
+
+    /**
+     * Splits an SQL resource in statements, the same way as
+     * 'BiteNoteSQLiteTableHelper.readStatements' does.
+     */
+    private fun readStatements(sql: RegularFileProperty): List<String> =
+        sql.get().asFile.readLines()
+            .filterNot { it.trim().startsWith("--") }
+            .joinToString("\n")
+            .split(";")
+            .map(String::trim)
+            .filter(String::isNotEmpty)
+            .map { "$it;" }
+
+    /**
+     * Reads the value of a constant from a Java source. The build fails if the declaration isn't
+     * found, instead of generating a seed that doesn't match the app.
+     */
+    private fun readConstant(source: RegularFileProperty, declaration: String): String {
+        val file = source.get().asFile
+
+        return Regex(declaration).find(file.readText())?.groupValues?.get(1)
+            ?: throw GradleException("Couldn't find '$declaration' in ${file.name}.")
+    }
+
+    private fun parseRoot(xml: RegularFileProperty): Element =
+        DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(xml.get().asFile)
+            .documentElement
+
+    private fun Element.childElements(): List<Element> {
+        val elements = mutableListOf<Element>()
+        for (i in 0 until childNodes.length) {
+            (childNodes.item(i) as? Element)?.let(elements::add)
+        }
+
+        return elements
+    }
+}
+
+val generateSeedDatabase = tasks.register<GenerateSeedDatabaseTask>("generateSeedDatabase") {
+    val xmlDirectory = layout.projectDirectory.dir("src/main/res/xml")
+
+    utensilsXml.set(xmlDirectory.file("utensils.xml"))
+    measurementTypesXml.set(xmlDirectory.file("measurement_types.xml"))
+    ingredientsXml.set(xmlDirectory.file("ingredients.xml"))
+    schemaSql.set(layout.projectDirectory.file("src/main/res/raw/schema.sql"))
+    ingredientTypesSql.set(layout.projectDirectory.file("src/main/res/raw/ingredient_types.sql"))
+    helperSource.set(
+        layout.projectDirectory.file(
+            "src/main/java/app/bitenote/database/BiteNoteSQLiteHelper.java"
+        )
+    )
+    ingredientSource.set(
+        layout.projectDirectory.file("src/main/java/app/bitenote/instances/Ingredient.java")
+    )
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(
+            generateSeedDatabase,
+            GenerateSeedDatabaseTask::outputDirectory
+        )
+    }
+}
+
 dependencies {
 
     implementation(libs.appcompat)
     implementation(libs.material)
+    implementation(libs.tracing)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
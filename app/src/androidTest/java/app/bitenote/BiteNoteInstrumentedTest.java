@@ -1,19 +1,65 @@
 package app.bitenote;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.util.JsonReader;
+import android.util.JsonWriter;
+import android.util.Log;
+import android.util.Pair;
 import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.Assert.*;
 
 import app.bitenote.database.BiteNoteSQLiteHelper;
+import app.bitenote.database.DuplicateReport;
+import app.bitenote.database.EpochDays;
+import app.bitenote.database.GroupCommitWriter;
+import app.bitenote.database.RecipeCache;
+import app.bitenote.database.RecipeDraftFile;
+import app.bitenote.database.RecipeLibraryFormat;
+import app.bitenote.database.RecipeListSnapshotFile;
+import app.bitenote.database.RecipePage;
+import app.bitenote.database.RecipeQuery;
+import app.bitenote.database.RecipeSortOrder;
+import app.bitenote.database.RecipeWriteQueue;
+import app.bitenote.database.ShoppingListFormat;
+import app.bitenote.instances.DietaryProfile;
+import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.IngredientType;
+import app.bitenote.instances.MeasurementType;
 import app.bitenote.instances.Recipe;
+import app.bitenote.instances.ShoppingList;
+import app.bitenote.viewmodels.RecipeSnapshotRegistry;
 
 /**
  * Instrumented test, which will execute on an Android device.
@@ -23,6 +69,32 @@ import app.bitenote.instances.Recipe;
 @RunWith(AndroidJUnit4.class)
 public class BiteNoteInstrumentedTest {
     private static final String TEST_DATABASE_NAME = "test_db.db";
+    private static final String TEST_TRANSFER_DATABASE_NAME = "test_transfer_db.db";
+    private static final int TEST_TRANSFER_RECIPE_COUNT = 2000;
+    private static final String TEST_SNAPSHOT_DATABASE_NAME = "test_snapshot_db.db";
+    private static final String TEST_GROUP_COMMIT_DATABASE_NAME = "test_group_commit_db.db";
+    private static final int TEST_GROUP_COMMIT_THREAD_COUNT = 4;
+    private static final int TEST_GROUP_COMMIT_WRITES_PER_THREAD = 250;
+    private static final String TEST_LIST_SNAPSHOT_DATABASE_NAME = "test_list_snapshot_db.db";
+    private static final int TEST_LIST_SNAPSHOT_RECIPE_COUNT = 500;
+    private static final String TEST_MIGRATION_DATABASE_NAME = "test_migration_db.db";
+    private static final String TEST_AMOUNT_DATABASE_NAME = "test_amount_db.db";
+    private static final String TEST_INGREDIENT_TYPE_DATABASE_NAME = "test_ingredient_type_db.db";
+    private static final String TEST_SORT_DATABASE_NAME = "test_sort_db.db";
+    private static final String TEST_DIETARY_PROFILE_DATABASE_NAME =
+            "test_dietary_profile_db.db";
+    private static final String TEST_SIMILARITY_DATABASE_NAME = "test_similarity_db.db";
+    private static final String TEST_DUPLICATE_DATABASE_NAME = "test_duplicate_db.db";
+    private static final String TEST_SUGGESTION_DATABASE_NAME = "test_suggestion_db.db";
+    private static final String TEST_SHOPPING_LIST_DATABASE_NAME = "test_shopping_list_db.db";
+    private static final String TEST_AGGREGATE_DATABASE_NAME = "test_aggregate_db.db";
+    private static final int TEST_SORT_RECIPE_COUNT = 450;
+    private static final int TEST_SORT_BENCHMARK_RECIPE_COUNT = 100000;
+    private static final String TEST_FOOTPRINT_DATABASE_NAME = "test_footprint_db.db";
+    private static final int TEST_FOOTPRINT_RECIPE_COUNT = 10000;
+    private static final int TEST_CACHE_VERSION_WRITE_COUNT = 1000;
+    private static final int TEST_SORT_PAGE_SIZE = 50;
+    private static final int TEST_SORT_PAGE_COUNT = 20;
 
     @Test
     public void useAppContext() {
@@ -75,7 +147,7 @@ public class BiteNoteInstrumentedTest {
             assertTrue(rOption.isPresent());
 
             assertEquals(r.name, rOption.get().name);
-            assertEquals(r.body, rOption.get().body);
+            assertEquals(r.getBody(), rOption.get().getBody());
             assertEquals(r.budget, rOption.get().budget);
             assertEquals(r.diners, rOption.get().diners);
             assertArrayEquals(
@@ -142,7 +214,7 @@ public class BiteNoteInstrumentedTest {
              * field's equality is needed.
              */
             assertEquals(r2.name, r2Option.get().name);
-            assertEquals(r2.body, r2Option.get().body);
+            assertEquals(r2.getBody(), r2Option.get().getBody());
             assertEquals(r2.budget, r2Option.get().budget);
             assertEquals(r2.diners, r2Option.get().diners);
             assertNotEquals(r2.creationDate, r2Option.get().creationDate); // assert no modification
@@ -164,4 +236,1418 @@ public class BiteNoteInstrumentedTest {
             assertTrue(deletedRecipeOption.isEmpty());
         }
     }
+
+    @Test
+    public void recipeWriteQueueCoalescesWrites() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_DATABASE_NAME, appContext);
+                final GroupCommitWriter writer = new GroupCommitWriter(sqliteHelper)
+        ) {
+            final RecipeWriteQueue writeQueue = new RecipeWriteQueue(writer, 60000);
+            final Recipe r = new Recipe();
+            final int rId = sqliteHelper.insertRecipe(r);
+
+            for (int i = 1; i <= 3; i++) {
+                r.budget = i;
+                writeQueue.enqueueUpdate(rId, r);
+            }
+            assertEquals(1, writeQueue.getPendingCount());
+            assertEquals(2, writeQueue.getCoalescedCount());
+
+            writeQueue.flush().join();
+            assertEquals(0, writeQueue.getPendingCount());
+
+            final Optional<Recipe> rOption = sqliteHelper.getRecipeFromId(rId);
+            assertTrue(rOption.isPresent());
+            assertEquals(3, rOption.get().budget);
+
+            /// a pending deletion isn't turned back into an update
+            final CompletableFuture<Void> deleteFuture = writeQueue.enqueueDelete(rId);
+            final CompletableFuture<Void> updateFuture = writeQueue.enqueueUpdate(rId, r);
+            assertTrue(updateFuture.isCompletedExceptionally());
+            writeQueue.flush().join();
+            assertTrue(deleteFuture.isDone());
+            assertFalse(deleteFuture.isCompletedExceptionally());
+            assertTrue(sqliteHelper.getRecipeFromId(rId).isEmpty());
+
+            /// closing flushes the queue, and later writes fail
+            final CompletableFuture<Void> closeUpdateFuture =
+                    writeQueue.enqueueUpdate(sqliteHelper.insertRecipe(r), r);
+            writeQueue.close();
+            assertTrue(closeUpdateFuture.isDone());
+            assertTrue(writeQueue.enqueueDelete(rId).isCompletedExceptionally());
+            writeQueue.flush().join();
+        }
+    }
+
+    @Test
+    public void recipeCacheIsWrittenThrough() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_DATABASE_NAME, appContext);
+                final GroupCommitWriter writer = new GroupCommitWriter(sqliteHelper)
+        ) {
+            final RecipeCache cache = sqliteHelper.getRecipeCache();
+            final Recipe r = new Recipe();
+            r.name = "test_cached_recipe";
+            final int rId = sqliteHelper.insertRecipe(r);
+
+            /// the inserted recipe is cached, so reading it again takes no statements
+            sqliteHelper.getMetrics().reset();
+            final Optional<Recipe> rOption = sqliteHelper.getRecipeFromId(rId);
+            assertTrue(rOption.isPresent());
+            assertEquals(r.name, rOption.get().name);
+            assertEquals(1, cache.getHitCount());
+            assertTrue(sqliteHelper.getMetrics().getStatements().isEmpty());
+
+            /// mutating a returned recipe doesn't mutate the cached one
+            rOption.get().budget = 10;
+            assertEquals(r.budget, sqliteHelper.getRecipeFromId(rId).get().budget);
+
+            r.budget = 20;
+            writer.updateRecipe(rId, r).join();
+            assertEquals(20, sqliteHelper.getRecipeFromId(rId).get().budget);
+
+            writer.deleteRecipe(rId).join();
+            assertTrue(sqliteHelper.getRecipeFromId(rId).isEmpty());
+
+            /// versions are bounded, and forgotten ones still outdate older copies
+            final long writeCount = cache.getWriteCount();
+            for (int i = 0; i < TEST_CACHE_VERSION_WRITE_COUNT; i++) {
+                sqliteHelper.insertRecipe(r);
+            }
+            assertTrue(cache.getVersionCount() < TEST_CACHE_VERSION_WRITE_COUNT);
+            assertTrue(cache.getVersion(rId) > writeCount);
+
+            cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getVersionCount());
+        }
+    }
+
+    @Test
+    public void recipeSnapshotIsOutdatedByWrites() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_DATABASE_NAME, appContext)
+        ) {
+            final RecipeSnapshotRegistry snapshots =
+                    new RecipeSnapshotRegistry(sqliteHelper.getRecipeCache());
+            final int r1Id = sqliteHelper.insertRecipe(new Recipe());
+            final int r2Id = sqliteHelper.insertRecipe(new Recipe());
+
+            final long writeCount = sqliteHelper.getRecipeCache().getWriteCount();
+            final Recipe r1 = sqliteHelper.getRecipeFromId(r1Id).get();
+            snapshots.put(r1Id, r1, writeCount);
+            r1.budget = 10; // the snapshot holds a copy
+
+            assertTrue(snapshots.get(r1Id).isPresent());
+            assertEquals(0, snapshots.get(r1Id).get().getRecipe().budget);
+
+            /// writes to other recipes don't outdate the snapshot
+            sqliteHelper.updateRecipe(r2Id, new Recipe());
+            assertTrue(snapshots.get(r1Id).isPresent());
+
+            sqliteHelper.updateRecipe(r1Id, r1);
+            assertTrue(snapshots.get(r1Id).isEmpty());
+
+            sqliteHelper.deleteRecipe(r1Id);
+            sqliteHelper.deleteRecipe(r2Id);
+        }
+    }
+
+    @Test
+    public void groupCommitWriterBatchesConcurrentWrites() throws InterruptedException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_GROUP_COMMIT_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_GROUP_COMMIT_DATABASE_NAME, appContext);
+                final GroupCommitWriter writer = new GroupCommitWriter(sqliteHelper)
+        ) {
+            final Recipe r = new Recipe();
+            r.putIngredient(1, 2);
+            r.addUtensil(1);
+
+            final int initialRecipeCount = sqliteHelper.getRecipeCount();
+            final List<CompletableFuture<Integer>> futures =
+                    Collections.synchronizedList(new ArrayList<>());
+            final Thread[] writerThreads = new Thread[TEST_GROUP_COMMIT_THREAD_COUNT];
+            final long startTime = System.nanoTime();
+
+            /// synthetic load, where every thread waits for its previous write like a screen does
+            for (int i = 0; i < writerThreads.length; i++) {
+                writerThreads[i] = new Thread(() -> {
+                    for (int j = 0; j < TEST_GROUP_COMMIT_WRITES_PER_THREAD; j++) {
+                        final CompletableFuture<Integer> future = writer.insertRecipe(r);
+                        futures.add(future);
+                        future.join();
+                    }
+                });
+                writerThreads[i].start();
+            }
+            for (Thread writerThread: writerThreads) {
+                writerThread.join();
+            }
+
+            final double seconds = (System.nanoTime() - startTime) / 1e9;
+            final int writeCount =
+                    TEST_GROUP_COMMIT_THREAD_COUNT * TEST_GROUP_COMMIT_WRITES_PER_THREAD;
+            Log.i(
+                    "test",
+                    String.format(
+                            Locale.ROOT,
+                            "%d writes in %d commits, %.1f commits/s, %.1f writes/s.",
+                            writeCount,
+                            writer.getCommitCount(),
+                            writer.getCommitCount() / seconds,
+                            writeCount / seconds
+                    )
+            );
+
+            assertEquals(writeCount, futures.size());
+            assertEquals(writeCount, writer.getOperationCount());
+            assertTrue(writer.getCommitCount() < writeCount);
+            assertEquals(initialRecipeCount + writeCount, sqliteHelper.getRecipeCount());
+
+            /// a failing operation doesn't fail the rest of its batch
+            final CompletableFuture<Void> failedFuture = writer.submit(database -> {
+                database.execSQL("INSERT INTO missing_table VALUES (1);");
+                return null;
+            });
+            final CompletableFuture<Integer> insertFuture = writer.insertRecipe(r);
+            assertThrows(CompletionException.class, failedFuture::join);
+            assertTrue(insertFuture.join() > 0);
+
+            /// operations queued before closing are applied, and later ones fail
+            final CompletableFuture<Integer> queuedFuture = writer.insertRecipe(r);
+            writer.close();
+            assertTrue(queuedFuture.join() > 0);
+            assertThrows(CompletionException.class, () -> writer.insertRecipe(r).join());
+        } finally {
+            appContext.deleteDatabase(TEST_GROUP_COMMIT_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void recipeExportAndImportIsCorrect() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File libraryFile = new File(appContext.getCacheDir(), "test_library.json");
+        appContext.deleteDatabase(TEST_TRANSFER_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_TRANSFER_DATABASE_NAME, appContext)
+        ) {
+            final Recipe r = new Recipe(
+                    "test_recipe",
+                    "This is a recipe body with \"quotes\" and\nline breaks.",
+                    new HashMap<>(),
+                    new HashSet<>(),
+                    Date.valueOf("2021-3-4"),
+                    25,
+                    2
+            );
+            r.addUtensil(2);
+            r.addUtensil(3);
+            r.putIngredient(1, 2);
+            r.putIngredient(3, 2);
+
+            for (int i = 0; i < TEST_TRANSFER_RECIPE_COUNT; i++) {
+                sqliteHelper.insertRecipe(r);
+            }
+
+            /// export
+            long startTime = System.nanoTime();
+            try (
+                    final FileChannel channel = FileChannel.open(
+                            libraryFile.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE
+                    )
+            ) {
+                assertEquals(TEST_TRANSFER_RECIPE_COUNT, sqliteHelper.exportRecipes(channel, null));
+            }
+            Log.i("test", "Exported in " + (System.nanoTime() - startTime) / 1000000 + " ms.");
+
+            /// import into the same database, duplicating the library
+            startTime = System.nanoTime();
+            try (
+                    final FileChannel channel =
+                            FileChannel.open(libraryFile.toPath(), StandardOpenOption.READ)
+            ) {
+                assertEquals(TEST_TRANSFER_RECIPE_COUNT, sqliteHelper.importRecipes(channel, 128));
+            }
+            Log.i("test", "Imported in " + (System.nanoTime() - startTime) / 1000000 + " ms.");
+
+            assertEquals(2 * TEST_TRANSFER_RECIPE_COUNT, sqliteHelper.getRecipeCount());
+
+            final Optional<Recipe> rOption =
+                    sqliteHelper.getRecipeFromId(2 * TEST_TRANSFER_RECIPE_COUNT);
+            assertTrue(rOption.isPresent());
+            assertEquals(r, rOption.get());
+        } finally {
+            libraryFile.delete();
+            appContext.deleteDatabase(TEST_TRANSFER_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void recipeListSnapshotWriteAndReadIsCorrect() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File snapshotFile = new File(appContext.getCacheDir(), "test_recipe_list.snapshot");
+        final RecipeListSnapshotFile listSnapshotFile = new RecipeListSnapshotFile(snapshotFile);
+        appContext.deleteDatabase(TEST_LIST_SNAPSHOT_DATABASE_NAME);
+        listSnapshotFile.delete();
+
+        assertTrue(listSnapshotFile.read().isEmpty());
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_LIST_SNAPSHOT_DATABASE_NAME, appContext)
+        ) {
+            final Recipe r = new Recipe();
+            for (int i = 0; i < TEST_LIST_SNAPSHOT_RECIPE_COUNT; i++) {
+                r.name = "test_recipe_ñ_" + i;
+                r.budget = i;
+                sqliteHelper.insertRecipe(r);
+            }
+
+            listSnapshotFile.write(sqliteHelper.getAllRecipes());
+        }
+
+        /// time to the first card, with a cold database and with the snapshot
+        long startTime = System.nanoTime();
+        final List<Pair<Integer, Recipe>> recipes;
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_LIST_SNAPSHOT_DATABASE_NAME, appContext)
+        ) {
+            recipes = sqliteHelper.getAllRecipes();
+        }
+        Log.i("test", "Read list from database in " +
+                (System.nanoTime() - startTime) / 1000000 + " ms.");
+
+        startTime = System.nanoTime();
+        final Optional<List<Pair<Integer, Recipe>>> summariesOption =
+                new RecipeListSnapshotFile(snapshotFile).read();
+        Log.i("test", "Read list from snapshot in " +
+                (System.nanoTime() - startTime) / 1000000 + " ms.");
+
+        assertTrue(summariesOption.isPresent());
+        final List<Pair<Integer, Recipe>> summaries = summariesOption.get();
+        assertEquals(recipes.size(), summaries.size());
+        for (int i = 0; i < recipes.size(); i++) {
+            assertEquals(recipes.get(i).first, summaries.get(i).first);
+            assertEquals(recipes.get(i).second.name, summaries.get(i).second.name);
+            assertEquals(recipes.get(i).second.creationDate, summaries.get(i).second.creationDate);
+            assertEquals(recipes.get(i).second.diners, summaries.get(i).second.diners);
+            assertEquals(recipes.get(i).second.budget, summaries.get(i).second.budget);
+        }
+
+        /// a corrupted payload is rejected by the checksum
+        try (final RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.seek(file.length() - 1);
+            final int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+        assertThrows(IOException.class, () -> new RecipeListSnapshotFile(snapshotFile).read());
+
+        listSnapshotFile.delete();
+        appContext.deleteDatabase(TEST_LIST_SNAPSHOT_DATABASE_NAME);
+    }
+
+    @Test
+    public void recipeDraftWriteAndReadIsCorrect() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final RecipeDraftFile draftFile =
+                new RecipeDraftFile(new File(appContext.getCacheDir(), "test_draft.json"));
+
+        final Recipe r = new Recipe(
+                "test_draft",
+                "Unsaved body.",
+                new HashMap<>(),
+                new HashSet<>(),
+                Date.valueOf("2022-5-6"),
+                10,
+                3
+        );
+        r.addUtensil(1);
+        r.putIngredient(2, 4);
+
+        final HashMap<Integer, Ingredient> ingredients = new HashMap<>();
+        ingredients.put(2, new Ingredient(
+                "test_ingredient",
+                new MeasurementType(MeasurementType.WEIGHT_TYPE_STRING),
+                true
+        ));
+
+        try {
+            assertFalse(draftFile.read(ingredients, Collections.singleton(1)).isPresent());
+
+            draftFile.write(0, r);
+            final Optional<Pair<Integer, Recipe>> draftOption =
+                    draftFile.read(ingredients, Collections.singleton(1));
+            assertTrue(draftOption.isPresent());
+            assertEquals(0, (int) draftOption.get().first);
+            assertEquals(r, draftOption.get().second);
+        } finally {
+            draftFile.delete();
+        }
+    }
+
+    @Test
+    public void snapshotRestoreIsCorrect() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_SNAPSHOT_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SNAPSHOT_DATABASE_NAME, appContext)
+        ) {
+            final Recipe r = new Recipe();
+            r.name = "test_recipe";
+            r.creationDate = Date.valueOf("2021-3-4");
+            r.addUtensil(1);
+            r.putIngredient(2, 3);
+
+            final int rId = sqliteHelper.insertRecipe(r);
+            final Optional<File> snapshotOption = sqliteHelper.createSnapshot(1);
+            assertTrue(snapshotOption.isPresent());
+            assertEquals(1, sqliteHelper.getSnapshots().size());
+
+            /// changes after the snapshot must be undone by restoring it
+            sqliteHelper.deleteRecipe(rId);
+            assertEquals(0, sqliteHelper.getRecipeCount());
+
+            assertTrue(sqliteHelper.restoreSnapshot(snapshotOption.get()));
+            assertEquals(1, sqliteHelper.getRecipeCount());
+            assertEquals(Optional.of(r), sqliteHelper.getRecipeFromId(rId));
+
+            /// writes queued before a restore aren't replayed onto the restored database
+            try (
+                    final GroupCommitWriter writer = new GroupCommitWriter(sqliteHelper);
+                    final RecipeWriteQueue writeQueue = new RecipeWriteQueue(writer, 60000)
+            ) {
+                final CompletableFuture<Void> deleteFuture = writeQueue.enqueueDelete(rId);
+
+                assertTrue(sqliteHelper.restoreSnapshot(snapshotOption.get()));
+                writeQueue.flush().join();
+                assertTrue(deleteFuture.isCompletedExceptionally());
+                assertEquals(1, sqliteHelper.getRecipeCount());
+            }
+
+            /// the old files are only moved aside during the swap
+            final File databaseFile = appContext.getDatabasePath(TEST_SNAPSHOT_DATABASE_NAME);
+            assertFalse(new File(databaseFile.getPath() + ".old").exists());
+            assertFalse(new File(databaseFile.getPath() + "-wal.old").exists());
+
+            /// rotation keeps only the latest snapshot
+            final Optional<File> secondSnapshotOption = sqliteHelper.createSnapshot(1);
+            assertTrue(secondSnapshotOption.isPresent());
+            assertEquals(
+                    Collections.singletonList(secondSnapshotOption.get()),
+                    sqliteHelper.getSnapshots()
+            );
+
+            secondSnapshotOption.get().delete();
+        } finally {
+            appContext.deleteDatabase(TEST_SNAPSHOT_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void migrationFromVersion1KeepsRecipes() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_MIGRATION_DATABASE_NAME);
+
+        try {
+            /// seed the database, and turn it back into the version 1 schema
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_MIGRATION_DATABASE_NAME, appContext)
+            ) {
+                assertEquals(0, sqliteHelper.getRecipeCount());
+            }
+            try (
+                    final SQLiteDatabase database = SQLiteDatabase.openDatabase(
+                            appContext.getDatabasePath(TEST_MIGRATION_DATABASE_NAME).getPath(),
+                            null,
+                            SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.CREATE_IF_NECESSARY
+                    )
+            ) {
+                /// tables and indexes of later versions are created again by their migrations
+                database.execSQL("DROP INDEX IF EXISTS recipe_ingredients_amount_index;");
+                for (final String table: new String[] {
+                        "ingredient_types",
+                        "dietary_profiles",
+                        "dietary_profile_ingredients",
+                        "dietary_profile_ingredient_types",
+                        "dietary_profile_excluded_recipes",
+                        "recipe_signatures",
+                        "recipe_signature_buckets",
+                        "recipe_fingerprints",
+                        "recipe_fingerprint_keys",
+                        "ingredient_pairs"
+                }) {
+                    database.execSQL("DROP TABLE IF EXISTS " + table + ";");
+                }
+
+                database.execSQL("DROP TABLE IF EXISTS recipes;");
+                database.execSQL("CREATE TABLE recipes (" +
+                        "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
+                        "name VARCHAR(64) NOT NULL," +
+                        "body MEDIUMTEXT NOT NULL DEFAULT ''," +
+                        "budget INTEGER NOT NULL," +
+                        "diners INTEGER NOT NULL," +
+                        "creation_date DATE NOT NULL" +
+                        ");");
+                database.execSQL("INSERT INTO recipes(name, budget, diners, creation_date) " +
+                        "VALUES ('test_old', 1, 1, '1970-1-1'), " +
+                        "('test_deleted', 1, 1, '2020-01-01'), " +
+                        "('test_new', 1, 1, '2024-12-31');");
+                database.execSQL("DELETE FROM recipes WHERE name = 'test_deleted';");
+                database.execSQL("INSERT INTO recipe_ingredients" +
+                        "(recipe_id, ingredient_id, amount, is_measured_in_units) " +
+                        "VALUES (3, 1, 250, 0), (3, 2, 2, 1);");
+                database.setVersion(1);
+            }
+
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_MIGRATION_DATABASE_NAME, appContext)
+            ) {
+                assertEquals(2, sqliteHelper.getRecipeCount());
+                assertEquals(
+                        Date.valueOf("1970-01-01"),
+                        sqliteHelper.getRecipeFromId(1).get().creationDate
+                );
+                assertEquals(
+                        Date.valueOf("2024-12-31"),
+                        sqliteHelper.getRecipeFromId(3).get().creationDate
+                );
+
+                /// epoch days sort chronologically, unlike the unpadded strings did
+                final RecipeQuery rQuery = new RecipeQuery();
+                rQuery.maxBudget = 1;
+                rQuery.minCreationDate = Date.valueOf("2000-1-1");
+                final List<Pair<Integer, Recipe>> queriedRecipes =
+                        sqliteHelper.getQueriedRecipes(rQuery);
+                assertEquals(1, queriedRecipes.size());
+                assertEquals(3, (int) queriedRecipes.get(0).first);
+
+                /// the frozen backfill of the migration must match the live aggregates
+                assertTrue(sqliteHelper.checkRecipeAggregates().isEmpty());
+                rQuery.minCreationDate = null;
+                rQuery.excludesMeasuredInUnits = true;
+                final List<Pair<Integer, Recipe>> unitlessRecipes =
+                        sqliteHelper.getQueriedRecipes(rQuery);
+                assertEquals(1, unitlessRecipes.size());
+                assertEquals(1, (int) unitlessRecipes.get(0).first);
+
+                /// the sequence survives the rebuilt table, so deleted IDs aren't reused
+                final Recipe r = new Recipe();
+                r.name = "test_inserted";
+                assertEquals(4, sqliteHelper.insertRecipe(r));
+            }
+        } finally {
+            appContext.deleteDatabase(TEST_MIGRATION_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void ingredientAmountRangesFilterRecipes() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_AMOUNT_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_AMOUNT_DATABASE_NAME, appContext)
+        ) {
+            final int[] amounts = {50, 100, 200, 300, 400};
+            final int[] recipeIds = new int[amounts.length];
+            for (int i = 0; i < amounts.length; i++) {
+                final Recipe r = new Recipe();
+                r.name = "test_amount_" + amounts[i];
+                r.putIngredient(1, new Ingredient.InRecipeProperties(amounts[i], false));
+                r.putIngredient(2, new Ingredient.InRecipeProperties(i, true));
+
+                recipeIds[i] = sqliteHelper.insertRecipe(r);
+            }
+
+            /// bounds are inclusive
+            final RecipeQuery rQuery = new RecipeQuery();
+            rQuery.includeIngredient(1, new RecipeQuery.AmountRange(100, 300, false), false);
+            final List<Pair<Integer, Recipe>> queriedRecipes =
+                    sqliteHelper.getQueriedRecipes(rQuery, RecipeSortOrder.NEWEST);
+            assertEquals(3, queriedRecipes.size());
+            for (final Pair<Integer, Recipe> pair : queriedRecipes) {
+                final int amount = pair.second.getIngredients().get(1).amount;
+                assertTrue(amount >= 100 && amount <= 300);
+            }
+
+            /// ranges are hard constraints, on top of the other included ingredients
+            rQuery.includeIngredient(2, new RecipeQuery.AmountRange(3, 4, true), false);
+            final List<Pair<Integer, Recipe>> narrowedRecipes =
+                    sqliteHelper.getQueriedRecipes(rQuery, RecipeSortOrder.NEWEST);
+            assertEquals(1, narrowedRecipes.size());
+            assertEquals(recipeIds[3], (int) narrowedRecipes.get(0).first);
+
+            /// amounts measured in other units don't match
+            final RecipeQuery unitsQuery = new RecipeQuery();
+            unitsQuery.includeIngredient(1, new RecipeQuery.AmountRange(0, 1000, true), false);
+            assertTrue(sqliteHelper.getQueriedRecipes(unitsQuery).isEmpty());
+        } finally {
+            appContext.deleteDatabase(TEST_AMOUNT_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void ingredientTypesFilterRecipes() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_INGREDIENT_TYPE_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_INGREDIENT_TYPE_DATABASE_NAME, appContext)
+        ) {
+            final List<Pair<Integer, IngredientType>> types =
+                    sqliteHelper.getAllIngredientTypes();
+            assertFalse(types.isEmpty());
+
+            /// every ingredient in the range of a type is prefixed by the type name
+            for (final Pair<Integer, IngredientType> pair : types) {
+                final IngredientType type = pair.second;
+
+                for (int id = type.firstIngredientId; id <= type.lastIngredientId; id++) {
+                    assertTrue(sqliteHelper.getIngredientFromId(id).get().fullName.startsWith(
+                            type.fullName + Ingredient.NAME_DELIMITER
+                    ));
+                }
+                if (type.parentId != 0) {
+                    final IngredientType parent =
+                            sqliteHelper.getIngredientTypeFromId(type.parentId).get();
+                    assertTrue(parent.containsIngredient(type.firstIngredientId));
+                    assertTrue(parent.containsIngredient(type.lastIngredientId));
+                }
+            }
+
+            final Pair<Integer, IngredientType> dairy = types.stream()
+                    .filter(pair -> pair.second.fullName.equals("dairy"))
+                    .findFirst()
+                    .get();
+            final Pair<Integer, IngredientType> cheese = types.stream()
+                    .filter(pair -> pair.second.fullName.equals("dairy_cheese"))
+                    .findFirst()
+                    .get();
+
+            final Recipe cheeseRecipe = new Recipe();
+            cheeseRecipe.name = "test_cheese";
+            cheeseRecipe.putIngredient(cheese.second.firstIngredientId, 100);
+            final int cheeseRecipeId = sqliteHelper.insertRecipe(cheeseRecipe);
+
+            final Recipe meatRecipe = new Recipe();
+            meatRecipe.name = "test_meat";
+            meatRecipe.putIngredient(dairy.second.lastIngredientId + 1, 100);
+            final int meatRecipeId = sqliteHelper.insertRecipe(meatRecipe);
+
+            /// subtypes are in the range of their parent type
+            final RecipeQuery includeQuery = new RecipeQuery();
+            includeQuery.includeIngredientType(dairy.first, dairy.second, false);
+            final List<Pair<Integer, Recipe>> includedRecipes =
+                    sqliteHelper.getQueriedRecipes(includeQuery);
+            assertEquals(1, includedRecipes.size());
+            assertEquals(cheeseRecipeId, (int) includedRecipes.get(0).first);
+
+            final RecipeQuery banQuery = new RecipeQuery();
+            banQuery.banIngredientType(cheese.first, cheese.second, false);
+            final List<Pair<Integer, Recipe>> remainingRecipes =
+                    sqliteHelper.getQueriedRecipes(banQuery);
+            assertEquals(1, remainingRecipes.size());
+            assertEquals(meatRecipeId, (int) remainingRecipes.get(0).first);
+        } finally {
+            appContext.deleteDatabase(TEST_INGREDIENT_TYPE_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void dietaryProfilesExcludeRecipes() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_DIETARY_PROFILE_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_DIETARY_PROFILE_DATABASE_NAME, appContext)
+        ) {
+            final Pair<Integer, IngredientType> cheese = sqliteHelper.getAllIngredientTypes()
+                    .stream()
+                    .filter(pair -> pair.second.fullName.equals("dairy_cheese"))
+                    .findFirst()
+                    .get();
+            final int bannedIngredientId = cheese.second.lastIngredientId + 1;
+            final int allowedIngredientId = cheese.second.lastIngredientId + 2;
+
+            final Recipe cheeseRecipe = new Recipe();
+            cheeseRecipe.name = "test_cheese";
+            cheeseRecipe.putIngredient(cheese.second.firstIngredientId, 100);
+            final int cheeseRecipeId = sqliteHelper.insertRecipe(cheeseRecipe);
+
+            final Recipe plainRecipe = new Recipe();
+            plainRecipe.name = "test_plain";
+            plainRecipe.putIngredient(allowedIngredientId, 100);
+            final int plainRecipeId = sqliteHelper.insertRecipe(plainRecipe);
+
+            final DietaryProfile profile = new DietaryProfile("test_profile");
+            profile.banIngredientType(cheese.first);
+            profile.banIngredient(bannedIngredientId);
+            final int profileId = sqliteHelper.insertDietaryProfile(profile);
+            assertEquals(profile, sqliteHelper.getDietaryProfileFromId(profileId).get());
+
+            final RecipeQuery query = new RecipeQuery();
+            query.dietaryProfileId = profileId;
+            List<Pair<Integer, Recipe>> recipes = sqliteHelper.getQueriedRecipes(query);
+            assertEquals(1, recipes.size());
+            assertEquals(plainRecipeId, (int) recipes.get(0).first);
+
+            /// written recipes are excluded as soon as they're written
+            plainRecipe.putIngredient(bannedIngredientId, 50);
+            sqliteHelper.updateRecipe(plainRecipeId, plainRecipe);
+            final Recipe newRecipe = new Recipe();
+            newRecipe.name = "test_new";
+            newRecipe.putIngredient(allowedIngredientId, 100);
+            final int newRecipeId = sqliteHelper.insertRecipe(newRecipe);
+            recipes = sqliteHelper.getQueriedRecipes(query);
+            assertEquals(1, recipes.size());
+            assertEquals(newRecipeId, (int) recipes.get(0).first);
+
+            /// an updated profile recomputes its exclusions
+            profile.unbanIngredientType(cheese.first);
+            sqliteHelper.updateDietaryProfile(profileId, profile);
+            recipes = sqliteHelper.getQueriedRecipes(query);
+            assertEquals(2, recipes.size());
+            assertTrue(recipes.stream().anyMatch(pair -> pair.first == cheeseRecipeId));
+
+            sqliteHelper.deleteDietaryProfile(profileId);
+            assertFalse(sqliteHelper.getDietaryProfileFromId(profileId).isPresent());
+            assertTrue(sqliteHelper.getAllDietaryProfileNames().isEmpty());
+            assertEquals(3, sqliteHelper.getQueriedRecipes(query).size());
+        } finally {
+            appContext.deleteDatabase(TEST_DIETARY_PROFILE_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void similarRecipesAreFound() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_SIMILARITY_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SIMILARITY_DATABASE_NAME, appContext)
+        ) {
+            final Recipe base = new Recipe();
+            base.name = "test_base";
+            for (int i = 1; i <= 8; i++) base.putIngredient(i, 100);
+            base.addUtensil(1);
+            final int baseId = sqliteHelper.insertRecipe(base);
+
+            /// each variant replaces more of the ingredients of the base recipe
+            final int[] variantIds = new int[4];
+            for (int v = 0; v < variantIds.length; v++) {
+                final Recipe variant = new Recipe(base);
+                variant.name = "test_variant_" + v;
+                for (int i = 1; i <= v; i++) {
+                    variant.removeIngredient(i);
+                    variant.putIngredient(20 + i, 100);
+                }
+                variantIds[v] = sqliteHelper.insertRecipe(variant);
+            }
+
+            final Recipe unrelated = new Recipe();
+            unrelated.name = "test_unrelated";
+            for (int i = 40; i <= 48; i++) unrelated.putIngredient(i, 100);
+            final int unrelatedId = sqliteHelper.insertRecipe(unrelated);
+
+            final List<Pair<Integer, Recipe>> similarRecipes =
+                    sqliteHelper.getSimilarRecipes(baseId, 10);
+            assertFalse(similarRecipes.isEmpty());
+            assertEquals(variantIds[0], (int) similarRecipes.get(0).first);
+            assertTrue(similarRecipes.stream().noneMatch(pair ->
+                    pair.first == baseId || pair.first == unrelatedId
+            ));
+
+            /// updated and deleted recipes are reindexed
+            sqliteHelper.updateRecipe(unrelatedId, base);
+            sqliteHelper.deleteRecipe(variantIds[0]);
+            final List<Pair<Integer, Recipe>> updatedSimilarRecipes =
+                    sqliteHelper.getSimilarRecipes(baseId, 10);
+            assertEquals(unrelatedId, (int) updatedSimilarRecipes.get(0).first);
+            assertTrue(updatedSimilarRecipes.stream().noneMatch(pair ->
+                    pair.first == variantIds[0]
+            ));
+        } finally {
+            appContext.deleteDatabase(TEST_SIMILARITY_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void ingredientSuggestionsFollowCoOccurrences() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_SUGGESTION_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SUGGESTION_DATABASE_NAME, appContext)
+        ) {
+            /// ingredient 2 is used with ingredient 1 three times, and ingredient 3 twice
+            final int[][] recipeIngredientIds = {{1, 2, 3}, {1, 2, 3}, {1, 2}, {4, 5}};
+            final int[] recipeIds = new int[recipeIngredientIds.length];
+            for (int i = 0; i < recipeIds.length; i++) {
+                final Recipe r = new Recipe();
+                r.name = "test_suggestion_" + i;
+                for (int id: recipeIngredientIds[i]) r.putIngredient(id, 100);
+                recipeIds[i] = sqliteHelper.insertRecipe(r);
+            }
+
+            assertEquals(
+                    Arrays.asList(2, 3),
+                    sqliteHelper.getSuggestedIngredientIds(Collections.singleton(1), 10)
+            );
+            assertEquals(
+                    Collections.singletonList(2),
+                    sqliteHelper.getSuggestedIngredientIds(Collections.singleton(1), 1)
+            );
+            assertEquals(
+                    Collections.singletonList(3),
+                    sqliteHelper.getSuggestedIngredientIds(new HashSet<>(Arrays.asList(1, 2)), 10)
+            );
+
+            /// updated and deleted recipes move their pairs out of the counts
+            final Recipe updated = sqliteHelper.getRecipeFromId(recipeIds[2]).get();
+            updated.removeIngredient(2);
+            updated.putIngredient(3, 100);
+            sqliteHelper.updateRecipe(recipeIds[2], updated);
+            sqliteHelper.deleteRecipe(recipeIds[0]);
+            assertEquals(
+                    Arrays.asList(3, 2),
+                    sqliteHelper.getSuggestedIngredientIds(Collections.singleton(1), 10)
+            );
+
+            sqliteHelper.deleteRecipe(recipeIds[3]);
+            assertTrue(sqliteHelper.getSuggestedIngredientIds(Collections.singleton(4), 10)
+                    .isEmpty());
+        } finally {
+            appContext.deleteDatabase(TEST_SUGGESTION_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void shoppingListsAreAggregated() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File listFile = new File(appContext.getCacheDir(), "test_shopping_list.json");
+        appContext.deleteDatabase(TEST_SHOPPING_LIST_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SHOPPING_LIST_DATABASE_NAME, appContext)
+        ) {
+            final Recipe r1 = new Recipe();
+            r1.name = "test_shopping_list_1";
+            r1.diners = 2;
+            r1.putIngredient(1, 200);
+            r1.putIngredient(2, new Ingredient.InRecipeProperties(3, true));
+
+            final Recipe r2 = new Recipe();
+            r2.name = "test_shopping_list_2";
+            r2.diners = 4;
+            r2.putIngredient(1, 400);
+            r2.putIngredient(2, 50);
+
+            /// recipes without diners are scaled as if they had one
+            final Recipe r3 = new Recipe();
+            r3.name = "test_shopping_list_3";
+            r3.diners = 0;
+            r3.putIngredient(3, 10);
+
+            final Set<Integer> recipeIds = new HashSet<>(Arrays.asList(
+                    sqliteHelper.insertRecipe(r1),
+                    sqliteHelper.insertRecipe(r2),
+                    sqliteHelper.insertRecipe(r3)
+            ));
+            final ShoppingList list = sqliteHelper.getShoppingList(recipeIds, 4);
+            assertEquals(4, list.diners);
+            assertEquals(4, list.getItems().size());
+
+            /// amounts in units and in the measurement type are listed apart
+            final HashMap<String, ShoppingList.Item> items = new HashMap<>();
+            list.getItems().forEach(item ->
+                    items.put(item.ingredientId + "_" + item.isMeasuredInUnits, item)
+            );
+            assertEquals(800, items.get("1_false").getRoundedAmount());
+            assertEquals(2, items.get("1_false").recipeCount);
+            assertEquals(6, items.get("2_true").getRoundedAmount());
+            assertEquals(50, items.get("2_false").getRoundedAmount());
+            assertEquals(40, items.get("3_false").getRoundedAmount());
+            assertEquals(
+                    sqliteHelper.getIngredientFromId(1).get(),
+                    items.get("1_false").ingredient
+            );
+
+            assertTrue(sqliteHelper.getShoppingList(Collections.emptySet(), 4).isEmpty());
+
+            try (
+                    final FileChannel channel = FileChannel.open(
+                            listFile.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE
+                    )
+            ) {
+                assertEquals(4, sqliteHelper.exportShoppingList(channel, recipeIds, 4));
+            }
+
+            try (
+                    final JsonReader reader = new JsonReader(new BufferedReader(
+                            new InputStreamReader(
+                                    new FileInputStream(listFile),
+                                    StandardCharsets.UTF_8
+                            )
+                    ))
+            ) {
+                int itemCount = 0;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "format":
+                            assertEquals(ShoppingListFormat.FORMAT_NAME, reader.nextString());
+                            break;
+                        case "diners":
+                            assertEquals(4, reader.nextInt());
+                            break;
+                        case "items":
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                reader.skipValue();
+                                itemCount++;
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                assertEquals(4, itemCount);
+            }
+        } finally {
+            listFile.delete();
+            appContext.deleteDatabase(TEST_SHOPPING_LIST_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void duplicateRecipesAreMerged() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File libraryFile = new File(appContext.getCacheDir(), "test_duplicate_library.json");
+        appContext.deleteDatabase(TEST_DUPLICATE_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_DUPLICATE_DATABASE_NAME, appContext)
+        ) {
+            /// inserting the examples again merges every one of them
+            final List<Integer> exampleIds = sqliteHelper.insertExampleRecipes();
+            final int exampleCount = sqliteHelper.getRecipeCount();
+            final DuplicateReport exampleReport = new DuplicateReport();
+            final List<Integer> repeatedExampleIds =
+                    sqliteHelper.insertExampleRecipes(exampleReport);
+            assertEquals(exampleCount, sqliteHelper.getRecipeCount());
+            assertEquals(exampleIds.size(), exampleReport.getMergedCount());
+            assertEquals(new HashSet<>(exampleIds), new HashSet<>(repeatedExampleIds));
+
+            /// the library holds an edited copy of an example, and a repeated new recipe
+            final Recipe editedExample = sqliteHelper.getRecipeFromId(exampleIds.get(0)).get();
+            editedExample.name = editedExample.name.toUpperCase(Locale.ROOT);
+            final Recipe newRecipe = new Recipe();
+            newRecipe.name = "test_new_recipe";
+            newRecipe.setBody("A body that no example has.");
+            newRecipe.putIngredient(1, 100);
+            try (
+                    final JsonWriter writer = new JsonWriter(new BufferedWriter(
+                            new OutputStreamWriter(
+                                    new FileOutputStream(libraryFile),
+                                    StandardCharsets.UTF_8
+                            )
+                    ))
+            ) {
+                RecipeLibraryFormat.beginLibrary(writer);
+                RecipeLibraryFormat.writeRecipe(writer, editedExample);
+                RecipeLibraryFormat.writeRecipe(writer, newRecipe);
+                RecipeLibraryFormat.writeRecipe(writer, newRecipe);
+                RecipeLibraryFormat.endLibrary(writer);
+            }
+
+            final DuplicateReport importReport = new DuplicateReport();
+            try (
+                    final FileChannel channel =
+                            FileChannel.open(libraryFile.toPath(), StandardOpenOption.READ)
+            ) {
+                assertEquals(1, sqliteHelper.importRecipes(channel, 2, importReport));
+            }
+            assertEquals(exampleCount + 1, sqliteHelper.getRecipeCount());
+            assertEquals(2, importReport.getMergedCount());
+            assertEquals(
+                    (int) exampleIds.get(0),
+                    importReport.getEntries().get(0).keptRecipeId
+            );
+            assertEquals(newRecipe.name, importReport.getEntries().get(1).mergedName);
+        } finally {
+            libraryFile.delete();
+            appContext.deleteDatabase(TEST_DUPLICATE_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void recipeAggregatesAreKeptAndChecked() {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        appContext.deleteDatabase(TEST_AGGREGATE_DATABASE_NAME);
+
+        try {
+            final int[] recipeIds = new int[3];
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_AGGREGATE_DATABASE_NAME, appContext)
+            ) {
+                final Recipe r1 = new Recipe();
+                r1.name = "test_aggregate_1";
+                r1.putIngredient(1, 200);
+                r1.putIngredient(2, new Ingredient.InRecipeProperties(3, true));
+                r1.addUtensil(1);
+                r1.addUtensil(2);
+
+                final Recipe r2 = new Recipe();
+                r2.name = "test_aggregate_2";
+                r2.putIngredient(1, 50);
+                r2.putIngredient(3, 25);
+                r2.putIngredient(4, 25);
+
+                final Recipe r3 = new Recipe();
+                r3.name = "test_aggregate_3";
+
+                recipeIds[0] = sqliteHelper.insertRecipe(r1);
+                recipeIds[1] = sqliteHelper.insertRecipe(r2);
+                recipeIds[2] = sqliteHelper.insertRecipe(r3);
+                assertTrue(sqliteHelper.checkRecipeAggregates().isEmpty());
+
+                /// units are left out of the total amount
+                assertEquals(
+                        Arrays.asList(recipeIds[2], recipeIds[1], recipeIds[0]),
+                        getRecipeIds(sqliteHelper.getAllRecipes(RecipeSortOrder.TOTAL_AMOUNT))
+                );
+                assertEquals(
+                        Arrays.asList(recipeIds[2], recipeIds[0], recipeIds[1]),
+                        getRecipeIds(sqliteHelper.getAllRecipes(RecipeSortOrder.INGREDIENT_COUNT))
+                );
+
+                final RecipeQuery rQuery = new RecipeQuery();
+                rQuery.maxIngredientCount = 2;
+                rQuery.maxUtensilCount = 1;
+                assertEquals(
+                        Collections.singletonList(recipeIds[2]),
+                        getRecipeIds(sqliteHelper.getQueriedRecipes(rQuery))
+                );
+                rQuery.maxUtensilCount = Integer.MAX_VALUE;
+                rQuery.excludesMeasuredInUnits = true;
+                assertEquals(
+                        Collections.singletonList(recipeIds[2]),
+                        getRecipeIds(sqliteHelper.getQueriedRecipes(rQuery))
+                );
+
+                /// updated recipes are aggregated again
+                final Recipe updated = sqliteHelper.getRecipeFromId(recipeIds[0]).get();
+                updated.removeIngredient(2);
+                sqliteHelper.updateRecipe(recipeIds[0], updated);
+                assertEquals(
+                        Arrays.asList(recipeIds[2], recipeIds[0]),
+                        getRecipeIds(sqliteHelper.getQueriedRecipes(rQuery))
+                );
+            }
+
+            /// rows written outside of the helper are recomputed by the check
+            try (
+                    final SQLiteDatabase database = SQLiteDatabase.openDatabase(
+                            appContext.getDatabasePath(TEST_AGGREGATE_DATABASE_NAME).getPath(),
+                            null,
+                            SQLiteDatabase.OPEN_READWRITE
+                    )
+            ) {
+                database.execSQL(
+                        "UPDATE recipes SET ingredient_count = 7 WHERE id = ?;",
+                        new Object[] {recipeIds[1]}
+                );
+                database.execSQL(
+                        "INSERT INTO recipe_utensils(recipe_id, utensil_id) VALUES (?, 1);",
+                        new Object[] {recipeIds[2]}
+                );
+            }
+
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_AGGREGATE_DATABASE_NAME, appContext)
+            ) {
+                assertEquals(
+                        Arrays.asList(recipeIds[1], recipeIds[2]),
+                        sqliteHelper.checkRecipeAggregates()
+                );
+                assertTrue(sqliteHelper.checkRecipeAggregates().isEmpty());
+            }
+        } finally {
+            appContext.deleteDatabase(TEST_AGGREGATE_DATABASE_NAME);
+        }
+    }
+
+    /**
+     * Gets the IDs of a list of recipes, in the same order.
+     * @param recipes List of {@link Pair}s of recipe ID and recipe.
+     * @return A list of integer IDs.
+     */
+    private static List<Integer> getRecipeIds(List<Pair<Integer, Recipe>> recipes) {
+        final List<Integer> recipeIds = new ArrayList<>(recipes.size());
+        for (Pair<Integer, Recipe> pair: recipes) recipeIds.add(pair.first);
+
+        return recipeIds;
+    }
+
+    @Test
+    public void recipeSortOrdersArePagedCorrectly() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File libraryFile = new File(appContext.getCacheDir(), "test_sort_library.json");
+        appContext.deleteDatabase(TEST_SORT_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SORT_DATABASE_NAME, appContext)
+        ) {
+            importRandomRecipes(sqliteHelper, libraryFile, TEST_SORT_RECIPE_COUNT);
+
+            for (RecipeSortOrder sortOrder: RecipeSortOrder.values()) {
+                final HashSet<Integer> readIds = new HashSet<>();
+                final List<Integer> pagedIds = new ArrayList<>();
+                Pair<Integer, Recipe> lastRecipe = null;
+                RecipePage page = sqliteHelper.getRecipePage(
+                        null,
+                        sortOrder,
+                        null,
+                        TEST_SORT_PAGE_SIZE
+                );
+
+                while (true) {
+                    for (Pair<Integer, Recipe> pair: page.recipes) {
+                        /// pages must neither overlap nor go backwards
+                        assertTrue(readIds.add(pair.first));
+                        if (lastRecipe != null) {
+                            assertTrue(compareInSortOrder(sortOrder, lastRecipe, pair) < 0);
+                        }
+                        lastRecipe = pair;
+                        pagedIds.add(pair.first);
+                    }
+
+                    if (page.next == null) break;
+                    assertEquals(TEST_SORT_PAGE_SIZE, page.recipes.size());
+                    page = sqliteHelper.getRecipePage(
+                            null,
+                            sortOrder,
+                            page.next,
+                            TEST_SORT_PAGE_SIZE
+                    );
+                }
+
+                /// every recipe is read once, and full lists are read in pages as well
+                assertEquals(TEST_SORT_RECIPE_COUNT, readIds.size());
+                assertEquals(pagedIds, getRecipeIds(sqliteHelper.getAllRecipes(sortOrder)));
+            }
+        } finally {
+            libraryFile.delete();
+            appContext.deleteDatabase(TEST_SORT_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void recipeSortOrderPagingBenchmark() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File libraryFile = new File(appContext.getCacheDir(), "test_sort_library.json");
+        appContext.deleteDatabase(TEST_SORT_DATABASE_NAME);
+
+        try (
+                final BiteNoteSQLiteHelper sqliteHelper =
+                        new BiteNoteSQLiteHelper(TEST_SORT_DATABASE_NAME, appContext)
+        ) {
+            importRandomRecipes(sqliteHelper, libraryFile, TEST_SORT_BENCHMARK_RECIPE_COUNT);
+
+            for (RecipeSortOrder sortOrder: RecipeSortOrder.values()) {
+                RecipePage.Boundary after = null;
+                long firstPageNanos = 0;
+                long pageNanos = 0;
+
+                for (int i = 0; i < TEST_SORT_PAGE_COUNT; i++) {
+                    final long startTime = System.nanoTime();
+                    final RecipePage page = sqliteHelper.getRecipePage(
+                            null,
+                            sortOrder,
+                            after,
+                            TEST_SORT_PAGE_SIZE
+                    );
+                    final long elapsedNanos = System.nanoTime() - startTime;
+                    if (i == 0) firstPageNanos = elapsedNanos;
+                    pageNanos += elapsedNanos;
+
+                    assertEquals(TEST_SORT_PAGE_SIZE, page.recipes.size());
+                    assertNotNull(page.next);
+                    after = page.next;
+                }
+
+                Log.i("test", String.format(
+                        Locale.ROOT,
+                        "%s: first page in %.2f ms, %.2f ms per page over %d pages.",
+                        sortOrder,
+                        firstPageNanos / 1e6,
+                        pageNanos / 1e6 / TEST_SORT_PAGE_COUNT,
+                        TEST_SORT_PAGE_COUNT
+                ));
+            }
+        } finally {
+            libraryFile.delete();
+            appContext.deleteDatabase(TEST_SORT_DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void recipeFootprintBenchmark() throws IOException {
+        final Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final File libraryFile = new File(appContext.getCacheDir(), "test_footprint_library.json");
+        appContext.deleteDatabase(TEST_FOOTPRINT_DATABASE_NAME);
+
+        try {
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_FOOTPRINT_DATABASE_NAME, appContext)
+            ) {
+                importRandomRecipes(sqliteHelper, libraryFile, TEST_FOOTPRINT_RECIPE_COUNT);
+            }
+
+            /// a new helper, so the recipes are read from the database instead of the cache
+            try (
+                    final BiteNoteSQLiteHelper sqliteHelper =
+                            new BiteNoteSQLiteHelper(TEST_FOOTPRINT_DATABASE_NAME, appContext)
+            ) {
+                /// footprint of the loaded recipes, as retained after a full collection
+                final long usedBytes = getUsedHeapBytes();
+                long allocatedBytes = getAllocatedBytes();
+                final List<Pair<Integer, Recipe>> recipes = sqliteHelper.getAllRecipes();
+                final long loadAllocatedBytes = getAllocatedBytes() - allocatedBytes;
+                final long footprintBytes = getUsedHeapBytes() - usedBytes;
+                assertEquals(TEST_FOOTPRINT_RECIPE_COUNT, recipes.size());
+
+                /// traversals of the ingredients, which run on every write and signature
+                final long[] ingredientIdSum = {0};
+                allocatedBytes = getAllocatedBytes();
+                for (Pair<Integer, Recipe> pair: recipes) {
+                    pair.second.forEachIngredient((ingredientId, properties) ->
+                            ingredientIdSum[0] += ingredientId
+                    );
+                }
+                final long forEachAllocatedBytes = getAllocatedBytes() - allocatedBytes;
+
+                long viewIngredientIdSum = 0;
+                allocatedBytes = getAllocatedBytes();
+                for (Pair<Integer, Recipe> pair: recipes) {
+                    for (int ingredientId: pair.second.getIngredients().keySet()) {
+                        viewIngredientIdSum += ingredientId;
+                    }
+                }
+                final long viewAllocatedBytes = getAllocatedBytes() - allocatedBytes;
+                assertEquals(ingredientIdSum[0], viewIngredientIdSum);
+
+                Log.i("test", String.format(
+                        Locale.ROOT,
+                        "%d recipes: %d bytes retained and %d bytes allocated per recipe loaded, " +
+                                "%d bytes allocated by forEachIngredient and %d bytes by the map " +
+                                "view over every recipe.",
+                        TEST_FOOTPRINT_RECIPE_COUNT,
+                        footprintBytes / TEST_FOOTPRINT_RECIPE_COUNT,
+                        loadAllocatedBytes / TEST_FOOTPRINT_RECIPE_COUNT,
+                        forEachAllocatedBytes,
+                        viewAllocatedBytes
+                ));
+            }
+        } finally {
+            libraryFile.delete();
+            appContext.deleteDatabase(TEST_FOOTPRINT_DATABASE_NAME);
+        }
+    }
+
+    /**
+     * Gets the bytes of the heap that are in use after a full collection.
+     * @return The amount of used bytes.
+     */
+    private static long getUsedHeapBytes() {
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Gets the bytes allocated by the runtime since the process started.
+     * @return The amount of allocated bytes.
+     */
+    private static long getAllocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    /**
+     * Imports random recipes into a database, through a library file, since inserting one recipe
+     * at a time would take too long.
+     * @param sqliteHelper {@link BiteNoteSQLiteHelper} instance.
+     * @param libraryFile File where the library is written.
+     * @param recipeCount Amount of recipes.
+     * @throws IOException If the library couldn't be written or imported.
+     */
+    private static void importRandomRecipes(
+            BiteNoteSQLiteHelper sqliteHelper,
+            File libraryFile,
+            int recipeCount
+    ) throws IOException {
+        final Random random = new Random(42);
+
+        try (
+                final JsonWriter writer = new JsonWriter(new BufferedWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(libraryFile),
+                                StandardCharsets.UTF_8
+                        )
+                ))
+        ) {
+            RecipeLibraryFormat.beginLibrary(writer);
+            for (int i = 0; i < recipeCount; i++) {
+                final Recipe r = new Recipe();
+                r.name = "test_recipe_" + random.nextInt(recipeCount);
+                r.budget = random.nextInt(100);
+                r.diners = 1 + random.nextInt(8);
+                r.creationDate = EpochDays.toDate(18000 + random.nextInt(2000));
+
+                /// a few ingredients and utensils give the aggregate orders distinct keys
+                final int ingredientCount = random.nextInt(4);
+                for (int j = 0; j < ingredientCount; j++) {
+                    r.putIngredient(1 + random.nextInt(50), new Ingredient.InRecipeProperties(
+                            1 + random.nextInt(500),
+                            random.nextInt(4) == 0
+                    ));
+                }
+                final int utensilCount = random.nextInt(3);
+                for (int j = 0; j < utensilCount; j++) r.addUtensil(1 + random.nextInt(10));
+
+                RecipeLibraryFormat.writeRecipe(writer, r);
+            }
+            RecipeLibraryFormat.endLibrary(writer);
+        }
+        try (
+                final FileChannel channel =
+                        FileChannel.open(libraryFile.toPath(), StandardOpenOption.READ)
+        ) {
+            assertEquals(recipeCount, sqliteHelper.importRecipes(channel));
+        }
+        assertTrue(sqliteHelper.checkRecipeAggregates().isEmpty());
+    }
+
+    /**
+     * Compares two recipes in a sort order, breaking ties by their ID.
+     * @param sortOrder Order of the recipes.
+     * @param a First {@link Pair} of recipe ID and recipe.
+     * @param b Second {@link Pair} of recipe ID and recipe.
+     * @return A negative number if the first recipe comes first, zero if they're the same, or a
+     * positive number if the second recipe comes first.
+     */
+    private static int compareInSortOrder(
+            RecipeSortOrder sortOrder,
+            Pair<Integer, Recipe> a,
+            Pair<Integer, Recipe> b
+    ) {
+        final int comparison;
+        switch (sortOrder) {
+            case NEWEST:
+                comparison = -Long.compare(
+                        EpochDays.fromDate(a.second.creationDate),
+                        EpochDays.fromDate(b.second.creationDate)
+                );
+                break;
+            case NAME:
+                /// the names only differ in their digits, which collate like their code points
+                comparison = a.second.name.compareTo(b.second.name);
+                break;
+            case BUDGET:
+                comparison = Integer.compare(a.second.budget, b.second.budget);
+                break;
+            case DINERS:
+                comparison = -Integer.compare(a.second.diners, b.second.diners);
+                break;
+            case BUDGET_PER_DINER:
+                comparison = Long.compare(
+                        a.second.budget * 1000L / a.second.diners,
+                        b.second.budget * 1000L / b.second.diners
+                );
+                break;
+            case INGREDIENT_COUNT:
+                comparison = Integer.compare(
+                        a.second.getIngredients().size(),
+                        b.second.getIngredients().size()
+                );
+                break;
+            case UTENSIL_COUNT:
+                comparison = Integer.compare(
+                        a.second.getUtensils().size(),
+                        b.second.getUtensils().size()
+                );
+                break;
+            case TOTAL_AMOUNT:
+                comparison = Long.compare(getTotalAmount(a.second), getTotalAmount(b.second));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sort order " + sortOrder + ".");
+        }
+        if (comparison != 0) return comparison;
+
+        final boolean isDescending =
+                sortOrder == RecipeSortOrder.NEWEST || sortOrder == RecipeSortOrder.DINERS;
+        final int idComparison = Integer.compare(a.first, b.first);
+        return isDescending ? -idComparison : idComparison;
+    }
+
+    /**
+     * Adds up the amounts of a recipe that aren't measured in units.
+     * @param recipe {@link Recipe} instance.
+     * @return The total amount of the recipe.
+     */
+    private static long getTotalAmount(Recipe recipe) {
+        long totalAmount = 0;
+        for (Ingredient.InRecipeProperties properties: recipe.getIngredients().values()) {
+            if (!properties.isMeasuredInUnits) totalAmount += properties.amount;
+        }
+
+        return totalAmount;
+    }
 }
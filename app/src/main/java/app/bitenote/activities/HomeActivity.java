@@ -1,11 +1,17 @@
 package app.bitenote.activities;
 
+import android.annotation.SuppressLint;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Pair;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
@@ -14,17 +20,25 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import app.bitenote.R;
+import app.bitenote.activities.debug.DatabaseMetricsActivity;
 import app.bitenote.activities.query.RecipeQueryActivity;
 import app.bitenote.activities.text.WriteRecipeActivity;
 import app.bitenote.activities.text.ReadRecipeActivity;
+import app.bitenote.adapters.query.ingredient.IncludedIngredientAdapter;
 import app.bitenote.adapters.recipe.RecipeAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
+import app.bitenote.database.RecipeSortOrder;
 import app.bitenote.instances.Recipe;
+import app.bitenote.instances.ShoppingList;
 import app.bitenote.viewmodels.BiteNoteViewModel;
 
 /**
@@ -32,6 +46,12 @@ import app.bitenote.viewmodels.BiteNoteViewModel;
  * @author Daniel N.
  */
 public final class HomeActivity extends AppCompatActivity {
+    /**
+     * Name of the async trace slice that covers the time from the creation of the activity until
+     * its first recipe card is bound, either from the stored summary or from the database.
+     */
+    private static final String FIRST_CARD_TRACE_SECTION_NAME = "HomeActivity.firstCard";
+
     /**
      * Activity executor that creates a background thread for database operations.
      */
@@ -52,6 +72,30 @@ public final class HomeActivity extends AppCompatActivity {
      */
     private RecipeAdapter mRecipeAdapter;
 
+    /**
+     * Recipes bound into {@link #mRecipeAdapter}, which are the ones a shopping list can be made
+     * of.
+     */
+    private List<Pair<Integer, Recipe>> mListedRecipes = new ArrayList<>();
+
+    /**
+     * Write count of the recipe cache obtained before the recipes of {@link #mRecipeAdapter} were
+     * read, which stamps the snapshots handed to {@link ReadRecipeActivity}.
+     */
+    private long mRecipesWriteCount = 0;
+
+    /**
+     * Determines whether {@link #mRecipeAdapter} holds the recipes read from the database, instead
+     * of the stored summary of the list, which lacks their bodies, ingredients and utensils.
+     */
+    private boolean mAreRecipesLoaded = false;
+
+    /**
+     * Cookie of the async trace slice that covers the time until the first recipe card is bound.
+     * It's {@code 0} once the slice ends.
+     */
+    private int mFirstCardTraceCookie = 0;
+
     /**
      * Activity's Material toolbar.
      */
@@ -74,6 +118,7 @@ public final class HomeActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mFirstCardTraceCookie = BiteNoteTrace.beginAsync(FIRST_CARD_TRACE_SECTION_NAME);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.home_activity);
 
@@ -88,11 +133,40 @@ public final class HomeActivity extends AppCompatActivity {
         super.onResume();
 
         /// update adapter
-        mDatabaseExecutor.execute(() -> {
-            final List<Pair<Integer, Recipe>> allRecipes = mViewModel.sqliteHelper.getAllRecipes();
+        loadRecipes("HomeActivity.onResume");
+    }
 
-            mMainThreadHandler.post(() -> mRecipeAdapter.setRecipes(allRecipes));
-        });
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.recipe_list_action_bar, menu);
+        getMenuInflater().inflate(R.menu.shopping_list_action_bar, menu);
+
+        /// debug tools are only reachable from debuggable builds
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            getMenuInflater().inflate(R.menu.home_action_bar, menu);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.RecipeListSortOrderMenuItem) {
+            showSortOrderDialog();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.HomeShoppingListMenuItem) {
+            showShoppingListRecipesDialog();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.HomeDatabaseMetricsMenuItem) {
+            startActivity(new Intent(this, DatabaseMetricsActivity.class));
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
     }
 
     /**
@@ -106,23 +180,254 @@ public final class HomeActivity extends AppCompatActivity {
 
         setSupportActionBar(mMaterialToolbar); // no navigation icon
 
-        mDatabaseExecutor.execute(() -> {
-            final List<Pair<Integer, Recipe>> allRecipes = mViewModel.sqliteHelper.getAllRecipes();
+        mRecipeAdapter = new RecipeAdapter(new ArrayList<>(), getOnRecipeCardClickListener());
+        mRecyclerView.setAdapter(mRecipeAdapter);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("HomeActivity.setupViews", () -> {
+            /// the stored summary is drawn while the database is opened, then onResume() loads it
+            mViewModel.readRecipeListSnapshot().ifPresent(summaries ->
+                    mMainThreadHandler.post(() -> bindRecipeSummaries(summaries))
+            );
 
-            mMainThreadHandler.post(() -> {
-                mRecipeAdapter = new RecipeAdapter(
-                        allRecipes,
-                        getOnRecipeCardClickListener()
-                );
-                mRecyclerView.setAdapter(mRecipeAdapter);
-                mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-            });
-        });
+            /// the example recipes may still be being inserted on the first run
+            ((BiteNoteApplication) getApplication()).awaitFirstRunSetup();
+        }));
 
         mNewRecipeButton.setOnClickListener(this::onNewRecipeButtonClick);
         mMakeQueryButton.setOnClickListener(this::onMakeQueryButtonClick);
     }
 
+    /**
+     * Reads the recipes from the database in the current sort order, and binds them into
+     * {@link #mRecipeAdapter}.
+     * @param traceSectionName Name of the trace section of the read.
+     */
+    private void loadRecipes(@NonNull String traceSectionName) {
+        final RecipeSortOrder sortOrder = mViewModel.getSortOrder();
+
+        mDatabaseExecutor.execute(BiteNoteTrace.traced(traceSectionName, () -> {
+            /// recipes edited in other activities may still be queued
+            mViewModel.recipeWriteQueue.flush().join();
+            final long writeCount = mViewModel.sqliteHelper.getRecipeCache().getWriteCount();
+            final List<Pair<Integer, Recipe>> allRecipes =
+                    mViewModel.sqliteHelper.getAllRecipes(sortOrder);
+
+            mMainThreadHandler.post(() -> bindRecipes(allRecipes, writeCount));
+
+            /// the summary is drawn on launch, which always starts with the newest recipes
+            if (sortOrder == RecipeSortOrder.NEWEST) {
+                mViewModel.writeRecipeListSnapshot(allRecipes);
+            }
+        }));
+    }
+
+    /**
+     * Shows a dialog to choose the sort order of the recipes, which reloads them once chosen.
+     */
+    private void showSortOrderDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.recipe_sort_order_menu_item_title)
+                .setSingleChoiceItems(
+                        R.array.recipe_sort_orders,
+                        mViewModel.getSortOrder().ordinal(),
+                        (dialog, i) -> {
+                            mViewModel.setSortOrder(RecipeSortOrder.values()[i]);
+                            loadRecipes("HomeActivity.sortRecipes");
+
+                            dialog.dismiss();
+                        }
+                )
+                .create()
+                .show();
+    }
+
+    /**
+     * Binds the recipes read from the database into {@link #mRecipeAdapter}.
+     * @param recipes List of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the recipe.
+     * @param writeCount Write count of the recipe cache obtained before the recipes were read.
+     */
+    private void bindRecipes(@NonNull List<Pair<Integer, Recipe>> recipes, long writeCount) {
+        mRecipeAdapter.setRecipes(recipes);
+        mListedRecipes = recipes;
+        mRecipesWriteCount = writeCount;
+        mAreRecipesLoaded = true;
+
+        endFirstCardTrace();
+    }
+
+    /**
+     * Binds the stored summary of the recipe list into {@link #mRecipeAdapter}, unless the recipes
+     * were already read from the database.
+     * @param summaries List of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the summary of the recipe.
+     */
+    private void bindRecipeSummaries(@NonNull List<Pair<Integer, Recipe>> summaries) {
+        if (mAreRecipesLoaded) return;
+
+        mRecipeAdapter.setRecipes(summaries);
+        mListedRecipes = summaries;
+        if (!summaries.isEmpty()) endFirstCardTrace();
+    }
+
+    /**
+     * Shows a dialog to choose the listed recipes a shopping list is made of.
+     */
+    private void showShoppingListRecipesDialog() {
+        final List<Pair<Integer, Recipe>> recipes = mListedRecipes;
+        final String[] names = new String[recipes.size()];
+        final boolean[] checkedItems = new boolean[recipes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = recipes.get(i).second.name;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.shopping_list_recipes_dialog_title)
+                .setMultiChoiceItems(names, checkedItems, (dialog, i, isChecked) ->
+                        checkedItems[i] = isChecked
+                )
+                .setPositiveButton(R.string.shopping_list_next_button_text, (dialog, i) -> {
+                    final Set<Integer> recipeIds = new LinkedHashSet<>();
+                    int diners = 0;
+                    for (int j = 0; j < checkedItems.length; j++) {
+                        if (!checkedItems[j]) continue;
+
+                        recipeIds.add(recipes.get(j).first);
+                        diners = Math.max(diners, recipes.get(j).second.diners);
+                    }
+
+                    if (recipeIds.isEmpty()) {
+                        Toast.makeText(
+                                this,
+                                R.string.no_shopping_list_recipes_toast,
+                                Toast.LENGTH_SHORT
+                        ).show();
+                        return;
+                    }
+
+                    showShoppingListDinersDialog(recipeIds, Math.max(diners, 1));
+                })
+                .setNegativeButton(
+                        R.string.shopping_list_cancel_button_text,
+                        (dialog, i) -> dialog.dismiss()
+                )
+                .create()
+                .show();
+    }
+
+    /**
+     * Shows a dialog to choose the amount of diners a shopping list is scaled to, which then
+     * computes the list.
+     * @param recipeIds {@link Set} of integer IDs of the recipes of the list.
+     * @param defaultDiners Amount of diners the dialog starts with.
+     */
+    private void showShoppingListDinersDialog(@NonNull Set<Integer> recipeIds, int defaultDiners) {
+        final View dialogView = LayoutInflater.from(this)
+                .inflate(R.layout.shopping_list_diners_dialog, null);
+        final EditText dinersEditText =
+                dialogView.findViewById(R.id.ShoppingListDinersDialogDinersEditText);
+        dinersEditText.setText(String.valueOf(defaultDiners));
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.shopping_list_diners_dialog_title)
+                .setView(dialogView)
+                .setPositiveButton(R.string.shopping_list_next_button_text, (dialog, i) -> {
+                    int diners;
+                    try {
+                        diners = Integer.parseInt(dinersEditText.getText().toString());
+                    } catch (NumberFormatException e) {
+                        diners = defaultDiners;
+                    }
+                    final int scaledDiners = Math.max(diners, 1);
+
+                    mDatabaseExecutor.execute(BiteNoteTrace.traced(
+                            "HomeActivity.getShoppingList",
+                            () -> {
+                                final ShoppingList list = mViewModel.sqliteHelper
+                                        .getShoppingList(recipeIds, scaledDiners);
+
+                                mMainThreadHandler.post(() -> showShoppingListDialog(list));
+                            }
+                    ));
+                })
+                .setNegativeButton(
+                        R.string.shopping_list_cancel_button_text,
+                        (dialog, i) -> dialog.dismiss()
+                )
+                .create()
+                .show();
+    }
+
+    /**
+     * Shows a shopping list, which can be shared as text with other apps.
+     * @param list {@link ShoppingList} instance.
+     */
+    private void showShoppingListDialog(@NonNull ShoppingList list) {
+        if (list.isEmpty()) {
+            Toast.makeText(this, R.string.empty_shopping_list_toast, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        final String[] lines = new String[list.getItems().size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = getShoppingListItemText(list.getItems().get(i));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.shopping_list_menu_item_title)
+                .setItems(lines, null)
+                .setPositiveButton(R.string.shopping_list_share_button_text, (dialog, i) -> {
+                    final Intent intent = new Intent(Intent.ACTION_SEND)
+                            .setType("text/plain")
+                            .putExtra(
+                                    Intent.EXTRA_SUBJECT,
+                                    getString(R.string.shopping_list_menu_item_title)
+                            )
+                            .putExtra(Intent.EXTRA_TEXT, String.join("\n", lines));
+
+                    startActivity(Intent.createChooser(intent, null));
+                })
+                .create()
+                .show();
+    }
+
+    /**
+     * Gets the translated text of an item of a shopping list.
+     * @param item {@link ShoppingList.Item} instance.
+     * @return The name, the rounded amount and the measurement of the item.
+     */
+    @SuppressLint("DiscouragedApi")
+    private String getShoppingListItemText(@NonNull ShoppingList.Item item) {
+        final int nameId = getResources().getIdentifier(
+                "ingredient_" + item.ingredient.fullName,
+                "string",
+                getPackageName()
+        );
+
+        return getString(
+                R.string.shopping_list_item_text,
+                nameId != 0 ? getString(nameId) : item.ingredient.name,
+                item.getRoundedAmount(),
+                IncludedIngredientAdapter.getMeasurementText(
+                        this,
+                        item.ingredient,
+                        item.isMeasuredInUnits
+                )
+        );
+    }
+
+    /**
+     * Ends the async trace slice that covers the time until the first recipe card is bound, if it
+     * hasn't ended yet.
+     */
+    private void endFirstCardTrace() {
+        if (mFirstCardTraceCookie != 0) {
+            BiteNoteTrace.endAsync(FIRST_CARD_TRACE_SECTION_NAME, mFirstCardTraceCookie);
+            mFirstCardTraceCookie = 0;
+        }
+    }
+
     /**
      * @return The {@link RecipeAdapter.OnClickListener} implementation that will run when a recipe
      * card is clicked.
@@ -135,6 +440,10 @@ public final class HomeActivity extends AppCompatActivity {
                         new Intent(HomeActivity.this, ReadRecipeActivity.class);
                 intent.putExtra(ReadRecipeActivity.INTENT_EXTRA_RECIPE_ID, recipeId);
 
+                /// the card already holds the whole recipe, so it doesn't need to be read again
+                if (mAreRecipesLoaded) {
+                    mViewModel.recipeSnapshots.put(recipeId, recipe, mRecipesWriteCount);
+                }
                 startActivity(intent);
             }
 
@@ -144,15 +453,9 @@ public final class HomeActivity extends AppCompatActivity {
                         .setTitle(R.string.home_long_click_dialog_title)
                         .setMessage(getString(R.string.home_long_click_dialog_body, recipe.name))
                         .setPositiveButton(R.string.yes, (dialog, i) -> {
-                            mDatabaseExecutor.execute(() -> {
-                                mViewModel.sqliteHelper.deleteRecipe(recipeId);
-
-                                mMainThreadHandler.post(() ->
-                                        mRecipeAdapter.setRecipes(
-                                                mViewModel.sqliteHelper.getAllRecipes()
-                                        )
-                                );
-                            });
+                            /// the reload flushes the deletion before reading
+                            mViewModel.recipeWriteQueue.enqueueDelete(recipeId);
+                            loadRecipes("HomeActivity.deleteRecipe");
 
                             Toast.makeText(
                                     HomeActivity.this,
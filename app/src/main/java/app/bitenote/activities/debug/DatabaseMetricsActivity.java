@@ -0,0 +1,197 @@
+package app.bitenote.activities.debug;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import com.google.android.material.appbar.MaterialToolbar;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import app.bitenote.R;
+import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.database.DatabaseMetrics;
+import app.bitenote.database.SlowQueryLog;
+import app.bitenote.viewmodels.BiteNoteViewModel;
+
+/**
+ * Class that represents the debug activity where the database metrics and slow queries are
+ * shown.
+ * @author Daniel N.
+ */
+public final class DatabaseMetricsActivity extends AppCompatActivity {
+    /**
+     * Name of the file where metrics are dumped.
+     */
+    public static final String DUMP_FILE_NAME = "database_metrics.txt";
+
+    /**
+     * Name of the file where slow queries are dumped.
+     */
+    public static final String SLOW_QUERY_DUMP_FILE_NAME = "slow_queries.txt";
+
+    /**
+     * Activity executor that creates a background thread for file operations.
+     */
+    private final Executor mFileExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Activity's handler for the main thread.
+     */
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Application view model. Grants access to the app's database.
+     */
+    private BiteNoteViewModel mViewModel;
+
+    /**
+     * Activity's Material toolbar.
+     */
+    private MaterialToolbar mMaterialToolbar;
+
+    /**
+     * Button that reloads the metrics.
+     */
+    private Button mRefreshButton;
+
+    /**
+     * Button that dumps the metrics into a file.
+     */
+    private Button mDumpButton;
+
+    /**
+     * Button that removes every collected metric.
+     */
+    private Button mResetButton;
+
+    /**
+     * Text view where the metrics are contained.
+     */
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.database_metrics_activity);
+
+        /// init viewmodel
+        mViewModel = ((BiteNoteApplication) getApplication()).getAppViewModel();
+
+        setupViews();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        bind();
+    }
+
+    /**
+     * Sets up all the views in the activity.
+     */
+    private void setupViews() {
+        mMaterialToolbar = findViewById(R.id.DatabaseMetricsMaterialToolbar);
+        mRefreshButton = findViewById(R.id.DatabaseMetricsRefreshButton);
+        mDumpButton = findViewById(R.id.DatabaseMetricsDumpButton);
+        mResetButton = findViewById(R.id.DatabaseMetricsResetButton);
+        mMetricsTextView = findViewById(R.id.DatabaseMetricsTextView);
+
+        setSupportActionBar(mMaterialToolbar);
+        mMaterialToolbar.setNavigationOnClickListener(view -> finish());
+
+        mRefreshButton.setOnClickListener(view -> bind());
+        mDumpButton.setOnClickListener(this::onDumpButtonClick);
+        mResetButton.setOnClickListener(this::onResetButtonClick);
+    }
+
+    /**
+     * Binds the current metrics and slow queries into the text view of the activity.
+     */
+    private void bind() {
+        /// slow queries are read from disk
+        mFileExecutor.execute(() -> {
+            final String text = getMetrics() + "\nMain thread calls: " +
+                    mViewModel.sqliteHelper.getMainThreadGuard().getViolationCount() + "\n" +
+                    mViewModel.sqliteHelper.getRecipeCache() + "\n\n" +
+                    getSlowQueryLog();
+
+            mMainThreadHandler.post(() -> mMetricsTextView.setText(text));
+        });
+    }
+
+    /**
+     * Function called when {@link #mDumpButton} is clicked.
+     * @param view {@link View} reference.
+     */
+    private void onDumpButtonClick(@NonNull View view) {
+        /// external files can be pulled without root, but external storage may be unavailable
+        final File directory = Optional.ofNullable(getExternalFilesDir(null))
+                .orElse(getFilesDir());
+        final File dumpFile = new File(directory, DUMP_FILE_NAME);
+        final File slowQueryDumpFile = new File(directory, SLOW_QUERY_DUMP_FILE_NAME);
+
+        mFileExecutor.execute(() -> {
+            boolean isDumped = true;
+            try {
+                getMetrics().dump(dumpFile);
+                getSlowQueryLog().dump(slowQueryDumpFile);
+            } catch (IOException e) {
+                Log.e(
+                        "db metrics",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                isDumped = false;
+            }
+
+            final boolean finalIsDumped = isDumped;
+            mMainThreadHandler.post(() -> Toast.makeText(
+                    this,
+                    finalIsDumped
+                            ? getString(
+                                    R.string.database_metrics_dump_toast,
+                                    directory.getPath()
+                            )
+                            : getString(R.string.database_metrics_dump_error_toast),
+                    Toast.LENGTH_LONG
+            ).show());
+        });
+    }
+
+    /**
+     * Function called when {@link #mResetButton} is clicked.
+     * @param view {@link View} reference.
+     */
+    private void onResetButtonClick(@NonNull View view) {
+        getMetrics().reset();
+        mFileExecutor.execute(() -> getSlowQueryLog().clear());
+
+        bind();
+    }
+
+    /**
+     * Gets the metrics of the application database.
+     * @return {@link DatabaseMetrics} instance.
+     */
+    private DatabaseMetrics getMetrics() {
+        return mViewModel.sqliteHelper.getMetrics();
+    }
+
+    /**
+     * Gets the slow query log of the application database.
+     * @return {@link SlowQueryLog} instance.
+     */
+    private SlowQueryLog getSlowQueryLog() {
+        return mViewModel.sqliteHelper.getSlowQueryLog();
+    }
+}
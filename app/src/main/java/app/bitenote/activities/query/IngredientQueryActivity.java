@@ -4,15 +4,22 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Pair;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
+import android.widget.ToggleButton;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -21,7 +28,9 @@ import app.bitenote.adapters.query.ingredient.IncludedIngredientAdapter;
 import app.bitenote.adapters.query.ingredient.NonQueriedIngredientAdapter;
 import app.bitenote.adapters.query.ingredient.BannedIngredientAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.database.RecipeQuery;
+import app.bitenote.instances.DietaryProfile;
 import app.bitenote.instances.Ingredient;
 import app.bitenote.viewmodels.BiteNoteViewModel;
 
@@ -97,6 +106,24 @@ public final class IngredientQueryActivity extends AppCompatActivity {
         setupViews();
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.ingredient_query_action_bar, menu);
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.IngredientQuerySaveDietaryProfileMenuItem) {
+            /// the adapters are only available once the ingredients are read
+            if (mBannedIngredientAdapter != null) showSaveDietaryProfileDialog();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
     /**
      * Initializes all the views in the activity.
      */
@@ -117,7 +144,7 @@ public final class IngredientQueryActivity extends AppCompatActivity {
 
         final RecipeQuery query = mViewModel.queryLiveData.getValue();
 
-        mDatabaseExecutor.execute(() -> {
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("IngredientQueryActivity.setupViews", () -> {
             final List<Pair<Integer, Ingredient>>
                     includedIngredients =
                     mViewModel.sqliteHelper.getQueryIncludedIngredientsWithProperties(query);
@@ -133,6 +160,11 @@ public final class IngredientQueryActivity extends AppCompatActivity {
                         includedIngredients,
                         getOnIncludedIngredientButtonsClickListener()
                 );
+                includedIngredients.forEach(pair ->
+                        query.getIngredientAmountRange(pair.first).ifPresent(amountRange ->
+                                mIncludedIngredientAdapter.setAmountRange(pair.first, amountRange)
+                        )
+                );
                 mBannedIngredientAdapter = new BannedIngredientAdapter(
                         bannedIngredients,
                         getOnBannedIngredientButtonsClickListener()
@@ -155,7 +187,7 @@ public final class IngredientQueryActivity extends AppCompatActivity {
                         new LinearLayoutManager(this)
                 );
             });
-        });
+        }));
 
         mSaveChangesButton.setOnClickListener(this::onSaveChangesButtonClick);
     }
@@ -170,9 +202,16 @@ public final class IngredientQueryActivity extends AppCompatActivity {
         final RecipeQuery modifiedCopy = new RecipeQuery(mViewModel.queryLiveData.getValue()) {{
             clearAllIngredients();
 
-            mIncludedIngredientAdapter.getIngredients().forEach(pair ->
-                    includeIngredient(pair.first, false)
-            );
+            mIncludedIngredientAdapter.getIngredients().forEach(pair -> {
+                final Optional<RecipeQuery.AmountRange> amountRange =
+                        mIncludedIngredientAdapter.getAmountRange(pair.first);
+
+                if (amountRange.isPresent()) {
+                    includeIngredient(pair.first, amountRange.get(), false);
+                } else {
+                    includeIngredient(pair.first, false);
+                }
+            });
 
             mBannedIngredientAdapter.getIngredients().forEach(pair ->
                     banIngredient(pair.first, false)
@@ -190,6 +229,137 @@ public final class IngredientQueryActivity extends AppCompatActivity {
         finish();
     }
 
+    /**
+     * Shows a dialog where the user specifies the range the amount of an included ingredient must
+     * be in. Blank fields leave that side of the range unbounded.
+     * @param ingredientId ID of the ingredient in the database.
+     * @param ingredient {@link Ingredient} instance.
+     */
+    private void showAmountRangeDialog(int ingredientId, @NonNull Ingredient ingredient) {
+        final View dialogView = LayoutInflater.from(this)
+                .inflate(R.layout.ingredient_amount_range_dialog, null);
+        final EditText minAmountEditText =
+                dialogView.findViewById(R.id.IngredientAmountRangeDialogMinAmountEditText);
+        final EditText maxAmountEditText =
+                dialogView.findViewById(R.id.IngredientAmountRangeDialogMaxAmountEditText);
+        final ToggleButton measurementToggleButton =
+                dialogView.findViewById(R.id.IngredientAmountRangeDialogMeasurementToggleButton);
+
+        measurementToggleButton.setTextOff(
+                IncludedIngredientAdapter.getMeasurementText(this, ingredient, false)
+        );
+        measurementToggleButton.setChecked(false);
+        measurementToggleButton.setEnabled(ingredient.canBeMeasuredInUnits);
+
+        mIncludedIngredientAdapter.getAmountRange(ingredientId).ifPresent(amountRange -> {
+            minAmountEditText.setText(String.valueOf(amountRange.minAmount));
+            if (amountRange.maxAmount != Integer.MAX_VALUE) {
+                maxAmountEditText.setText(String.valueOf(amountRange.maxAmount));
+            }
+            measurementToggleButton.setChecked(
+                    ingredient.canBeMeasuredInUnits && amountRange.isMeasuredInUnits
+            );
+        });
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.ingredient_amount_range_dialog_title)
+                .setView(dialogView)
+                .setPositiveButton(
+                        R.string.ingredient_amount_range_apply_button_text,
+                        (dialog, i) -> {
+                            final int minAmount = parseAmount(minAmountEditText, 0);
+                            final int maxAmount =
+                                    parseAmount(maxAmountEditText, Integer.MAX_VALUE);
+
+                            mIncludedIngredientAdapter.setAmountRange(
+                                    ingredientId,
+                                    new RecipeQuery.AmountRange(
+                                            Math.min(minAmount, maxAmount),
+                                            Math.max(minAmount, maxAmount),
+                                            measurementToggleButton.isChecked()
+                                    )
+                            );
+                        }
+                )
+                .setNeutralButton(
+                        R.string.ingredient_amount_range_clear_button_text,
+                        (dialog, i) -> mIncludedIngredientAdapter.setAmountRange(ingredientId, null)
+                )
+                .setNegativeButton(
+                        R.string.ingredient_amount_range_cancel_button_text,
+                        (dialog, i) -> dialog.dismiss()
+                )
+                .create()
+                .show();
+    }
+
+    /**
+     * Shows a dialog where the user names a new dietary profile, which bans the ingredients that
+     * are currently banned, along with the ingredient types banned by the query.
+     */
+    private void showSaveDietaryProfileDialog() {
+        assert mViewModel.queryLiveData.getValue() != null : "Current query can't be null";
+
+        final View dialogView = LayoutInflater.from(this)
+                .inflate(R.layout.dietary_profile_name_dialog, null);
+        final EditText nameEditText =
+                dialogView.findViewById(R.id.DietaryProfileNameDialogNameEditText);
+        final List<Integer> bannedIngredientTypes =
+                mViewModel.queryLiveData.getValue().getBannedIngredientTypes();
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.dietary_profile_name_dialog_title)
+                .setView(dialogView)
+                .setPositiveButton(R.string.dietary_profile_save_button_text, (dialog, i) -> {
+                    final String name = nameEditText.getText().toString().trim();
+                    if (name.isEmpty()) return;
+
+                    final DietaryProfile profile = new DietaryProfile(name);
+                    mBannedIngredientAdapter.getIngredients().forEach(pair ->
+                            profile.banIngredient(pair.first)
+                    );
+                    bannedIngredientTypes.forEach(profile::banIngredientType);
+
+                    mDatabaseExecutor.execute(() -> {
+                        mViewModel.sqliteHelper.insertDietaryProfile(profile);
+
+                        mMainThreadHandler.post(() -> Toast.makeText(
+                                this,
+                                R.string.dietary_profile_saved_toast,
+                                Toast.LENGTH_SHORT
+                        ).show());
+                    });
+                })
+                .setNegativeButton(
+                        R.string.dietary_profile_cancel_button_text,
+                        (dialog, i) -> dialog.dismiss()
+                )
+                .create()
+                .show();
+    }
+
+    /**
+     * Parses the amount written in an {@link EditText}. Amounts above {@link Integer#MAX_VALUE}
+     * are clamped to it.
+     * @param editText {@link EditText} instance.
+     * @param blankAmount Amount returned if the text is blank or isn't a number.
+     * @return The parsed amount.
+     */
+    private static int parseAmount(@NonNull EditText editText, int blankAmount) {
+        final String text = editText.getText().toString();
+        if (text.isBlank()) return blankAmount;
+
+        try {
+            final long specifiedAmount = Long.parseUnsignedLong(text);
+
+            return specifiedAmount > Integer.MAX_VALUE
+                    ? Integer.MAX_VALUE
+                    : (int) specifiedAmount;
+        } catch (NumberFormatException e) {
+            return blankAmount;
+        }
+    }
+
     /**
      * @return The {@link IncludedIngredientAdapter.OnButtonsClickListener} implementation that
      * will run when an included ingredient's card buttons are clicked.
@@ -197,6 +367,11 @@ public final class IngredientQueryActivity extends AppCompatActivity {
     private IncludedIngredientAdapter.OnButtonsClickListener
     getOnIncludedIngredientButtonsClickListener() {
         return new IncludedIngredientAdapter.OnButtonsClickListener() {
+            @Override
+            public void onAmountButtonClick(int ingredientId, @NonNull Ingredient ingredient) {
+                showAmountRangeDialog(ingredientId, ingredient);
+            }
+
             @Override
             public void onBanButtonClick(int ingredientId, @NonNull Ingredient ingredient) {
                 mIncludedIngredientAdapter.removeIngredient(ingredientId, ingredient);
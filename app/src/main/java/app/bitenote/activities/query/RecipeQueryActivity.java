@@ -2,15 +2,22 @@ package app.bitenote.activities.query;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Pair;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import app.bitenote.R;
 import app.bitenote.app.BiteNoteApplication;
@@ -22,6 +29,16 @@ import app.bitenote.viewmodels.BiteNoteViewModel;
  * @author Daniel N.
  */
 public final class RecipeQueryActivity extends AppCompatActivity {
+    /**
+     * Activity executor that creates a background thread for database operations.
+     */
+    private final Executor mDatabaseExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Activity's handler for the main thread.
+     */
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+
     /**
      * App's view model. Grants access to the database and shared live data.
      */
@@ -57,6 +74,11 @@ public final class RecipeQueryActivity extends AppCompatActivity {
      */
     private Button mEditUtensilsButton;
 
+    /**
+     * Button that allows the user to pick the dietary profile applied to the query.
+     */
+    private Button mDietaryProfileButton;
+
     /**
      * Floating action button for viewing the query.
      */
@@ -84,6 +106,7 @@ public final class RecipeQueryActivity extends AppCompatActivity {
                 findViewById(R.id.RecipeQueryMinDinersSeekBarProgressTextView);
         mEditIngredientsButton = findViewById(R.id.RecipeQueryEditIngredientsButton);
         mEditUtensilsButton = findViewById(R.id.RecipeQueryEditUtensilsButton);
+        mDietaryProfileButton = findViewById(R.id.RecipeQueryDietaryProfileButton);
         mViewQueryButton = findViewById(R.id.RecipeQueryViewQueryButton);
 
         setSupportActionBar(mMaterialToolbar);
@@ -93,6 +116,7 @@ public final class RecipeQueryActivity extends AppCompatActivity {
 
         mEditIngredientsButton.setOnClickListener(this::onEditIngredientsButtonClick);
         mEditUtensilsButton.setOnClickListener(this::onEditUtensilsButtonClick);
+        mDietaryProfileButton.setOnClickListener(this::onDietaryProfileButtonClick);
         mViewQueryButton.setOnClickListener(this::onViewQueryButtonClick);
 
         /*
@@ -104,6 +128,12 @@ public final class RecipeQueryActivity extends AppCompatActivity {
         /// set min diners seek bar
         mMinDinersSeekBar.setProgress(0);
         mMinDinersSeekBarProgressTextView.setText(String.valueOf(1));
+
+        /// no dietary profile is applied to a new query
+        mDietaryProfileButton.setText(getString(
+                R.string.dietary_profile_button_text,
+                getString(R.string.dietary_profile_none_text)
+        ));
     }
 
     /**
@@ -122,6 +152,73 @@ public final class RecipeQueryActivity extends AppCompatActivity {
         startActivity(new Intent(this, UtensilQueryActivity.class));
     }
 
+    /**
+     * Function called when the {@link #mDietaryProfileButton} is clicked.
+     * @param view {@link View} reference.
+     */
+    private void onDietaryProfileButtonClick(@NonNull View view) {
+        mDatabaseExecutor.execute(() -> {
+            final List<Pair<Integer, String>> profiles =
+                    mViewModel.sqliteHelper.getAllDietaryProfileNames();
+
+            mMainThreadHandler.post(() -> showDietaryProfileDialog(profiles));
+        });
+    }
+
+    /**
+     * Shows a dialog where the user picks the dietary profile applied to the query, or deletes
+     * the picked one.
+     * @param profiles List of {@link Pair}s, in which the first element represents the ID of the
+     * profile, and the second element represents its name.
+     */
+    private void showDietaryProfileDialog(@NonNull List<Pair<Integer, String>> profiles) {
+        assert mViewModel.queryLiveData.getValue() != null : "Query live data can't be null";
+
+        final int currentProfileId = mViewModel.queryLiveData.getValue().dietaryProfileId;
+        final String[] names = new String[profiles.size() + 1];
+        int checkedItem = 0;
+
+        /// the first item removes the profile from the query
+        names[0] = getString(R.string.dietary_profile_none_text);
+        for (int i = 0; i < profiles.size(); i++) {
+            names[i + 1] = profiles.get(i).second;
+            if (profiles.get(i).first == currentProfileId) checkedItem = i + 1;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.dietary_profile_dialog_title)
+                .setSingleChoiceItems(names, checkedItem, (dialog, i) -> {
+                    setDietaryProfile(i == 0 ? 0 : profiles.get(i - 1).first, names[i]);
+
+                    dialog.dismiss();
+                })
+                .setNeutralButton(R.string.dietary_profile_delete_button_text, (dialog, i) -> {
+                    if (currentProfileId == 0) return;
+
+                    setDietaryProfile(0, names[0]);
+                    mDatabaseExecutor.execute(() ->
+                            mViewModel.sqliteHelper.deleteDietaryProfile(currentProfileId)
+                    );
+                })
+                .create()
+                .show();
+    }
+
+    /**
+     * Applies a dietary profile to the query.
+     * @param profileId ID of the profile, or {@code 0} to remove the profile from the query.
+     * @param name Name shown in {@link #mDietaryProfileButton}.
+     */
+    private void setDietaryProfile(int profileId, @NonNull String name) {
+        assert mViewModel.queryLiveData.getValue() != null : "Query live data can't be null";
+
+        final RecipeQuery modifiedQuery = new RecipeQuery(mViewModel.queryLiveData.getValue());
+        modifiedQuery.dietaryProfileId = profileId;
+
+        mViewModel.postQuery(modifiedQuery);
+        mDietaryProfileButton.setText(getString(R.string.dietary_profile_button_text, name));
+    }
+
     /**
      * Function called when {@link #mViewQueryButton} is clicked.
      * @param view {@link View} reference.
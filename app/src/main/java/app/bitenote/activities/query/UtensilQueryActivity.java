@@ -21,6 +21,7 @@ import app.bitenote.adapters.query.utensil.IncludedUtensilAdapter;
 import app.bitenote.adapters.query.utensil.NonQueriedUtensilAdapter;
 import app.bitenote.adapters.query.utensil.BannedUtensilAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.database.RecipeQuery;
 import app.bitenote.instances.Utensil;
 import app.bitenote.viewmodels.BiteNoteViewModel;
@@ -117,7 +118,7 @@ public final class UtensilQueryActivity extends AppCompatActivity {
 
         final RecipeQuery query = mViewModel.queryLiveData.getValue();
 
-        mDatabaseExecutor.execute(() -> {
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("UtensilQueryActivity.setupViews", () -> {
             final List<Pair<Integer, Utensil>>
                     includedUtensils =
                     mViewModel.sqliteHelper.getQueryIncludedUtensilsWithProperties(query);
@@ -153,7 +154,7 @@ public final class UtensilQueryActivity extends AppCompatActivity {
                         new LinearLayoutManager(this)
                 );
             });
-        });
+        }));
 
         mSaveChangesButton.setOnClickListener(this::onSaveChangesButtonClick);
     }
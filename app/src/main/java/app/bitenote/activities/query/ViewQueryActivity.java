@@ -5,6 +5,8 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Pair;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
@@ -13,6 +15,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -21,7 +24,9 @@ import app.bitenote.R;
 import app.bitenote.activities.text.ReadRecipeActivity;
 import app.bitenote.adapters.recipe.RecipeAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.database.RecipeQuery;
+import app.bitenote.database.RecipeSortOrder;
 import app.bitenote.instances.Recipe;
 import app.bitenote.viewmodels.BiteNoteViewModel;
 
@@ -56,6 +61,12 @@ public final class ViewQueryActivity extends AppCompatActivity {
      */
     private RecipeAdapter mRecipeAdapter;
 
+    /**
+     * Write count of the recipe cache obtained before the recipes of {@link #mRecipeAdapter} were
+     * read, which stamps the snapshots handed to {@link ReadRecipeActivity}.
+     */
+    private long mRecipesWriteCount = 0;
+
     /**
      * Recycler view for recipe cards.
      */
@@ -72,6 +83,22 @@ public final class ViewQueryActivity extends AppCompatActivity {
         setupViews();
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.recipe_list_action_bar, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.RecipeListSortOrderMenuItem) {
+            showSortOrderDialog();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
     /**
      * Initializes all views in the activity.
      */
@@ -82,19 +109,54 @@ public final class ViewQueryActivity extends AppCompatActivity {
         setSupportActionBar(mMaterialToolbar);
         mMaterialToolbar.setNavigationOnClickListener(view -> finish());
 
+        mRecipeAdapter = new RecipeAdapter(new ArrayList<>(), getOnRecipeCardClickListener());
+        mRecyclerView.setAdapter(mRecipeAdapter);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+
+        loadRecipes("ViewQueryActivity.setupViews");
+    }
+
+    /**
+     * Reads the recipes that meet the current query from the database in the current sort order,
+     * and binds them into {@link #mRecipeAdapter}.
+     * @param traceSectionName Name of the trace section of the read.
+     */
+    private void loadRecipes(@NonNull String traceSectionName) {
         assert mViewModel.queryLiveData.getValue() != null : "Query live data can't be null";
         final RecipeQuery query = mViewModel.queryLiveData.getValue();
+        final RecipeSortOrder sortOrder = mViewModel.getSortOrder();
 
-        mDatabaseExecutor.execute(() -> {
+        mDatabaseExecutor.execute(BiteNoteTrace.traced(traceSectionName, () -> {
+            mViewModel.recipeWriteQueue.flush().join();
+            final long writeCount = mViewModel.sqliteHelper.getRecipeCache().getWriteCount();
             final List<Pair<Integer, Recipe>> queriedRecipes =
-                    mViewModel.sqliteHelper.getQueriedRecipes(query);
+                    mViewModel.sqliteHelper.getQueriedRecipes(query, sortOrder);
 
             mMainThreadHandler.post(() -> {
-                mRecipeAdapter = new RecipeAdapter(queriedRecipes, getOnRecipeCardClickListener());
-                mRecyclerView.setAdapter(mRecipeAdapter);
-                mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+                mRecipeAdapter.setRecipes(queriedRecipes);
+                mRecipesWriteCount = writeCount;
             });
-        });
+        }));
+    }
+
+    /**
+     * Shows a dialog to choose the sort order of the recipes, which reloads them once chosen.
+     */
+    private void showSortOrderDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.recipe_sort_order_menu_item_title)
+                .setSingleChoiceItems(
+                        R.array.recipe_sort_orders,
+                        mViewModel.getSortOrder().ordinal(),
+                        (dialog, i) -> {
+                            mViewModel.setSortOrder(RecipeSortOrder.values()[i]);
+                            loadRecipes("ViewQueryActivity.sortRecipes");
+
+                            dialog.dismiss();
+                        }
+                )
+                .create()
+                .show();
     }
 
     private RecipeAdapter.OnClickListener getOnRecipeCardClickListener() {
@@ -105,6 +167,8 @@ public final class ViewQueryActivity extends AppCompatActivity {
                         new Intent(ViewQueryActivity.this, ReadRecipeActivity.class);
                 intent.putExtra(ReadRecipeActivity.INTENT_EXTRA_RECIPE_ID, recipeId);
 
+                /// the card already holds the whole recipe, so it doesn't need to be read again
+                mViewModel.recipeSnapshots.put(recipeId, recipe, mRecipesWriteCount);
                 startActivity(intent);
             }
 
@@ -114,16 +178,9 @@ public final class ViewQueryActivity extends AppCompatActivity {
                         .setTitle(R.string.home_long_click_dialog_title)
                         .setMessage(getString(R.string.home_long_click_dialog_body, recipe.name))
                         .setPositiveButton(R.string.yes, (dialog, i) -> {
-                            /// delete recipe and update adapter
-                            mDatabaseExecutor.execute(() -> {
-                                mViewModel.sqliteHelper.deleteRecipe(recipeId);
-
-                                mMainThreadHandler.post(() ->
-                                        mRecipeAdapter.setRecipes(
-                                                mViewModel.sqliteHelper.getAllRecipes()
-                                        )
-                                );
-                            });
+                            /// delete recipe and update adapter, the reload flushes the deletion
+                            mViewModel.recipeWriteQueue.enqueueDelete(recipeId);
+                            loadRecipes("ViewQueryActivity.deleteRecipe");
 
                             Toast.makeText(
                                     ViewQueryActivity.this,
@@ -4,20 +4,28 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Pair;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 import app.bitenote.R;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.instances.Recipe;
 import app.bitenote.viewmodels.BiteNoteViewModel;
+import app.bitenote.viewmodels.RecipeSnapshotRegistry;
 
 /**
  * Class that represents the activity where the user reads a single recipe.
@@ -29,6 +37,16 @@ public final class ReadRecipeActivity extends AppCompatActivity {
      */
     public static final String INTENT_EXTRA_RECIPE_ID = "recipe_id";
 
+    /**
+     * Name of the async trace slice that covers the opening of the activity.
+     */
+    private static final String OPEN_TRACE_SECTION_NAME = "ReadRecipeActivity.open";
+
+    /**
+     * Maximum amount of recipes listed as similar to the read one.
+     */
+    private static final int SIMILAR_RECIPE_COUNT = 10;
+
     /**
      * Activity executor that creates a background thread for database operations.
      */
@@ -64,8 +82,20 @@ public final class ReadRecipeActivity extends AppCompatActivity {
      */
     private TextView mBodyTextView;
 
+    /**
+     * Cookie of the async trace slice that covers the opening of the activity, from its creation
+     * until its views are first bound. It's {@code 0} once the slice ends.
+     */
+    private int mOpenTraceCookie = 0;
+
+    /**
+     * Snapshot of the recipe bound to the views, or {@code null} if none is bound yet.
+     */
+    private RecipeSnapshotRegistry.Snapshot mBoundSnapshot = null;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mOpenTraceCookie = BiteNoteTrace.beginAsync(OPEN_TRACE_SECTION_NAME);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.read_recipe_activity);
 
@@ -73,17 +103,42 @@ public final class ReadRecipeActivity extends AppCompatActivity {
         mViewModel = ((BiteNoteApplication) getApplication()).getAppViewModel();
 
         setupViews();
-
-        /// load data from recipe id
-        loadData(getIntent().getIntExtra(INTENT_EXTRA_RECIPE_ID, 0));
     }
 
     @Override
     protected void onResume() {
         super.onResume();
 
-        /// this feels hacky, but ensures data is updated
-        loadData(getIntent().getIntExtra(INTENT_EXTRA_RECIPE_ID, 0));
+        /*
+         * The previous activity hands over a snapshot of the recipe, which is bound before the
+         * first frame. The recipe is only read again once it's written after the snapshot.
+         */
+        final int id = getIntent().getIntExtra(INTENT_EXTRA_RECIPE_ID, 0);
+        final Optional<RecipeSnapshotRegistry.Snapshot> snapshotOption =
+                mViewModel.recipeSnapshots.get(id);
+
+        if (snapshotOption.isEmpty()) {
+            loadData(id);
+        } else if (snapshotOption.get() != mBoundSnapshot) {
+            bind(snapshotOption.get());
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.read_recipe_action_bar, menu);
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.ReadRecipeSimilarRecipesMenuItem) {
+            loadSimilarRecipes(getIntent().getIntExtra(INTENT_EXTRA_RECIPE_ID, 0));
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
     }
 
     /**
@@ -106,26 +161,93 @@ public final class ReadRecipeActivity extends AppCompatActivity {
      * @param id ID of the recipe in the database.
      */
     private void loadData(int id) {
-        mDatabaseExecutor.execute(() -> {
-            final Optional<Recipe> recipeOption = mViewModel.sqliteHelper.getRecipeFromId(id);
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("ReadRecipeActivity.loadData", () -> {
+            final Optional<RecipeSnapshotRegistry.Snapshot> snapshotOption =
+                    mViewModel.readRecipeSnapshot(id);
 
-            mMainThreadHandler.post(() -> {
-                if (recipeOption.isEmpty()) {
+            mMainThreadHandler.post(BiteNoteTrace.traced("ReadRecipeActivity.bind", () -> {
+                if (snapshotOption.isEmpty()) {
+                    endOpenTrace();
                     finish();
                 } else {
-                    bind(recipeOption.get());
+                    bind(snapshotOption.get());
                 }
-            });
-        });
+            }));
+        }));
+    }
+
+    /**
+     * Loads the recipes that are the most similar to the read one, and shows them in a dialog.
+     * @param id ID of the recipe in the database.
+     */
+    private void loadSimilarRecipes(int id) {
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("ReadRecipeActivity.loadSimilar", () -> {
+            final long writeCount = mViewModel.sqliteHelper.getRecipeCache().getWriteCount();
+            final List<Pair<Integer, Recipe>> similarRecipes =
+                    mViewModel.sqliteHelper.getSimilarRecipes(id, SIMILAR_RECIPE_COUNT);
+
+            mMainThreadHandler.post(() -> showSimilarRecipesDialog(similarRecipes, writeCount));
+        }));
+    }
+
+    /**
+     * Shows a dialog with the recipes that are similar to the read one. Picking one of them opens
+     * it in a new activity.
+     * @param similarRecipes List of {@link Pair}s, in which the first element represents the ID
+     * of the recipe, and the second element represents the recipe.
+     * @param writeCount Write count of the recipe cache obtained before the recipes were read.
+     */
+    private void showSimilarRecipesDialog(
+            @NonNull List<Pair<Integer, Recipe>> similarRecipes,
+            long writeCount
+    ) {
+        if (similarRecipes.isEmpty()) {
+            Toast.makeText(this, R.string.no_similar_recipes_toast, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        final String[] names = new String[similarRecipes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = similarRecipes.get(i).second.name;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.similar_recipes_menu_item_title)
+                .setItems(names, (dialog, i) -> {
+                    final Pair<Integer, Recipe> pair = similarRecipes.get(i);
+                    final Intent intent = new Intent(this, ReadRecipeActivity.class);
+                    intent.putExtra(INTENT_EXTRA_RECIPE_ID, (int) pair.first);
+
+                    /// the recipe was just read, so it doesn't need to be read again
+                    mViewModel.recipeSnapshots.put(pair.first, pair.second, writeCount);
+
+                    startActivity(intent);
+                })
+                .create()
+                .show();
     }
 
     /**
      * Binds a recipe's data into the text views of the activity.
-     * @param recipe {@link Recipe} instance.
+     * @param snapshot {@link RecipeSnapshotRegistry.Snapshot} of the recipe.
      */
-    private void bind(@NonNull Recipe recipe) {
+    private void bind(@NonNull RecipeSnapshotRegistry.Snapshot snapshot) {
+        final Recipe recipe = snapshot.getRecipe();
         mNameTextView.setText(recipe.name);
-        mBodyTextView.setText(recipe.body);
+        mBodyTextView.setText(recipe.getBody());
+        mBoundSnapshot = snapshot;
+
+        endOpenTrace();
+    }
+
+    /**
+     * Ends the async trace slice that covers the opening of the activity, if it hasn't ended yet.
+     */
+    private void endOpenTrace() {
+        if (mOpenTraceCookie != 0) {
+            BiteNoteTrace.endAsync(OPEN_TRACE_SECTION_NAME, mOpenTraceCookie);
+            mOpenTraceCookie = 0;
+        }
     }
 
     /**
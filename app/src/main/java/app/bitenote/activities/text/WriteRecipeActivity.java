@@ -4,6 +4,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Pair;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -21,8 +22,10 @@ import java.util.concurrent.Executors;
 import app.bitenote.R;
 import app.bitenote.activities.text.editing.EditRecipePropertiesActivity;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.instances.Recipe;
 import app.bitenote.viewmodels.BiteNoteViewModel;
+import app.bitenote.viewmodels.RecipeSnapshotRegistry;
 
 /**
  * Class that represents the activity where the user edits or writes a recipe.
@@ -79,6 +82,17 @@ public final class WriteRecipeActivity extends AppCompatActivity {
      */
     private boolean mIsNewRecipe;
 
+    /**
+     * Indicates whether the recipe has been loaded and bound into the views of the activity.
+     */
+    private boolean mIsLoaded = false;
+
+    /**
+     * Indicates whether the recipe is being saved, so a double tap doesn't save it twice, and the
+     * draft being saved isn't posted again.
+     */
+    private boolean mIsSaving = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -103,6 +117,18 @@ public final class WriteRecipeActivity extends AppCompatActivity {
         loadData(recipeId);
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        /// keep the text in the draft, in case the process dies in the background
+        if (mIsLoaded && !isFinishing() && !mIsSaving) {
+            assert mViewModel.recipeLiveData.getValue() != null : "Recipe live data can't be null";
+
+            mViewModel.postDraft(getRecipeWithText(mViewModel.recipeLiveData.getValue().second));
+        }
+    }
+
     /**
      * Sets up all the views in the activity.
      */
@@ -123,31 +149,43 @@ public final class WriteRecipeActivity extends AppCompatActivity {
     }
 
     /**
-     * Loads the necessary recipe's data and binds it to the activity's views.
+     * Loads the necessary recipe's data and binds it to the activity's views. New recipes are
+     * drafts that aren't inserted into the database until they're saved. If the process died
+     * while the same recipe was being written, its draft is restored instead.
+     * @param id ID of the recipe in the database, or {@code 0} if it's a new recipe.
      */
     private void loadData(int id) {
-        if (mIsNewRecipe) {
-            /// set new instance, insert into database, and reassign id
-            final Recipe newRecipe = new Recipe();
-            mDatabaseExecutor.execute(() -> {
-                final int newId = mViewModel.sqliteHelper.insertRecipe(newRecipe);
+        mDatabaseExecutor.execute(BiteNoteTrace.traced("WriteRecipeActivity.loadData", () -> {
+            final Optional<Pair<Integer, Recipe>> draftOption = mViewModel.readDraft()
+                    .filter(draft -> draft.first == id);
+            final Optional<Recipe> recipeOption;
+
+            if (draftOption.isPresent()) {
+                recipeOption = Optional.of(draftOption.get().second);
+            } else if (mIsNewRecipe) {
+                recipeOption = Optional.of(new Recipe());
+            } else {
+                /// usually handed over by ReadRecipeActivity
+                recipeOption = mViewModel.readRecipeSnapshot(id)
+                        .map(RecipeSnapshotRegistry.Snapshot::getRecipe);
+            }
 
-                mMainThreadHandler.post(() -> {
-                    mViewModel.postRecipeWithId(newId, newRecipe);
-                });
-            });
-        } else {
-            mDatabaseExecutor.execute(() -> {
-                final Optional<Recipe> recipeOption = mViewModel.sqliteHelper.getRecipeFromId(id);
-
-                recipeOption.ifPresent(recipe ->
-                        mMainThreadHandler.post(() -> {
-                            mViewModel.postRecipeWithId(id, recipe);
-                            bind(recipe);
-                        })
-                );
-            });
-        }
+            recipeOption.ifPresent(recipe ->
+                    mMainThreadHandler.post(() -> {
+                        mViewModel.postRecipeWithId(id, recipe);
+                        bind(recipe);
+                        mIsLoaded = true;
+
+                        if (draftOption.isPresent()) {
+                            Toast.makeText(
+                                    this,
+                                    R.string.write_recipe_draft_restored_toast,
+                                    Toast.LENGTH_SHORT
+                            ).show();
+                        }
+                    })
+            );
+        }));
     }
 
     /**
@@ -156,7 +194,20 @@ public final class WriteRecipeActivity extends AppCompatActivity {
      */
     private void bind(@NonNull Recipe recipe) {
         mNameEditText.setText(recipe.name);
-        mBodyEditText.setText(recipe.body);
+        mBodyEditText.setText(recipe.getBody());
+    }
+
+    /**
+     * Gets a copy of a recipe with the name and body that are being written in the activity.
+     * @param recipe {@link Recipe} instance.
+     * @return The modified copy.
+     */
+    private Recipe getRecipeWithText(@NonNull Recipe recipe) {
+        final Recipe modifiedCopy = new Recipe(recipe);
+        modifiedCopy.name = mNameEditText.getText().toString();
+        modifiedCopy.setBody(mBodyEditText.getText().toString());
+
+        return modifiedCopy;
     }
 
     /**
@@ -172,6 +223,8 @@ public final class WriteRecipeActivity extends AppCompatActivity {
      * @param view {@link View} reference.
      */
     private void onSaveChangesButtonClick(@NonNull View view) {
+        if (!mIsLoaded) return; // the recipe in the view model may belong to another activity
+
         assert mViewModel.recipeLiveData.getValue() != null : "Recipe live data can't be null";
 
         final int recipeId = mViewModel.recipeLiveData.getValue().first;
@@ -187,10 +240,7 @@ public final class WriteRecipeActivity extends AppCompatActivity {
                     .setMessage(R.string.write_recipe_save_without_text_dialog_body)
                     .setPositiveButton( // Save regardless of blank text
                             R.string.write_recipe_save_without_text_positive_button_text,
-                            (dialog, i) -> {
-                                saveInDatabase(recipeId, recipe);
-                                finish();
-                            }
+                            (dialog, i) -> saveInDatabaseAndFinish(recipeId, recipe)
                     )
                     .setNeutralButton( // Keep editing
                             R.string.write_recipe_save_without_text_neutral_button_text,
@@ -198,10 +248,7 @@ public final class WriteRecipeActivity extends AppCompatActivity {
                     )
                     .setNegativeButton( // Delete recipe
                             R.string.write_recipe_save_without_text_negative_button_text,
-                            (dialog, i) -> {
-                                deleteFromDatabase(recipeId);
-                                finish();
-                            }
+                            (dialog, i) -> deleteFromDatabaseAndFinish(recipeId)
                     )
                     .create()
                     .show();
@@ -209,39 +256,113 @@ public final class WriteRecipeActivity extends AppCompatActivity {
             return;
         }
 
-        saveInDatabase(recipeId, recipe);
-        finish();
+        saveInDatabaseAndFinish(recipeId, recipe);
     }
 
     /**
-     * Saves the changes in the database.
-     * @param recipeId ID of the recipe in the database.
+     * Saves the changes in the database with a single write transaction, then finishes the
+     * activity. New recipes are inserted, and existing ones are updated. If the write fails, a
+     * toast is shown and the draft is kept.
+     * @param recipeId ID of the recipe in the database, or {@code 0} if it's a new recipe.
      * @param recipe {@link Recipe} instance.
      */
-    private void saveInDatabase(int recipeId, @NonNull Recipe recipe) {
+    private void saveInDatabaseAndFinish(int recipeId, @NonNull Recipe recipe) {
+        if (mIsSaving) return;
+
+        mIsSaving = true;
+        mSaveChangesButton.setEnabled(false);
+
         final Recipe modifiedCopy = new Recipe(recipe) {{
             final String nameText = mNameEditText.getText().toString();
 
             name = !nameText.isBlank() ? nameText.trim() : getString(R.string.unnamed_recipe);
-            body = mBodyEditText.getText().toString().trim();
+            setBody(mBodyEditText.getText().toString().trim());
         }};
 
-        /// executed in main thread to ensure safety when returning to another activity
-        mViewModel.sqliteHelper.updateRecipe(recipeId, modifiedCopy);
+        /// the draft is discarded once saved, unless another recipe is being written by then
+        final long draftGeneration = mViewModel.getDraftGeneration();
+
+        if (recipeId != 0) {
+            /*
+             * Updates are written behind, so the activity finishes right away. The saved recipe is
+             * only handed over to the previous activity once the update is written. Until then,
+             * there's no snapshot, so reading the recipe flushes the update first.
+             */
+            mViewModel.recipeSnapshots.remove(recipeId);
+            mViewModel.recipeWriteQueue.enqueueUpdate(recipeId, modifiedCopy)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            mMainThreadHandler.post(this::showSaveFailedToast);
+                            return;
+                        }
+
+                        mViewModel.recipeSnapshots.put(
+                                recipeId,
+                                modifiedCopy,
+                                mViewModel.sqliteHelper.getRecipeCache().getWriteCount()
+                        );
+                        mViewModel.discardDraft(draftGeneration);
+                    });
+            showSavedToastAndFinish(modifiedCopy);
+            return;
+        }
+
+        /// the activity only finishes once inserted, so the previous activity reloads the changes
+        mViewModel.groupCommitWriter.insertRecipe(modifiedCopy).whenComplete((id, e) -> {
+            if (e != null) {
+                mMainThreadHandler.post(() -> {
+                    showSaveFailedToast();
+
+                    mIsSaving = false;
+                    mSaveChangesButton.setEnabled(true);
+                });
+                return;
+            }
+
+            mViewModel.discardDraft(draftGeneration);
+            mMainThreadHandler.post(() -> showSavedToastAndFinish(modifiedCopy));
+        });
+    }
+
+    /**
+     * Shows the toast that tells that a recipe couldn't be saved. It uses the application
+     * context, since the activity may have already finished.
+     */
+    private void showSaveFailedToast() {
+        Toast.makeText(
+                getApplicationContext(),
+                R.string.recipe_save_failed_toast,
+                Toast.LENGTH_LONG
+        ).show();
+    }
+
+    /**
+     * Shows the toast that confirms that a recipe was saved, then finishes the activity.
+     * @param recipe Saved {@link Recipe} instance.
+     */
+    private void showSavedToastAndFinish(@NonNull Recipe recipe) {
         Toast.makeText(
                 this,
-                getString(R.string.recipe_saved_toast, modifiedCopy.name),
+                getString(R.string.recipe_saved_toast, recipe.name),
                 Toast.LENGTH_SHORT
         ).show();
+
+        finish();
     }
 
     /**
-     * Deletes the recipe from the database.
-     * @param recipeId ID of the recipe in the database.
+     * Queues the deletion of the recipe from the database, then finishes the activity.
+     * @param recipeId ID of the recipe in the database, or {@code 0} if it's a new recipe, which
+     * is only discarded.
      */
-    private void deleteFromDatabase(int recipeId) {
-        /// executed in main thread to ensure safety when returning to another activity
-        mViewModel.sqliteHelper.deleteRecipe(recipeId);
+    private void deleteFromDatabaseAndFinish(int recipeId) {
+        mViewModel.discardDraft();
+        if (recipeId != 0) {
+            mViewModel.recipeSnapshots.remove(recipeId);
+            mViewModel.recipeWriteQueue.enqueueDelete(recipeId);
+        }
+
+        finish();
     }
 
     /**
@@ -252,20 +373,8 @@ public final class WriteRecipeActivity extends AppCompatActivity {
         return new OnBackPressedCallback(true) {
             @Override
             public void handleOnBackPressed() {
-                assert mViewModel.recipeLiveData.getValue() != null :
-                        "Recipe live data can't be null";
-
-                final int recipeId = mViewModel.recipeLiveData.getValue().first;
-
-                /*
-                 * To delete from the database when pressing back, the recipe must be tagged as
-                 * new, but the recipe ID must not be 0 (which is passed when the activity is new
-                 * at the beginning of the activity's lifecycle).
-                 */
-                if (mIsNewRecipe && recipeId != 0) {
-                    deleteFromDatabase(recipeId);
-                }
-
+                /// unsaved changes are discarded, and new recipes were never inserted
+                mViewModel.discardDraft();
                 finish();
             }
         };
@@ -13,7 +13,9 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -21,6 +23,7 @@ import app.bitenote.R;
 import app.bitenote.adapters.recipe.ingredient.AddedRecipeIngredientAdapter;
 import app.bitenote.adapters.recipe.ingredient.NonAddedRecipeIngredientAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.instances.Ingredient;
 import app.bitenote.instances.Recipe;
 import app.bitenote.viewmodels.BiteNoteViewModel;
@@ -29,6 +32,11 @@ import app.bitenote.viewmodels.BiteNoteViewModel;
  * Class that represents the activity where the user edits the recipe's ingredients.
  */
 public final class EditRecipeIngredientsActivity extends AppCompatActivity {
+    /**
+     * Amount of ingredients suggested at the top of the non-added ingredients.
+     */
+    private static final int SUGGESTED_INGREDIENT_COUNT = 10;
+
     /**
      * Activity executor that creates a background thread for database operations.
      */
@@ -103,34 +111,47 @@ public final class EditRecipeIngredientsActivity extends AppCompatActivity {
 
         final Recipe recipe = mViewModel.recipeLiveData.getValue().second;
 
-        mDatabaseExecutor.execute(() -> {
-            final List<Pair<Pair<Integer, Ingredient>, Ingredient.InRecipeProperties>>
-                    addedIngredients =
-                    mViewModel.sqliteHelper.getRecipeIngredientsWithProperties(recipe);
-            final List<Pair<Integer, Ingredient>>
-                    nonAddedIngredients =
-                    mViewModel.sqliteHelper.getAllIngredientsExcept(recipe);
-
-            mMainThreadHandler.post(() -> {
-                mAddedIngredientAdapter = new AddedRecipeIngredientAdapter(
-                        addedIngredients,
-                        getOnAddedIngredientButtonsClickListener()
-                );
-                mNonAddedRecipeIngredientAdapter = new NonAddedRecipeIngredientAdapter(
-                        nonAddedIngredients,
-                        getOnNonAddedIngredientButtonsClickListener()
-                );
-                mAddedIngredientRecyclerView.setAdapter(mAddedIngredientAdapter);
-                mNonAddedIngredientRecyclerView.setAdapter(mNonAddedRecipeIngredientAdapter);
-
-                mAddedIngredientRecyclerView.setLayoutManager(
-                        new LinearLayoutManager(this)
-                );
-                mNonAddedIngredientRecyclerView.setLayoutManager(
-                        new LinearLayoutManager(this)
-                );
-            });
-        });
+        mDatabaseExecutor.execute(BiteNoteTrace.traced(
+                "EditRecipeIngredientsActivity.setupViews",
+                () -> {
+                    final List<Pair<Pair<Integer, Ingredient>, Ingredient.InRecipeProperties>>
+                            addedIngredients =
+                            mViewModel.sqliteHelper.getRecipeIngredientsWithProperties(recipe);
+                    final List<Pair<Integer, Ingredient>>
+                            nonAddedIngredients =
+                            mViewModel.sqliteHelper.getAllIngredientsExcept(recipe);
+                    final List<Integer> suggestedIngredientIds =
+                            mViewModel.sqliteHelper.getSuggestedIngredientIds(
+                                    recipe.getIngredients().keySet(),
+                                    SUGGESTED_INGREDIENT_COUNT
+                            );
+
+                    mMainThreadHandler.post(() -> {
+                        mAddedIngredientAdapter = new AddedRecipeIngredientAdapter(
+                                addedIngredients,
+                                getOnAddedIngredientButtonsClickListener()
+                        );
+                        mNonAddedRecipeIngredientAdapter = new NonAddedRecipeIngredientAdapter(
+                                nonAddedIngredients,
+                                getOnNonAddedIngredientButtonsClickListener()
+                        );
+                        mNonAddedRecipeIngredientAdapter.setSuggestedIngredientIds(
+                                suggestedIngredientIds
+                        );
+                        mAddedIngredientRecyclerView.setAdapter(mAddedIngredientAdapter);
+                        mNonAddedIngredientRecyclerView.setAdapter(
+                                mNonAddedRecipeIngredientAdapter
+                        );
+
+                        mAddedIngredientRecyclerView.setLayoutManager(
+                                new LinearLayoutManager(this)
+                        );
+                        mNonAddedIngredientRecyclerView.setLayoutManager(
+                                new LinearLayoutManager(this)
+                        );
+                    });
+                }
+        ));
 
         mSaveChangesButton.setOnClickListener(this::onSaveChangesButtonClick);
     }
@@ -142,7 +163,6 @@ public final class EditRecipeIngredientsActivity extends AppCompatActivity {
     private void onSaveChangesButtonClick(@NonNull View view) {
         assert mViewModel.recipeLiveData.getValue() != null : "Current recipe can't be null";
 
-        final int id = mViewModel.recipeLiveData.getValue().first;
         final Recipe modifiedCopy = new Recipe(mViewModel.recipeLiveData.getValue().second) {{
             clearIngredients();
 
@@ -153,21 +173,39 @@ public final class EditRecipeIngredientsActivity extends AppCompatActivity {
             });
         }};
 
-        mDatabaseExecutor.execute(() -> {
-            mViewModel.sqliteHelper.updateRecipe(id, modifiedCopy);
+        mViewModel.postDraft(modifiedCopy);
 
-            mMainThreadHandler.post(() -> {
-                mViewModel.postRecipe(modifiedCopy);
+        Toast.makeText(this, R.string.ingredients_saved_toast, Toast.LENGTH_SHORT).show();
 
-                Toast.makeText(
-                        this,
-                        R.string.ingredients_saved_toast,
-                        Toast.LENGTH_SHORT
-                ).show();
+        finish();
+    }
 
-                finish();
-            });
-        });
+    /**
+     * Suggests the ingredients that are most often used with the added ones, at the top of the
+     * non-added ingredients. It's called whenever the added ingredients change.
+     */
+    private void updateSuggestedIngredients() {
+        final Set<Integer> addedIngredientIds = new HashSet<>();
+        mAddedIngredientAdapter.getIngredients().forEach(pair ->
+                addedIngredientIds.add(pair.first.first)
+        );
+
+        mDatabaseExecutor.execute(BiteNoteTrace.traced(
+                "EditRecipeIngredientsActivity.updateSuggestedIngredients",
+                () -> {
+                    final List<Integer> suggestedIngredientIds =
+                            mViewModel.sqliteHelper.getSuggestedIngredientIds(
+                                    addedIngredientIds,
+                                    SUGGESTED_INGREDIENT_COUNT
+                            );
+
+                    mMainThreadHandler.post(() ->
+                            mNonAddedRecipeIngredientAdapter.setSuggestedIngredientIds(
+                                    suggestedIngredientIds
+                            )
+                    );
+                }
+        ));
     }
 
     /**
@@ -179,6 +217,7 @@ public final class EditRecipeIngredientsActivity extends AppCompatActivity {
         return (ingredientId, ingredient, properties) -> {
             mAddedIngredientAdapter.removeIngredient(ingredientId, ingredient, properties);
             mNonAddedRecipeIngredientAdapter.addIngredient(ingredientId, ingredient);
+            updateSuggestedIngredients();
         };
     }
 
@@ -191,6 +230,7 @@ public final class EditRecipeIngredientsActivity extends AppCompatActivity {
         return (ingredientId, ingredient) -> {
             mNonAddedRecipeIngredientAdapter.removeIngredient(ingredientId, ingredient);
             mAddedIngredientAdapter.addIngredient(ingredientId, ingredient);
+            updateSuggestedIngredients();
         };
     }
 }
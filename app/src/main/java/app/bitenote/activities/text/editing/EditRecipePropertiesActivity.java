@@ -2,8 +2,6 @@ package app.bitenote.activities.text.editing;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -15,8 +13,6 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import app.bitenote.R;
 import app.bitenote.app.BiteNoteApplication;
@@ -27,16 +23,6 @@ import app.bitenote.viewmodels.BiteNoteViewModel;
  * Class that represents the activity where the user can edit the basic properties of a recipe.
  */
 public final class EditRecipePropertiesActivity extends AppCompatActivity {
-    /**
-     * Activity executor that creates a background thread for database operations.
-     */
-    private final Executor mDatabaseExecutor = Executors.newSingleThreadExecutor();
-
-    /**
-     * Activity's handler for the main thread.
-     */
-    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
-
     /**
      * Application view model. Grants access to the database.
      */
@@ -151,7 +137,6 @@ public final class EditRecipePropertiesActivity extends AppCompatActivity {
     private void onSaveChangesButtonClick(@NonNull View view) {
         assert mViewModel.recipeLiveData.getValue() != null : "Recipe live data can't be null";
 
-        int id = mViewModel.recipeLiveData.getValue().first;
         final Recipe modifiedCopy = new Recipe(mViewModel.recipeLiveData.getValue().second) {{
             diners = mDinersSeekBar.getProgress() + 1;
 
@@ -162,21 +147,12 @@ public final class EditRecipePropertiesActivity extends AppCompatActivity {
             }
         }};
 
-        mDatabaseExecutor.execute(() -> {
-            mViewModel.sqliteHelper.updateRecipe(id, modifiedCopy);
-
-            mMainThreadHandler.post(() -> {
-                mViewModel.postRecipeWithId(id, modifiedCopy);
+        /// changes are kept in the draft, and written into the database once the recipe is saved
+        mViewModel.postDraft(modifiedCopy);
 
-                Toast.makeText(
-                        this,
-                        R.string.properties_saved_toast,
-                        Toast.LENGTH_SHORT
-                ).show();
+        Toast.makeText(this, R.string.properties_saved_toast, Toast.LENGTH_SHORT).show();
 
-                finish();
-            });
-        });
+        finish();
     }
 
     /**
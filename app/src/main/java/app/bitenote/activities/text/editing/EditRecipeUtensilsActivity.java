@@ -21,6 +21,7 @@ import app.bitenote.R;
 import app.bitenote.adapters.recipe.utensil.AddedRecipeUtensilAdapter;
 import app.bitenote.adapters.recipe.utensil.NonAddedRecipeUtensilAdapter;
 import app.bitenote.app.BiteNoteApplication;
+import app.bitenote.app.BiteNoteTrace;
 import app.bitenote.instances.Recipe;
 import app.bitenote.instances.Utensil;
 import app.bitenote.viewmodels.BiteNoteViewModel;
@@ -102,32 +103,35 @@ public final class EditRecipeUtensilsActivity extends AppCompatActivity {
 
         final Recipe recipe = mViewModel.recipeLiveData.getValue().second;
 
-        mDatabaseExecutor.execute(() -> {
-            final List<Pair<Integer, Utensil>>
-                    addedUtensils =
-                    mViewModel.sqliteHelper.getRecipeUtensilsWithProperties(recipe);
-            final List<Pair<Integer, Utensil>>
-                    nonAddedUtensils =
-                    mViewModel.sqliteHelper.getAllUtensilsExcept(recipe);
-
-            mMainThreadHandler.post(() -> {
-                mAddedUtensilAdapter = new AddedRecipeUtensilAdapter(
-                        addedUtensils,
-                        getOnAddedUtensilButtonClickListener()
-                );
-                mNonAddedUtensilAdapter = new NonAddedRecipeUtensilAdapter(
-                        nonAddedUtensils,
-                        getOnNonAddedUtensilButtonClickListener()
-                );
-                mAddedUtensilsRecyclerView.setAdapter(mAddedUtensilAdapter);
-                mNonAddedUtensilsRecyclerView.setAdapter(mNonAddedUtensilAdapter);
-
-                mAddedUtensilsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-                mNonAddedUtensilsRecyclerView.setLayoutManager(
-                        new LinearLayoutManager(this)
-                );
-            });
-        });
+        mDatabaseExecutor.execute(BiteNoteTrace.traced(
+                "EditRecipeUtensilsActivity.setupViews",
+                () -> {
+                    final List<Pair<Integer, Utensil>>
+                            addedUtensils =
+                            mViewModel.sqliteHelper.getRecipeUtensilsWithProperties(recipe);
+                    final List<Pair<Integer, Utensil>>
+                            nonAddedUtensils =
+                            mViewModel.sqliteHelper.getAllUtensilsExcept(recipe);
+
+                    mMainThreadHandler.post(() -> {
+                        mAddedUtensilAdapter = new AddedRecipeUtensilAdapter(
+                                addedUtensils,
+                                getOnAddedUtensilButtonClickListener()
+                        );
+                        mNonAddedUtensilAdapter = new NonAddedRecipeUtensilAdapter(
+                                nonAddedUtensils,
+                                getOnNonAddedUtensilButtonClickListener()
+                        );
+                        mAddedUtensilsRecyclerView.setAdapter(mAddedUtensilAdapter);
+                        mNonAddedUtensilsRecyclerView.setAdapter(mNonAddedUtensilAdapter);
+
+                        mAddedUtensilsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+                        mNonAddedUtensilsRecyclerView.setLayoutManager(
+                                new LinearLayoutManager(this)
+                        );
+                    });
+                }
+        ));
 
         mSaveChangesButton.setOnClickListener(this::onSaveChangesButtonClick);
     }
@@ -139,27 +143,17 @@ public final class EditRecipeUtensilsActivity extends AppCompatActivity {
     private void onSaveChangesButtonClick(@NonNull View view) {
         assert mViewModel.recipeLiveData.getValue() != null : "Current recipe can't be null";
 
-        final int id = mViewModel.recipeLiveData.getValue().first;
         final Recipe modifiedCopy = new Recipe(mViewModel.recipeLiveData.getValue().second) {{
             clearUtensils();
 
             mAddedUtensilAdapter.getUtensils().forEach(pair -> addUtensil(pair.first));
         }};
 
-        mDatabaseExecutor.execute(() -> {
-            mViewModel.sqliteHelper.updateRecipe(id, modifiedCopy);
+        mViewModel.postDraft(modifiedCopy);
 
-            mMainThreadHandler.post(() -> {
-                mViewModel.postRecipe(modifiedCopy);
-                Toast.makeText(
-                        this,
-                        R.string.utensils_saved_toast,
-                        Toast.LENGTH_SHORT
-                ).show();
+        Toast.makeText(this, R.string.utensils_saved_toast, Toast.LENGTH_SHORT).show();
 
-                finish();
-            });
-        });
+        finish();
     }
 
     /**
@@ -0,0 +1,76 @@
+package app.bitenote.adapters;
+
+import android.view.ViewGroup;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.tracing.Trace;
+
+/**
+ * Base {@link RecyclerView.Adapter} whose view holders are created and bound inside trace
+ * sections, like {@code "RecipeAdapter.onBindViewHolder"}, which are shown by Perfetto and
+ * systrace.
+ * @param <VH> Type of the view holders of the adapter.
+ * @author Daniel N.
+ */
+public abstract class TracedAdapter<VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH>
+{
+    /**
+     * Name of the trace section of {@link #onCreateViewHolder(ViewGroup, int)}.
+     */
+    private final String mCreateSectionName;
+
+    /**
+     * Name of the trace section of {@link #onBindViewHolder(RecyclerView.ViewHolder, int)}.
+     */
+    private final String mBindSectionName;
+
+    /**
+     * Traced adapter constructor.
+     * @param adapterName Name of the adapter, which prefixes its trace sections. It's passed
+     * explicitly, since class names are obfuscated in release builds.
+     */
+    protected TracedAdapter(@NonNull String adapterName) {
+        mCreateSectionName = adapterName + ".onCreateViewHolder";
+        mBindSectionName = adapterName + ".onBindViewHolder";
+    }
+
+    @NonNull
+    @Override
+    public final VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        Trace.beginSection(mCreateSectionName);
+        try {
+            return onCreateTracedViewHolder(parent, viewType);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public final void onBindViewHolder(@NonNull VH holder, int position) {
+        Trace.beginSection(mBindSectionName);
+        try {
+            onBindTracedViewHolder(holder, position);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Creates a view holder, inside the trace section of the adapter.
+     * @param parent {@link ViewGroup} where the view of the holder will be added.
+     * @param viewType View type of the holder.
+     * @return The created view holder.
+     * @see RecyclerView.Adapter#onCreateViewHolder(ViewGroup, int)
+     */
+    @NonNull
+    protected abstract VH onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType);
+
+    /**
+     * Binds the data of a position to a view holder, inside the trace section of the adapter.
+     * @param holder View holder.
+     * @param position Position of the data in the adapter.
+     * @see RecyclerView.Adapter#onBindViewHolder(RecyclerView.ViewHolder, int)
+     */
+    protected abstract void onBindTracedViewHolder(@NonNull VH holder, int position);
+}
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.instances.Ingredient;
 
@@ -25,7 +26,7 @@ import app.bitenote.instances.Ingredient;
  * @author Daniel N.
  */
 public final class BannedIngredientAdapter extends
-        RecyclerView.Adapter<BannedIngredientAdapter.ViewHolder>
+        TracedAdapter<BannedIngredientAdapter.ViewHolder>
 {
     /**
      * List of ingredients in the adapter. The first element of the pair represents the
@@ -54,13 +55,15 @@ public final class BannedIngredientAdapter extends
             @NonNull List<Pair<Integer, Ingredient>> ingredients,
             @NonNull OnButtonsClickListener listener
     ) {
+        super("BannedIngredientAdapter");
+
         mIngredients = ingredients;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.banned_ingredient_card, parent, false);
 
@@ -68,7 +71,7 @@ public final class BannedIngredientAdapter extends
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mIngredients.get(position).first;
         final Ingredient ingredient = mIngredients.get(position).second;
 
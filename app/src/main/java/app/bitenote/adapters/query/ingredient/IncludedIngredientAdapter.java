@@ -1,6 +1,7 @@
 package app.bitenote.adapters.query.ingredient;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -8,15 +9,21 @@ import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
+import app.bitenote.database.RecipeQuery.AmountRange;
 import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.IntObjectArrayMap;
+import app.bitenote.instances.MeasurementType;
 
 /**
  * Adapter for displaying included {@link Ingredient} data in a {@link RecyclerView} with cards
@@ -25,7 +32,7 @@ import app.bitenote.instances.Ingredient;
  * @author Daniel N.
  */
 public final class IncludedIngredientAdapter extends
-        RecyclerView.Adapter<IncludedIngredientAdapter.ViewHolder>
+        TracedAdapter<IncludedIngredientAdapter.ViewHolder>
 {
     /**
      * List of ingredients in the adapter. The first element of the pair represents the
@@ -34,6 +41,12 @@ public final class IncludedIngredientAdapter extends
      */
     private List<Pair<Integer, Ingredient>> mIngredients;
 
+    /**
+     * Amount ranges of the ingredients in the adapter, where the key is an ingredient ID.
+     * Ingredients without a range accept any amount.
+     */
+    private final IntObjectArrayMap<AmountRange> mAmountRanges = new IntObjectArrayMap<>();
+
     /**
      * {@link OnButtonsClickListener} implementation, which will determine
      * the code the {@link ViewHolder} will execute when the buttons are clicked.
@@ -54,13 +67,15 @@ public final class IncludedIngredientAdapter extends
             @NonNull List<Pair<Integer, Ingredient>> ingredients,
             @NonNull OnButtonsClickListener listener
     ) {
+        super("IncludedIngredientAdapter");
+
         mIngredients = ingredients;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.included_ingredient_card, parent, false);
 
@@ -68,11 +83,11 @@ public final class IncludedIngredientAdapter extends
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mIngredients.get(position).first;
         final Ingredient ingredient = mIngredients.get(position).second;
 
-        holder.bind(id, ingredient, mListener);
+        holder.bind(id, ingredient, mAmountRanges.get(id), mListener);
     }
 
     @Override
@@ -103,6 +118,34 @@ public final class IncludedIngredientAdapter extends
         notifyDataSetChanged();
     }
 
+    /**
+     * Gets the amount range of an ingredient in the adapter.
+     * @param ingredientId ID of the ingredient in the database.
+     * @return An {@link Optional} instance that wraps the range, which is empty if any amount of
+     * the ingredient is accepted.
+     */
+    public Optional<AmountRange> getAmountRange(int ingredientId) {
+        return Optional.ofNullable(mAmountRanges.get(ingredientId));
+    }
+
+    /**
+     * Sets the amount range of an ingredient in the adapter.
+     * @param ingredientId ID of the ingredient in the database.
+     * @param amountRange {@link AmountRange} instance, or {@code null} to accept any amount of
+     * the ingredient.
+     */
+    public void setAmountRange(int ingredientId, @Nullable AmountRange amountRange) {
+        if (amountRange == null) {
+            mAmountRanges.remove(ingredientId);
+        } else {
+            mAmountRanges.put(ingredientId, amountRange);
+        }
+
+        for (int i = 0; i < mIngredients.size(); i++) {
+            if (mIngredients.get(i).first == ingredientId) notifyItemChanged(i);
+        }
+    }
+
     /**
      * Adds an ingredient to the adapter.
      * @param ingredientId ID of the ingredient in the database.
@@ -148,12 +191,37 @@ public final class IncludedIngredientAdapter extends
 
         final int position = mIngredients.indexOf(pair);
         mIngredients.remove(pair);
+        mAmountRanges.remove(pair.first);
 
         notifyItemRemoved(position);
     }
 
     /**
-     * View holder for a single banned ingredient.
+     * Gets the text of the measurement type of an ingredient.
+     * @param context {@link Context} instance.
+     * @param ingredient {@link Ingredient} instance.
+     * @param isMeasuredInUnits Whether the ingredient is measured in units.
+     * @return The translated measurement text.
+     */
+    public static String getMeasurementText(
+            @NonNull Context context,
+            @NonNull Ingredient ingredient,
+            boolean isMeasuredInUnits
+    ) {
+        if (isMeasuredInUnits) return context.getString(R.string.units_measurement);
+
+        switch (ingredient.measurementType.name) {
+            case MeasurementType.WEIGHT_TYPE_STRING:
+                return context.getString(R.string.weight_measurement);
+            case MeasurementType.VOLUME_TYPE_STRING:
+                return context.getString(R.string.volume_measurement);
+            default: // should be unreachable
+                return "";
+        }
+    }
+
+    /**
+     * View holder for a single included ingredient.
      * @author Daniel N.
      */
     public static final class ViewHolder extends RecyclerView.ViewHolder {
@@ -164,6 +232,17 @@ public final class IncludedIngredientAdapter extends
          */
         private final TextView mNameTextView;
 
+        /**
+         * {@link TextView} instance that displays the amount range of the ingredient in the card.
+         */
+        private final TextView mAmountRangeTextView;
+
+        /**
+         * {@link ImageButton} instance that is used for editing the amount range of an ingredient
+         * in the query.
+         */
+        private final ImageButton mAmountButton;
+
         /**
          * {@link ImageButton} instance that is used for banning an ingredient in the query.
          */
@@ -183,6 +262,9 @@ public final class IncludedIngredientAdapter extends
 
             /// init views
             mNameTextView = itemView.findViewById(R.id.IncludedIngredientCardNameTextView);
+            mAmountRangeTextView =
+                    itemView.findViewById(R.id.IncludedIngredientCardAmountRangeTextView);
+            mAmountButton = itemView.findViewById(R.id.IncludedIngredientCardAmountButton);
             mBanButton = itemView.findViewById(R.id.IncludedIngredientCardBanButton);
             mRemoveButton = itemView.findViewById(R.id.IncludedIngredientCardRemoveButton);
         }
@@ -191,6 +273,8 @@ public final class IncludedIngredientAdapter extends
          * Binds ingredient data to the view.
          * @param ingredientId ID of the database ingredient.
          * @param ingredient {@link Ingredient} instance that holds the data.
+         * @param amountRange {@link AmountRange} instance of the ingredient, or {@code null} if
+         * any amount is accepted.
          * @param listener {@link OnButtonsClickListener} implementation, which will determine the
          * code the {@link ViewHolder} will execute when the buttons are clicked.
          */
@@ -198,6 +282,7 @@ public final class IncludedIngredientAdapter extends
         public void bind(
                 int ingredientId,
                 @NonNull Ingredient ingredient,
+                @Nullable AmountRange amountRange,
                 @NonNull OnButtonsClickListener listener
         ) {
             mNameTextView.setText(itemView.getResources().getIdentifier(
@@ -206,6 +291,34 @@ public final class IncludedIngredientAdapter extends
                     itemView.getContext().getPackageName()
             ));
 
+            final Context context = itemView.getContext();
+            if (amountRange == null) {
+                mAmountRangeTextView.setText(R.string.ingredient_any_amount_text);
+            } else {
+                final String measurementText =
+                        getMeasurementText(context, ingredient, amountRange.isMeasuredInUnits);
+
+                mAmountRangeTextView.setText(amountRange.maxAmount == Integer.MAX_VALUE
+                        ? context.getString(
+                                R.string.ingredient_min_amount_text,
+                                amountRange.minAmount,
+                                measurementText
+                        )
+                        : context.getString(
+                                R.string.ingredient_amount_range_text,
+                                amountRange.minAmount,
+                                amountRange.maxAmount,
+                                measurementText
+                        )
+                );
+            }
+
+            mAmountButton.setOnClickListener(view -> {
+                if (getAdapterPosition() == RecyclerView.NO_POSITION) return;
+
+                listener.onAmountButtonClick(ingredientId, ingredient);
+            });
+
             mBanButton.setOnClickListener(view -> {
                 if (getAdapterPosition() == RecyclerView.NO_POSITION) return;
 
@@ -225,6 +338,13 @@ public final class IncludedIngredientAdapter extends
      * @author Daniel N.
      */
     public interface OnButtonsClickListener {
+        /**
+         * Function that will be called when the amount button is clicked.
+         * @param ingredientId ID of the ingredient in the database.
+         * @param ingredient {@link Ingredient} instance.
+         */
+        void onAmountButtonClick(int ingredientId, @NonNull Ingredient ingredient);
+
         /**
          * Function that will be called when the ban button is clicked.
          * @param ingredientId ID of the ingredient in the database.
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.instances.Ingredient;
 
@@ -24,7 +25,7 @@ import app.bitenote.instances.Ingredient;
  * @author Daniel N.
  */
 public final class NonQueriedIngredientAdapter extends
-        RecyclerView.Adapter<NonQueriedIngredientAdapter.ViewHolder>
+        TracedAdapter<NonQueriedIngredientAdapter.ViewHolder>
 {
     /**
      * List of ingredients in the adapter. The first element of the pair represents the
@@ -53,13 +54,15 @@ public final class NonQueriedIngredientAdapter extends
             @NonNull List<Pair<Integer, Ingredient>> ingredients,
             @NonNull OnButtonsClickListener listener
     ) {
+        super("NonQueriedIngredientAdapter");
+
         mIngredients = ingredients;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.non_queried_ingredient_card, parent, false);
 
@@ -67,7 +70,7 @@ public final class NonQueriedIngredientAdapter extends
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mIngredients.get(position).first;
         final Ingredient ingredient = mIngredients.get(position).second;
 
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.instances.Utensil;
 
@@ -25,7 +26,7 @@ import app.bitenote.instances.Utensil;
  * @author Daniel N.
  */
 public final class NonQueriedUtensilAdapter extends
-        RecyclerView.Adapter<NonQueriedUtensilAdapter.ViewHolder>
+        TracedAdapter<NonQueriedUtensilAdapter.ViewHolder>
 {
     /**
      * List of utensils in the adapter. The first element of the pair represents the
@@ -54,13 +55,15 @@ public final class NonQueriedUtensilAdapter extends
             @NonNull List<Pair<Integer, Utensil>> utensils,
             @NonNull OnButtonsClickListener listener
     ) {
+        super("NonQueriedUtensilAdapter");
+
         mUtensils = utensils;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.non_queried_utensil_card, parent, false);
 
@@ -68,7 +71,7 @@ public final class NonQueriedUtensilAdapter extends
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mUtensils.get(position).first;
         final Utensil utensil = mUtensils.get(position).second;
 
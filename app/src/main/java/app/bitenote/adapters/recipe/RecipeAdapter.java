@@ -11,6 +11,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.database.RecipeQuery;
 import app.bitenote.instances.Recipe;
@@ -20,7 +21,7 @@ import app.bitenote.instances.Recipe;
  * @see ViewHolder
  * @author Daniel N.
  */
-public final class RecipeAdapter extends RecyclerView.Adapter<RecipeAdapter.ViewHolder> {
+public final class RecipeAdapter extends TracedAdapter<RecipeAdapter.ViewHolder> {
     /**
      * Array of recipes in the adapter. The first element of the pair represents the
      * integer ID of the recipe in the database, and the second element represents the data of that
@@ -48,13 +49,15 @@ public final class RecipeAdapter extends RecyclerView.Adapter<RecipeAdapter.View
             @NonNull List<Pair<Integer, Recipe>> recipes,
             @NonNull OnClickListener listener
     ) {
+        super("RecipeAdapter");
+
         mRecipes = recipes;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.recipe_card, parent, false);
 
@@ -62,7 +65,7 @@ public final class RecipeAdapter extends RecyclerView.Adapter<RecipeAdapter.View
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mRecipes.get(position).first;
         final Recipe recipe = mRecipes.get(position).second;
 
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.instances.Ingredient;
 import app.bitenote.instances.Ingredient.InRecipeProperties;
@@ -31,7 +32,7 @@ import app.bitenote.instances.Recipe;
  * @author Daniel N.
  */
 public final class AddedRecipeIngredientAdapter
-        extends RecyclerView.Adapter<AddedRecipeIngredientAdapter.ViewHolder>
+        extends TracedAdapter<AddedRecipeIngredientAdapter.ViewHolder>
 {
     /**
      * List of ingredients in the adapter. The first element of the pair is an inner pair in which
@@ -64,13 +65,15 @@ public final class AddedRecipeIngredientAdapter
             @NonNull List<Pair<Pair<Integer, Ingredient>, InRecipeProperties>> ingredients,
             @NonNull OnButtonClickListener listener
     ) {
+        super("AddedRecipeIngredientAdapter");
+
         mIngredients = ingredients;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.added_ingredient_card, parent, false);
 
@@ -78,7 +81,7 @@ public final class AddedRecipeIngredientAdapter
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mIngredients.get(position).first.first;
         final Ingredient ingredient = mIngredients.get(position).first.second;
         final InRecipeProperties properties = mIngredients.get(position).second;
@@ -10,9 +10,11 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.instances.Ingredient;
 
 /**
@@ -23,7 +25,7 @@ import app.bitenote.instances.Ingredient;
  * @author Daniel N.
  */
 public final class NonAddedRecipeIngredientAdapter
-        extends RecyclerView.Adapter<NonAddedRecipeIngredientAdapter.ViewHolder>
+        extends TracedAdapter<NonAddedRecipeIngredientAdapter.ViewHolder>
 {
     /**
      * List of ingredients in the adapter. The first element of the pair represents the
@@ -38,17 +40,35 @@ public final class NonAddedRecipeIngredientAdapter
      */
     private final OnButtonClickListener mListener;
 
+    /**
+     * Position of each suggested ingredient in the suggestions, by ingredient ID. Suggested
+     * ingredients are shown first, in that order, and the rest follow in ascending order of ID.
+     * @see #setSuggestedIngredientIds(List)
+     */
+    private final HashMap<Integer, Integer> mSuggestionRanks = new HashMap<>();
+
+    /**
+     * Order of the ingredients of the adapter.
+     */
+    private final Comparator<Pair<Integer, Ingredient>> mComparator = Comparator
+            .comparing((Pair<Integer, Ingredient> pair) ->
+                    mSuggestionRanks.getOrDefault(pair.first, Integer.MAX_VALUE)
+            )
+            .thenComparing(pair -> pair.first);
+
     public NonAddedRecipeIngredientAdapter(
             @NonNull List<Pair<Integer, Ingredient>> ingredients,
             @NonNull OnButtonClickListener listener
     ) {
+        super("NonAddedRecipeIngredientAdapter");
+
         mIngredients = ingredients;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.non_added_ingredient_card, parent, false);
 
@@ -56,7 +76,7 @@ public final class NonAddedRecipeIngredientAdapter
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mIngredients.get(position).first;
         final Ingredient ingredient = mIngredients.get(position).second;
 
@@ -81,6 +101,25 @@ public final class NonAddedRecipeIngredientAdapter
         notifyDataSetChanged();
     }
 
+    /**
+     * Sets the ingredients that are suggested for the recipe, and sorts the adapter so they're
+     * shown first.
+     * @param suggestedIngredientIds List of ingredient IDs, from the most to the least relevant.
+     * @see app.bitenote.database.BiteNoteSQLiteHelper#getSuggestedIngredientIds(java.util.Set,
+     * int)
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    public void setSuggestedIngredientIds(@NonNull List<Integer> suggestedIngredientIds) {
+        mSuggestionRanks.clear();
+        for (int i = 0; i < suggestedIngredientIds.size(); i++) {
+            mSuggestionRanks.put(suggestedIngredientIds.get(i), i);
+        }
+
+        mIngredients.sort(mComparator);
+
+        notifyDataSetChanged();
+    }
+
     /**
      * Adds an ingredient to the adapter.
      * @param ingredientId ID of the ingredient in the database.
@@ -101,7 +140,7 @@ public final class NonAddedRecipeIngredientAdapter
     public void addIngredient(@NonNull Pair<Integer, Ingredient> pair) {
         mIngredients.add(pair);
 
-        mIngredients.sort(Comparator.comparing(pairA -> pairA.first)); // sort elements again
+        mIngredients.sort(mComparator); // sort elements again
 
         notifyDataSetChanged();
     }
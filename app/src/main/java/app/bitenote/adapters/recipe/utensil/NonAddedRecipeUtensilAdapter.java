@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Set;
 
 import app.bitenote.R;
+import app.bitenote.adapters.TracedAdapter;
 import app.bitenote.database.BiteNoteSQLiteHelper;
 import app.bitenote.instances.Utensil;
 
@@ -26,7 +27,7 @@ import app.bitenote.instances.Utensil;
  * @author Daniel N.
  */
 public final class NonAddedRecipeUtensilAdapter extends
-        RecyclerView.Adapter<NonAddedRecipeUtensilAdapter.ViewHolder>
+        TracedAdapter<NonAddedRecipeUtensilAdapter.ViewHolder>
 {
     /**
      * List of utensils in the adapter. The first element of the pair represents the integer ID of
@@ -55,13 +56,15 @@ public final class NonAddedRecipeUtensilAdapter extends
             @NonNull List<Pair<Integer, Utensil>> utensils,
             @NonNull OnButtonClickListener listener
     ) {
+        super("NonAddedRecipeUtensilAdapter");
+
         mUtensils = utensils;
         mListener = listener;
     }
 
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    protected ViewHolder onCreateTracedViewHolder(@NonNull ViewGroup parent, int viewType) {
         final View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.non_added_utensil_card, parent, false);
 
@@ -69,7 +72,7 @@ public final class NonAddedRecipeUtensilAdapter extends
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+    protected void onBindTracedViewHolder(@NonNull ViewHolder holder, int position) {
         final int id = mUtensils.get(position).first;
         final Utensil utensil = mUtensils.get(position).second;
 
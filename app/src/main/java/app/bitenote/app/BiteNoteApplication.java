@@ -2,9 +2,8 @@ package app.bitenote.app;
 
 import android.app.Application;
 import android.content.SharedPreferences;
-import android.os.Handler;
-import android.os.Looper;
 import androidx.lifecycle.ViewModelProvider;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -29,6 +28,17 @@ public class BiteNoteApplication extends Application {
      */
     private BiteNoteViewModel mAppViewModel;
 
+    /**
+     * Application executor that creates a background thread for database operations.
+     */
+    private final Executor mDatabaseExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Future that completes once the first run setup is done.
+     * @see #awaitFirstRunSetup()
+     */
+    private CompletableFuture<Void> mFirstRunSetupFuture;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -36,12 +46,29 @@ public class BiteNoteApplication extends Application {
         mAppViewModel = new ViewModelProvider.AndroidViewModelFactory(this)
                 .create(BiteNoteViewModel.class);
 
-        final SharedPreferences sharedPrefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        final boolean isFirstRun = sharedPrefs.getBoolean(PREF_IS_FIRST_RUN, true);
-        if (isFirstRun) {
-            mAppViewModel.sqliteHelper.insertExampleRecipes();
-            sharedPrefs.edit().putBoolean(PREF_IS_FIRST_RUN, false).apply();
-        }
+        /// both the preferences and the database are read from disk, so setup is kept off the UI
+        mFirstRunSetupFuture = CompletableFuture.runAsync(
+                BiteNoteTrace.traced("BiteNoteApplication.setUpFirstRun", this::setUpFirstRun),
+                mDatabaseExecutor
+        );
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        /// the process may be killed at any time once the UI is hidden
+        if (level >= TRIM_MEMORY_UI_HIDDEN) mAppViewModel.recipeWriteQueue.flush();
+
+        mAppViewModel.sqliteHelper.getRecipeCache().trimMemory(level);
+    }
+
+    /**
+     * Blocks the calling thread until the example recipes are inserted on the first run of the
+     * app. Must not be called from the main thread.
+     */
+    public void awaitFirstRunSetup() {
+        mFirstRunSetupFuture.join();
     }
 
     /**
@@ -52,4 +79,16 @@ public class BiteNoteApplication extends Application {
     public BiteNoteViewModel getAppViewModel() {
         return mAppViewModel;
     }
+
+    /**
+     * Inserts the example recipes into the database if the app is on its first run.
+     */
+    private void setUpFirstRun() {
+        final SharedPreferences sharedPrefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        final boolean isFirstRun = sharedPrefs.getBoolean(PREF_IS_FIRST_RUN, true);
+        if (isFirstRun) {
+            mAppViewModel.sqliteHelper.insertExampleRecipes();
+            sharedPrefs.edit().putBoolean(PREF_IS_FIRST_RUN, false).apply();
+        }
+    }
 }
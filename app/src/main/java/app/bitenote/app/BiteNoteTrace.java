@@ -0,0 +1,67 @@
+package app.bitenote.app;
+
+import androidx.annotation.NonNull;
+import androidx.tracing.Trace;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helpers for trace sections that are shown by Perfetto and systrace. Synchronous sections must
+ * begin and end in the same thread, so work that is handed to another thread is traced with an
+ * async slice too, which starts in the thread that requested the work and ends once it is done.
+ * @author Daniel N.
+ */
+public final class BiteNoteTrace {
+    /**
+     * Generator of the cookies that tell apart concurrent async slices with the same name.
+     */
+    private static final AtomicInteger COOKIE_GENERATOR = new AtomicInteger();
+
+    /**
+     * Private constructor, since this class only contains static members.
+     */
+    private BiteNoteTrace() {}
+
+    /**
+     * Begins an async slice.
+     * @param sectionName Name of the slice.
+     * @return The cookie of the slice, which must be passed to {@link #endAsync(String, int)}.
+     */
+    public static int beginAsync(@NonNull String sectionName) {
+        final int cookie = COOKIE_GENERATOR.incrementAndGet();
+        Trace.beginAsyncSection(sectionName, cookie);
+
+        return cookie;
+    }
+
+    /**
+     * Ends an async slice.
+     * @param sectionName Name of the slice.
+     * @param cookie Cookie returned by {@link #beginAsync(String)}.
+     */
+    public static void endAsync(@NonNull String sectionName, int cookie) {
+        Trace.endAsyncSection(sectionName, cookie);
+    }
+
+    /**
+     * Wraps a task that is handed to another thread. An async slice begins when this function is
+     * called and ends when the task finishes, so it covers the time the task spent queued, while
+     * the task itself runs inside a synchronous section of the same name.
+     * @param sectionName Name of the section, which should name the screen that requested the
+     * task, like {@code "ReadRecipeActivity.loadData"}.
+     * @param task Task.
+     * @return The traced task.
+     */
+    public static Runnable traced(@NonNull String sectionName, @NonNull Runnable task) {
+        final int cookie = beginAsync(sectionName);
+
+        return () -> {
+            Trace.beginSection(sectionName);
+            try {
+                task.run();
+            } finally {
+                Trace.endSection();
+                endAsync(sectionName, cookie);
+            }
+        };
+    }
+}
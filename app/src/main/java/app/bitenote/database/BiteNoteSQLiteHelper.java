@@ -1,36 +1,59 @@
 package app.bitenote.database;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.content.res.XmlResourceParser;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.JsonReader;
+import android.util.JsonWriter;
 import android.util.Log;
 import android.util.Pair;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.tracing.Trace;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import app.bitenote.R;
+import app.bitenote.instances.DietaryProfile;
 import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.IngredientType;
 import app.bitenote.instances.MeasurementType;
 import app.bitenote.instances.Recipe;
+import app.bitenote.instances.ShoppingList;
 import app.bitenote.instances.Utensil;
 
 /**
  * Instance of an SQLite interface for creating, reading, updating and deleting tables in the
  * recipes database.
+ * <p>
+ * The helper owns its {@link SQLiteDatabase} for its whole lifetime. Its methods never close the
+ * database they get, since it's shared with every other thread that uses the helper, like the one
+ * of {@link GroupCommitWriter}. It's only closed by {@link #close()}, once nothing else uses it.
  * @author Daniel N.
  */
 public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
@@ -40,9 +63,81 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public static final String DATABASE_NAME = "bitenote_recipes.db";
 
     /**
-     * Version of the database.
+     * Version of the database. Increasing it requires a migration step in
+     * {@link BiteNoteSQLiteMigrationHelper}.
      */
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 10;
+
+    /**
+     * Amount of recipes inserted per transaction by {@link #importRecipes(ReadableByteChannel)}.
+     */
+    public static final int DEFAULT_IMPORT_BATCH_SIZE = 500;
+
+    /**
+     * Amount of recipes read per query by
+     * {@link #exportRecipes(WritableByteChannel, RecipeQuery)}.
+     */
+    private static final int EXPORT_PAGE_SIZE = 200;
+
+    /**
+     * Amount of recipes read per query by {@link #getAllRecipes(RecipeSortOrder)} and
+     * {@link #getQueriedRecipes(RecipeQuery, RecipeSortOrder)}.
+     */
+    private static final int LIST_PAGE_SIZE = 200;
+
+    /**
+     * Amount of recipes indexed per transaction by {@link #indexMissingRecipeSignatures()} and
+     * {@link #indexMissingRecipeFingerprints()}.
+     */
+    private static final int SIGNATURE_INDEX_PAGE_SIZE = 500;
+
+    /**
+     * Amount of candidates compared by {@link #getSimilarRecipes(int, int)} per returned recipe.
+     * Candidates are the recipes that share the most buckets with the searched one.
+     */
+    private static final int SIMILARITY_CANDIDATE_FACTOR = 4;
+
+    /**
+     * Amount of snapshots kept by {@link #createSnapshot()}.
+     */
+    public static final int DEFAULT_SNAPSHOT_COUNT = 3;
+
+    /**
+     * Suffix of the name of the slow query log file, which is stored along the files that aren't
+     * backed up.
+     */
+    private static final String SLOW_QUERY_LOG_SUFFIX = "-slow_queries.log";
+
+    /**
+     * Aggregate columns of the 'recipes' table, each paired with the SQL expression over its
+     * ingredients and utensils it must be equal to. Amounts that aren't measured in units are
+     * added up regardless of their measurement type, so the total is only a coarse size.
+     * @see #checkRecipeAggregates()
+     */
+    private static final String[][] RECIPE_AGGREGATES = {
+            {
+                    "ingredient_count",
+                    "(SELECT count(*) FROM recipe_ingredients " +
+                            "WHERE recipe_ingredients.recipe_id = recipes.id)"
+            },
+            {
+                    "utensil_count",
+                    "(SELECT count(*) FROM recipe_utensils " +
+                            "WHERE recipe_utensils.recipe_id = recipes.id)"
+            },
+            {
+                    "total_amount",
+                    "(SELECT CAST(ifnull(sum(amount), 0) AS INTEGER) FROM recipe_ingredients " +
+                            "WHERE recipe_ingredients.recipe_id = recipes.id " +
+                            "AND is_measured_in_units = 0)"
+            },
+            {
+                    "needs_units",
+                    "EXISTS (SELECT 1 FROM recipe_ingredients " +
+                            "WHERE recipe_ingredients.recipe_id = recipes.id " +
+                            "AND is_measured_in_units != 0)"
+            }
+    };
 
     /**
      * Context.
@@ -62,6 +157,13 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      */
     private Integer mIngredientCount = null;
 
+    /**
+     * List of {@link Pair}s, in which the first element represents the ID of the ingredient type,
+     * and the second element represents the data that the ID references contained in a
+     * {@link IngredientType} instance.
+     */
+    private List<Pair<Integer, IngredientType>> mIngredientTypes = null;
+
     /**
      * List of {@link Pair}s, in which the first element represents the ID of the utensil,
      * and the second element represents the data that the ID references contained in a
@@ -88,18 +190,73 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      */
     private Integer mMeasurementTypeCount = null;
 
+    /**
+     * Determines whether every recipe has been added to the similarity index. Recipes are indexed
+     * as they're written, so only the recipes written before the index existed are missing.
+     * @see #indexMissingRecipeSignatures()
+     */
+    private volatile boolean mAreSignaturesChecked = false;
+
+    /**
+     * Determines whether every recipe has a fingerprint. Like signatures, only the recipes
+     * written before fingerprints existed can be missing.
+     * @see #indexMissingRecipeFingerprints()
+     */
+    private volatile boolean mAreFingerprintsChecked = false;
+
+    /**
+     * Determines whether the database files have been prepared before being opened.
+     * @see #prepareDatabaseFiles()
+     */
+    private volatile boolean mAreFilesPrepared = false;
+
+    /**
+     * Latency and statement metrics of the methods of this helper.
+     */
+    private final DatabaseMetrics mMetrics = new DatabaseMetrics();
+
+    /**
+     * Log of the statements of this helper that are slower than its threshold.
+     */
+    private final SlowQueryLog mSlowQueryLog;
+
+    /**
+     * Guard against calls to this helper from the main thread.
+     */
+    private final MainThreadGuard mMainThreadGuard;
+
+    /**
+     * Cache of the recipes read by this helper.
+     * @implNote Unlike the immutable tables, recipes are cached by ID and written through.
+     */
+    private final RecipeCache mRecipeCache = new RecipeCache(RecipeCache.DEFAULT_MAX_SIZE);
+
+    /**
+     * Lock that keeps the database file from being swapped while it's used. Every method of this
+     * helper holds its read lock for the whole call, through {@link #begin(String)}, and so does
+     * the {@link GroupCommitWriter} during its transactions. {@link #restoreSnapshot(File)} holds
+     * its write lock while it swaps the file.
+     */
+    private final ReentrantReadWriteLock mFileLock = new ReentrantReadWriteLock();
+
+    /**
+     * Amount of snapshots restored by this helper. It's only changed while holding the write lock
+     * of {@link #mFileLock}, so writes queued before a restore can be told apart from the ones
+     * queued after it.
+     */
+    private volatile long mRestoreCount = 0;
+
     @Override
     public void onCreate(@NonNull SQLiteDatabase database) {
-        BiteNoteSQLiteTableHelper.createTables(database);
+        /// only reached when the prebuilt seed database couldn't be installed
+        BiteNoteSQLiteTableHelper.createTables(database, mContext);
         BiteNoteSQLiteTableHelper.populateImmutableTables(database, mContext);
     }
 
     @Override
     public void onUpgrade(@NonNull SQLiteDatabase database, int oldVersion, int newVersion) {
-        BiteNoteSQLiteTableHelper.dropTables(database);
-
-        // init tables again
-        onCreate(database);
+        /// recipes are user data, so tables are migrated instead of being created again
+        BiteNoteSQLiteMigrationHelper.migrate(database, oldVersion, newVersion);
     }
 
     @Override
@@ -132,15 +289,125 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
          * getReadableDatabase() functions are called for the first time.
          */
         this.mContext = context;
+        this.mSlowQueryLog = new SlowQueryLog(
+                new File(context.getNoBackupFilesDir(), databaseName + SLOW_QUERY_LOG_SUFFIX)
+        );
+
+        /// main thread calls are only reported in debuggable builds
+        final boolean isDebuggable =
+                (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        this.mMainThreadGuard = new MainThreadGuard(
+                isDebuggable ? MainThreadGuard.Mode.LOG : MainThreadGuard.Mode.DISABLED
+        );
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        prepareDatabaseFiles();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        prepareDatabaseFiles();
+        return super.getReadableDatabase();
     }
 
     /**
-     * Inserts the example recipes from 'test_recipes.xml' into the database.
-     * @return The ID list of the inserted recipes, ordered by creation.
-     * @see BiteNoteSQLiteHelper#getRecipeFromId(int)
+     * Recovers the files of a restore that was interrupted, and installs the seed database if
+     * there's none, before SQLiteOpenHelper opens the database for the first time. It's done on
+     * the first access instead of the constructor, since the helper is built on the main thread
+     * and the seed is a full copy of an asset.
+     */
+    private void prepareDatabaseFiles() {
+        if (mAreFilesPrepared) return;
+
+        synchronized (this) {
+            if (mAreFilesPrepared) return;
+
+            BiteNoteSQLiteSnapshotHelper.recoverInterruptedRestore(mContext, getDatabaseName());
+            BiteNoteSQLiteSeedHelper.installSeedDatabase(mContext, getDatabaseName());
+            mAreFilesPrepared = true;
+        }
+    }
+
+    /**
+     * Gets the lock that writers must hold while they use the database, so its file isn't swapped
+     * by {@link #restoreSnapshot(File)} in the middle of a transaction.
+     * @return The read lock of the file lock.
+     */
+    Lock getFileLock() {
+        return mFileLock.readLock();
+    }
+
+    /**
+     * Gets the amount of snapshots restored by this helper. Writes queued against the database
+     * must not be applied if it has changed by the time they're applied, since they were meant for
+     * the file that the restore replaced.
+     * @return The amount of restored snapshots.
+     * @see #restoreSnapshot(File)
+     */
+    long getRestoreCount() {
+        return mRestoreCount;
+    }
+
+    /**
+     * Gets the latency and statement metrics of the methods of this helper.
+     * @return {@link DatabaseMetrics} instance, shared by every caller.
+     */
+    public DatabaseMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Gets the log of the statements of this helper that are slower than its threshold.
+     * @return {@link SlowQueryLog} instance, shared by every caller.
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return mSlowQueryLog;
+    }
+
+    /**
+     * Gets the guard against calls to this helper from the main thread. It logs main thread calls
+     * in debuggable builds, and is disabled otherwise.
+     * @return {@link MainThreadGuard} instance, shared by every caller.
+     */
+    public MainThreadGuard getMainThreadGuard() {
+        return mMainThreadGuard;
+    }
+
+    /**
+     * Gets the cache of the recipes read by this helper.
+     * @return {@link RecipeCache} instance, shared by every caller.
+     */
+    public RecipeCache getRecipeCache() {
+        return mRecipeCache;
+    }
+
+    /**
+     * Inserts the example recipes from 'test_recipes.xml' into the database. Examples that are
+     * near-duplicates of existing recipes aren't inserted again.
+     * @return The ID list of the example recipes, ordered by creation.
+     * @see #insertExampleRecipes(DuplicateReport)
      */
     public List<Integer> insertExampleRecipes() {
+        return insertExampleRecipes(new DuplicateReport());
+    }
+
+    /**
+     * Inserts the example recipes from 'test_recipes.xml' into the database. Examples that are
+     * near-duplicates of existing recipes are merged into them instead of being inserted, so the
+     * examples can be inserted again safely.
+     * @param duplicateReport {@link DuplicateReport} where the merged examples are added.
+     * @return The ID list of the example recipes, ordered by creation. Merged examples are listed
+     * with the ID of the recipe they were merged into.
+     * @see BiteNoteSQLiteHelper#getRecipeFromId(int)
+     */
+    public List<Integer> insertExampleRecipes(@NonNull DuplicateReport duplicateReport) {
+        indexMissingRecipeFingerprints();
+
         final ArrayList<Integer> exampleIdList = new ArrayList<>();
+        final HashMap<Integer, Long> exampleCreationTimes = new HashMap<>();
         final Recipe currentRecipeData = new Recipe();
         String lastFoundXmlTag = "";
         int currentIngredientId = 0;
@@ -207,7 +474,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                              * If it's more than one, treat it as a paragraph break. Remove other
                              * characters like tabs, or multiple spaces.
                              */
-                            currentRecipeData.body = parser.getText()
+                            currentRecipeData.setBody(parser.getText()
                                     .trim()
                                     .replaceAll("(\\r\\n|\\r)", "\n")
                                     .replaceAll("\\n{2,}", "¶¶") // markers
@@ -216,7 +483,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                                     .replaceAll("\\t+", "")
                                     .replaceAll(" +", " ")
                                     .trim()
-                                    .replaceAll("(\\n\\n) +", "$1");
+                                    .replaceAll("(\\n\\n) +", "$1"));
                             break;
                         case Recipe.XML_RECIPE_DINERS_TAG:
                             currentRecipeData.diners = Integer.valueOf(parser.getText().trim());
@@ -243,9 +510,19 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                         parser.getEventType() == XmlPullParser.END_TAG
                         && parser.getName().equals(Recipe.XML_RECIPE_TAG)
                 ) {
-                    /// all data is gathered, insert into the database
-                    int parsedExampleId = insertRecipe(currentRecipeData);
+                    /// all data is gathered, insert into the database unless it's a duplicate
+                    final Optional<Integer> duplicateId = findDuplicateRecipe(currentRecipeData);
+                    duplicateId.ifPresent(id ->
+                            duplicateReport.add(currentRecipeData.name, id)
+                    );
+                    int parsedExampleId = duplicateId.isPresent()
+                            ? duplicateId.get()
+                            : insertRecipe(currentRecipeData);
                     exampleIdList.add(parsedExampleId);
+                    exampleCreationTimes.put(
+                            parsedExampleId,
+                            currentRecipeData.creationDate.getTime()
+                    );
 
                     /// clear recipe data sets and maps
                     currentRecipeData.clearIngredients();
@@ -261,13 +538,11 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
             );
         }
 
-        /// sort ids by their creation date in descending order
-        exampleIdList.sort((a, b) -> {
-            final long aCreationDateTime = getRecipeFromId(a).get().creationDate.getTime();
-            final long bCreationDateTime = getRecipeFromId(b).get().creationDate.getTime();
-
-            return Long.compare(bCreationDateTime, aCreationDateTime);
-        });
+        /// sort ids by their creation date in descending order, without querying them again
+        exampleIdList.sort((a, b) -> Long.compare(
+                exampleCreationTimes.getOrDefault(b, 0L),
+                exampleCreationTimes.getOrDefault(a, 0L)
+        ));
 
         return Collections.unmodifiableList(exampleIdList);
     }
@@ -280,60 +555,157 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * times when no modifications are done to the database.
      */
     public int getRecipeCount() {
-        final String sql = "SELECT count(*) AS recipe_count FROM recipes;";
-        final String[] args = {};
+        try (final DatabaseMetrics.Scope scope = begin("getRecipeCount")) {
+            final String sql = "SELECT count(*) AS recipe_count FROM recipes;";
+            final String[] args = {};
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args);
-        ) {
-            cursor.moveToFirst(); // this operation should be guaranteed
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                cursor.moveToFirst(); // this operation should be guaranteed
 
-            return cursor.getInt(cursor.getColumnIndex("recipe_count")); // shouldn't return -1
+                return cursor.getInt(cursor.getColumnIndex("recipe_count")); // shouldn't return -1
+            }
         }
     }
 
     /**
-     * Inserts a new recipe into the database and returns its ID.
+     * Inserts a new recipe into the database and returns its ID. Every row is inserted in a single
+     * transaction, so either the whole recipe is inserted or nothing is.
      * @param recipe Recipe instance.
      * @return The ID of the inserted recipe.
      */
     public int insertRecipe(@NonNull Recipe recipe) {
-        try (final SQLiteDatabase database = getWritableDatabase()) {
-            int id = insertInRecipesTable(database, recipe);
-            insertInRecipeIngredientsTable(database, recipe, id);
-            insertInRecipeUtensilsTable(database, recipe, id);
+        try (final DatabaseMetrics.Scope scope = begin("insertRecipe")) {
+            final SQLiteDatabase database = getWritableDatabase();
+            database.beginTransaction();
+            final int id;
+            try {
+                id = insertRecipe(database, recipe);
+
+                database.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                return 0;
+            } finally {
+                database.endTransaction();
+            }
 
+            mRecipeCache.writeInsert(id, recipe);
             return id;
         }
     }
 
+    /**
+     * Inserts a new recipe into the database inside the caller's transaction.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipe Recipe instance.
+     * @return The ID of the inserted recipe.
+     * @throws SQLException If a statement fails, in which case the transaction must be rolled
+     * back.
+     * @implNote The recipe cache isn't written, since the transaction may still be rolled back.
+     * The caller must call {@link RecipeCache#writeInsert(int, Recipe)} once it's committed.
+     * @see GroupCommitWriter
+     */
+    int insertRecipe(@NonNull SQLiteDatabase database, @NonNull Recipe recipe) {
+        final int id = insertInRecipesTable(database, recipe);
+        insertInRecipeIngredientsTable(database, recipe, id);
+        insertInRecipeUtensilsTable(database, recipe, id);
+        updateRecipeAggregates(database, "id = ?1", new Object[]{id});
+        insertRecipeExclusions(database, "recipe_ingredients.recipe_id = ?1", new Object[]{id});
+        updateIngredientPairs(database, "recipe_ingredients.recipe_id = ?1", new Object[]{id}, 1);
+        insertRecipeSignature(database, id, MinHashSignature.of(recipe));
+        insertRecipeFingerprint(database, id, RecipeFingerprint.of(recipe));
+
+        return id;
+    }
+
     /**
      * Updates a recipe row from the database and all other rows that reference it.
      * @param recipeId Recipe ID.
      * @param recipeInstance {@link Recipe} instance which holds the new data for the rows.
      */
     public void updateRecipe(int recipeId, @NonNull Recipe recipeInstance) {
-        assert recipeId != 0 : "Recipe ID can't be 0";
+        try (final DatabaseMetrics.Scope scope = begin("updateRecipe")) {
+            assert recipeId != 0 : "Recipe ID can't be 0";
+
+            final SQLiteDatabase database = getWritableDatabase();
+            database.beginTransaction();
+            try {
+                updateRecipe(database, recipeId, recipeInstance);
+
+                database.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                return;
+            } finally {
+                database.endTransaction();
+            }
+
+            mRecipeCache.writeUpdate(recipeId, recipeInstance);
+        }
+    }
 
+    /**
+     * Updates a recipe row from the database and all other rows that reference it, inside the
+     * caller's transaction.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipeId Recipe ID.
+     * @param recipeInstance {@link Recipe} instance which holds the new data for the rows.
+     * @throws SQLException If a statement fails, in which case the transaction must be rolled
+     * back.
+     * @implNote The caller must call {@link RecipeCache#writeUpdate(int, Recipe)} once the
+     * transaction is committed.
+     * @see GroupCommitWriter
+     */
+    void updateRecipe(
+            @NonNull SQLiteDatabase database,
+            int recipeId,
+            @NonNull Recipe recipeInstance
+    ) {
         /*
          * For this function, we update the 'recipes' table row, however, we delete and reinsert
          * other table rows that reference the recipe ID.
-         *
-         * No transaction is necessary here, since all operations in the called functions are
-         * wrapped by transactions themselves.
          */
-        try (final SQLiteDatabase database = getWritableDatabase()) {
-            updateRecipeRow(database, recipeInstance, recipeId);
+        updateRecipeRow(database, recipeInstance, recipeId);
 
-            /// delete and reinsert ingredients
-            deleteRecipeIngredientRows(database, recipeId);
-            insertInRecipeIngredientsTable(database, recipeInstance, recipeId);
+        /// only recipes whose ingredients change move their pairs out of the co-occurrence counts
+        final String pairCondition = "recipe_ingredients.recipe_id = ?1";
+        final Object[] pairArgs = {recipeId};
+        final boolean areIngredientsChanged = !getRecipeIngredientIds(database, recipeId)
+                .equals(recipeInstance.getIngredients().keySet());
+        if (areIngredientsChanged) updateIngredientPairs(database, pairCondition, pairArgs, -1);
 
-            /// delete and reinsert utensils
-            deleteRecipeUtensilRows(database, recipeId);
-            insertInRecipeUtensilsTable(database, recipeInstance, recipeId);
-        }
+        /// delete and reinsert ingredients
+        deleteRecipeIngredientRows(database, recipeId);
+        insertInRecipeIngredientsTable(database, recipeInstance, recipeId);
+        if (areIngredientsChanged) updateIngredientPairs(database, pairCondition, pairArgs, 1);
+
+        /// delete and reinsert utensils
+        deleteRecipeUtensilRows(database, recipeId);
+        insertInRecipeUtensilsTable(database, recipeInstance, recipeId);
+
+        final Object[] args = {recipeId};
+        updateRecipeAggregates(database, "id = ?1", args);
+
+        /// refresh the profiles that exclude the recipe, since its ingredients may have changed
+        final String delRecipeExclusionsSql =
+                "DELETE FROM dietary_profile_excluded_recipes WHERE recipe_id = ?;";
+        execSQL(database, delRecipeExclusionsSql, args);
+        insertRecipeExclusions(database, "recipe_ingredients.recipe_id = ?1", args);
+
+        /// reindex the recipe in the similarity index
+        deleteRecipeSignature(database, recipeId);
+        insertRecipeSignature(database, recipeId, MinHashSignature.of(recipeInstance));
+
+        /// refingerprint the recipe, since its text may have changed
+        deleteRecipeFingerprint(database, recipeId);
+        insertRecipeFingerprint(database, recipeId, RecipeFingerprint.of(recipeInstance));
     }
 
     /**
@@ -342,30 +714,57 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @param recipeId Recipe ID.
      */
     public void deleteRecipe(int recipeId) {
-        assert recipeId != 0 : "Recipe ID can't be 0.";
+        try (final DatabaseMetrics.Scope scope = begin("deleteRecipe")) {
+            assert recipeId != 0 : "Recipe ID can't be 0.";
+
+            final SQLiteDatabase database = getWritableDatabase();
+
+            database.beginTransaction();
+            try {
+                deleteRecipe(database, recipeId);
+
+                database.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                return;
+            } finally {
+                database.endTransaction();
+            }
+
+            mRecipeCache.writeDelete(recipeId);
+        }
+    }
 
-        final SQLiteDatabase database = getWritableDatabase();
+    /**
+     * Deletes a row from the 'recipes' table in the database, along with rows in other tables that
+     * reference it, inside the caller's transaction.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipeId Recipe ID.
+     * @throws SQLException If a statement fails, in which case the transaction must be rolled
+     * back.
+     * @implNote The caller must call {@link RecipeCache#writeDelete(int)} once the transaction is
+     * committed.
+     * @see GroupCommitWriter
+     */
+    void deleteRecipe(@NonNull SQLiteDatabase database, int recipeId) {
         final String delRecipeSql = "DELETE FROM recipes WHERE id = ?;";
         final String delRecipeIngredientsSql =
                 "DELETE FROM recipe_ingredients where recipe_id = ?;";
         final String delRecipeUtensilsSql = "DELETE FROM recipe_utensils where recipe_id = ?;";
+        final String delRecipeExclusionsSql =
+                "DELETE FROM dietary_profile_excluded_recipes WHERE recipe_id = ?;";
         final Object[] args = {recipeId};
 
-        database.beginTransaction();
-        try {
-            database.execSQL(delRecipeSql, args);
-            database.execSQL(delRecipeIngredientsSql, args);
-            database.execSQL(delRecipeUtensilsSql, args);
-
-            database.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
-            );
-        } finally {
-            database.endTransaction();
-        }
+        updateIngredientPairs(database, "recipe_ingredients.recipe_id = ?1", args, -1);
+        execSQL(database, delRecipeSql, args);
+        execSQL(database, delRecipeIngredientsSql, args);
+        execSQL(database, delRecipeUtensilsSql, args);
+        execSQL(database, delRecipeExclusionsSql, args);
+        deleteRecipeSignature(database, recipeId);
+        deleteRecipeFingerprint(database, recipeId);
     }
 
     /**
@@ -391,14 +790,21 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Gets a {@link Recipe} instance from its table row ID.
+     * Gets a {@link Recipe} instance from its table row ID. Recently read recipes are served from
+     * the {@link RecipeCache} without accessing the database.
      * @param recipeId ID of the ingredient.
-     * @return An {@link Optional} instance that wraps the nullable {@link Recipe}.
+     * @return An {@link Optional} instance that wraps the nullable {@link Recipe}. The recipe can
+     * be mutated, since it's never shared with the cache.
      */
     public Optional<Recipe> getRecipeFromId(int recipeId) {
-        assert recipeId != 0 : "Recipe ID can't be 0";
+        try (final DatabaseMetrics.Scope scope = begin("getRecipeFromId")) {
+            assert recipeId != 0 : "Recipe ID can't be 0";
 
-        try (final SQLiteDatabase database = getReadableDatabase()) {
+            final Optional<Recipe> cachedRecipeOption = mRecipeCache.get(recipeId);
+            if (cachedRecipeOption.isPresent()) return cachedRecipeOption;
+
+            final long cacheWriteCount = mRecipeCache.getWriteCount();
+            final SQLiteDatabase database = getReadableDatabase();
             final Optional<Recipe> recipeOption = getRecipeRowData(database, recipeId);
             if (recipeOption.isEmpty()) {
                 return Optional.empty();
@@ -408,6 +814,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
             populateRecipeInstanceUtensils(database, recipeOption.get(), recipeId);
             populateRecipeInstanceIngredients(database, recipeOption.get(), recipeId);
 
+            mRecipeCache.putIfUnchanged(recipeId, recipeOption.get(), cacheWriteCount);
             return recipeOption;
         }
     }
@@ -423,26 +830,20 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * because the recipes table is mutable, which means the result can't be internally cached.
      */
     public List<Pair<Integer, Recipe>> getAllRecipes() {
-        /// query for all recipes, orders from newest to oldest
-        final String sql = "SELECT id FROM recipes ORDER BY creation_date DESC;";
-        final String[] args = {};
-
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) return new ArrayList<>();
-
-            final List<Pair<Integer, Recipe>> recipeList = new ArrayList<>(cursor.getCount());
-
-            do {
-                final int id = cursor.getInt(cursor.getColumnIndex("id"));
-                final Optional<Recipe> recipeOption = getRecipeFromId(id);
-
-                recipeOption.ifPresent(recipe -> recipeList.add(Pair.create(id, recipe)));
-            } while (cursor.moveToNext());
+        return getAllRecipes(RecipeSortOrder.NEWEST);
+    }
 
-            return Collections.unmodifiableList(recipeList);
+    /**
+     * Gets all recipes in the database in a sort order.
+     * @param sortOrder Order of the recipes.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the data that the ID references contained in a
+     * {@link Recipe} instance.
+     * @see #getRecipePage(RecipeQuery, RecipeSortOrder, RecipePage.Boundary, int)
+     */
+    public List<Pair<Integer, Recipe>> getAllRecipes(@NonNull RecipeSortOrder sortOrder) {
+        try (final DatabaseMetrics.Scope scope = begin("getAllRecipes")) {
+            return Collections.unmodifiableList(readAllPages(null, sortOrder));
         }
     }
 
@@ -455,144 +856,896 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * {@link Recipe} instance.
      */
     public List<Pair<Integer, Recipe>> getQueriedRecipes(@NonNull RecipeQuery rQuery) {
-        final String[] args = {}; // arguments are handled in RecipeQuery.toSQLString
-
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(rQuery.toSQLString(), args)
-        ) {
-            if (!cursor.moveToFirst()) return new ArrayList<>();
-
-            final List<Pair<Integer, Recipe>> recipeList = new ArrayList<>(cursor.getCount());
-            do {
-                final int id = cursor.getInt(cursor.getColumnIndex("id"));
-                final Recipe recipeInstance = getRecipeFromId(id).get();
-
-                recipeList.add(Pair.create(id, recipeInstance));
-            } while (cursor.moveToNext());
+        return getQueriedRecipes(rQuery, RecipeSortOrder.NEWEST);
+    }
 
-            return recipeList;
+    /**
+     * Gets all the recipes that meet the conditions of a {@link RecipeQuery} in a sort order.
+     * @param rQuery {@link RecipeQuery} instance. Contains the data that will be filtered.
+     * @param sortOrder Order of the recipes.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the data that the ID references contained in a
+     * {@link Recipe} instance.
+     * @see #getRecipePage(RecipeQuery, RecipeSortOrder, RecipePage.Boundary, int)
+     */
+    public List<Pair<Integer, Recipe>> getQueriedRecipes(
+            @NonNull RecipeQuery rQuery,
+            @NonNull RecipeSortOrder sortOrder
+    ) {
+        try (final DatabaseMetrics.Scope scope = begin("getQueriedRecipes")) {
+            return readAllPages(rQuery, sortOrder);
         }
     }
 
     /**
-     * Gets an {@link Ingredient} instance from its table row ID.
-     * @param ingredientId ID of the ingredient.
-     * @return An {@link Optional} instance that wraps the obtained data.
+     * Gets a page of recipes in a sort order. Pages are read with keyset pagination: each page
+     * starts after the last row of the previous one, so every page is a range scan over the
+     * index of the order, instead of a sort of the whole table or an ever growing OFFSET.
+     * @param rQuery {@link RecipeQuery} instance that filters the recipes. If {@code null}, every
+     * recipe is read.
+     * @param sortOrder Order of the recipes.
+     * @param after Boundary of the previous page, obtained from {@link RecipePage#next}, or
+     * {@code null} to read the first page. It must belong to a page of the same order.
+     * @param pageSize Maximum amount of recipes in the page.
+     * @return A {@link RecipePage} instance.
      */
-    public Optional<Ingredient> getIngredientFromId(int ingredientId) {
-        assert ingredientId != 0 : "Ingredient ID can't be 0.";
-
-        final String sql = "SELECT * FROM ingredients WHERE id = ? ORDER BY id ASC LIMIT 1;";
-        final String[] args = {String.valueOf(ingredientId)};
-        Ingredient ingredient = null;
-
-        /// transaction isn't necessary here
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) {
-                return Optional.empty();
+    public RecipePage getRecipePage(
+            @Nullable RecipeQuery rQuery,
+            @NonNull RecipeSortOrder sortOrder,
+            @Nullable RecipePage.Boundary after,
+            int pageSize
+    ) {
+        try (final DatabaseMetrics.Scope scope = begin("getRecipePage")) {
+            assert pageSize > 0 : "Page size must be positive.";
+            assert after == null || after.mSortOrder == sortOrder : "Boundary of another order.";
+
+            /// the key is read along the ID, from the same index, to be the next boundary
+            final String condition = rQuery == null ? "1" : rQuery.toSQLCondition();
+            final String sql = "SELECT id, " + sortOrder.toKeySelection() + " AS sort_key " +
+                    "FROM recipes WHERE (" + condition + ")" +
+                    (after == null ? "" : " AND " + sortOrder.toAfterCondition()) +
+                    " ORDER BY " + sortOrder.toOrderByClause() + " LIMIT " + pageSize + ";";
+            final String[] args = after == null
+                    ? new String[] {}
+                    : new String[] {after.mKey, String.valueOf(after.mRecipeId)};
+            final List<Integer> ids = new ArrayList<>(pageSize);
+            String lastKey = null;
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
+                    lastKey = cursor.getString(cursor.getColumnIndexOrThrow("sort_key"));
+                }
             }
 
-            final String fullName = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-            final int measurementId =
-                    cursor.getInt(cursor.getColumnIndexOrThrow("measurement_id"));
-            final boolean canBeMeasuredInUnits =
-                    cursor.getInt(cursor.getColumnIndexOrThrow("can_be_measured_in_units")) != 0;
+            /// a page with fewer rows than its size is the last one, regardless of the recipes read
+            final RecipePage.Boundary next = ids.size() < pageSize
+                    ? null
+                    : new RecipePage.Boundary(sortOrder, lastKey, ids.get(ids.size() - 1));
 
-            final MeasurementType measurementType = getMeasurementTypeFromId(measurementId).orElse(
-                    new MeasurementType(MeasurementType.WEIGHT_TYPE_STRING)
-            );
+            /// recipes are read after the cursor is closed, most of them come from the cache
+            final List<Pair<Integer, Recipe>> recipes = new ArrayList<>(ids.size());
+            for (int id: ids) {
+                getRecipeFromId(id).ifPresent(recipe -> recipes.add(Pair.create(id, recipe)));
+            }
 
-            ingredient = new Ingredient(fullName, measurementType, canBeMeasuredInUnits);
-        } catch (IllegalArgumentException e) {
-            Log.e(
-                    "db dql",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
+            return new RecipePage(recipes, next);
         }
-
-        return Optional.ofNullable(ingredient);
     }
 
     /**
-     * Gets all the ingredients in the database in ascending order.
+     * Reads every page of recipes in a sort order.
+     * @param rQuery {@link RecipeQuery} instance that filters the recipes, or {@code null}.
+     * @param sortOrder Order of the recipes.
      * @return A list of {@link Pair}s, in which the first element represents the ID of the
-     * ingredient, and the second element represents the data that the ID references contained in a
-     * {@link Ingredient} instance.
+     * recipe, and the second element represents the recipe.
      */
-    public List<Pair<Integer, Ingredient>> getAllIngredients() {
-        if (mIngredients != null) return Collections.unmodifiableList(mIngredients);
+    private List<Pair<Integer, Recipe>> readAllPages(
+            @Nullable RecipeQuery rQuery,
+            @NonNull RecipeSortOrder sortOrder
+    ) {
+        final List<Pair<Integer, Recipe>> recipeList = new ArrayList<>();
+        RecipePage page = getRecipePage(rQuery, sortOrder, null, LIST_PAGE_SIZE);
+        recipeList.addAll(page.recipes);
 
-        final String sql = "SELECT id FROM ingredients ORDER BY id ASC;";
-        final String[] args = {};
+        while (page.next != null) {
+            page = getRecipePage(rQuery, sortOrder, page.next, LIST_PAGE_SIZE);
+            recipeList.addAll(page.recipes);
+        }
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) return new ArrayList<>();
+        return recipeList;
+    }
+
+    /**
+     * Exports recipes into a channel, in the format described by {@link RecipeLibraryFormat}.
+     * Recipes are read in pages of ascending ID, so the library is never held in memory as a
+     * whole.
+     * @param channel {@link WritableByteChannel} where the library is written. The channel is
+     * flushed, but not closed.
+     * @param rQuery {@link RecipeQuery} instance that filters the exported recipes. If
+     * {@code null}, every recipe is exported.
+     * @return The amount of exported recipes.
+     * @throws IOException If writing into the channel fails.
+     */
+    public int exportRecipes(
+            @NonNull WritableByteChannel channel,
+            @Nullable RecipeQuery rQuery
+    ) throws IOException {
+        try (final DatabaseMetrics.Scope scope = begin("exportRecipes")) {
+            /*
+             * Pages are fetched with keyset pagination: each page starts after the last ID of the
+             * previous one, so every page query is a range scan over the primary key instead of an
+             * ever growing OFFSET.
+             */
+            final String condition = rQuery == null ? "" : " AND (" + rQuery.toSQLCondition() + ")";
+            final String pageSql = "SELECT * FROM recipes WHERE id > ?" + condition +
+                    " ORDER BY id ASC LIMIT " + EXPORT_PAGE_SIZE + ";";
+            final JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)
+            ));
+            int lastId = 0;
+            int exportedCount = 0;
+
+            RecipeLibraryFormat.beginLibrary(writer);
+            final SQLiteDatabase database = getReadableDatabase();
+            while (true) {
+                final String[] pageArgs = {String.valueOf(lastId)};
+                final LinkedHashMap<Integer, Recipe> page = new LinkedHashMap<>();
+
+                try (final Cursor cursor = rawQuery(database, pageSql, pageArgs)) {
+                    while (cursor.moveToNext()) {
+                        final int id = cursor.getInt(cursor.getColumnIndexOrThrow("id"));
+
+                        page.put(id, readRecipeRow(cursor));
+                        lastId = id;
+                    }
+                }
 
-            final List<Pair<Integer, Ingredient>> ingredientList =
-                    new ArrayList<>(cursor.getCount());
+                if (page.isEmpty()) break;
 
-            do {
-                final int id = cursor.getInt(cursor.getColumnIndex("id"));
-                final Ingredient ingredientInstance = getIngredientFromId(id).get();
+                populatePageRecipeInstances(database, page);
+                for (Recipe recipe: page.values()) {
+                    RecipeLibraryFormat.writeRecipe(writer, recipe);
+                }
 
-                ingredientList.add(Pair.create(id, ingredientInstance));
-            } while (cursor.moveToNext());
+                exportedCount += page.size();
+                if (page.size() < EXPORT_PAGE_SIZE) break;
+            }
+            RecipeLibraryFormat.endLibrary(writer);
+            writer.flush();
 
-            mIngredients = ingredientList;
-            return Collections.unmodifiableList(mIngredients);
+            return exportedCount;
         }
     }
 
     /**
-     * Gets all ingredients in the database, except the ones specified by the caller.
-     * @param except {@link Recipe} that contains the ingredients that are going to be ignored.
-     * @return A list of {@link Pair}s, in which the first element represents the ID of the
-     * ingredient, and the second element represents the data that the ID references contained in a
-     * {@link Ingredient} instance.
+     * Imports recipes from a channel, in batches of {@link #DEFAULT_IMPORT_BATCH_SIZE} recipes per
+     * transaction.
+     * @param channel {@link ReadableByteChannel} that contains a library written in the format
+     * described by {@link RecipeLibraryFormat}. The channel is not closed.
+     * @return The amount of imported recipes.
+     * @throws IOException If reading from the channel fails, or if the library is malformed.
+     * @see #importRecipes(ReadableByteChannel, int)
      */
-    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(@NonNull Recipe except) {
-        return getAllIngredientsExcept(except.getIngredients().keySet());
+    public int importRecipes(@NonNull ReadableByteChannel channel) throws IOException {
+        return importRecipes(channel, DEFAULT_IMPORT_BATCH_SIZE);
     }
 
     /**
-     * Gets all ingredients in the database, except the ones specified by the caller.
-     * @param except {@link Map} where the key is an integer ID that represents an ingredients
-     * that will be excluded from the selection (values are ignored).
-     * @return A list of {@link Pair}s, in which the first element represents the ID of the
-     * ingredient, and the second element represents the data that the ID references contained in a
-     * {@link Ingredient} instance.
+     * Imports recipes from a channel. The library is parsed one recipe at a time, and recipes are
+     * inserted as new rows in batches, each wrapped by its own transaction.
+     * @param channel {@link ReadableByteChannel} that contains a library written in the format
+     * described by {@link RecipeLibraryFormat}. The channel is not closed.
+     * @param batchSize Amount of recipes inserted per transaction.
+     * @return The amount of imported recipes.
+     * @throws IOException If reading from the channel fails, if the library is malformed, or if the
+     * recipes can't be inserted. The batches committed before the failure are kept, but the one in
+     * progress is rolled back.
+     * @see #importRecipes(ReadableByteChannel, int, DuplicateReport)
      */
-    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(
-            @NonNull Map<Integer, ?> except
-    ) {
-        return getAllIngredientsExcept(except.keySet());
+    public int importRecipes(
+            @NonNull ReadableByteChannel channel,
+            int batchSize
+    ) throws IOException {
+        return importRecipes(channel, batchSize, null);
     }
 
     /**
-     * Gets all ingredients in the database, except the ones specified by the caller.
-     * @param except {@link RecipeQuery} that contains the ingredients that are going to be ignored.
-     * @return A list of {@link Pair}s, in which the first element represents the ID of the
-     * ingredient, and the second element represents the data that the ID references contained in a
-     * {@link Ingredient} instance.
+     * Imports recipes from a channel, optionally merging near-duplicates. The library is parsed
+     * one recipe at a time, and recipes are inserted as new rows in batches, each wrapped by its
+     * own transaction.
+     * @param channel {@link ReadableByteChannel} that contains a library written in the format
+     * described by {@link RecipeLibraryFormat}. The channel is not closed.
+     * @param batchSize Amount of recipes read per transaction.
+     * @param duplicateReport {@link DuplicateReport} where the recipes that are near-duplicates of
+     * existing ones, or of recipes imported before them, are added instead of being inserted. If
+     * it's {@code null}, every recipe is inserted.
+     * @return The amount of inserted recipes, which doesn't include the merged ones.
+     * @throws IOException If reading from the channel fails, if the library is malformed, or if the
+     * recipes can't be inserted. The batches committed before the failure are kept, but the one in
+     * progress is rolled back.
+     * @see RecipeFingerprint
      */
-    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(@NonNull RecipeQuery except) {
-        final Set<Integer> exceptSet = new HashSet<>();
-        for (int id: except.getQueriedIngredients()) {
-            exceptSet.add(id);
-        }
+    public int importRecipes(
+            @NonNull ReadableByteChannel channel,
+            int batchSize,
+            @Nullable DuplicateReport duplicateReport
+    ) throws IOException {
+        try (final DatabaseMetrics.Scope scope = begin("importRecipes")) {
+            assert batchSize > 0 : "Batch size must be positive.";
+
+            if (duplicateReport != null) indexMissingRecipeFingerprints();
+
+            /// immutable tables are cached, so they must be read before opening the database
+            final HashMap<Integer, Ingredient> ingredients = new HashMap<>();
+            final HashSet<Integer> utensilIds = new HashSet<>();
+            getAllIngredients().forEach(pair -> ingredients.put(pair.first, pair.second));
+            getAllUtensils().forEach(pair -> utensilIds.add(pair.first));
+
+            final JsonReader reader = new JsonReader(new BufferedReader(
+                    Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1)
+            ));
+            int importedCount = 0;
+
+            final SQLiteDatabase database = getWritableDatabase();
+            try (
+                    final SQLiteStatement recipeStatement = database.compileStatement(
+                            "INSERT INTO recipes(name, body, budget, diners, creation_date) " +
+                                    "VALUES (?, ?, ?, ?, ?);"
+                    );
+                    final SQLiteStatement ingredientStatement = database.compileStatement(
+                            "INSERT INTO recipe_ingredients" +
+                                    "(recipe_id, ingredient_id, amount, is_measured_in_units) " +
+                                    "VALUES (?, ?, ?, ?);"
+                    );
+                    final SQLiteStatement utensilStatement = database.compileStatement(
+                            "INSERT INTO recipe_utensils(recipe_id, utensil_id) VALUES (?, ?);"
+                    );
+                    final SQLiteStatement signatureStatement = database.compileStatement(
+                            "INSERT INTO recipe_signatures(recipe_id, signature) VALUES (?, ?);"
+                    );
+                    final SQLiteStatement bucketStatement =
+                            database.compileStatement(createSignatureBucketsSql());
+                    final SQLiteStatement fingerprintStatement = database.compileStatement(
+                            "INSERT INTO recipe_fingerprints" +
+                                    "(recipe_id, content_hash, ingredient_set_hash) " +
+                                    "VALUES (?, ?, ?);"
+                    );
+                    final SQLiteStatement fingerprintKeyStatement =
+                            database.compileStatement(createFingerprintKeysSql())
+            ) {
+                RecipeLibraryFormat.beginLibrary(reader);
+
+                while (reader.hasNext()) {
+                    int batchCount = 0;
+                    int batchInsertedCount = 0;
+                    long firstRecipeId = 0;
+                    long lastRecipeId = 0;
+
+                    database.beginTransaction();
+                    try {
+                        while (batchCount < batchSize && reader.hasNext()) {
+                            final Recipe recipe =
+                                    RecipeLibraryFormat.readRecipe(reader, ingredients, utensilIds);
+                            final RecipeFingerprint fingerprint = RecipeFingerprint.of(recipe);
+                            batchCount++;
+
+                            /// rows inserted earlier in the transaction are also looked up
+                            if (duplicateReport != null) {
+                                final int duplicateId = findDuplicateRecipe(database, fingerprint);
+                                if (duplicateId != 0) {
+                                    duplicateReport.add(recipe.name, duplicateId);
+                                    continue;
+                                }
+                            }
+
+                            recipeStatement.bindString(1, recipe.name);
+                            final Object storedBody = getStoredBody(recipe);
+                            if (storedBody instanceof byte[]) {
+                                recipeStatement.bindBlob(2, (byte[]) storedBody);
+                            } else {
+                                recipeStatement.bindString(2, (String) storedBody);
+                            }
+                            recipeStatement.bindLong(3, recipe.budget);
+                            recipeStatement.bindLong(4, recipe.diners);
+                            recipeStatement.bindLong(5, EpochDays.fromDate(recipe.creationDate));
+                            final long recipeId = executeInsert(recipeStatement);
+                            if (batchInsertedCount == 0) firstRecipeId = recipeId;
+                            lastRecipeId = recipeId;
+
+                            recipe.forEachIngredient((ingredientId, properties) -> {
+                                ingredientStatement.bindLong(1, recipeId);
+                                ingredientStatement.bindLong(2, ingredientId);
+                                ingredientStatement.bindLong(3, properties.amount);
+                                ingredientStatement.bindLong(
+                                        4,
+                                        properties.isMeasuredInUnits ? 1 : 0
+                                );
+                                executeInsert(ingredientStatement);
+                            });
+
+                            recipe.forEachUtensil(utensilId -> {
+                                utensilStatement.bindLong(1, recipeId);
+                                utensilStatement.bindLong(2, utensilId);
+                                executeInsert(utensilStatement);
+                            });
+
+                            final MinHashSignature signature = MinHashSignature.of(recipe);
+                            signatureStatement.bindLong(1, recipeId);
+                            signatureStatement.bindBlob(2, signature.toBytes());
+                            executeInsert(signatureStatement);
+                            if (!signature.isEmpty()) {
+                                bindSignatureBuckets(bucketStatement, recipeId, signature);
+                                executeInsert(bucketStatement);
+                            }
+
+                            fingerprintStatement.bindLong(1, recipeId);
+                            fingerprintStatement.bindLong(2, fingerprint.contentHash);
+                            fingerprintStatement.bindLong(3, fingerprint.ingredientSetHash);
+                            executeInsert(fingerprintStatement);
+                            bindFingerprintKeys(fingerprintKeyStatement, recipeId, fingerprint);
+                            executeInsert(fingerprintKeyStatement);
+
+                            batchInsertedCount++;
+                        }
+
+                        /// imported IDs are consecutive, so the batch is excluded and counted in
+                        /// one statement each
+                        final String batchCondition =
+                                "recipe_ingredients.recipe_id BETWEEN ?1 AND ?2";
+                        final Object[] batchArgs = {firstRecipeId, lastRecipeId};
+                        insertRecipeExclusions(database, batchCondition, batchArgs);
+                        updateIngredientPairs(database, batchCondition, batchArgs, 1);
+                        updateRecipeAggregates(database, "id BETWEEN ?1 AND ?2", batchArgs);
+
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
 
-        return getAllIngredientsExcept(exceptSet);
-    }
+                    importedCount += batchInsertedCount;
+                }
 
-    /**
-     * Gets all ingredients in the database, except the ones specified by the caller.
+                RecipeLibraryFormat.endLibrary(reader);
+            } catch (SQLException e) {
+                /// the batch in progress has already been rolled back by endTransaction()
+                throw new IOException("Couldn't insert the imported recipes.", e);
+            }
+
+            return importedCount;
+        }
+    }
+
+    /**
+     * Gets the combined shopping list of several recipes, scaled to an amount of diners. The list
+     * is a single grouped aggregate over the ingredients of the recipes joined to the catalog, so
+     * the recipes are never read, and its cost only grows with the amount of their ingredients.
+     * @param recipeIds {@link Set} of integer IDs of the recipes.
+     * @param diners Amount of diners every recipe is scaled to. Recipes without diners are scaled
+     * as if they had one.
+     * @return A {@link ShoppingList} instance, which is empty if no recipe has ingredients.
+     */
+    public ShoppingList getShoppingList(@NonNull Set<Integer> recipeIds, int diners) {
+        try (final DatabaseMetrics.Scope scope = begin("getShoppingList")) {
+            assert diners > 0 : "Diners must be positive.";
+
+            if (recipeIds.isEmpty()) return new ShoppingList(diners, Collections.emptyList());
+
+            /// IDs are inlined, since a meal plan may exceed the limit of bound arguments
+            final StringBuilder idList = new StringBuilder();
+            for (int id: recipeIds) {
+                if (idList.length() > 0) idList.append(',');
+                idList.append(id);
+            }
+
+            final String sql = "SELECT recipe_ingredients.ingredient_id AS ingredient_id, " +
+                    "ingredients.name AS name, " +
+                    "measurement_types.name AS measurement_type, " +
+                    "ingredients.can_be_measured_in_units AS can_be_measured_in_units, " +
+                    "recipe_ingredients.is_measured_in_units AS is_measured_in_units, " +
+                    "sum(recipe_ingredients.amount * " + diners + " / max(recipes.diners, 1)) " +
+                    "AS amount, " +
+                    "count(*) AS recipe_count " +
+                    "FROM recipe_ingredients " +
+                    "JOIN recipes ON recipes.id = recipe_ingredients.recipe_id " +
+                    "JOIN ingredients ON ingredients.id = recipe_ingredients.ingredient_id " +
+                    "JOIN measurement_types ON measurement_types.id = ingredients.measurement_id " +
+                    "WHERE recipe_ingredients.recipe_id IN (" + idList + ") " +
+                    "GROUP BY ingredients.measurement_id, " +
+                    "recipe_ingredients.is_measured_in_units, " +
+                    "recipe_ingredients.ingredient_id " +
+                    "ORDER BY ingredients.measurement_id ASC, " +
+                    "recipe_ingredients.is_measured_in_units ASC, " +
+                    "recipe_ingredients.ingredient_id ASC;";
+            final List<ShoppingList.Item> items = new ArrayList<>();
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, new String[] {})) {
+                while (cursor.moveToNext()) {
+                    final Ingredient ingredient = new Ingredient(
+                            cursor.getString(cursor.getColumnIndexOrThrow("name")),
+                            new MeasurementType(
+                                    cursor.getString(cursor.getColumnIndexOrThrow(
+                                            "measurement_type"
+                                    ))
+                            ),
+                            cursor.getInt(
+                                    cursor.getColumnIndexOrThrow("can_be_measured_in_units")
+                            ) != 0
+                    );
+
+                    items.add(new ShoppingList.Item(
+                            cursor.getInt(cursor.getColumnIndexOrThrow("ingredient_id")),
+                            ingredient,
+                            cursor.getInt(
+                                    cursor.getColumnIndexOrThrow("is_measured_in_units")
+                            ) != 0,
+                            cursor.getFloat(cursor.getColumnIndexOrThrow("amount")),
+                            cursor.getInt(cursor.getColumnIndexOrThrow("recipe_count"))
+                    ));
+                }
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
+            }
+
+            return new ShoppingList(diners, items);
+        }
+    }
+
+    /**
+     * Exports the combined shopping list of several recipes into a channel, in the format
+     * described by {@link ShoppingListFormat}.
+     * @param channel {@link WritableByteChannel} where the list is written. The channel is
+     * flushed, but not closed.
+     * @param recipeIds {@link Set} of integer IDs of the recipes.
+     * @param diners Amount of diners every recipe is scaled to.
+     * @return The amount of exported items.
+     * @throws IOException If writing into the channel fails.
+     * @see #getShoppingList(Set, int)
+     */
+    public int exportShoppingList(
+            @NonNull WritableByteChannel channel,
+            @NonNull Set<Integer> recipeIds,
+            int diners
+    ) throws IOException {
+        final ShoppingList list = getShoppingList(recipeIds, diners);
+        final JsonWriter writer = new JsonWriter(new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)
+        ));
+
+        ShoppingListFormat.writeShoppingList(writer, list);
+        writer.flush();
+
+        return list.getItems().size();
+    }
+
+    /**
+     * Gets the recipes whose ingredients and utensils are the most similar to the ones of a
+     * recipe. Similarity is estimated from the {@link MinHashSignature}s of the recipes, and only
+     * the recipes that share a bucket with the searched one are compared, so the cost depends on
+     * the amount of similar recipes, and not on the size of the database.
+     * @param recipeId ID of the recipe.
+     * @param count Maximum amount of returned recipes.
+     * @return A list of {@link Pair}s from the most to the least similar recipe, in which the
+     * first element represents the ID of the recipe, and the second element represents the
+     * recipe. It never contains the searched recipe, nor recipes with nothing in common with it.
+     */
+    public List<Pair<Integer, Recipe>> getSimilarRecipes(int recipeId, int count) {
+        try (final DatabaseMetrics.Scope scope = begin("getSimilarRecipes")) {
+            assert recipeId != 0 : "Recipe ID can't be 0.";
+            assert count > 0 : "Count must be positive.";
+
+            indexMissingRecipeSignatures();
+
+            /// candidates sharing more buckets are more likely to be similar
+            final String candidatesSql = "SELECT other.recipe_id AS recipe_id, " +
+                    "count(*) AS shared_bucket_count " +
+                    "FROM recipe_signature_buckets AS own " +
+                    "JOIN recipe_signature_buckets AS other " +
+                    "ON other.band = own.band AND other.bucket = own.bucket " +
+                    "WHERE own.recipe_id = ? AND other.recipe_id != own.recipe_id " +
+                    "GROUP BY other.recipe_id " +
+                    "ORDER BY shared_bucket_count DESC, other.recipe_id ASC " +
+                    "LIMIT " + ((long) count * SIMILARITY_CANDIDATE_FACTOR) + ";";
+            final String[] candidatesArgs = {String.valueOf(recipeId)};
+            final StringBuilder candidateIdList = new StringBuilder().append(recipeId);
+            final HashMap<Integer, MinHashSignature> signatures = new HashMap<>();
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try {
+                try (final Cursor cursor = rawQuery(database, candidatesSql, candidatesArgs)) {
+                    if (cursor.getCount() == 0) return Collections.emptyList();
+
+                    while (cursor.moveToNext()) {
+                        candidateIdList.append(',').append(
+                                cursor.getInt(cursor.getColumnIndexOrThrow("recipe_id"))
+                        );
+                    }
+                }
+
+                final String signaturesSql = "SELECT recipe_id, signature FROM recipe_signatures " +
+                        "WHERE recipe_id IN (" + candidateIdList + ");";
+                try (final Cursor cursor = rawQuery(database, signaturesSql, new String[] {})) {
+                    while (cursor.moveToNext()) {
+                        signatures.put(
+                                cursor.getInt(cursor.getColumnIndexOrThrow("recipe_id")),
+                                MinHashSignature.fromBytes(
+                                        cursor.getBlob(cursor.getColumnIndexOrThrow("signature"))
+                                )
+                        );
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
+                return Collections.emptyList();
+            }
+
+            final MinHashSignature ownSignature = signatures.remove(recipeId);
+            if (ownSignature == null) return Collections.emptyList();
+
+            final HashMap<Integer, Float> similarities = new HashMap<>();
+            signatures.forEach((id, signature) -> {
+                final float similarity = ownSignature.estimateSimilarity(signature);
+                if (similarity > 0) similarities.put(id, similarity);
+            });
+
+            final List<Integer> ids = new ArrayList<>(similarities.keySet());
+            ids.sort((a, b) -> {
+                final int comparison = Float.compare(similarities.get(b), similarities.get(a));
+                return comparison != 0 ? comparison : Integer.compare(a, b);
+            });
+
+            /// recipes are read after the database is closed, most of them come from the cache
+            final List<Pair<Integer, Recipe>> similarRecipes = new ArrayList<>(count);
+            for (int i = 0; i < ids.size() && similarRecipes.size() < count; i++) {
+                final int id = ids.get(i);
+
+                getRecipeFromId(id).ifPresent(recipe ->
+                        similarRecipes.add(Pair.create(id, recipe))
+                );
+            }
+
+            return similarRecipes;
+        }
+    }
+
+    /**
+     * Gets the ingredients that are most often used along with a set of ingredients, from the
+     * co-occurrence counts of the 'ingredient_pairs' table. An ingredient scores the amount of
+     * recipes it shares with each ingredient of the set, added up, so only the pairs of the set
+     * are read, and not the whole catalog.
+     * @param ingredientIds {@link Set} of integer IDs of the ingredients, such as the ones of a
+     * recipe being edited.
+     * @param count Maximum amount of returned ingredients.
+     * @return A list of ingredient IDs, from the highest to the lowest score. It never contains
+     * the ingredients of the set, nor ingredients that were never used with any of them.
+     */
+    public List<Integer> getSuggestedIngredientIds(@NonNull Set<Integer> ingredientIds, int count) {
+        try (final DatabaseMetrics.Scope scope = begin("getSuggestedIngredientIds")) {
+            assert count > 0 : "Count must be positive.";
+
+            if (ingredientIds.isEmpty()) return Collections.emptyList();
+
+            final StringBuilder idList = new StringBuilder();
+            for (int id: ingredientIds) {
+                if (idList.length() > 0) idList.append(',');
+                idList.append(id);
+            }
+
+            final String sql = "SELECT other_ingredient_id FROM ingredient_pairs " +
+                    "WHERE ingredient_id IN (" + idList + ") " +
+                    "AND other_ingredient_id NOT IN (" + idList + ") " +
+                    "GROUP BY other_ingredient_id " +
+                    "ORDER BY sum(recipe_count) DESC, other_ingredient_id ASC " +
+                    "LIMIT " + count + ";";
+            final List<Integer> suggestedIds = new ArrayList<>(count);
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, new String[] {})) {
+                while (cursor.moveToNext()) {
+                    suggestedIds.add(
+                            cursor.getInt(cursor.getColumnIndexOrThrow("other_ingredient_id"))
+                    );
+                }
+            }
+
+            return suggestedIds;
+        }
+    }
+
+    /**
+     * Finds a recipe in the database that is a near-duplicate of a recipe. Only the recipes that
+     * share a lookup key of its {@link RecipeFingerprint} are compared.
+     * @param recipe {@link Recipe} instance.
+     * @return An {@link Optional} instance that wraps the ID of the duplicate, if there's any.
+     */
+    public Optional<Integer> findDuplicateRecipe(@NonNull Recipe recipe) {
+        try (final DatabaseMetrics.Scope scope = begin("findDuplicateRecipe")) {
+            indexMissingRecipeFingerprints();
+
+            final SQLiteDatabase database = getReadableDatabase();
+            final int duplicateId = findDuplicateRecipe(database, RecipeFingerprint.of(recipe));
+
+            return duplicateId != 0 ? Optional.of(duplicateId) : Optional.empty();
+        }
+    }
+
+    /**
+     * Checks that the aggregate columns of every recipe match its ingredients and utensils, and
+     * recomputes the ones that don't. Writes always keep them up to date, so mismatches are only
+     * expected from rows that were written outside of this helper.
+     * @return A list of the IDs of the recipes whose aggregates were recomputed, in ascending
+     * order. It's empty if every recipe was consistent, or if the check failed.
+     */
+    public List<Integer> checkRecipeAggregates() {
+        try (final DatabaseMetrics.Scope scope = begin("checkRecipeAggregates")) {
+            final StringBuilder mismatchCondition = new StringBuilder();
+            for (String[] aggregate: RECIPE_AGGREGATES) {
+                if (mismatchCondition.length() > 0) mismatchCondition.append(" OR ");
+                mismatchCondition.append(aggregate[0]).append(" != ").append(aggregate[1]);
+            }
+
+            final String sql = "SELECT id FROM recipes WHERE " + mismatchCondition +
+                    " ORDER BY id ASC;";
+            final List<Integer> inconsistentIds = new ArrayList<>();
+
+            final SQLiteDatabase database = getWritableDatabase();
+            try {
+                database.beginTransaction();
+                try {
+                    try (final Cursor cursor = rawQuery(database, sql, new String[] {})) {
+                        while (cursor.moveToNext()) {
+                            inconsistentIds.add(cursor.getInt(cursor.getColumnIndexOrThrow("id")));
+                        }
+                    }
+
+                    if (!inconsistentIds.isEmpty()) {
+                        updateRecipeAggregates(
+                                database,
+                                mismatchCondition.toString(),
+                                new Object[] {}
+                        );
+                        Log.w(
+                                "db dml",
+                                "Recomputed the aggregates of " + inconsistentIds.size() +
+                                        " recipes."
+                        );
+                    }
+
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                return Collections.emptyList();
+            }
+
+            return inconsistentIds;
+        }
+    }
+
+    /**
+     * Creates a snapshot of the database, keeping the latest {@link #DEFAULT_SNAPSHOT_COUNT}
+     * snapshots.
+     * @return An {@link Optional} instance that wraps the snapshot file.
+     * @see #createSnapshot(int)
+     */
+    public Optional<File> createSnapshot() {
+        return createSnapshot(DEFAULT_SNAPSHOT_COUNT);
+    }
+
+    /**
+     * Creates a compacted and consistent snapshot of the database. The snapshot is taken against a
+     * read transaction, so the database can keep being written meanwhile, but recipes committed
+     * after the snapshot started won't be part of it.
+     * @param keptSnapshotCount Maximum amount of snapshots kept after creating this one. Older
+     * snapshots are deleted.
+     * @return An {@link Optional} instance that wraps the snapshot file, which is empty if the
+     * snapshot couldn't be created.
+     * @see #restoreSnapshot(File)
+     */
+    public Optional<File> createSnapshot(int keptSnapshotCount) {
+        try (final DatabaseMetrics.Scope scope = begin("createSnapshot")) {
+            final SQLiteDatabase database = getReadableDatabase();
+            return BiteNoteSQLiteSnapshotHelper.createSnapshot(
+                    mContext,
+                    database,
+                    getDatabaseName(),
+                    keptSnapshotCount
+            );
+        }
+    }
+
+    /**
+     * Gets the snapshots of the database.
+     * @return A list of snapshot files, ordered from newest to oldest.
+     */
+    public List<File> getSnapshots() {
+        return Collections.unmodifiableList(
+                BiteNoteSQLiteSnapshotHelper.getSnapshots(mContext, getDatabaseName())
+        );
+    }
+
+    /**
+     * Restores the database from a snapshot. The open database is closed and its file is swapped
+     * with a copy of the snapshot, which is opened the next time the database is accessed. Calls
+     * to this helper, and the {@link GroupCommitWriter} of this helper, are paused until the file
+     * is swapped, and the cached rows are dropped afterwards. Writes queued in the writer, or in
+     * the {@link RecipeWriteQueue} that flushes into it, before the snapshot was restored are
+     * dropped, and their futures complete exceptionally. It must not be called from an operation
+     * of the writer.
+     * @param snapshotFile Snapshot file, obtained from {@link #getSnapshots()}.
+     * @return {@code true} if the snapshot was restored. If it's {@code false}, the old database
+     * is kept.
+     */
+    public boolean restoreSnapshot(@NonNull File snapshotFile) {
+        /// waits for the calls in progress, if any, and must be taken before the read lock
+        mFileLock.writeLock().lock();
+        try (final DatabaseMetrics.Scope scope = begin("restoreSnapshot")) {
+            close();
+
+            final boolean isRestored = BiteNoteSQLiteSnapshotHelper.restoreSnapshot(
+                    mContext,
+                    getDatabaseName(),
+                    snapshotFile,
+                    DATABASE_VERSION
+            );
+            if (!isRestored) return false;
+
+            /// queued writes of the old file are dropped, and so are the reads that were cached
+            mRestoreCount++;
+            mRecipeCache.clear();
+            mIngredients = null;
+            mIngredientCount = null;
+            mIngredientTypes = null;
+            mUtensils = null;
+            mUtensilCount = null;
+            mMeasurementTypes = null;
+            mMeasurementTypeCount = null;
+            mAreSignaturesChecked = false;
+            mAreFingerprintsChecked = false;
+
+            return true;
+        } finally {
+            mFileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets an {@link Ingredient} instance from its table row ID.
+     * @param ingredientId ID of the ingredient.
+     * @return An {@link Optional} instance that wraps the obtained data.
+     */
+    public Optional<Ingredient> getIngredientFromId(int ingredientId) {
+        try (final DatabaseMetrics.Scope scope = begin("getIngredientFromId")) {
+            assert ingredientId != 0 : "Ingredient ID can't be 0.";
+
+            final String sql = "SELECT * FROM ingredients WHERE id = ? ORDER BY id ASC LIMIT 1;";
+            final String[] args = {String.valueOf(ingredientId)};
+            Ingredient ingredient = null;
+
+            /// transaction isn't necessary here
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) {
+                    return Optional.empty();
+                }
+
+                final String fullName = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+                final int measurementId =
+                        cursor.getInt(cursor.getColumnIndexOrThrow("measurement_id"));
+                final boolean canBeMeasuredInUnits = cursor.getInt(
+                        cursor.getColumnIndexOrThrow("can_be_measured_in_units")
+                ) != 0;
+
+                final MeasurementType measurementType =
+                        getMeasurementTypeFromId(measurementId).orElse(
+                                new MeasurementType(MeasurementType.WEIGHT_TYPE_STRING)
+                        );
+
+                ingredient = new Ingredient(fullName, measurementType, canBeMeasuredInUnits);
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
+            }
+
+            return Optional.ofNullable(ingredient);
+        }
+    }
+
+    /**
+     * Gets all the ingredients in the database in ascending order.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * ingredient, and the second element represents the data that the ID references contained in a
+     * {@link Ingredient} instance.
+     */
+    public List<Pair<Integer, Ingredient>> getAllIngredients() {
+        try (final DatabaseMetrics.Scope scope = begin("getAllIngredients")) {
+            if (mIngredients != null) return Collections.unmodifiableList(mIngredients);
+
+            final String sql = "SELECT id FROM ingredients ORDER BY id ASC;";
+            final String[] args = {};
+
+            /// only cache misses reach the database, so they get their own trace section
+            final SQLiteDatabase database = getReadableDatabase();
+            Trace.beginSection("db.loadIngredientsCatalog");
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) return new ArrayList<>();
+
+                final List<Pair<Integer, Ingredient>> ingredientList =
+                        new ArrayList<>(cursor.getCount());
+
+                do {
+                    final int id = cursor.getInt(cursor.getColumnIndex("id"));
+                    final Ingredient ingredientInstance = getIngredientFromId(id).get();
+
+                    ingredientList.add(Pair.create(id, ingredientInstance));
+                } while (cursor.moveToNext());
+
+                mIngredients = ingredientList;
+                return Collections.unmodifiableList(mIngredients);
+            } finally {
+                Trace.endSection();
+            }
+        }
+    }
+
+    /**
+     * Gets all ingredients in the database, except the ones specified by the caller.
+     * @param except {@link Recipe} that contains the ingredients that are going to be ignored.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * ingredient, and the second element represents the data that the ID references contained in a
+     * {@link Ingredient} instance.
+     */
+    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(@NonNull Recipe except) {
+        return getAllIngredientsExcept(except.getIngredients().keySet());
+    }
+
+    /**
+     * Gets all ingredients in the database, except the ones specified by the caller.
+     * @param except {@link Map} where the key is an integer ID that represents an ingredients
+     * that will be excluded from the selection (values are ignored).
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * ingredient, and the second element represents the data that the ID references contained in a
+     * {@link Ingredient} instance.
+     */
+    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(
+            @NonNull Map<Integer, ?> except
+    ) {
+        return getAllIngredientsExcept(except.keySet());
+    }
+
+    /**
+     * Gets all ingredients in the database, except the ones specified by the caller.
+     * @param except {@link RecipeQuery} that contains the ingredients that are going to be ignored.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * ingredient, and the second element represents the data that the ID references contained in a
+     * {@link Ingredient} instance.
+     */
+    public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(@NonNull RecipeQuery except) {
+        final Set<Integer> exceptSet = new HashSet<>();
+        for (int id: except.getQueriedIngredients()) {
+            exceptSet.add(id);
+        }
+
+        return getAllIngredientsExcept(exceptSet);
+    }
+
+    /**
+     * Gets all ingredients in the database, except the ones specified by the caller.
      * @param except {@link Set} of integer IDs that represent the ingredients that will be
      * excluded from the selection.
      * @return A list of {@link Pair}s, in which the first element represents the ID of the
@@ -600,16 +1753,18 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * {@link Ingredient} instance.
      */
     public List<Pair<Integer, Ingredient>> getAllIngredientsExcept(@NonNull Set<Integer> except) {
-        final List<Pair<Integer, Ingredient>> filteredList =
-                new ArrayList<>(getAllIngredients().size() - except.size());
+        try (final DatabaseMetrics.Scope scope = begin("getAllIngredientsExcept")) {
+            final List<Pair<Integer, Ingredient>> filteredList =
+                    new ArrayList<>(getAllIngredients().size() - except.size());
 
-        for (Pair<Integer, Ingredient> pair: getAllIngredients()) {
-            if (except.contains(pair.first)) continue;
+            for (Pair<Integer, Ingredient> pair: getAllIngredients()) {
+                if (except.contains(pair.first)) continue;
 
-            filteredList.add(pair);
-        }
+                filteredList.add(pair);
+            }
 
-        return filteredList;
+            return filteredList;
+        }
     }
 
     /**
@@ -625,22 +1780,24 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     getRecipeIngredientsWithProperties(
             @NonNull Recipe recipe
     ) {
-        final List<Pair<Pair<Integer, Ingredient>, Ingredient.InRecipeProperties>> // jeez
-                recipeIngredientsList = new ArrayList<>(recipe.getIngredients().size());
-
-        for (
-                Map.Entry<Integer, Ingredient.InRecipeProperties> entry:
-                recipe.getIngredients().entrySet()
-        ) {
-            final int id = entry.getKey();
-            final Ingredient ingredient = getIngredientFromId(id).get();
-            final Pair<Integer, Ingredient> ingredientPair = Pair.create(id, ingredient);
-            final Ingredient.InRecipeProperties properties = entry.getValue();
+        try (final DatabaseMetrics.Scope scope = begin("getRecipeIngredientsWithProperties")) {
+            final List<Pair<Pair<Integer, Ingredient>, Ingredient.InRecipeProperties>> // jeez
+                    recipeIngredientsList = new ArrayList<>(recipe.getIngredients().size());
+
+            for (
+                    Map.Entry<Integer, Ingredient.InRecipeProperties> entry:
+                    recipe.getIngredients().entrySet()
+            ) {
+                final int id = entry.getKey();
+                final Ingredient ingredient = getIngredientFromId(id).get();
+                final Pair<Integer, Ingredient> ingredientPair = Pair.create(id, ingredient);
+                final Ingredient.InRecipeProperties properties = entry.getValue();
+
+                recipeIngredientsList.add(Pair.create(ingredientPair, properties));
+            }
 
-            recipeIngredientsList.add(Pair.create(ingredientPair, properties));
+            return recipeIngredientsList;
         }
-
-        return recipeIngredientsList;
     }
 
     /**
@@ -654,14 +1811,19 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public List<Pair<Integer, Ingredient>> getQueryIncludedIngredientsWithProperties(
             @NonNull RecipeQuery query
     ) {
-        final List<Pair<Integer, Ingredient>> list =
-                new ArrayList<>(query.getIncludedIngredients().size());
+        try (
+                final DatabaseMetrics.Scope scope =
+                        begin("getQueryIncludedIngredientsWithProperties")
+        ) {
+            final List<Pair<Integer, Ingredient>> list =
+                    new ArrayList<>(query.getIncludedIngredients().size());
 
-        query.getIncludedIngredients().forEach(id ->
-                list.add(Pair.create(id, getIngredientFromId(id).get()))
-        );
+            query.getIncludedIngredients().forEach(id ->
+                    list.add(Pair.create(id, getIngredientFromId(id).get()))
+            );
 
-        return list;
+            return list;
+        }
     }
 
     /**
@@ -675,14 +1837,16 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public List<Pair<Integer, Ingredient>> getQueryBannedIngredientsWithProperties(
             @NonNull RecipeQuery query
     ) {
-        final List<Pair<Integer, Ingredient>> list =
-                new ArrayList<>(query.getBannedIngredients().size());
+        try (final DatabaseMetrics.Scope scope = begin("getQueryBannedIngredientsWithProperties")) {
+            final List<Pair<Integer, Ingredient>> list =
+                    new ArrayList<>(query.getBannedIngredients().size());
 
-        query.getBannedIngredients().forEach(id ->
-                list.add(Pair.create(id, getIngredientFromId(id).get()))
-        );
+            query.getBannedIngredients().forEach(id ->
+                    list.add(Pair.create(id, getIngredientFromId(id).get()))
+            );
 
-        return list;
+            return list;
+        }
     }
 
     /**
@@ -690,57 +1854,337 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @return An integer representing the amount of ingredients in the database.
      */
     public int getIngredientCount() {
-        if (mIngredientCount != null) {
-            return mIngredientCount;
+        try (final DatabaseMetrics.Scope scope = begin("getIngredientCount")) {
+            if (mIngredientCount != null) {
+                return mIngredientCount;
+            }
+
+            final String sql = "SELECT count(*) AS ingredient_count FROM ingredients;";
+            final String[] args = {};
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                cursor.moveToFirst(); // this operation should be guaranteed
+
+                /// shouldn't return -1
+                mIngredientCount = cursor.getInt(cursor.getColumnIndex("ingredient_count"));
+                return mIngredientCount;
+            }
         }
+    }
 
-        final String sql = "SELECT count(*) AS ingredient_count FROM ingredients;";
-        final String[] args = {};
+    /**
+     * Gets an {@link IngredientType} instance from its table row ID.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @return An {@link Optional} instance that wraps the obtained data.
+     */
+    public Optional<IngredientType> getIngredientTypeFromId(int ingredientTypeId) {
+        try (final DatabaseMetrics.Scope scope = begin("getIngredientTypeFromId")) {
+            assert ingredientTypeId != 0 : "Ingredient type ID can't be 0.";
+
+            final String sql =
+                    "SELECT * FROM ingredient_types WHERE id = ? ORDER BY id ASC LIMIT 1;";
+            final String[] args = {String.valueOf(ingredientTypeId)};
+            IngredientType ingredientType = null;
+
+            /// transaction isn't necessary here
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) {
+                    return Optional.empty();
+                }
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args);
-        ) {
-            cursor.moveToFirst(); // this operation should be guaranteed
+                ingredientType = readIngredientTypeRow(cursor);
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
+            }
 
-            /// shouldn't return -1
-            mIngredientCount = cursor.getInt(cursor.getColumnIndex("ingredient_count"));
-            return mIngredientCount;
+            return Optional.ofNullable(ingredientType);
         }
     }
 
     /**
-     * Gets a {@link MeasurementType} instance from its table row ID.
-     * @param measurementTypeId ID of the ingredient.
+     * Gets all the ingredient types and subtypes in the database in ascending order.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the
+     * ingredient type, and the second element represents the data that the ID references contained
+     * in an {@link IngredientType} instance.
+     */
+    public List<Pair<Integer, IngredientType>> getAllIngredientTypes() {
+        try (final DatabaseMetrics.Scope scope = begin("getAllIngredientTypes")) {
+            if (mIngredientTypes != null) return Collections.unmodifiableList(mIngredientTypes);
+
+            final String sql = "SELECT * FROM ingredient_types ORDER BY id ASC;";
+            final String[] args = {};
+
+            final SQLiteDatabase database = getReadableDatabase();
+            Trace.beginSection("db.loadIngredientTypesCatalog");
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                final List<Pair<Integer, IngredientType>> typeList =
+                        new ArrayList<>(cursor.getCount());
+
+                /// the table is small, so every row is read in the same query
+                while (cursor.moveToNext()) {
+                    final int id = cursor.getInt(cursor.getColumnIndexOrThrow("id"));
+
+                    typeList.add(Pair.create(id, readIngredientTypeRow(cursor)));
+                }
+
+                mIngredientTypes = typeList;
+                return Collections.unmodifiableList(mIngredientTypes);
+            } finally {
+                Trace.endSection();
+            }
+        }
+    }
+
+    /**
+     * Reads the ingredient type in the current row of a cursor over the 'ingredient_types' table.
+     * @param cursor {@link Cursor} instance.
+     * @return An {@link IngredientType} instance.
+     * @throws IllegalArgumentException If a column is missing.
+     */
+    private static IngredientType readIngredientTypeRow(@NonNull Cursor cursor) {
+        final int parentIdIndex = cursor.getColumnIndexOrThrow("parent_id");
+
+        return new IngredientType(
+                cursor.getString(cursor.getColumnIndexOrThrow("name")),
+                cursor.isNull(parentIdIndex) ? 0 : cursor.getInt(parentIdIndex),
+                cursor.getInt(cursor.getColumnIndexOrThrow("first_ingredient_id")),
+                cursor.getInt(cursor.getColumnIndexOrThrow("last_ingredient_id"))
+        );
+    }
+
+    /**
+     * Inserts a new dietary profile into the database and returns its ID. The recipes excluded by
+     * the profile are stored in the same transaction.
+     * @param profile {@link DietaryProfile} instance.
+     * @return The ID of the inserted profile, or {@code 0} if it couldn't be inserted.
+     */
+    public int insertDietaryProfile(@NonNull DietaryProfile profile) {
+        try (final DatabaseMetrics.Scope scope = begin("insertDietaryProfile")) {
+            final SQLiteDatabase database = getWritableDatabase();
+            try (
+                    final SQLiteStatement statement = database.compileStatement(
+                            "INSERT INTO dietary_profiles(name) VALUES (?);"
+                    )
+            ) {
+                database.beginTransaction();
+                try {
+                    statement.bindString(1, profile.name);
+                    final int id = (int) executeInsert(statement);
+
+                    insertDietaryProfileBans(database, profile, id);
+
+                    database.setTransactionSuccessful();
+                    return id;
+                } catch (SQLException e) {
+                    Log.e(
+                            "db dml",
+                            Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                    );
+                    return 0;
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates a dietary profile in the database, and recomputes the recipes it excludes.
+     * @param profileId ID of the profile.
+     * @param profile {@link DietaryProfile} instance which holds the new data for the rows.
+     */
+    public void updateDietaryProfile(int profileId, @NonNull DietaryProfile profile) {
+        try (final DatabaseMetrics.Scope scope = begin("updateDietaryProfile")) {
+            assert profileId != 0 : "Dietary profile ID can't be 0.";
+
+            final SQLiteDatabase database = getWritableDatabase();
+            database.beginTransaction();
+            try {
+                execSQL(
+                        database,
+                        "UPDATE dietary_profiles SET name = ? WHERE id = ?;",
+                        new Object[]{profile.name, profileId}
+                );
+                deleteDietaryProfileBans(database, profileId);
+                insertDietaryProfileBans(database, profile, profileId);
+
+                database.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Deletes a dietary profile from the database, along with its bans and exclusions.
+     * @param profileId ID of the profile.
+     */
+    public void deleteDietaryProfile(int profileId) {
+        try (final DatabaseMetrics.Scope scope = begin("deleteDietaryProfile")) {
+            assert profileId != 0 : "Dietary profile ID can't be 0.";
+
+            final SQLiteDatabase database = getWritableDatabase();
+            database.beginTransaction();
+            try {
+                deleteDietaryProfileBans(database, profileId);
+                execSQL(
+                        database,
+                        "DELETE FROM dietary_profiles WHERE id = ?;",
+                        new Object[]{profileId}
+                );
+
+                database.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Gets a {@link DietaryProfile} instance from its table row ID.
+     * @param profileId ID of the profile.
      * @return An {@link Optional} instance that wraps the obtained data.
      */
-    public Optional<MeasurementType> getMeasurementTypeFromId(int measurementTypeId) {
-        assert measurementTypeId != 0 : "Measurement type ID can't be 0.";
+    public Optional<DietaryProfile> getDietaryProfileFromId(int profileId) {
+        try (final DatabaseMetrics.Scope scope = begin("getDietaryProfileFromId")) {
+            assert profileId != 0 : "Dietary profile ID can't be 0.";
+
+            final String[] args = {String.valueOf(profileId)};
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try {
+                final DietaryProfile profile;
+
+                try (
+                        final Cursor cursor = rawQuery(
+                                database,
+                                "SELECT name FROM dietary_profiles WHERE id = ?;",
+                                args
+                        )
+                ) {
+                    if (!cursor.moveToFirst()) {
+                        return Optional.empty();
+                    }
 
-        final String sql = "SELECT * FROM measurement_types WHERE id = ? ORDER BY id ASC LIMIT 1;";
-        final String[] args = {String.valueOf(measurementTypeId)};
-        MeasurementType measurementType = null;
+                    profile = new DietaryProfile(
+                            cursor.getString(cursor.getColumnIndexOrThrow("name"))
+                    );
+                }
 
-        /// transaction isn't necessary here
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) {
+                try (
+                        final Cursor cursor = rawQuery(
+                                database,
+                                "SELECT ingredient_id FROM dietary_profile_ingredients " +
+                                        "WHERE profile_id = ?;",
+                                args
+                        )
+                ) {
+                    while (cursor.moveToNext()) {
+                        profile.banIngredient(cursor.getInt(0));
+                    }
+                }
+
+                try (
+                        final Cursor cursor = rawQuery(
+                                database,
+                                "SELECT ingredient_type_id FROM dietary_profile_ingredient_types " +
+                                        "WHERE profile_id = ?;",
+                                args
+                        )
+                ) {
+                    while (cursor.moveToNext()) {
+                        profile.banIngredientType(cursor.getInt(0));
+                    }
+                }
+
+                return Optional.of(profile);
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
                 return Optional.empty();
             }
+        }
+    }
 
-            final String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+    /**
+     * Gets the IDs and names of all the dietary profiles in the database, in ascending order.
+     * @return A list of {@link Pair}s, in which the first element represents the ID of the profile,
+     * and the second element represents its name.
+     * @implNote Profiles are written by the user, so unlike the immutable tables, the list isn't
+     * cached. Use {@link #getDietaryProfileFromId(int)} to read the bans of a profile.
+     */
+    public List<Pair<Integer, String>> getAllDietaryProfileNames() {
+        try (final DatabaseMetrics.Scope scope = begin("getAllDietaryProfileNames")) {
+            final String sql = "SELECT id, name FROM dietary_profiles ORDER BY id ASC;";
+            final String[] args = {};
+
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                final List<Pair<Integer, String>> profileList =
+                        new ArrayList<>(cursor.getCount());
+
+                while (cursor.moveToNext()) {
+                    profileList.add(Pair.create(
+                            cursor.getInt(cursor.getColumnIndexOrThrow("id")),
+                            cursor.getString(cursor.getColumnIndexOrThrow("name"))
+                    ));
+                }
 
-            measurementType = new MeasurementType(name);
-        } catch (IllegalArgumentException e) {
-            Log.e(
-                    "db dql",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
+                return Collections.unmodifiableList(profileList);
+            }
         }
+    }
+
+    /**
+     * Gets a {@link MeasurementType} instance from its table row ID.
+     * @param measurementTypeId ID of the ingredient.
+     * @return An {@link Optional} instance that wraps the obtained data.
+     */
+    public Optional<MeasurementType> getMeasurementTypeFromId(int measurementTypeId) {
+        try (final DatabaseMetrics.Scope scope = begin("getMeasurementTypeFromId")) {
+            assert measurementTypeId != 0 : "Measurement type ID can't be 0.";
+
+            final String sql =
+                    "SELECT * FROM measurement_types WHERE id = ? ORDER BY id ASC LIMIT 1;";
+            final String[] args = {String.valueOf(measurementTypeId)};
+            MeasurementType measurementType = null;
+
+            /// transaction isn't necessary here
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) {
+                    return Optional.empty();
+                }
 
-        return Optional.ofNullable(measurementType);
+                final String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+
+                measurementType = new MeasurementType(name);
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
+            }
+
+            return Optional.ofNullable(measurementType);
+        }
     }
 
     /**
@@ -750,29 +2194,32 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * contained in a {@link MeasurementType} instance.
      */
     public List<Pair<Integer, MeasurementType>> getAllMeasurementTypes() {
-        if (mMeasurementTypes != null) return mMeasurementTypes;
+        try (final DatabaseMetrics.Scope scope = begin("getAllMeasurementTypes")) {
+            if (mMeasurementTypes != null) return mMeasurementTypes;
 
-        final String sql = "SELECT id FROM measurement_types ORDER BY id ASC;";
-        final String[] args = {};
+            final String sql = "SELECT id FROM measurement_types ORDER BY id ASC;";
+            final String[] args = {};
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) return new ArrayList<>();
+            final SQLiteDatabase database = getReadableDatabase();
+            Trace.beginSection("db.loadMeasurementTypesCatalog");
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) return new ArrayList<>();
 
-            final List<Pair<Integer, MeasurementType>> mTypeList =
-                    new ArrayList<>(cursor.getCount());
+                final List<Pair<Integer, MeasurementType>> mTypeList =
+                        new ArrayList<>(cursor.getCount());
 
-            do {
-                final int id = cursor.getInt(cursor.getColumnIndex("id"));
-                final MeasurementType mTypeInstance = getMeasurementTypeFromId(id).get();
+                do {
+                    final int id = cursor.getInt(cursor.getColumnIndex("id"));
+                    final MeasurementType mTypeInstance = getMeasurementTypeFromId(id).get();
 
-                mTypeList.add(Pair.create(id, mTypeInstance));
-            } while (cursor.moveToNext());
+                    mTypeList.add(Pair.create(id, mTypeInstance));
+                } while (cursor.moveToNext());
 
-            mMeasurementTypes = mTypeList;
-            return Collections.unmodifiableList(mMeasurementTypes);
+                mMeasurementTypes = mTypeList;
+                return Collections.unmodifiableList(mMeasurementTypes);
+            } finally {
+                Trace.endSection();
+            }
         }
     }
 
@@ -781,24 +2228,24 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @return An integer representing the amount of measurement types in the database.
      */
     public int getMeasurementTypeCount() {
-        if (mMeasurementTypeCount != null) {
-            return mMeasurementTypeCount;
-        }
+        try (final DatabaseMetrics.Scope scope = begin("getMeasurementTypeCount")) {
+            if (mMeasurementTypeCount != null) {
+                return mMeasurementTypeCount;
+            }
 
-        final String sql = "SELECT count(*) AS measurement_type_count FROM measurement_types;";
-        final String[] args = {};
+            final String sql = "SELECT count(*) AS measurement_type_count FROM measurement_types;";
+            final String[] args = {};
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args);
-        ) {
-            cursor.moveToFirst(); // this operation should be guaranteed
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                cursor.moveToFirst(); // this operation should be guaranteed
 
-            /// shouldn't return -1
-            mMeasurementTypeCount = cursor.getInt(
-                    cursor.getColumnIndex("measurement_type_count")
-            );
-            return mMeasurementTypeCount;
+                /// shouldn't return -1
+                mMeasurementTypeCount = cursor.getInt(
+                        cursor.getColumnIndex("measurement_type_count")
+                );
+                return mMeasurementTypeCount;
+            }
         }
     }
 
@@ -808,32 +2255,32 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @return An {@link Optional} instance that wraps the obtained data.
      */
     public Optional<Utensil> getUtensilFromId(int utensilId) {
-        assert utensilId != 0 : "Utensil ID can't be 0.";
+        try (final DatabaseMetrics.Scope scope = begin("getUtensilFromId")) {
+            assert utensilId != 0 : "Utensil ID can't be 0.";
+
+            final String sql = "SELECT * FROM utensils WHERE id = ? ORDER BY id ASC LIMIT 1;";
+            final String[] args = {String.valueOf(utensilId)};
+            Utensil utensil = null;
+
+            /// transaction isn't necessary here
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) {
+                    return Optional.empty();
+                }
 
-        final String sql = "SELECT * FROM utensils WHERE id = ? ORDER BY id ASC LIMIT 1;";
-        final String[] args = {String.valueOf(utensilId)};
-        Utensil utensil = null;
+                String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
 
-        /// transaction isn't necessary here
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) {
-                return Optional.empty();
+                utensil = new Utensil(name);
+            } catch (IllegalArgumentException e) {
+                Log.e(
+                        "db dql",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message")
+                );
             }
 
-            String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-
-            utensil = new Utensil(name);
-        } catch (IllegalArgumentException e) {
-            Log.e(
-                    "db dql",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
+            return Optional.ofNullable(utensil);
         }
-
-        return Optional.ofNullable(utensil);
     }
 
     /**
@@ -843,28 +2290,31 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * {@link Utensil} instance.
      */
     public List<Pair<Integer, Utensil>> getAllUtensils() {
-        if (mUtensils != null) return mUtensils;
+        try (final DatabaseMetrics.Scope scope = begin("getAllUtensils")) {
+            if (mUtensils != null) return mUtensils;
 
-        final String sql = "SELECT id FROM utensils ORDER BY id ASC;";
-        final String[] args = {};
+            final String sql = "SELECT id FROM utensils ORDER BY id ASC;";
+            final String[] args = {};
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args)
-        ) {
-            if (!cursor.moveToFirst()) return new ArrayList<>();
+            final SQLiteDatabase database = getReadableDatabase();
+            Trace.beginSection("db.loadUtensilsCatalog");
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                if (!cursor.moveToFirst()) return new ArrayList<>();
 
-            final List<Pair<Integer, Utensil>> utensilList = new ArrayList<>(cursor.getCount());
+                final List<Pair<Integer, Utensil>> utensilList = new ArrayList<>(cursor.getCount());
 
-            do {
-                final int id = cursor.getInt(cursor.getColumnIndex("id"));
-                final Utensil utensilInstance = getUtensilFromId(id).get();
+                do {
+                    final int id = cursor.getInt(cursor.getColumnIndex("id"));
+                    final Utensil utensilInstance = getUtensilFromId(id).get();
 
-                utensilList.add(Pair.create(id, utensilInstance));
-            } while (cursor.moveToNext());
+                    utensilList.add(Pair.create(id, utensilInstance));
+                } while (cursor.moveToNext());
 
-            mUtensils = utensilList;
-            return Collections.unmodifiableList(mUtensils);
+                mUtensils = utensilList;
+                return Collections.unmodifiableList(mUtensils);
+            } finally {
+                Trace.endSection();
+            }
         }
     }
 
@@ -897,16 +2347,18 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * contained in a {@link Utensil} instance.
      */
     public List<Pair<Integer, Utensil>> getAllUtensilsExcept(@NonNull Set<Integer> except) {
-        final List<Pair<Integer, Utensil>> filteredList =
-                new ArrayList<>(getAllUtensils().size() - except.size());
+        try (final DatabaseMetrics.Scope scope = begin("getAllUtensilsExcept")) {
+            final List<Pair<Integer, Utensil>> filteredList =
+                    new ArrayList<>(getAllUtensils().size() - except.size());
 
-        for (Pair<Integer, Utensil> pair: getAllUtensils()) {
-            if (except.contains(pair.first)) continue;
+            for (Pair<Integer, Utensil> pair: getAllUtensils()) {
+                if (except.contains(pair.first)) continue;
 
-            filteredList.add(pair);
-        }
+                filteredList.add(pair);
+            }
 
-        return filteredList;
+            return filteredList;
+        }
     }
 
     /**
@@ -920,15 +2372,17 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public List<Pair<Integer, Utensil>> getRecipeUtensilsWithProperties(
             @NonNull Recipe recipe
     ) {
-        final Set<Integer> utensilIdSet = recipe.getUtensils();
-        final List<Pair<Integer, Utensil>> list = new ArrayList<>(utensilIdSet.size());
+        try (final DatabaseMetrics.Scope scope = begin("getRecipeUtensilsWithProperties")) {
+            final Set<Integer> utensilIdSet = recipe.getUtensils();
+            final List<Pair<Integer, Utensil>> list = new ArrayList<>(utensilIdSet.size());
 
-        for (Integer id: utensilIdSet) {
-            final Utensil utensilData = getUtensilFromId(id).get();
-            list.add(Pair.create(id, utensilData));
-        }
+            for (Integer id: utensilIdSet) {
+                final Utensil utensilData = getUtensilFromId(id).get();
+                list.add(Pair.create(id, utensilData));
+            }
 
-        return list;
+            return list;
+        }
     }
 
     /**
@@ -942,14 +2396,16 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public List<Pair<Integer, Utensil>> getQueryIncludedUtensilsWithProperties(
             @NonNull RecipeQuery query
     ) {
-        final List<Pair<Integer, Utensil>> list =
-                new ArrayList<>(query.getIncludedUtensils().size());
+        try (final DatabaseMetrics.Scope scope = begin("getQueryIncludedUtensilsWithProperties")) {
+            final List<Pair<Integer, Utensil>> list =
+                    new ArrayList<>(query.getIncludedUtensils().size());
 
-        query.getIncludedUtensils().forEach(id ->
-                list.add(Pair.create(id, getUtensilFromId(id).get()))
-        );
+            query.getIncludedUtensils().forEach(id ->
+                    list.add(Pair.create(id, getUtensilFromId(id).get()))
+            );
 
-        return list;
+            return list;
+        }
     }
 
     /**
@@ -963,14 +2419,16 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     public List<Pair<Integer, Utensil>> getQueryBannedUtensilsWithProperties(
             @NonNull RecipeQuery query
     ) {
-        final List<Pair<Integer, Utensil>> list =
-                new ArrayList<>(query.getBannedUtensils().size());
+        try (final DatabaseMetrics.Scope scope = begin("getQueryBannedUtensilsWithProperties")) {
+            final List<Pair<Integer, Utensil>> list =
+                    new ArrayList<>(query.getBannedUtensils().size());
 
-        query.getBannedUtensils().forEach(id ->
-                list.add(Pair.create(id, getUtensilFromId(id).get()))
-        );
+            query.getBannedUtensils().forEach(id ->
+                    list.add(Pair.create(id, getUtensilFromId(id).get()))
+            );
 
-        return list;
+            return list;
+        }
     }
 
     /**
@@ -978,22 +2436,22 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @return An integer representing the amount of utensils in the database.
      */
     public int getUtensilCount() {
-        if (mUtensilCount != null) {
-            return mUtensilCount;
-        }
-
-        final String sql = "SELECT count(*) AS utensil_count FROM utensils;";
-        final String[] args = {};
+        try (final DatabaseMetrics.Scope scope = begin("getUtensilCount")) {
+            if (mUtensilCount != null) {
+                return mUtensilCount;
+            }
 
-        try (
-                final SQLiteDatabase database = getReadableDatabase();
-                final Cursor cursor = database.rawQuery(sql, args);
-        ) {
-            cursor.moveToFirst(); // this operation should be guaranteed
+            final String sql = "SELECT count(*) AS utensil_count FROM utensils;";
+            final String[] args = {};
 
-            /// shouldn't return -1
-            mUtensilCount = cursor.getInt(cursor.getColumnIndex("utensil_count"));
-            return mUtensilCount;
+            final SQLiteDatabase database = getReadableDatabase();
+            try (final Cursor cursor = rawQuery(database, sql, args)) {
+                cursor.moveToFirst(); // this operation should be guaranteed
+
+                /// shouldn't return -1
+                mUtensilCount = cursor.getInt(cursor.getColumnIndex("utensil_count"));
+                return mUtensilCount;
+            }
         }
     }
 
@@ -1002,6 +2460,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @param writeableDatabase SQLiteDatabase instance.
      * @param recipe Recipe instance.
      * @return The ID of the inserted recipe.
+     * @throws SQLException If a statement fails.
      */
     private int insertInRecipesTable(
             @NonNull SQLiteDatabase writeableDatabase,
@@ -1011,10 +2470,10 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                 "recipes(name, body, budget, diners, creation_date) VALUES (?, ?, ?, ?, ?);";
         final Object[] insertionArgs = {
                 recipe.name,
-                recipe.body,
+                getStoredBody(recipe),
                 recipe.budget,
                 recipe.diners,
-                recipe.creationDate.toString()
+                EpochDays.fromDate(recipe.creationDate)
         };
         // this query string should get the last inserted recipe id
         final String querySql = "SELECT id FROM recipes ORDER BY id DESC LIMIT 1;";
@@ -1022,21 +2481,10 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         int id = 0;
 
         // insert row
-        writeableDatabase.beginTransaction();
-        try {
-            writeableDatabase.execSQL(insertionSql, insertionArgs);
-            writeableDatabase.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
-        } finally {
-            writeableDatabase.endTransaction();
-        }
+        execSQL(writeableDatabase, insertionSql, insertionArgs);
 
         // get id
-        try (final Cursor cursor = writeableDatabase.rawQuery(querySql, queryArgs)) {
+        try (final Cursor cursor = rawQuery(writeableDatabase, querySql, queryArgs)) {
             cursor.moveToFirst(); // this operation should be guaranteed.
 
             id = cursor.getInt(cursor.getColumnIndexOrThrow("id"));
@@ -1055,6 +2503,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @param writeableDatabase {@link SQLiteDatabase} instance.
      * @param recipeInstance {@link Recipe} instance which holds the new data for the row.
      * @param recipeId ID of the recipe.
+     * @throws SQLException If a statement fails.
      */
     private void updateRecipeRow(
             @NonNull SQLiteDatabase writeableDatabase,
@@ -1070,24 +2519,13 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         };
         final Object[][] updateRecipeArgs = {
                 {recipeInstance.name, recipeId},
-                {recipeInstance.body, recipeId},
+                {getStoredBody(recipeInstance), recipeId},
                 {recipeInstance.budget, recipeId},
                 {recipeInstance.diners, recipeId},
                 // creation_date is not updated
         };
-        writeableDatabase.beginTransaction();
-        try {
-            for (int i = 0; i < updateRecipeStatements.length; i++) {
-                writeableDatabase.execSQL(updateRecipeStatements[i], updateRecipeArgs[i]);
-            }
-            writeableDatabase.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
-            );
-        } finally {
-            writeableDatabase.endTransaction();
+        for (int i = 0; i < updateRecipeStatements.length; i++) {
+            execSQL(writeableDatabase, updateRecipeStatements[i], updateRecipeArgs[i]);
         }
     }
 
@@ -1096,6 +2534,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @param writeableDatabase Writeable SQLiteDatabase instance.
      * @param recipeInstance Instance of the recipe.
      * @param recipeId The recipe ID in the SQLite database.
+     * @throws SQLException If a statement fails.
      */
     private void insertInRecipeIngredientsTable(
             @NonNull SQLiteDatabase writeableDatabase,
@@ -1105,28 +2544,16 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         final String sql = "INSERT INTO recipe_ingredients" +
                 "(recipe_id, ingredient_id, amount, is_measured_in_units) VALUES (?, ?, ?, ?);";
 
-        writeableDatabase.beginTransaction();
-        try {
-            recipeInstance.getIngredients().forEach((ingredientId, properties) -> {
-                final Object[] args = {
-                        recipeId,
-                        ingredientId,
-                        properties.amount,
-                        properties.isMeasuredInUnits
-                };
-
-                writeableDatabase.execSQL(sql, args);
-            });
+        recipeInstance.forEachIngredient((ingredientId, properties) -> {
+            final Object[] args = {
+                    recipeId,
+                    ingredientId,
+                    properties.amount,
+                    properties.isMeasuredInUnits
+            };
 
-            writeableDatabase.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
-        } finally {
-            writeableDatabase.endTransaction();
-        }
+            execSQL(writeableDatabase, sql, args);
+        });
     }
 
     /**
@@ -1134,6 +2561,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * @param writeableDatabase Writeable SQLiteDatabase instance.
      * @param recipeInstance Instance of the recipe.
      * @param recipeId The recipe ID in the SQLite database.
+     * @throws SQLException If a statement fails.
      */
     private void insertInRecipeUtensilsTable(
             @NonNull SQLiteDatabase writeableDatabase,
@@ -1142,25 +2570,522 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
     ) {
         final String sql = "INSERT INTO recipe_utensils(recipe_id, utensil_id) VALUES (?, ?);";
 
-        writeableDatabase.beginTransaction();
-        try {
-            recipeInstance.getUtensils().forEach((utensilId) -> {
-                final Object[] args = {
-                        recipeId,
-                        utensilId
-                };
+        recipeInstance.forEachUtensil((utensilId) -> {
+            final Object[] args = {
+                    recipeId,
+                    utensilId
+            };
 
-                writeableDatabase.execSQL(sql, args);
-            });
+            execSQL(writeableDatabase, sql, args);
+        });
+    }
 
-            writeableDatabase.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message")
-            );
-        } finally {
-            writeableDatabase.endTransaction();
+    /**
+     * Inserts the bans of a dietary profile, and the recipes they exclude.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param profile {@link DietaryProfile} instance.
+     * @param profileId ID of the profile.
+     * @throws SQLException If a statement fails.
+     */
+    private void insertDietaryProfileBans(
+            @NonNull SQLiteDatabase database,
+            @NonNull DietaryProfile profile,
+            int profileId
+    ) {
+        final String ingredientSql = "INSERT INTO " +
+                "dietary_profile_ingredients(profile_id, ingredient_id) VALUES (?, ?);";
+        final String typeSql = "INSERT INTO " +
+                "dietary_profile_ingredient_types(profile_id, ingredient_type_id) VALUES (?, ?);";
+
+        profile.forEachBannedIngredient(ingredientId ->
+                execSQL(database, ingredientSql, new Object[]{profileId, ingredientId})
+        );
+        profile.forEachBannedIngredientType(ingredientTypeId ->
+                execSQL(database, typeSql, new Object[]{profileId, ingredientTypeId})
+        );
+
+        execSQL(
+                database,
+                createExclusionSql(
+                        "profile_ingredients.profile_id = ?1",
+                        "profile_types.profile_id = ?1"
+                ),
+                new Object[]{profileId}
+        );
+    }
+
+    /**
+     * Deletes the bans of a dietary profile, and the recipes they exclude.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param profileId ID of the profile.
+     * @throws SQLException If a statement fails.
+     */
+    private void deleteDietaryProfileBans(@NonNull SQLiteDatabase database, int profileId) {
+        final Object[] args = {profileId};
+
+        execSQL(database, "DELETE FROM dietary_profile_ingredients WHERE profile_id = ?;", args);
+        execSQL(
+                database,
+                "DELETE FROM dietary_profile_ingredient_types WHERE profile_id = ?;",
+                args
+        );
+        execSQL(
+                database,
+                "DELETE FROM dietary_profile_excluded_recipes WHERE profile_id = ?;",
+                args
+        );
+    }
+
+    /**
+     * Inserts the exclusions of the recipes that match a condition, for every dietary profile.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipeCondition SQL condition over the 'recipe_ingredients' table that selects the
+     * recipes.
+     * @param args Arguments of the condition.
+     * @throws SQLException If a statement fails.
+     */
+    private void insertRecipeExclusions(
+            @NonNull SQLiteDatabase database,
+            @NonNull String recipeCondition,
+            @NonNull Object[] args
+    ) {
+        execSQL(database, createExclusionSql(recipeCondition, recipeCondition), args);
+    }
+
+    /**
+     * Creates the statement that stores the recipes excluded by dietary profiles. A recipe is
+     * excluded when any of its ingredients is banned, either on its own or through its type.
+     * @param ingredientCondition Condition that narrows the ingredient bans, over the
+     * 'profile_ingredients' and 'recipe_ingredients' tables.
+     * @param typeCondition Condition that narrows the ingredient type bans, over the
+     * 'profile_types' and 'recipe_ingredients' tables.
+     * @return A {@link String} with the SQL statement.
+     */
+    private static String createExclusionSql(
+            @NonNull String ingredientCondition,
+            @NonNull String typeCondition
+    ) {
+        return "INSERT OR IGNORE INTO dietary_profile_excluded_recipes(profile_id, recipe_id) " +
+                "SELECT profile_ingredients.profile_id, recipe_ingredients.recipe_id " +
+                "FROM recipe_ingredients " +
+                "JOIN dietary_profile_ingredients AS profile_ingredients " +
+                "ON profile_ingredients.ingredient_id = recipe_ingredients.ingredient_id " +
+                "WHERE " + ingredientCondition + " " +
+                "UNION " +
+                "SELECT profile_types.profile_id, recipe_ingredients.recipe_id " +
+                "FROM dietary_profile_ingredient_types AS profile_types " +
+                "JOIN ingredient_types ON ingredient_types.id = profile_types.ingredient_type_id " +
+                "JOIN recipe_ingredients ON recipe_ingredients.ingredient_id " +
+                "BETWEEN ingredient_types.first_ingredient_id " +
+                "AND ingredient_types.last_ingredient_id " +
+                "WHERE " + typeCondition + ";";
+    }
+
+    /**
+     * Adds the ingredient pairs of the recipes that match a condition to the co-occurrence counts
+     * of the 'ingredient_pairs' table, or takes them out of it. Only the pairs of those recipes are
+     * written, and pairs that no recipe uses anymore are deleted.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipeCondition SQL condition over the 'recipe_ingredients' table that selects the
+     * recipes.
+     * @param args Arguments of the condition.
+     * @param delta {@code 1} to add the recipes, or {@code -1} to take them out, which must be
+     * done before their ingredient rows are deleted.
+     * @throws SQLException If a statement fails.
+     */
+    private void updateIngredientPairs(
+            @NonNull SQLiteDatabase database,
+            @NonNull String recipeCondition,
+            @NonNull Object[] args,
+            int delta
+    ) {
+        assert delta == 1 || delta == -1 : "Delta must be 1 or -1.";
+
+        /// SQLite 3.9 has no upsert, so counts are replaced by their sum with the stored ones
+        final String updateSql = "INSERT OR REPLACE INTO ingredient_pairs" +
+                "(ingredient_id, other_ingredient_id, recipe_count) " +
+                "SELECT recipe_ingredients.ingredient_id, others.ingredient_id, " +
+                "count(*) * " + delta + " + ifnull((SELECT recipe_count FROM ingredient_pairs " +
+                "WHERE ingredient_pairs.ingredient_id = recipe_ingredients.ingredient_id " +
+                "AND ingredient_pairs.other_ingredient_id = others.ingredient_id), 0) " +
+                "FROM recipe_ingredients " +
+                "JOIN recipe_ingredients AS others " +
+                "ON others.recipe_id = recipe_ingredients.recipe_id " +
+                "AND others.ingredient_id != recipe_ingredients.ingredient_id " +
+                "WHERE " + recipeCondition + " " +
+                "GROUP BY recipe_ingredients.ingredient_id, others.ingredient_id;";
+        execSQL(database, updateSql, args);
+
+        if (delta > 0) return;
+
+        final String deleteSql = "DELETE FROM ingredient_pairs WHERE recipe_count <= 0 " +
+                "AND ingredient_id IN (SELECT recipe_ingredients.ingredient_id " +
+                "FROM recipe_ingredients WHERE " + recipeCondition + ");";
+        execSQL(database, deleteSql, args);
+    }
+
+    /**
+     * Recomputes the aggregate columns of the recipes that match a condition from their stored
+     * ingredients and utensils, so it must be called after their rows are written.
+     * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+     * @param recipeCondition SQL condition over the 'recipes' table that selects the recipes.
+     * @param args Arguments of the condition.
+     * @throws SQLException If a statement fails.
+     * @see #RECIPE_AGGREGATES
+     */
+    private void updateRecipeAggregates(
+            @NonNull SQLiteDatabase database,
+            @NonNull String recipeCondition,
+            @NonNull Object[] args
+    ) {
+        final StringBuilder sql = new StringBuilder("UPDATE recipes SET ");
+        for (int i = 0; i < RECIPE_AGGREGATES.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(RECIPE_AGGREGATES[i][0]).append(" = ").append(RECIPE_AGGREGATES[i][1]);
+        }
+        sql.append(" WHERE ").append(recipeCondition).append(';');
+
+        execSQL(database, sql.toString(), args);
+    }
+
+    /**
+     * Gets the IDs of the ingredients of a recipe, as stored in the 'recipe_ingredients' table.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param recipeId ID of the recipe.
+     * @return A {@link Set} of integer IDs.
+     */
+    private Set<Integer> getRecipeIngredientIds(@NonNull SQLiteDatabase database, int recipeId) {
+        final String sql = "SELECT ingredient_id FROM recipe_ingredients WHERE recipe_id = ?;";
+        final String[] args = {String.valueOf(recipeId)};
+        final Set<Integer> ingredientIds = new HashSet<>();
+
+        try (final Cursor cursor = rawQuery(database, sql, args)) {
+            while (cursor.moveToNext()) {
+                ingredientIds.add(cursor.getInt(cursor.getColumnIndexOrThrow("ingredient_id")));
+            }
+        }
+
+        return ingredientIds;
+    }
+
+    /**
+     * Inserts a recipe into the similarity index. Recipes without ingredients nor utensils only
+     * get a signature, since they aren't similar to any recipe.
+     * @param database Writable {@link SQLiteDatabase} instance.
+     * @param recipeId ID of the recipe.
+     * @param signature {@link MinHashSignature} of the recipe.
+     * @throws SQLException If a statement fails.
+     */
+    private void insertRecipeSignature(
+            @NonNull SQLiteDatabase database,
+            int recipeId,
+            @NonNull MinHashSignature signature
+    ) {
+        final String signatureSql =
+                "INSERT INTO recipe_signatures(recipe_id, signature) VALUES (?, ?);";
+
+        execSQL(database, signatureSql, new Object[]{recipeId, signature.toBytes()});
+        if (signature.isEmpty()) return;
+
+        final Object[] bucketArgs = new Object[MinHashSignature.BAND_COUNT * 3];
+        for (int band = 0; band < MinHashSignature.BAND_COUNT; band++) {
+            bucketArgs[band * 3] = band;
+            bucketArgs[band * 3 + 1] = signature.getBucket(band);
+            bucketArgs[band * 3 + 2] = recipeId;
+        }
+        execSQL(database, createSignatureBucketsSql(), bucketArgs);
+    }
+
+    /**
+     * Deletes a recipe from the similarity index.
+     * @param database Writable {@link SQLiteDatabase} instance.
+     * @param recipeId ID of the recipe.
+     * @throws SQLException If a statement fails.
+     */
+    private void deleteRecipeSignature(@NonNull SQLiteDatabase database, int recipeId) {
+        final Object[] args = {recipeId};
+
+        execSQL(database, "DELETE FROM recipe_signatures WHERE recipe_id = ?;", args);
+        execSQL(database, "DELETE FROM recipe_signature_buckets WHERE recipe_id = ?;", args);
+    }
+
+    /**
+     * Creates the statement that inserts every bucket of a signature in a single row insertion.
+     * The band, bucket and recipe ID of each row are bound in that order.
+     * @return A {@link String} with the SQL statement.
+     * @see #bindSignatureBuckets(SQLiteStatement, long, MinHashSignature)
+     */
+    private static String createSignatureBucketsSql() {
+        final StringBuilder sql = new StringBuilder()
+                .append("INSERT INTO recipe_signature_buckets(band, bucket, recipe_id) VALUES ");
+
+        for (int band = 0; band < MinHashSignature.BAND_COUNT; band++) {
+            sql.append(band == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+
+        return sql.append(';').toString();
+    }
+
+    /**
+     * Binds the buckets of a signature to a statement created by
+     * {@link #createSignatureBucketsSql()}.
+     * @param statement Compiled {@link SQLiteStatement} instance.
+     * @param recipeId ID of the recipe.
+     * @param signature Non-empty {@link MinHashSignature} of the recipe.
+     */
+    private static void bindSignatureBuckets(
+            @NonNull SQLiteStatement statement,
+            long recipeId,
+            @NonNull MinHashSignature signature
+    ) {
+        for (int band = 0; band < MinHashSignature.BAND_COUNT; band++) {
+            statement.bindLong(band * 3 + 1, band);
+            statement.bindLong(band * 3 + 2, signature.getBucket(band));
+            statement.bindLong(band * 3 + 3, recipeId);
+        }
+    }
+
+    /**
+     * Adds the recipes that are missing from the similarity index, which were written before the
+     * index existed. The check only runs once per helper instance.
+     */
+    private void indexMissingRecipeSignatures() {
+        if (mAreSignaturesChecked) return;
+
+        synchronized (this) {
+            if (mAreSignaturesChecked) return;
+
+            final String idsSql = "SELECT id FROM recipes " +
+                    "WHERE id NOT IN (SELECT recipe_id FROM recipe_signatures) " +
+                    "ORDER BY id ASC LIMIT " + SIGNATURE_INDEX_PAGE_SIZE + ";";
+            final String ingredientsSql = "SELECT recipe_id, ingredient_id " +
+                    "FROM recipe_ingredients WHERE recipe_id BETWEEN ? AND ?;";
+            final String utensilsSql = "SELECT recipe_id, utensil_id " +
+                    "FROM recipe_utensils WHERE recipe_id BETWEEN ? AND ?;";
+
+            final SQLiteDatabase database = getWritableDatabase();
+            try {
+                while (true) {
+                    final LinkedHashMap<Integer, MinHashSignature.Builder> page =
+                            new LinkedHashMap<>();
+                    try (final Cursor cursor = rawQuery(database, idsSql, new String[] {})) {
+                        while (cursor.moveToNext()) {
+                            page.put(cursor.getInt(0), new MinHashSignature.Builder());
+                        }
+                    }
+                    if (page.isEmpty()) break;
+
+                    /// ids are ascending, so the range is bounded by the first and last ones
+                    int lastId = 0;
+                    for (int id: page.keySet()) lastId = id;
+                    final String[] args = {
+                            String.valueOf(page.keySet().iterator().next()),
+                            String.valueOf(lastId)
+                    };
+
+                    /// recipes already indexed may fall inside the range, so they are skipped
+                    try (final Cursor cursor = rawQuery(database, ingredientsSql, args)) {
+                        while (cursor.moveToNext()) {
+                            final MinHashSignature.Builder builder = page.get(cursor.getInt(0));
+                            if (builder != null) builder.addIngredient(cursor.getInt(1));
+                        }
+                    }
+                    try (final Cursor cursor = rawQuery(database, utensilsSql, args)) {
+                        while (cursor.moveToNext()) {
+                            final MinHashSignature.Builder builder = page.get(cursor.getInt(0));
+                            if (builder != null) builder.addUtensil(cursor.getInt(1));
+                        }
+                    }
+
+                    database.beginTransaction();
+                    try {
+                        page.forEach((id, builder) ->
+                                insertRecipeSignature(database, id, builder.build())
+                        );
+
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                }
+
+                mAreSignaturesChecked = true;
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+            }
+        }
+    }
+
+    /**
+     * Inserts the fingerprint of a recipe, along with its lookup keys.
+     * @param database Writable {@link SQLiteDatabase} instance.
+     * @param recipeId ID of the recipe.
+     * @param fingerprint {@link RecipeFingerprint} of the recipe.
+     * @throws SQLException If a statement fails.
+     */
+    private void insertRecipeFingerprint(
+            @NonNull SQLiteDatabase database,
+            int recipeId,
+            @NonNull RecipeFingerprint fingerprint
+    ) {
+        final String fingerprintSql = "INSERT INTO " +
+                "recipe_fingerprints(recipe_id, content_hash, ingredient_set_hash) " +
+                "VALUES (?, ?, ?);";
+        final Object[] fingerprintArgs = {
+                recipeId,
+                fingerprint.contentHash,
+                fingerprint.ingredientSetHash
+        };
+        final Object[] keyArgs = new Object[RecipeFingerprint.BLOCK_COUNT * 2];
+        for (int block = 0; block < RecipeFingerprint.BLOCK_COUNT; block++) {
+            keyArgs[block * 2] = fingerprint.getLookupKey(block);
+            keyArgs[block * 2 + 1] = recipeId;
+        }
+
+        execSQL(database, fingerprintSql, fingerprintArgs);
+        execSQL(database, createFingerprintKeysSql(), keyArgs);
+    }
+
+    /**
+     * Deletes the fingerprint of a recipe, along with its lookup keys.
+     * @param database Writable {@link SQLiteDatabase} instance.
+     * @param recipeId ID of the recipe.
+     * @throws SQLException If a statement fails.
+     */
+    private void deleteRecipeFingerprint(@NonNull SQLiteDatabase database, int recipeId) {
+        final Object[] args = {recipeId};
+
+        execSQL(database, "DELETE FROM recipe_fingerprints WHERE recipe_id = ?;", args);
+        execSQL(database, "DELETE FROM recipe_fingerprint_keys WHERE recipe_id = ?;", args);
+    }
+
+    /**
+     * Creates the statement that inserts every lookup key of a fingerprint in a single row
+     * insertion. The key and recipe ID of each row are bound in that order.
+     * @return A {@link String} with the SQL statement.
+     * @see #bindFingerprintKeys(SQLiteStatement, long, RecipeFingerprint)
+     */
+    private static String createFingerprintKeysSql() {
+        final StringBuilder sql = new StringBuilder()
+                .append("INSERT INTO recipe_fingerprint_keys(lookup_key, recipe_id) VALUES ");
+
+        for (int block = 0; block < RecipeFingerprint.BLOCK_COUNT; block++) {
+            sql.append(block == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+
+        return sql.append(';').toString();
+    }
+
+    /**
+     * Binds the lookup keys of a fingerprint to a statement created by
+     * {@link #createFingerprintKeysSql()}.
+     * @param statement Compiled {@link SQLiteStatement} instance.
+     * @param recipeId ID of the recipe.
+     * @param fingerprint {@link RecipeFingerprint} of the recipe.
+     */
+    private static void bindFingerprintKeys(
+            @NonNull SQLiteStatement statement,
+            long recipeId,
+            @NonNull RecipeFingerprint fingerprint
+    ) {
+        for (int block = 0; block < RecipeFingerprint.BLOCK_COUNT; block++) {
+            statement.bindLong(block * 2 + 1, fingerprint.getLookupKey(block));
+            statement.bindLong(block * 2 + 2, recipeId);
+        }
+    }
+
+    /**
+     * Finds a near-duplicate of a fingerprint among the recipes that share any of its lookup keys.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param fingerprint {@link RecipeFingerprint} instance.
+     * @return The lowest ID of the near-duplicates, or {@code 0} if there's none.
+     */
+    private int findDuplicateRecipe(
+            @NonNull SQLiteDatabase database,
+            @NonNull RecipeFingerprint fingerprint
+    ) {
+        final StringBuilder sql = new StringBuilder()
+                .append("SELECT DISTINCT recipe_fingerprints.* FROM recipe_fingerprint_keys ")
+                .append("JOIN recipe_fingerprints ")
+                .append("ON recipe_fingerprints.recipe_id = recipe_fingerprint_keys.recipe_id ")
+                .append("WHERE recipe_fingerprint_keys.lookup_key IN (");
+        final String[] args = new String[RecipeFingerprint.BLOCK_COUNT];
+        for (int block = 0; block < RecipeFingerprint.BLOCK_COUNT; block++) {
+            sql.append(block == 0 ? "?" : ", ?");
+            args[block] = String.valueOf(fingerprint.getLookupKey(block));
+        }
+        sql.append(") ORDER BY recipe_fingerprints.recipe_id ASC;");
+
+        try (final Cursor cursor = rawQuery(database, sql.toString(), args)) {
+            while (cursor.moveToNext()) {
+                final RecipeFingerprint candidate = new RecipeFingerprint(
+                        cursor.getLong(cursor.getColumnIndexOrThrow("content_hash")),
+                        cursor.getLong(cursor.getColumnIndexOrThrow("ingredient_set_hash"))
+                );
+
+                if (fingerprint.isDuplicateOf(candidate)) {
+                    return cursor.getInt(cursor.getColumnIndexOrThrow("recipe_id"));
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Adds the fingerprints of the recipes that are missing them, which were written before
+     * fingerprints existed. The check only runs once per helper instance.
+     */
+    private void indexMissingRecipeFingerprints() {
+        if (mAreFingerprintsChecked) return;
+
+        synchronized (this) {
+            if (mAreFingerprintsChecked) return;
+
+            final String idsSql = "SELECT id FROM recipes " +
+                    "WHERE id NOT IN (SELECT recipe_id FROM recipe_fingerprints) " +
+                    "ORDER BY id ASC LIMIT " + SIGNATURE_INDEX_PAGE_SIZE + ";";
+
+            try {
+                final SQLiteDatabase database = getWritableDatabase();
+                while (true) {
+                    final List<Integer> ids = new ArrayList<>(SIGNATURE_INDEX_PAGE_SIZE);
+                    try (final Cursor cursor = rawQuery(database, idsSql, new String[] {})) {
+                        while (cursor.moveToNext()) ids.add(cursor.getInt(0));
+                    }
+                    if (ids.isEmpty()) break;
+
+                    /// fingerprints need the decoded bodies, so whole recipes are read
+                    final LinkedHashMap<Integer, RecipeFingerprint> page = new LinkedHashMap<>();
+                    for (int id: ids) {
+                        getRecipeFromId(id).ifPresent(recipe ->
+                                page.put(id, RecipeFingerprint.of(recipe))
+                        );
+                    }
+                    if (page.isEmpty()) break;
+
+                    database.beginTransaction();
+                    try {
+                        page.forEach((id, fingerprint) ->
+                                insertRecipeFingerprint(database, id, fingerprint)
+                        );
+
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                }
+
+                mAreFingerprintsChecked = true;
+            } catch (SQLException e) {
+                Log.e(
+                        "db dml",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+            }
         }
     }
 
@@ -1178,21 +3103,10 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         final String[] args = {String.valueOf(recipeId)};
         Recipe recipe = null;
 
-        try (final Cursor cursor = database.rawQuery(sql, args)) {
+        try (final Cursor cursor = rawQuery(database, sql, args)) {
             if (!cursor.moveToFirst()) return Optional.empty();
 
-            // get row data (with empty sets and maps)
-            final String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-            final String body = cursor.getString(cursor.getColumnIndexOrThrow("body"));
-            final HashMap<Integer, Ingredient.InRecipeProperties> ingredients = new HashMap<>();
-            final HashSet<Integer> utensils = new HashSet<>();
-            final int budget = cursor.getInt(cursor.getColumnIndexOrThrow("budget"));
-            final int diners = cursor.getInt(cursor.getColumnIndexOrThrow("diners"));
-            final Date creationDate = Date.valueOf(
-                    cursor.getString(cursor.getColumnIndexOrThrow("creation_date"))
-            );
-
-            recipe = new Recipe(name, body, ingredients, utensils, creationDate, budget, diners);
+            recipe = readRecipeRow(cursor);
         } catch (IllegalArgumentException e) {
             Log.e(
                     "db dql",
@@ -1203,6 +3117,100 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         return Optional.ofNullable(recipe);
     }
 
+    /**
+     * Reads the 'recipes' table row the cursor is positioned at.
+     * @param cursor {@link Cursor} instance, which must contain every column of the table.
+     * @return A {@link Recipe} instance with empty ingredients and utensils.
+     * @throws IllegalArgumentException If a column is missing.
+     */
+    private static Recipe readRecipeRow(@NonNull Cursor cursor) {
+        final Recipe recipe = new Recipe();
+        recipe.name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+        recipe.budget = cursor.getInt(cursor.getColumnIndexOrThrow("budget"));
+        recipe.diners = cursor.getInt(cursor.getColumnIndexOrThrow("diners"));
+        recipe.creationDate = EpochDays.toDate(
+                cursor.getLong(cursor.getColumnIndexOrThrow("creation_date"))
+        );
+
+        /// compressed bodies are only decompressed once they are accessed
+        final int bodyIndex = cursor.getColumnIndexOrThrow("body");
+        if (cursor.getType(bodyIndex) == Cursor.FIELD_TYPE_BLOB) {
+            recipe.setCompressedBody(cursor.getBlob(bodyIndex));
+        } else {
+            recipe.setBody(cursor.getString(bodyIndex));
+        }
+
+        return recipe;
+    }
+
+    /**
+     * Gets the value stored in the 'body' column for a recipe.
+     * @param recipe {@link Recipe} instance.
+     * @return The compressed body as a {@code byte[]} if the body is long enough to be compressed,
+     * or the body text as a {@link String} otherwise.
+     * @see RecipeBodyCodec
+     */
+    private static Object getStoredBody(@NonNull Recipe recipe) {
+        /// bodies that weren't modified since they were read don't need to be compressed again
+        if (recipe.getCompressedBody() != null) return recipe.getCompressedBody();
+
+        final byte[] compressedBody = RecipeBodyCodec.encode(recipe.getBody());
+        return compressedBody != null ? compressedBody : recipe.getBody();
+    }
+
+    /**
+     * Inserts the ingredients and utensils of a page of recipes into their {@link Recipe}
+     * instances. Rows are fetched by recipe ID range, so a page only costs two queries.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param page Non-empty map of recipes in ascending ID order, where the key is the ID of the
+     * recipe.
+     */
+    private void populatePageRecipeInstances(
+            @NonNull SQLiteDatabase database,
+            @NonNull LinkedHashMap<Integer, Recipe> page
+    ) {
+        final String ingredientsSql =
+                "SELECT * FROM recipe_ingredients WHERE recipe_id BETWEEN ? AND ?;";
+        final String utensilsSql =
+                "SELECT * FROM recipe_utensils WHERE recipe_id BETWEEN ? AND ?;";
+        int firstId = Integer.MAX_VALUE;
+        int lastId = Integer.MIN_VALUE;
+        for (int id: page.keySet()) {
+            firstId = Math.min(firstId, id);
+            lastId = Math.max(lastId, id);
+        }
+        final String[] args = {String.valueOf(firstId), String.valueOf(lastId)};
+
+        /// recipes filtered out by a query may fall inside the range, so they are skipped
+        try (final Cursor cursor = rawQuery(database, ingredientsSql, args)) {
+            while (cursor.moveToNext()) {
+                final Recipe recipe =
+                        page.get(cursor.getInt(cursor.getColumnIndexOrThrow("recipe_id")));
+                if (recipe == null) continue;
+
+                recipe.putIngredient(
+                        cursor.getInt(cursor.getColumnIndexOrThrow("ingredient_id")),
+                        new Ingredient.InRecipeProperties(
+                                cursor.getInt(cursor.getColumnIndexOrThrow("amount")),
+                                cursor.getInt(
+                                        cursor.getColumnIndexOrThrow("is_measured_in_units")
+                                ) != 0
+                        )
+                );
+            }
+        }
+
+        try (final Cursor cursor = rawQuery(database, utensilsSql, args)) {
+            while (cursor.moveToNext()) {
+                final Recipe recipe =
+                        page.get(cursor.getInt(cursor.getColumnIndexOrThrow("recipe_id")));
+                if (recipe == null) continue;
+
+                recipe.addUtensil(cursor.getInt(cursor.getColumnIndexOrThrow("utensil_id")));
+            }
+        }
+    }
+
     /**
      * Inserts elements from the 'recipe_ingredients' table into the {@link Recipe#mIngredients}
      * field of a {@link Recipe} instance.
@@ -1219,7 +3227,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                 "ORDER BY recipe_id ASC;";
         final String[] args = {String.valueOf(recipeId)};
 
-        try (final Cursor cursor = database.rawQuery(sql, args)) {
+        try (final Cursor cursor = rawQuery(database, sql, args)) {
             if (!cursor.moveToFirst()) return;
 
             do {
@@ -1251,6 +3259,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * ID.
      * @param database {@link SQLiteDatabase} instance.
      * @param recipeId ID of the recipe.
+     * @throws SQLException If a statement fails.
      */
     private void deleteRecipeIngredientRows(
             @NonNull SQLiteDatabase database,
@@ -1259,19 +3268,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         final String sql = "DELETE FROM recipe_ingredients WHERE recipe_id = ?;";
         final Object[] args = {recipeId};
 
-        database.beginTransaction();
-        try {
-            database.execSQL(sql, args);
-
-            database.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
-            );
-        } finally {
-            database.endTransaction();
-        }
+        execSQL(database, sql, args);
     }
 
     /**
@@ -1290,7 +3287,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
                 "SELECT * FROM recipe_utensils WHERE recipe_id = ? ORDER BY recipe_id ASC;";
         final String[] args = {String.valueOf(recipeId)};
 
-        try (final Cursor cursor = database.rawQuery(sql, args)) {
+        try (final Cursor cursor = rawQuery(database, sql, args)) {
             if (!cursor.moveToFirst()) return;
 
             do {
@@ -1310,6 +3307,7 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
      * Deletes all rows from the 'recipe_utensils' table that reference a specified recipe row ID.
      * @param database {@link SQLiteDatabase} instance.
      * @param recipeId ID of the recipe.
+     * @throws SQLException If a statement fails.
      */
     private void deleteRecipeUtensilRows(
             @NonNull SQLiteDatabase database,
@@ -1318,18 +3316,91 @@ public final class BiteNoteSQLiteHelper extends SQLiteOpenHelper {
         final String sql = "DELETE FROM recipe_utensils WHERE recipe_id = ?;";
         final Object[] args = {recipeId};
 
-        database.beginTransaction();
-        try {
-            database.execSQL(sql, args);
+        execSQL(database, sql, args);
+    }
+
+    /**
+     * Starts measuring a call to a method of this helper, and checks whether it runs in the main
+     * thread. The read lock of {@link #mFileLock} is held until the call ends, so the database
+     * file can't be swapped in the middle of a transaction, or while a cursor is being read.
+     * @param methodName Name of the method.
+     * @return {@link DatabaseMetrics.Scope} instance, which must be closed when the call ends.
+     * @throws IllegalStateException If the call runs in the main thread and the guard is strict.
+     * @see MainThreadGuard
+     */
+    private DatabaseMetrics.Scope begin(@NonNull String methodName) {
+        final boolean isGuarded = mMainThreadGuard.enter(methodName);
+        mFileLock.readLock().lock();
+        final DatabaseMetrics.Scope scope = mMetrics.begin(methodName);
+
+        scope.setCloseListener(elapsedNanos -> {
+            mFileLock.readLock().unlock();
+            if (isGuarded) mMainThreadGuard.exit(methodName, elapsedNanos);
+        });
 
-            database.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(
-                    "db dml",
-                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
-            );
-        } finally {
-            database.endTransaction();
+        return scope;
+    }
+
+    /**
+     * Runs an SQL query, records its latency, and logs it if it's slow.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param sql SQL query.
+     * @param args Arguments of the query.
+     * @return {@link Cursor} instance, positioned before the first row.
+     * @implNote The query is only executed once the cursor fills its first window, so its latency
+     * is recorded by {@link MeasuredCursor} when the caller first reads it.
+     */
+    private Cursor rawQuery(
+            @NonNull SQLiteDatabase database,
+            @NonNull String sql,
+            @NonNull String[] args
+    ) {
+        final long startTime = System.nanoTime();
+        final Cursor cursor = database.rawQuery(sql, args);
+
+        return new MeasuredCursor(
+                cursor,
+                System.nanoTime() - startTime,
+                (elapsedNanos, rowCount) -> {
+                    mMetrics.recordStatement("query", elapsedNanos);
+                    if (mSlowQueryLog.isSlow(elapsedNanos)) {
+                        mSlowQueryLog.record(database, sql, args, rowCount, elapsedNanos);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Runs an SQL statement that returns no rows, records its latency, and logs it if it's slow.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param sql SQL statement.
+     * @param args Arguments of the statement.
+     */
+    private void execSQL(
+            @NonNull SQLiteDatabase database,
+            @NonNull String sql,
+            @NonNull Object[] args
+    ) {
+        final long startTime = System.nanoTime();
+        database.execSQL(sql, args);
+        final long elapsedNanos = System.nanoTime() - startTime;
+
+        mMetrics.recordStatement("exec", elapsedNanos);
+        if (mSlowQueryLog.isSlow(elapsedNanos)) {
+            mSlowQueryLog.record(database, sql, args, -1, elapsedNanos);
         }
     }
+
+    /**
+     * Runs a compiled insertion statement and records its latency.
+     * @param statement {@link SQLiteStatement} instance, with its arguments already bound.
+     * @return The row ID of the inserted row.
+     */
+    private long executeInsert(@NonNull SQLiteStatement statement) {
+        final long startTime = System.nanoTime();
+        final long rowId = statement.executeInsert();
+
+        mMetrics.recordStatement("insert", System.nanoTime() - startTime);
+        return rowId;
+    }
 }
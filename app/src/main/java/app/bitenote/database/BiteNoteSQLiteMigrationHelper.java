@@ -0,0 +1,318 @@
+package app.bitenote.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.sql.Date;
+
+/**
+ * Helper package class to migrate the schema of an existing database between versions, without
+ * losing its recipes.
+ * <p>
+ * Each step migrates from one version to the next, and they're applied in order. Steps describe
+ * the schema as it was at their version, so they must never be changed once released.
+ * @see BiteNoteSQLiteHelper#DATABASE_VERSION
+ * @author Daniel N.
+ */
+final class BiteNoteSQLiteMigrationHelper {
+    private BiteNoteSQLiteMigrationHelper() {}
+
+    /**
+     * Migrates a database to a newer version. It must be called within the transaction of
+     * {@link android.database.sqlite.SQLiteOpenHelper#onUpgrade(SQLiteDatabase, int, int)}, so
+     * failed migrations are rolled back.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param oldVersion Current version of the database.
+     * @param newVersion Version to migrate the database to.
+     * @throws android.database.SQLException If a statement fails.
+     * @throws IllegalStateException If there's no step from one of the versions.
+     */
+    static void migrate(@NonNull SQLiteDatabase database, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            Log.d("db migration", "Migrating database from version " + version + "...");
+
+            switch (version) {
+                case 1:
+                    migrateFromVersion1(database);
+                    break;
+                case 2:
+                    migrateFromVersion2(database);
+                    break;
+                case 3:
+                    migrateFromVersion3(database);
+                    break;
+                case 4:
+                    migrateFromVersion4(database);
+                    break;
+                case 5:
+                    migrateFromVersion5(database);
+                    break;
+                case 6:
+                    migrateFromVersion6(database);
+                    break;
+                case 7:
+                    migrateFromVersion7(database);
+                    break;
+                case 8:
+                    migrateFromVersion8(database);
+                    break;
+                case 9:
+                    migrateFromVersion9(database);
+                    break;
+                default:
+                    throw new IllegalStateException(
+                            "No migration from database version " + version + "."
+                    );
+            }
+        }
+    }
+
+    /**
+     * Stores the creation dates as indexed epoch days instead of {@link Date#toString()} strings.
+     * Strings are normalized through {@link Date#valueOf(String)}, which also accepts dates that
+     * aren't zero padded, and malformed ones are stored as 1970-01-01.
+     * <p>
+     * SQLite can't change the type of a column, so the table is rebuilt with the same IDs and
+     * sequence.
+     * @param database {@link SQLiteDatabase} instance.
+     */
+    private static void migrateFromVersion1(@NonNull SQLiteDatabase database) {
+        final String createTableSql = "CREATE TABLE recipes_migrated (" +
+                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
+                "name VARCHAR(64) NOT NULL," +
+                "body MEDIUMTEXT NOT NULL DEFAULT ''," +
+                "budget INTEGER NOT NULL," +
+                "diners INTEGER NOT NULL," +
+                "creation_date INTEGER NOT NULL" +
+                ");";
+        final String copyRowsSql = "INSERT INTO " +
+                "recipes_migrated(id, name, body, budget, diners, creation_date) " +
+                "SELECT id, name, body, budget, diners, 0 FROM recipes;";
+        final String datesSql = "SELECT DISTINCT creation_date FROM recipes;";
+        final String[] datesArgs = {};
+        final String updateDateSql = "UPDATE recipes_migrated SET creation_date = ? " +
+                "WHERE id IN (SELECT id FROM recipes WHERE creation_date = ?);";
+
+        database.execSQL(createTableSql);
+        database.execSQL(copyRowsSql);
+
+        /// there are far fewer distinct dates than recipes, so each one is parsed once
+        try (final Cursor cursor = database.rawQuery(datesSql, datesArgs)) {
+            while (cursor.moveToNext()) {
+                final String storedDate = cursor.getString(0);
+
+                long epochDay = 0;
+                try {
+                    epochDay = EpochDays.fromDate(Date.valueOf(storedDate.trim()));
+                } catch (IllegalArgumentException e) {
+                    Log.w("db migration", "Malformed creation date '" + storedDate + "'.");
+                }
+
+                database.execSQL(updateDateSql, new Object[] {epochDay, storedDate});
+            }
+        }
+
+        /// keeps the IDs of deleted recipes from being reused
+        database.execSQL("DELETE FROM sqlite_sequence WHERE name = 'recipes_migrated';");
+        database.execSQL("INSERT INTO sqlite_sequence(name, seq) " +
+                "SELECT 'recipes_migrated', seq FROM sqlite_sequence WHERE name = 'recipes';");
+
+        database.execSQL("DROP TABLE recipes;");
+        database.execSQL("ALTER TABLE recipes_migrated RENAME TO recipes;");
+        database.execSQL("CREATE INDEX recipes_creation_date_index ON recipes(creation_date);");
+    }
+
+    /**
+     * Indexes the keys of the recipe sort orders.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see RecipeSortOrder
+     */
+    private static void migrateFromVersion2(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX recipes_name_index ON recipes(name COLLATE LOCALIZED);");
+        database.execSQL("CREATE INDEX recipes_budget_index ON recipes(budget);");
+        database.execSQL("CREATE INDEX recipes_diners_index ON recipes(diners);");
+        database.execSQL("CREATE INDEX recipes_budget_per_diner_index " +
+                "ON recipes(budget * 1000 / MAX(diners, 1));");
+    }
+
+    /**
+     * Indexes the ingredient amounts of the recipes, so ingredient amount ranges of queries are
+     * read from the index alone.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see RecipeQuery.AmountRange
+     */
+    private static void migrateFromVersion3(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX recipe_ingredients_amount_index ON recipe_ingredients(" +
+                "ingredient_id, is_measured_in_units, amount, recipe_id);");
+    }
+
+    /**
+     * Stores the ingredient type hierarchy, which is derived from the full names of the
+     * ingredients. The IDs of the ingredients of a type are contiguous, since they were inserted
+     * in document order.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see app.bitenote.instances.IngredientType
+     */
+    private static void migrateFromVersion4(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE ingredient_types(" +
+                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
+                "name VARCHAR(64) NOT NULL," +
+                "parent_id INTEGER," +
+                "first_ingredient_id INTEGER NOT NULL," +
+                "last_ingredient_id INTEGER NOT NULL," +
+                "FOREIGN KEY (parent_id) REFERENCES ingredient_types(id)" +
+                ");");
+        database.execSQL("INSERT INTO ingredient_types" +
+                "(name, parent_id, first_ingredient_id, last_ingredient_id) " +
+                "SELECT substr(name, 1, instr(name, '_') - 1) AS type_name, NULL, " +
+                "MIN(id), MAX(id) FROM ingredients GROUP BY type_name ORDER BY MIN(id);");
+        database.execSQL("INSERT INTO ingredient_types" +
+                "(name, parent_id, first_ingredient_id, last_ingredient_id) " +
+                "SELECT subtype_name, " +
+                "(SELECT id FROM ingredient_types WHERE name = type_name), MIN(id), MAX(id) " +
+                "FROM (SELECT id, substr(name, 1, instr(name, '_') - 1) AS type_name, " +
+                "substr(name, 1, instr(name, '_') + " +
+                "instr(substr(name, instr(name, '_') + 1), '_') - 1) AS subtype_name, " +
+                "instr(substr(name, instr(name, '_') + 1), '_') AS subtype_delimiter " +
+                "FROM ingredients) " +
+                "WHERE subtype_delimiter > 0 GROUP BY subtype_name ORDER BY MIN(id);");
+    }
+
+    /**
+     * Adds the dietary profile tables. There are no profiles yet, so no recipe is excluded.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see app.bitenote.instances.DietaryProfile
+     */
+    private static void migrateFromVersion5(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE dietary_profiles(" +
+                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
+                "name VARCHAR(64) NOT NULL" +
+                ");");
+        database.execSQL("CREATE TABLE dietary_profile_ingredients(" +
+                "profile_id INTEGER NOT NULL," +
+                "ingredient_id INTEGER NOT NULL," +
+                "PRIMARY KEY (profile_id, ingredient_id)," +
+                "FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id)," +
+                "FOREIGN KEY (ingredient_id) REFERENCES ingredients(id)" +
+                ");");
+        database.execSQL("CREATE TABLE dietary_profile_ingredient_types(" +
+                "profile_id INTEGER NOT NULL," +
+                "ingredient_type_id INTEGER NOT NULL," +
+                "PRIMARY KEY (profile_id, ingredient_type_id)," +
+                "FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id)," +
+                "FOREIGN KEY (ingredient_type_id) REFERENCES ingredient_types(id)" +
+                ");");
+        database.execSQL("CREATE TABLE dietary_profile_excluded_recipes(" +
+                "profile_id INTEGER NOT NULL," +
+                "recipe_id INTEGER NOT NULL," +
+                "PRIMARY KEY (profile_id, recipe_id)," +
+                "FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id)," +
+                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)" +
+                ");");
+        database.execSQL("CREATE INDEX dietary_profile_excluded_recipes_recipe_index " +
+                "ON dietary_profile_excluded_recipes(recipe_id);");
+    }
+
+    /**
+     * Adds the recipe similarity index. Signatures are computed in Java, so existing recipes are
+     * indexed by the helper the first time similar recipes are searched.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see MinHashSignature
+     */
+    private static void migrateFromVersion6(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE recipe_signatures(" +
+                "recipe_id INTEGER NOT NULL PRIMARY KEY," +
+                "signature BLOB NOT NULL," +
+                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)" +
+                ");");
+        database.execSQL("CREATE TABLE recipe_signature_buckets(" +
+                "band INTEGER NOT NULL," +
+                "bucket INTEGER NOT NULL," +
+                "recipe_id INTEGER NOT NULL," +
+                "PRIMARY KEY (band, bucket, recipe_id)," +
+                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)" +
+                ");");
+        database.execSQL("CREATE INDEX recipe_signature_buckets_recipe_index " +
+                "ON recipe_signature_buckets(recipe_id);");
+    }
+
+    /**
+     * Adds the recipe fingerprints used to find near-duplicates. Like signatures, fingerprints of
+     * existing recipes are computed by the helper before duplicates are first searched.
+     * @param database {@link SQLiteDatabase} instance.
+     * @see RecipeFingerprint
+     */
+    private static void migrateFromVersion7(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE recipe_fingerprints(" +
+                "recipe_id INTEGER NOT NULL PRIMARY KEY," +
+                "content_hash INTEGER NOT NULL," +
+                "ingredient_set_hash INTEGER NOT NULL," +
+                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)" +
+                ");");
+        database.execSQL("CREATE TABLE recipe_fingerprint_keys(" +
+                "lookup_key INTEGER NOT NULL," +
+                "recipe_id INTEGER NOT NULL," +
+                "PRIMARY KEY (lookup_key, recipe_id)," +
+                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)" +
+                ");");
+        database.execSQL("CREATE INDEX recipe_fingerprint_keys_recipe_index " +
+                "ON recipe_fingerprint_keys(recipe_id);");
+    }
+
+    /**
+     * Adds the ingredient co-occurrence counts. Unlike signatures and fingerprints, they're plain
+     * aggregates of the 'recipe_ingredients' table, so they're filled in a single statement.
+     * @param database {@link SQLiteDatabase} instance.
+     */
+    private static void migrateFromVersion8(@NonNull SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE ingredient_pairs(" +
+                "ingredient_id INTEGER NOT NULL," +
+                "other_ingredient_id INTEGER NOT NULL," +
+                "recipe_count INTEGER NOT NULL," +
+                "PRIMARY KEY (ingredient_id, other_ingredient_id)," +
+                "FOREIGN KEY (ingredient_id) REFERENCES ingredients(id)," +
+                "FOREIGN KEY (other_ingredient_id) REFERENCES ingredients(id)" +
+                ");");
+        database.execSQL("INSERT INTO ingredient_pairs" +
+                "(ingredient_id, other_ingredient_id, recipe_count) " +
+                "SELECT own.ingredient_id, other.ingredient_id, count(*) " +
+                "FROM recipe_ingredients AS own " +
+                "JOIN recipe_ingredients AS other ON other.recipe_id = own.recipe_id " +
+                "AND other.ingredient_id != own.ingredient_id " +
+                "GROUP BY own.ingredient_id, other.ingredient_id;");
+    }
+
+    /**
+     * Adds the aggregate columns of the recipes, and fills them from their ingredients and
+     * utensils in a single statement.
+     * @param database {@link SQLiteDatabase} instance.
+     */
+    private static void migrateFromVersion9(@NonNull SQLiteDatabase database) {
+        database.execSQL("ALTER TABLE recipes " +
+                "ADD COLUMN ingredient_count INTEGER NOT NULL DEFAULT 0;");
+        database.execSQL("ALTER TABLE recipes " +
+                "ADD COLUMN utensil_count INTEGER NOT NULL DEFAULT 0;");
+        database.execSQL("ALTER TABLE recipes " +
+                "ADD COLUMN total_amount INTEGER NOT NULL DEFAULT 0;");
+        database.execSQL("ALTER TABLE recipes " +
+                "ADD COLUMN needs_units BOOLEAN NOT NULL DEFAULT 0;");
+        /// frozen copy of the aggregates of version 10, since later versions may add more of them
+        database.execSQL("UPDATE recipes SET " +
+                "ingredient_count = (SELECT count(*) FROM recipe_ingredients " +
+                "WHERE recipe_ingredients.recipe_id = recipes.id), " +
+                "utensil_count = (SELECT count(*) FROM recipe_utensils " +
+                "WHERE recipe_utensils.recipe_id = recipes.id), " +
+                "total_amount = (SELECT CAST(ifnull(sum(amount), 0) AS INTEGER) " +
+                "FROM recipe_ingredients WHERE recipe_ingredients.recipe_id = recipes.id " +
+                "AND is_measured_in_units = 0), " +
+                "needs_units = EXISTS (SELECT 1 FROM recipe_ingredients " +
+                "WHERE recipe_ingredients.recipe_id = recipes.id " +
+                "AND is_measured_in_units != 0);");
+        database.execSQL("CREATE INDEX recipes_ingredient_count_index " +
+                "ON recipes(ingredient_count);");
+        database.execSQL("CREATE INDEX recipes_utensil_count_index ON recipes(utensil_count);");
+        database.execSQL("CREATE INDEX recipes_total_amount_index ON recipes(total_amount);");
+        database.execSQL("CREATE INDEX recipes_needs_units_index ON recipes(needs_units);");
+    }
+}
@@ -0,0 +1,87 @@
+package app.bitenote.database;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Helper package class to install the prebuilt seed database. The seed is generated at build time
+ * by the {@code generateSeedDatabase} Gradle task from the same schema and XML resources that
+ * {@link BiteNoteSQLiteTableHelper} reads, so copying it replaces the whole XML pipeline.
+ * @author Daniel N.
+ */
+final class BiteNoteSQLiteSeedHelper {
+    /**
+     * Name of the seed database file in the application assets.
+     */
+    static final String SEED_DATABASE_ASSET = "bitenote_seed.db";
+
+    /**
+     * Size of the buffer used to copy the seed database.
+     */
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Copies the seed database into the path of a database, unless that database already exists.
+     * @param context {@link Context} instance.
+     * @param databaseName Name of the database.
+     * @return {@code true} if the seed database was installed. When {@code false} is returned, the
+     * database either existed already or the seed couldn't be copied, in which case the tables
+     * will be created and populated from the XML resources in
+     * {@link BiteNoteSQLiteHelper#onCreate(android.database.sqlite.SQLiteDatabase)}.
+     */
+    static boolean installSeedDatabase(@NonNull Context context, @NonNull String databaseName) {
+        final File databaseFile = context.getDatabasePath(databaseName);
+        if (databaseFile.exists()) return false;
+
+        final File databaseDirectory = databaseFile.getParentFile();
+        if (databaseDirectory == null) return false;
+        if (!databaseDirectory.exists() && !databaseDirectory.mkdirs()) {
+            Log.e("db seed", "Couldn't create the database directory.");
+            return false;
+        }
+
+        /*
+         * The seed is copied into a temporary file first, and then renamed. That way, a copy that
+         * was interrupted is never opened as if it was a complete database.
+         */
+        final File temporaryFile = new File(databaseDirectory, databaseName + ".seed");
+
+        try (
+                final InputStream input = context.getAssets().open(SEED_DATABASE_ASSET);
+                final FileOutputStream output = new FileOutputStream(temporaryFile)
+        ) {
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int readBytes;
+
+            while ((readBytes = input.read(buffer)) != -1) {
+                output.write(buffer, 0, readBytes);
+            }
+
+            output.getFD().sync();
+        } catch (IOException e) {
+            Log.e(
+                    "db seed",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+
+            temporaryFile.delete();
+            return false;
+        }
+
+        if (!temporaryFile.renameTo(databaseFile)) {
+            Log.e("db seed", "Couldn't move the seed database into place.");
+
+            temporaryFile.delete();
+            return false;
+        }
+
+        Log.d("db seed", "Installed seed database.");
+        return true;
+    }
+}
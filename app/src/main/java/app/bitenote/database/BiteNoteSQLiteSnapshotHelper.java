@@ -0,0 +1,400 @@
+package app.bitenote.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Helper package class to create, rotate and restore snapshots of a database. A snapshot is a
+ * compacted and consistent copy of the database, taken against a single read transaction, so it
+ * neither blocks writers nor races with frames that are still in the write-ahead log.
+ * @author Daniel N.
+ */
+final class BiteNoteSQLiteSnapshotHelper {
+    /**
+     * Name of the directory, inside the application data directory, where snapshots are stored.
+     */
+    static final String SNAPSHOT_DIRECTORY_NAME = "snapshots";
+
+    /**
+     * File extension of snapshots.
+     */
+    static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /**
+     * Size of the buffer used to copy snapshots.
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Suffixes of the files of a database, starting with the main file.
+     */
+    private static final String[] DATABASE_FILE_SUFFIXES = {"", "-wal", "-shm", "-journal"};
+
+    /**
+     * Gets the directory where snapshots are stored.
+     * @param context {@link Context} instance.
+     * @return The snapshot directory.
+     */
+    static File getSnapshotDirectory(@NonNull Context context) {
+        return context.getDir(SNAPSHOT_DIRECTORY_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Gets the snapshots of a database.
+     * @param context {@link Context} instance.
+     * @param databaseName Name of the database.
+     * @return A list of snapshot files, ordered from newest to oldest.
+     */
+    static List<File> getSnapshots(@NonNull Context context, @NonNull String databaseName) {
+        final File[] files = getSnapshotDirectory(context).listFiles(
+                (directory, name) ->
+                        name.startsWith(databaseName + "-") && name.endsWith(SNAPSHOT_EXTENSION)
+        );
+        if (files == null) return new ArrayList<>();
+
+        /// names embed the creation time with a fixed width, so they sort chronologically
+        Arrays.sort(files, Collections.reverseOrder());
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Creates a snapshot of an open database, and deletes the oldest snapshots so that, at most,
+     * {@code keptSnapshotCount} of them remain.
+     * @param context {@link Context} instance.
+     * @param database Open {@link SQLiteDatabase} instance. Must not be in a transaction.
+     * @param databaseName Name of the database.
+     * @param keptSnapshotCount Maximum amount of snapshots kept after creating this one.
+     * @return An {@link Optional} instance that wraps the snapshot file, which is empty if the
+     * snapshot couldn't be created.
+     */
+    static Optional<File> createSnapshot(
+            @NonNull Context context,
+            @NonNull SQLiteDatabase database,
+            @NonNull String databaseName,
+            int keptSnapshotCount
+    ) {
+        assert keptSnapshotCount > 0 : "At least one snapshot must be kept.";
+
+        final File snapshotDirectory = getSnapshotDirectory(context);
+        final File snapshotFile = new File(
+                snapshotDirectory,
+                String.format(
+                        "%s-%019d%s",
+                        databaseName,
+                        System.currentTimeMillis(),
+                        SNAPSHOT_EXTENSION
+                )
+        );
+        final File temporaryFile = new File(snapshotDirectory, snapshotFile.getName() + ".tmp");
+        final long startTime = SystemClock.elapsedRealtime();
+
+        SQLiteDatabase.deleteDatabase(temporaryFile);
+        try {
+            /*
+             * VACUUM INTO reads the database inside a single read transaction and writes a
+             * compacted copy, but it's only available since SQLite 3.27, which ships with API 30.
+             */
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                database.execSQL("VACUUM INTO ?;", new Object[] {temporaryFile.getPath()});
+            } else {
+                copyIntoSnapshot(context, database, temporaryFile);
+            }
+        } catch (SQLException e) {
+            Log.e(
+                    "db snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+
+            SQLiteDatabase.deleteDatabase(temporaryFile);
+            return Optional.empty();
+        }
+
+        if (!temporaryFile.renameTo(snapshotFile)) {
+            Log.e("db snapshot", "Couldn't move the snapshot into place.");
+
+            SQLiteDatabase.deleteDatabase(temporaryFile);
+            return Optional.empty();
+        }
+
+        Log.i(
+                "db snapshot",
+                "Created snapshot of " + snapshotFile.length() + " bytes in " +
+                        (SystemClock.elapsedRealtime() - startTime) + " ms."
+        );
+
+        /// the snapshot already holds every committed frame, so the log can be folded back
+        checkpoint(database);
+
+        final List<File> snapshots = getSnapshots(context, databaseName);
+        for (int i = keptSnapshotCount; i < snapshots.size(); i++) {
+            if (!snapshots.get(i).delete()) {
+                Log.w("db snapshot", "Couldn't delete " + snapshots.get(i).getName() + ".");
+            }
+        }
+
+        return Optional.of(snapshotFile);
+    }
+
+    /**
+     * Replaces a database file with a snapshot. The database must be closed by the caller, since
+     * its files are swapped underneath it.
+     * @param context {@link Context} instance.
+     * @param databaseName Name of the database.
+     * @param snapshotFile Snapshot file.
+     * @param maxVersion Latest supported database version. Snapshots of newer versions are
+     * rejected.
+     * @return {@code true} if the snapshot was restored. If it's {@code false}, the old database
+     * is kept.
+     * @see #recoverInterruptedRestore(Context, String)
+     */
+    static boolean restoreSnapshot(
+            @NonNull Context context,
+            @NonNull String databaseName,
+            @NonNull File snapshotFile,
+            int maxVersion
+    ) {
+        final int snapshotVersion;
+        try (
+                final SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(
+                        snapshotFile.getPath(),
+                        null,
+                        SQLiteDatabase.OPEN_READONLY
+                )
+        ) {
+            snapshotVersion = snapshot.getVersion();
+        } catch (SQLException e) {
+            Log.e(
+                    "db snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+            return false;
+        }
+
+        if (snapshotVersion == 0 || snapshotVersion > maxVersion) {
+            Log.e("db snapshot", "Unsupported snapshot version: " + snapshotVersion + ".");
+            return false;
+        }
+
+        final File databaseFile = context.getDatabasePath(databaseName);
+        final File temporaryFile =
+                new File(databaseFile.getParentFile(), databaseName + ".restore");
+
+        try (
+                final InputStream input = new FileInputStream(snapshotFile);
+                final FileOutputStream output = new FileOutputStream(temporaryFile)
+        ) {
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int readBytes;
+
+            while ((readBytes = input.read(buffer)) != -1) {
+                output.write(buffer, 0, readBytes);
+            }
+
+            output.getFD().sync();
+        } catch (IOException e) {
+            Log.e(
+                    "db snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+
+            temporaryFile.delete();
+            return false;
+        }
+
+        /*
+         * Renaming a single file is atomic, but swapping a database and its sidecar files isn't.
+         * The old files are moved aside first, so a stale write-ahead log is never replayed over
+         * the restored database, and they're moved back if the swap fails.
+         */
+        final List<File> movedFiles = new ArrayList<>();
+        for (String suffix: DATABASE_FILE_SUFFIXES) {
+            final File file = new File(databaseFile.getPath() + suffix);
+            if (!file.exists()) continue;
+
+            if (!file.renameTo(getAsideFile(file))) {
+                Log.e("db snapshot", "Couldn't move " + file.getName() + " aside.");
+
+                moveBack(movedFiles);
+                temporaryFile.delete();
+                return false;
+            }
+            movedFiles.add(file);
+        }
+
+        if (!temporaryFile.renameTo(databaseFile)) {
+            Log.e("db snapshot", "Couldn't move the restored database into place.");
+
+            moveBack(movedFiles);
+            temporaryFile.delete();
+            return false;
+        }
+
+        for (File file: movedFiles) {
+            getAsideFile(file).delete();
+        }
+
+        Log.i("db snapshot", "Restored " + snapshotFile.getName() + ".");
+        return true;
+    }
+
+    /**
+     * Copies every table of a database into a new snapshot file, for devices without VACUUM INTO.
+     * The copy runs in a connection of its own, which attaches the database as read-only, so its
+     * transaction only reads from it and never takes its write lock.
+     * @param context {@link Context} instance.
+     * @param database Open {@link SQLiteDatabase} instance.
+     * @param snapshotFile Snapshot file, which must not exist.
+     */
+    private static void copyIntoSnapshot(
+            @NonNull Context context,
+            @NonNull SQLiteDatabase database,
+            @NonNull File snapshotFile
+    ) {
+        final String tablesSql = "SELECT name FROM sqlite_master WHERE type = 'table' " +
+                "AND name NOT IN ('android_metadata', 'sqlite_sequence');";
+        final String[] tablesArgs = {};
+
+        try (
+                final SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(
+                        snapshotFile.getPath(),
+                        null,
+                        SQLiteDatabase.CREATE_IF_NECESSARY
+                )
+        ) {
+            BiteNoteSQLiteTableHelper.createTables(snapshot, context);
+            snapshot.setVersion(database.getVersion());
+            snapshot.execSQL(
+                    "ATTACH DATABASE ? AS source;",
+                    new Object[] {"file:" + database.getPath() + "?mode=ro"}
+            );
+
+            final List<String> tables = new ArrayList<>();
+            try (final Cursor cursor = snapshot.rawQuery(tablesSql, tablesArgs)) {
+                while (cursor.moveToNext()) {
+                    tables.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+                }
+            }
+
+            snapshot.beginTransaction();
+            try {
+                /// columns are named, since migrated tables may order them differently
+                for (String table: tables) {
+                    final String columns = getColumnList(snapshot, table);
+
+                    snapshot.execSQL("INSERT INTO main." + table + "(" + columns + ") " +
+                            "SELECT " + columns + " FROM source." + table + ";");
+                }
+
+                /// sequences are copied last, so the inserts above don't leave duplicates
+                snapshot.execSQL("DELETE FROM main.sqlite_sequence;");
+                snapshot.execSQL(
+                        "INSERT INTO main.sqlite_sequence SELECT * FROM source.sqlite_sequence;"
+                );
+
+                snapshot.setTransactionSuccessful();
+            } finally {
+                snapshot.endTransaction();
+                snapshot.execSQL("DETACH DATABASE source;");
+            }
+        }
+    }
+
+    /**
+     * Moves the old database files back into place if a restore was interrupted after they were
+     * moved aside, but before the restored database was moved into place. It must be called before
+     * the database is opened.
+     * @param context {@link Context} instance.
+     * @param databaseName Name of the database.
+     */
+    static void recoverInterruptedRestore(@NonNull Context context, @NonNull String databaseName) {
+        final File databaseFile = context.getDatabasePath(databaseName);
+        if (databaseFile.exists() || !getAsideFile(databaseFile).exists()) return;
+
+        final List<File> movedFiles = new ArrayList<>();
+        for (String suffix: DATABASE_FILE_SUFFIXES) {
+            final File file = new File(databaseFile.getPath() + suffix);
+            if (getAsideFile(file).exists()) movedFiles.add(file);
+        }
+
+        Log.w("db snapshot", "Recovering from an interrupted restore.");
+        moveBack(movedFiles);
+    }
+
+    /**
+     * Gets the file where a database file is moved aside while a snapshot is restored.
+     * @param file Database file, or one of its sidecar files.
+     * @return The aside {@link File}, in the same directory.
+     */
+    private static File getAsideFile(@NonNull File file) {
+        return new File(file.getPath() + ".old");
+    }
+
+    /**
+     * Moves the files that were moved aside back into place, after a failed restore.
+     * @param movedFiles Files that were moved aside.
+     */
+    private static void moveBack(@NonNull List<File> movedFiles) {
+        for (File file: movedFiles) {
+            file.delete();
+
+            if (!getAsideFile(file).renameTo(file)) {
+                Log.e("db snapshot", "Couldn't move " + file.getName() + " back into place.");
+            }
+        }
+    }
+
+    /**
+     * Gets the comma separated column names of a table.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param table Name of the table.
+     * @return The column names of the table.
+     */
+    private static String getColumnList(@NonNull SQLiteDatabase database, @NonNull String table) {
+        final String sql = "PRAGMA main.table_info(" + table + ");";
+        final String[] args = {};
+        final List<String> columns = new ArrayList<>();
+
+        try (final Cursor cursor = database.rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+            }
+        }
+
+        return String.join(", ", columns);
+    }
+
+    /**
+     * Runs a passive checkpoint, which moves write-ahead log frames into the database file without
+     * waiting for readers or writers.
+     * @param database Open {@link SQLiteDatabase} instance.
+     */
+    private static void checkpoint(@NonNull SQLiteDatabase database) {
+        final String sql = "PRAGMA wal_checkpoint(PASSIVE);";
+        final String[] args = {};
+
+        try (final Cursor cursor = database.rawQuery(sql, args)) {
+            cursor.moveToFirst(); // the pragma only runs once its result is stepped
+        } catch (SQLException e) {
+            Log.w(
+                    "db snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+        }
+    }
+}
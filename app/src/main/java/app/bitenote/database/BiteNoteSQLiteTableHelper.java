@@ -9,7 +9,12 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Stack;
@@ -25,68 +30,21 @@ import app.bitenote.instances.Utensil;
  */
 final class BiteNoteSQLiteTableHelper {
     /**
-     * Creates all tables in the database.
+     * Creates all tables in the database, from the statements of the schema resource.
      * @param database {@link SQLiteDatabase} instance.
+     * @param context {@link Context} instance.
      */
-    static void createTables(@NonNull SQLiteDatabase database) {
+    static void createTables(@NonNull SQLiteDatabase database, @NonNull Context context) {
         Log.d("db ddl", "Creating database tables...");
 
-        final String createUtensilsTable = "CREATE TABLE utensils(" +
-                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
-                "name VARCHAR(64) NOT NULL" +
-                ");";
-
-        final String createMeasurementTypesTable = "CREATE TABLE measurement_types(" +
-                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
-                "name VARCHAR(64) NOT NULL" +
-                ");";
-
-        final String createRecipesTable = "CREATE TABLE recipes (" +
-                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
-                "name VARCHAR(64) NOT NULL," +
-                "body MEDIUMTEXT NOT NULL DEFAULT ''," +
-                "budget INTEGER NOT NULL," +
-                "diners INTEGER NOT NULL," +
-                "creation_date DATE NOT NULL" +
-                ");";
-
-        final String createIngredientsTable = "CREATE TABLE ingredients(" +
-                "id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT," +
-                "name VARCHAR(64) NOT NULL," +
-                "measurement_id INTEGER NOT NULL," +
-                "can_be_measured_in_units BOOLEAN NOT NULL," +
-                "FOREIGN KEY (measurement_id) REFERENCES measurement_types(id)" +
-                ");";
-
-        final String createRecipeIngredientsTable = "CREATE TABLE recipe_ingredients(" +
-                "recipe_id INTEGER NOT NULL," +
-                "ingredient_id INTEGER NOT NULL," +
-                "amount FLOAT NOT NULL," +
-                "is_measured_in_units BOOLEAN NOT NULL," +
-                "PRIMARY KEY (recipe_id, ingredient_id)," +
-                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)," +
-                "FOREIGN KEY (ingredient_id) REFERENCES ingredients(id)" +
-                ");";
-
-        final String createRecipeUtensilsTable = "CREATE TABLE recipe_utensils(" +
-                "recipe_id INTEGER NOT NULL," +
-                "utensil_id INTEGER NOT NULL," +
-                "PRIMARY KEY (recipe_id, utensil_id)," +
-                "FOREIGN KEY (recipe_id) REFERENCES recipes(id)," +
-                "FOREIGN KEY (utensil_id) REFERENCES utensils(id)" +
-                ");";
-
         database.beginTransaction();
         try {
-            database.execSQL(createUtensilsTable);
-            database.execSQL(createMeasurementTypesTable);
-            database.execSQL(createRecipesTable);
-            database.execSQL(createIngredientsTable);
-            database.execSQL(createRecipeIngredientsTable);
-            database.execSQL(createRecipeUtensilsTable);
+            for (String statement: readStatements(context, R.raw.schema)) {
+                database.execSQL(statement);
+            }
 
             database.setTransactionSuccessful();
-        } catch (SQLException e) {
+        } catch (IOException | SQLException e) {
             Log.e(
                     "db ddl",
                     Optional.ofNullable(e.getMessage()).orElse("Missing message.")
@@ -105,8 +63,23 @@ final class BiteNoteSQLiteTableHelper {
         final String dropMeasurementTypesTable = "DROP TABLE IF EXISTS measurement_types;";
         final String dropRecipesTable = "DROP TABLE IF EXISTS recipes;";
         final String dropIngredientsTable = "DROP TABLE IF EXISTS ingredients;";
+        final String dropIngredientTypesTable = "DROP TABLE IF EXISTS ingredient_types;";
         final String dropRecipeIngredientsTable = "DROP TABLE IF EXISTS recipe_ingredients;";
         final String dropRecipeUtensilsTable = "DROP TABLE IF EXISTS recipe_utensils;";
+        final String dropDietaryProfilesTable = "DROP TABLE IF EXISTS dietary_profiles;";
+        final String dropDietaryProfileIngredientsTable =
+                "DROP TABLE IF EXISTS dietary_profile_ingredients;";
+        final String dropDietaryProfileIngredientTypesTable =
+                "DROP TABLE IF EXISTS dietary_profile_ingredient_types;";
+        final String dropDietaryProfileExcludedRecipesTable =
+                "DROP TABLE IF EXISTS dietary_profile_excluded_recipes;";
+        final String dropRecipeSignaturesTable = "DROP TABLE IF EXISTS recipe_signatures;";
+        final String dropRecipeSignatureBucketsTable =
+                "DROP TABLE IF EXISTS recipe_signature_buckets;";
+        final String dropRecipeFingerprintsTable = "DROP TABLE IF EXISTS recipe_fingerprints;";
+        final String dropRecipeFingerprintKeysTable =
+                "DROP TABLE IF EXISTS recipe_fingerprint_keys;";
+        final String dropIngredientPairsTable = "DROP TABLE IF EXISTS ingredient_pairs;";
 
         database.beginTransaction();
         try {
@@ -114,8 +87,18 @@ final class BiteNoteSQLiteTableHelper {
             database.execSQL(dropMeasurementTypesTable);
             database.execSQL(dropRecipesTable);
             database.execSQL(dropIngredientsTable);
+            database.execSQL(dropIngredientTypesTable);
             database.execSQL(dropRecipeIngredientsTable);
             database.execSQL(dropRecipeUtensilsTable);
+            database.execSQL(dropDietaryProfilesTable);
+            database.execSQL(dropDietaryProfileIngredientsTable);
+            database.execSQL(dropDietaryProfileIngredientTypesTable);
+            database.execSQL(dropDietaryProfileExcludedRecipesTable);
+            database.execSQL(dropRecipeSignaturesTable);
+            database.execSQL(dropRecipeSignatureBucketsTable);
+            database.execSQL(dropRecipeFingerprintsTable);
+            database.execSQL(dropRecipeFingerprintKeysTable);
+            database.execSQL(dropIngredientPairsTable);
 
             database.setTransactionSuccessful();
         } catch (SQLException e) {
@@ -142,6 +125,7 @@ final class BiteNoteSQLiteTableHelper {
         populateUtensilsTable(database, context);
         populateMeasurementTypesTable(database, context);
         populateIngredientsTable(database, context);
+        populateIngredientTypesTable(database, context);
     }
 
     /**
@@ -309,6 +293,71 @@ final class BiteNoteSQLiteTableHelper {
         }
     }
 
+    /**
+     * Populates the 'ingredient_types' SQLite table from the full names of the ingredients, which
+     * must have already been populated.
+     * @param database {@link SQLiteDatabase} instance.
+     * @param context {@link Context} instance.
+     */
+    private static void populateIngredientTypesTable(
+            @NonNull SQLiteDatabase database,
+            @NonNull Context context
+    ) {
+        final Object[] args = {Ingredient.NAME_DELIMITER};
+
+        database.beginTransaction();
+        try {
+            for (String statement: readStatements(context, R.raw.ingredient_types)) {
+                database.execSQL(statement, args);
+            }
+
+            database.setTransactionSuccessful();
+        } catch (IOException | SQLException e) {
+            Log.e(
+                    "db ddl",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Reads the statements of an SQL resource, which is shared with the {@code
+     * generateSeedDatabase} Gradle task. Statements are separated by semicolons, and lines that
+     * start with {@code --} are comments.
+     * @param context {@link Context} instance.
+     * @param resourceId ID of the raw resource.
+     * @return A list of the statements, in order.
+     * @throws IOException If the resource can't be read.
+     */
+    static List<String> readStatements(
+            @NonNull Context context,
+            int resourceId
+    ) throws IOException {
+        final StringBuilder sql = new StringBuilder();
+        try (
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        context.getResources().openRawResource(resourceId),
+                        StandardCharsets.UTF_8
+                ))
+        ) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith("--")) continue;
+
+                sql.append(line).append('\n');
+            }
+        }
+
+        final List<String> statements = new ArrayList<>();
+        for (String statement: sql.toString().split(";")) {
+            if (!statement.trim().isEmpty()) statements.add(statement.trim() + ";");
+        }
+
+        return statements;
+    }
+
     /**
      * Handles the {@link Stack} of {@link String}s depending on the found parser tag.
      * @param parser {@link XmlResourceParser} instance.
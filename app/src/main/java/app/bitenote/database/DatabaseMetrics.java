@@ -0,0 +1,271 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.tracing.Trace;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Collects call counts, SQL statement counts and latency histograms of the methods of
+ * {@link BiteNoteSQLiteHelper}, along with the latency of every statement it runs. Every counter
+ * is lock-free, so metrics are always collected, in release builds too. Method calls are also
+ * shown as trace sections named {@code db.<method>} by Perfetto and systrace.
+ * @see BiteNoteSQLiteHelper#getMetrics()
+ * @author Daniel N.
+ */
+public final class DatabaseMetrics {
+    /**
+     * Metrics of a single method or statement kind.
+     */
+    public static final class Entry {
+        /**
+         * Name of the trace section of the calls.
+         */
+        private final String mTraceSectionName;
+
+        /**
+         * Amount of calls.
+         */
+        private final LongAdder mCallCount = new LongAdder();
+
+        /**
+         * Amount of SQL statements run by the calls, including those run by nested calls.
+         */
+        private final LongAdder mStatementCount = new LongAdder();
+
+        /**
+         * Latency of the calls.
+         */
+        private final LatencyHistogram mLatency = new LatencyHistogram();
+
+        /**
+         * Entry constructor.
+         * @param name Name of the method or statement kind.
+         */
+        private Entry(@NonNull String name) {
+            mTraceSectionName = "db." + name;
+        }
+
+        /**
+         * Gets the amount of calls.
+         * @return The amount of calls.
+         */
+        public long getCallCount() {
+            return mCallCount.sum();
+        }
+
+        /**
+         * Gets the amount of SQL statements run by the calls.
+         * @return The amount of statements.
+         */
+        public long getStatementCount() {
+            return mStatementCount.sum();
+        }
+
+        /**
+         * Gets the latency histogram of the calls.
+         * @return {@link LatencyHistogram} instance.
+         */
+        public LatencyHistogram getLatency() {
+            return mLatency;
+        }
+    }
+
+    /**
+     * Measurement of a single method call, started by {@link #begin(String)}. Closing it records
+     * the call.
+     */
+    public final class Scope implements AutoCloseable {
+        /**
+         * Metrics of the called method.
+         */
+        private final Entry mEntry;
+
+        /**
+         * Statements run by the thread when the call started.
+         */
+        private final long mStartStatementCount;
+
+        /**
+         * Time when the call started, in nanoseconds.
+         */
+        private final long mStartTime;
+
+        /**
+         * Listener called with the duration of the call when it ends.
+         */
+        private LongConsumer mCloseListener = null;
+
+        /**
+         * Scope constructor.
+         * @param entry Metrics of the called method.
+         */
+        private Scope(@NonNull Entry entry) {
+            mEntry = entry;
+            mStartStatementCount = THREAD_STATEMENT_COUNT.get()[0];
+            Trace.beginSection(entry.mTraceSectionName);
+            mStartTime = System.nanoTime();
+        }
+
+        /**
+         * Sets a listener that is called with the duration of the call, in nanoseconds, once it
+         * ends.
+         * @param closeListener Listener, or {@code null} to remove it.
+         */
+        void setCloseListener(@Nullable LongConsumer closeListener) {
+            mCloseListener = closeListener;
+        }
+
+        @Override
+        public void close() {
+            final long elapsedNanos = System.nanoTime() - mStartTime;
+            Trace.endSection();
+
+            mEntry.mLatency.record(elapsedNanos);
+            mEntry.mCallCount.increment();
+            mEntry.mStatementCount.add(THREAD_STATEMENT_COUNT.get()[0] - mStartStatementCount);
+
+            if (mCloseListener != null) mCloseListener.accept(elapsedNanos);
+        }
+    }
+
+    /**
+     * Amount of statements run by each thread. Scopes read it when they start and end, so their
+     * statement count includes nested calls without any synchronization.
+     */
+    private static final ThreadLocal<long[]> THREAD_STATEMENT_COUNT =
+            ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Metrics of each method, where the key is the name of the method.
+     */
+    private final ConcurrentHashMap<String, Entry> mMethods = new ConcurrentHashMap<>();
+
+    /**
+     * Metrics of each statement kind, where the key is the name of the kind.
+     */
+    private final ConcurrentHashMap<String, Entry> mStatements = new ConcurrentHashMap<>();
+
+    /**
+     * Starts measuring a method call.
+     * @param methodName Name of the method.
+     * @return {@link Scope} instance, which must be closed when the call ends.
+     */
+    public Scope begin(@NonNull String methodName) {
+        return new Scope(mMethods.computeIfAbsent(methodName, Entry::new));
+    }
+
+    /**
+     * Records a statement run by the current thread.
+     * @param kind Kind of the statement, like {@code "query"} or {@code "exec"}.
+     * @param nanos Latency of the statement in nanoseconds.
+     */
+    public void recordStatement(@NonNull String kind, long nanos) {
+        THREAD_STATEMENT_COUNT.get()[0]++;
+
+        final Entry entry = mStatements.computeIfAbsent(kind, Entry::new);
+        entry.mLatency.record(nanos);
+        entry.mCallCount.increment();
+        entry.mStatementCount.increment();
+    }
+
+    /**
+     * Gets the metrics of every measured method.
+     * @return An unmodifiable map, where the key is the name of the method.
+     */
+    public Map<String, Entry> getMethods() {
+        return Collections.unmodifiableMap(mMethods);
+    }
+
+    /**
+     * Gets the metrics of every kind of statement.
+     * @return An unmodifiable map, where the key is the name of the statement kind.
+     */
+    public Map<String, Entry> getStatements() {
+        return Collections.unmodifiableMap(mStatements);
+    }
+
+    /**
+     * Removes every collected metric.
+     */
+    public void reset() {
+        mMethods.clear();
+        mStatements.clear();
+    }
+
+    /**
+     * Formats the collected metrics as a plain text table, with latencies in milliseconds.
+     * @return The formatted metrics.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+
+        appendTable(builder, "Methods", mMethods);
+        builder.append('\n');
+        appendTable(builder, "Statements", mStatements);
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes the collected metrics into a file, replacing its contents.
+     * @param file File where the metrics are written.
+     * @throws IOException If the file can't be written.
+     * @see #toString()
+     */
+    public void dump(@NonNull File file) throws IOException {
+        try (
+                final Writer writer = new OutputStreamWriter(
+                        new FileOutputStream(file),
+                        StandardCharsets.UTF_8
+                )
+        ) {
+            writer.write(toString());
+        }
+    }
+
+    /**
+     * Appends a table of metrics.
+     * @param builder {@link StringBuilder} instance.
+     * @param title Title of the table.
+     * @param entries Metrics, where the key is the name of the row.
+     */
+    private static void appendTable(
+            @NonNull StringBuilder builder,
+            @NonNull String title,
+            @NonNull Map<String, Entry> entries
+    ) {
+        builder.append(title).append('\n').append(String.format(
+                Locale.ROOT,
+                "%-40s %8s %8s %9s %9s %9s %9s%n",
+                "name", "calls", "stmts", "p50 ms", "p95 ms", "p99 ms", "max ms"
+        ));
+
+        /// sorted by name, so dumps can be compared
+        new TreeMap<>(entries).forEach((name, entry) -> builder.append(String.format(
+                Locale.ROOT,
+                "%-40s %8d %8d %9.3f %9.3f %9.3f %9.3f%n",
+                name,
+                entry.getCallCount(),
+                entry.getStatementCount(),
+                entry.mLatency.getPercentile(50) / 1e6,
+                entry.mLatency.getPercentile(95) / 1e6,
+                entry.mLatency.getPercentile(99) / 1e6,
+                entry.mLatency.getMax() / 1e6
+        )));
+    }
+}
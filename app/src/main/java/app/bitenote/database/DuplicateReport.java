@@ -0,0 +1,71 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report of the recipes that were merged into existing ones, instead of being inserted, because
+ * they were near-duplicates of them.
+ * @see RecipeFingerprint
+ * @see BiteNoteSQLiteHelper#importRecipes(java.nio.channels.ReadableByteChannel, int,
+ * DuplicateReport)
+ * @author Daniel N.
+ */
+public final class DuplicateReport {
+    /**
+     * A recipe that was merged into an existing one.
+     */
+    public static final class Entry {
+        /**
+         * Name of the recipe that wasn't inserted.
+         */
+        public final String mergedName;
+
+        /**
+         * ID of the existing recipe it was merged into.
+         */
+        public final int keptRecipeId;
+
+        /**
+         * Entry constructor.
+         * @param mergedName Name of the recipe that wasn't inserted.
+         * @param keptRecipeId ID of the existing recipe it was merged into.
+         */
+        public Entry(@NonNull String mergedName, int keptRecipeId) {
+            this.mergedName = mergedName;
+            this.keptRecipeId = keptRecipeId;
+        }
+    }
+
+    /**
+     * Merged recipes, in the order they were found.
+     */
+    private final List<Entry> mEntries = new ArrayList<>();
+
+    /**
+     * Gets the merged recipes.
+     * @return An unmodifiable list of {@link Entry} instances, in the order they were found.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(mEntries);
+    }
+
+    /**
+     * Gets the amount of merged recipes.
+     * @return The amount of entries of the report.
+     */
+    public int getMergedCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Adds a merged recipe to the report.
+     * @param mergedName Name of the recipe that wasn't inserted.
+     * @param keptRecipeId ID of the existing recipe it was merged into.
+     */
+    void add(@NonNull String mergedName, int keptRecipeId) {
+        mEntries.add(new Entry(mergedName, keptRecipeId));
+    }
+}
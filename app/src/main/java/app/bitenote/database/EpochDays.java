@@ -0,0 +1,70 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import java.sql.Date;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Converts recipe creation dates to and from the amount of days since 1970-01-01, which is how
+ * the 'recipes' table stores them, so they can be indexed and compared as integers.
+ * <p>
+ * A {@link Date} is a local midnight, so the calendar day is read in the default time zone and
+ * counted in UTC, where every day has the same length.
+ * @author Daniel N.
+ */
+public final class EpochDays {
+    /**
+     * Milliseconds in a UTC day.
+     */
+    private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+    /**
+     * UTC time zone, in which the days are counted.
+     */
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private EpochDays() {}
+
+    /**
+     * Gets the epoch day of a date.
+     * @param date {@link Date} instance.
+     * @return The amount of days between 1970-01-01 and the calendar day of the date, which is
+     * negative for earlier days.
+     */
+    public static long fromDate(@NonNull Date date) {
+        final Calendar localCalendar = Calendar.getInstance();
+        localCalendar.setTime(date);
+
+        final GregorianCalendar utcCalendar = new GregorianCalendar(UTC);
+        utcCalendar.clear();
+        utcCalendar.set(
+                localCalendar.get(Calendar.YEAR),
+                localCalendar.get(Calendar.MONTH),
+                localCalendar.get(Calendar.DAY_OF_MONTH)
+        );
+
+        return Math.floorDiv(utcCalendar.getTimeInMillis(), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Gets the date of an epoch day.
+     * @param epochDay Amount of days since 1970-01-01.
+     * @return A {@link Date} instance at the local midnight of the day.
+     */
+    public static Date toDate(long epochDay) {
+        final GregorianCalendar utcCalendar = new GregorianCalendar(UTC);
+        utcCalendar.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+
+        final Calendar localCalendar = Calendar.getInstance();
+        localCalendar.clear();
+        localCalendar.set(
+                utcCalendar.get(Calendar.YEAR),
+                utcCalendar.get(Calendar.MONTH),
+                utcCalendar.get(Calendar.DAY_OF_MONTH)
+        );
+
+        return new Date(localCalendar.getTimeInMillis());
+    }
+}
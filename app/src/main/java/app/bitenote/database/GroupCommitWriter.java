@@ -0,0 +1,479 @@
+package app.bitenote.database;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Single writer thread that applies the write operations queued by any thread in batches, each
+ * wrapped by a single transaction, so concurrent writers share the cost of a commit.
+ * <p>
+ * Once the first operation of a batch is taken, the writer waits up to a maximum latency for more
+ * operations, until the batch is full. If an operation of a batch fails, the batch is rolled back
+ * and its operations are applied again one transaction at a time, so every caller gets the
+ * result of its own operation.
+ * @author Daniel N.
+ */
+public final class GroupCommitWriter implements AutoCloseable {
+    /**
+     * Default maximum amount of operations per transaction.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Default maximum time that the first operation of a batch waits for more operations, in
+     * milliseconds.
+     */
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 5;
+
+    /**
+     * Write operation applied inside a transaction of the writer.
+     * @param <T> Type of the result of the operation.
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+        /**
+         * Applies the operation.
+         * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+         * @return The result of the operation.
+         * @throws SQLException If a statement fails. The operation must not catch it, so the
+         * transaction can be rolled back.
+         */
+        T apply(@NonNull SQLiteDatabase database);
+    }
+
+    /**
+     * Operation waiting in the queue, along with the future of its caller.
+     * @param <T> Type of the result of the operation.
+     */
+    private static final class QueuedOperation<T> {
+        /**
+         * Operation.
+         */
+        private final Operation<T> mOperation;
+
+        /**
+         * Future that completes with the result of the operation.
+         */
+        private final CompletableFuture<T> mFuture = new CompletableFuture<>();
+
+        /**
+         * Amount of snapshots restored by the helper when the operation was queued.
+         * @see BiteNoteSQLiteHelper#getRestoreCount()
+         */
+        private final long mRestoreCount;
+
+        /**
+         * Result of the operation, kept until its batch is committed.
+         */
+        private T mResult = null;
+
+        /**
+         * Queued operation constructor.
+         * @param operation Operation.
+         * @param restoreCount Amount of snapshots restored by the helper when the operation was
+         * queued.
+         */
+        private QueuedOperation(@NonNull Operation<T> operation, long restoreCount) {
+            mOperation = operation;
+            mRestoreCount = restoreCount;
+        }
+
+        /**
+         * Applies the operation and keeps its result.
+         * @param database Writable {@link SQLiteDatabase} instance, in a transaction.
+         */
+        private void apply(@NonNull SQLiteDatabase database) {
+            mResult = mOperation.apply(database);
+        }
+
+        /**
+         * Completes the future with the kept result.
+         */
+        private void complete() {
+            mFuture.complete(mResult);
+        }
+    }
+
+    /**
+     * Operation that stops the writer thread once it's taken from the queue.
+     */
+    private static final QueuedOperation<Void> STOP_OPERATION =
+            new QueuedOperation<>(database -> null, 0);
+
+    /**
+     * Database helper whose database is written.
+     */
+    private final BiteNoteSQLiteHelper mHelper;
+
+    /**
+     * Maximum amount of operations per transaction.
+     */
+    private final int mMaxBatchSize;
+
+    /**
+     * Maximum time that the first operation of a batch waits for more operations, in
+     * nanoseconds.
+     */
+    private final long mMaxLatencyNanos;
+
+    /**
+     * Queue of the operations waiting for the writer.
+     */
+    private final LinkedBlockingQueue<QueuedOperation<?>> mQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Determines whether the writer thread has stopped taking operations. It's only accessed while
+     * holding the lock of {@link #mQueue}, so no operation can be queued after the queue is
+     * drained.
+     */
+    private boolean mIsStopped = false;
+
+    /**
+     * Writer thread.
+     */
+    private final Thread mWriterThread;
+
+    /**
+     * Amount of committed transactions.
+     */
+    private final LongAdder mCommitCount = new LongAdder();
+
+    /**
+     * Amount of committed operations.
+     */
+    private final LongAdder mOperationCount = new LongAdder();
+
+    /**
+     * Constructor for the writer. It uses {@link #DEFAULT_MAX_BATCH_SIZE} and
+     * {@link #DEFAULT_MAX_LATENCY_MILLIS}.
+     * @param helper Database helper whose database is written.
+     */
+    public GroupCommitWriter(@NonNull BiteNoteSQLiteHelper helper) {
+        this(helper, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * Constructor for the writer. Bigger batches and latencies mean fewer commits under load, but
+     * a single writer waits longer for its own commit.
+     * @param helper Database helper whose database is written.
+     * @param maxBatchSize Maximum amount of operations per transaction.
+     * @param maxLatencyMillis Maximum time that the first operation of a batch waits for more
+     * operations, in milliseconds. If it's 0, batches only contain the operations that were
+     * already queued.
+     */
+    public GroupCommitWriter(
+            @NonNull BiteNoteSQLiteHelper helper,
+            int maxBatchSize,
+            long maxLatencyMillis
+    ) {
+        assert maxBatchSize > 0 : "Batch size must be positive.";
+        assert maxLatencyMillis >= 0 : "Latency can't be negative.";
+
+        mHelper = helper;
+        mMaxBatchSize = maxBatchSize;
+        mMaxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+
+        mWriterThread = new Thread(this::runWriter, "GroupCommitWriter");
+        mWriterThread.start();
+    }
+
+    /**
+     * Queues an operation.
+     * @param operation Operation.
+     * @return A future that completes with the result of the operation once its transaction is
+     * committed, or exceptionally if the operation fails, or if a snapshot is restored before it's
+     * applied.
+     * @param <T> Type of the result of the operation.
+     */
+    public <T> CompletableFuture<T> submit(@NonNull Operation<T> operation) {
+        return submit(operation, mHelper.getRestoreCount());
+    }
+
+    /**
+     * Queues an operation that was meant for the database as it was after a number of restored
+     * snapshots. It's dropped if another snapshot is restored before it's applied.
+     * @param operation Operation.
+     * @param restoreCount Amount of snapshots restored by the helper when the write was first
+     * queued.
+     * @return A future that completes with the result of the operation once its transaction is
+     * committed, or exceptionally if the operation fails or is dropped.
+     * @param <T> Type of the result of the operation.
+     * @see BiteNoteSQLiteHelper#getRestoreCount()
+     */
+    <T> CompletableFuture<T> submit(@NonNull Operation<T> operation, long restoreCount) {
+        final QueuedOperation<T> queuedOperation = new QueuedOperation<>(operation, restoreCount);
+
+        synchronized (mQueue) {
+            if (mIsStopped) {
+                queuedOperation.mFuture.completeExceptionally(
+                        new IllegalStateException("The writer is closed.")
+                );
+            } else {
+                mQueue.add(queuedOperation);
+            }
+        }
+
+        return queuedOperation.mFuture;
+    }
+
+    /**
+     * Queues the insertion of a recipe.
+     * @param recipe {@link Recipe} instance. It must not be mutated until the future completes.
+     * @return A future that completes with the ID of the inserted recipe, once it's committed and
+     * written through the {@link RecipeCache}.
+     * @see BiteNoteSQLiteHelper#insertRecipe(Recipe)
+     */
+    public CompletableFuture<Integer> insertRecipe(@NonNull Recipe recipe) {
+        return submit(database -> mHelper.insertRecipe(database, recipe)).thenApply(id -> {
+            mHelper.getRecipeCache().writeInsert(id, recipe);
+            return id;
+        });
+    }
+
+    /**
+     * Queues the update of a recipe.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance. It must not be mutated until the future completes.
+     * @return A future that completes once the recipe is updated.
+     * @see BiteNoteSQLiteHelper#updateRecipe(int, Recipe)
+     */
+    public CompletableFuture<Void> updateRecipe(int recipeId, @NonNull Recipe recipe) {
+        return updateRecipe(recipeId, recipe, mHelper.getRestoreCount());
+    }
+
+    /**
+     * Queues the update of a recipe that was meant for the database as it was after a number of
+     * restored snapshots.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance. It must not be mutated until the future completes.
+     * @param restoreCount Amount of snapshots restored by the helper when the write was first
+     * queued.
+     * @return A future that completes once the recipe is updated.
+     * @see #submit(Operation, long)
+     */
+    CompletableFuture<Void> updateRecipe(int recipeId, @NonNull Recipe recipe, long restoreCount) {
+        return submit(database -> {
+            mHelper.updateRecipe(database, recipeId, recipe);
+            return null;
+        }, restoreCount).thenRun(() -> mHelper.getRecipeCache().writeUpdate(recipeId, recipe));
+    }
+
+    /**
+     * Queues the deletion of a recipe.
+     * @param recipeId Recipe ID.
+     * @return A future that completes once the recipe is deleted.
+     * @see BiteNoteSQLiteHelper#deleteRecipe(int)
+     */
+    public CompletableFuture<Void> deleteRecipe(int recipeId) {
+        return deleteRecipe(recipeId, mHelper.getRestoreCount());
+    }
+
+    /**
+     * Queues the deletion of a recipe that was meant for the database as it was after a number of
+     * restored snapshots.
+     * @param recipeId Recipe ID.
+     * @param restoreCount Amount of snapshots restored by the helper when the write was first
+     * queued.
+     * @return A future that completes once the recipe is deleted.
+     * @see #submit(Operation, long)
+     */
+    CompletableFuture<Void> deleteRecipe(int recipeId, long restoreCount) {
+        return submit(database -> {
+            mHelper.deleteRecipe(database, recipeId);
+            return null;
+        }, restoreCount).thenRun(() -> mHelper.getRecipeCache().writeDelete(recipeId));
+    }
+
+    /**
+     * Gets the amount of snapshots restored by the helper of this writer.
+     * @return The amount of restored snapshots.
+     * @see BiteNoteSQLiteHelper#getRestoreCount()
+     */
+    long getRestoreCount() {
+        return mHelper.getRestoreCount();
+    }
+
+    /**
+     * Gets the amount of committed transactions.
+     * @return The amount of commits.
+     */
+    public long getCommitCount() {
+        return mCommitCount.sum();
+    }
+
+    /**
+     * Gets the amount of committed operations.
+     * @return The amount of operations.
+     */
+    public long getOperationCount() {
+        return mOperationCount.sum();
+    }
+
+    /**
+     * Applies every queued operation, then stops the writer thread. The futures of the operations
+     * submitted afterwards complete exceptionally with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        synchronized (mQueue) {
+            if (!mIsStopped) mQueue.add(STOP_OPERATION);
+        }
+
+        try {
+            mWriterThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loop of the writer thread.
+     */
+    private void runWriter() {
+        final List<QueuedOperation<?>> batch = new ArrayList<>(mMaxBatchSize);
+        boolean isStopped = false;
+
+        try {
+            while (!isStopped) {
+                try {
+                    batch.add(mQueue.take());
+
+                    final long deadline = System.nanoTime() + mMaxLatencyNanos;
+                    while (batch.size() < mMaxBatchSize) {
+                        final QueuedOperation<?> operation =
+                                mQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (operation == null) break;
+
+                        batch.add(operation);
+                        if (operation == STOP_OPERATION) break;
+                    }
+                } catch (InterruptedException e) {
+                    isStopped = true;
+                }
+
+                isStopped |= batch.remove(STOP_OPERATION);
+                if (!batch.isEmpty()) applyBatch(batch);
+
+                batch.clear();
+            }
+        } finally {
+            /// also reached if an operation throws an error that stops the thread
+            drainQueue();
+        }
+    }
+
+    /**
+     * Stops taking operations, and completes the futures of the operations left in the queue
+     * exceptionally, so no caller waits forever for an operation that will never be applied.
+     */
+    private void drainQueue() {
+        final List<QueuedOperation<?>> pendingOperations = new ArrayList<>();
+
+        synchronized (mQueue) {
+            mIsStopped = true;
+            mQueue.drainTo(pendingOperations);
+        }
+
+        for (QueuedOperation<?> operation: pendingOperations) {
+            if (operation == STOP_OPERATION) continue;
+
+            operation.mFuture.completeExceptionally(
+                    new IllegalStateException("The writer was stopped before the operation.")
+            );
+        }
+    }
+
+    /**
+     * Applies a batch of operations in a single transaction. If it fails, every operation is
+     * applied again in its own transaction.
+     * @param batch Batch of operations.
+     */
+    private void applyBatch(@NonNull List<QueuedOperation<?>> batch) {
+        try {
+            applyInTransaction(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+
+            /// find out which operations failed
+            for (QueuedOperation<?> operation: batch) {
+                try {
+                    applyInTransaction(List.of(operation));
+                } catch (RuntimeException operationException) {
+                    fail(operation, operationException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies operations in a single transaction, and completes their futures once it's
+     * committed. Operations queued before the last restored snapshot are dropped instead.
+     * @param operations Operations.
+     * @throws RuntimeException If an operation fails, in which case the transaction is rolled
+     * back.
+     */
+    private void applyInTransaction(@NonNull List<QueuedOperation<?>> operations) {
+        final List<QueuedOperation<?>> appliedOperations = new ArrayList<>(operations.size());
+
+        /// the database file can't be swapped by a restore while the lock is held
+        final Lock fileLock = mHelper.getFileLock();
+        fileLock.lock();
+        try {
+            final long restoreCount = mHelper.getRestoreCount();
+            for (QueuedOperation<?> operation: operations) {
+                if (operation.mRestoreCount == restoreCount) {
+                    appliedOperations.add(operation);
+                } else {
+                    operation.mFuture.completeExceptionally(new IllegalStateException(
+                            "A snapshot was restored before the operation."
+                    ));
+                }
+            }
+            if (appliedOperations.isEmpty()) return;
+
+            final SQLiteDatabase database = mHelper.getWritableDatabase();
+
+            database.beginTransaction();
+            try {
+                for (QueuedOperation<?> operation: appliedOperations) {
+                    operation.apply(database);
+                }
+
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } finally {
+            fileLock.unlock();
+        }
+
+        mCommitCount.increment();
+        mOperationCount.add(appliedOperations.size());
+        appliedOperations.forEach(QueuedOperation::complete);
+    }
+
+    /**
+     * Completes the future of a failed operation.
+     * @param operation Failed operation.
+     * @param e Exception thrown by the operation.
+     */
+    private static void fail(@NonNull QueuedOperation<?> operation, @NonNull RuntimeException e) {
+        Log.e("db dml", Optional.ofNullable(e.getMessage()).orElse("Missing message."));
+        operation.mFuture.completeExceptionally(e);
+    }
+}
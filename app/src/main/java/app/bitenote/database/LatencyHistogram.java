@@ -0,0 +1,159 @@
+package app.bitenote.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values are counted in log-linear buckets: each
+ * power of two is split in {@value #SUB_BUCKET_COUNT} linear sub-buckets, so percentiles are
+ * reported with a relative error below 12.5%, using a fixed amount of memory. Recording a value
+ * costs a few atomic increments, which makes it cheap enough to be always enabled.
+ * @author Daniel N.
+ */
+public final class LatencyHistogram {
+    /**
+     * Base 2 logarithm of {@link #SUB_BUCKET_COUNT}.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Amount of linear sub-buckets per power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Amount of buckets, enough to hold any positive {@code long}.
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * Counts of each bucket.
+     */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Amount of recorded values.
+     */
+    private final LongAdder mCount = new LongAdder();
+
+    /**
+     * Sum of the recorded values.
+     */
+    private final LongAdder mSum = new LongAdder();
+
+    /**
+     * Maximum recorded value.
+     */
+    private final LongAccumulator mMax = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     * @param nanos Latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+
+        mBuckets.incrementAndGet(getBucketIndex(value));
+        mCount.increment();
+        mSum.add(value);
+        mMax.accumulate(value);
+    }
+
+    /**
+     * Gets the amount of recorded values.
+     * @return The amount of recorded values.
+     */
+    public long getCount() {
+        return mCount.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     * @return The mean in nanoseconds, or 0 if no value was recorded.
+     */
+    public long getMean() {
+        final long count = mCount.sum();
+        return count == 0 ? 0 : mSum.sum() / count;
+    }
+
+    /**
+     * Gets the maximum recorded value.
+     * @return The maximum in nanoseconds, or 0 if no value was recorded.
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Gets a percentile of the recorded values. Values recorded concurrently may or may not be
+     * taken into account.
+     * @param percentile Percentile, between 0 and 100.
+     * @return The upper bound of the bucket that holds the percentile in nanoseconds, or 0 if no
+     * value was recorded.
+     */
+    public long getPercentile(double percentile) {
+        final long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        /// a snapshot is taken first, so the rank is computed over a consistent total
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long accumulated = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += counts[i];
+            if (accumulated >= rank) return Math.min(getBucketUpperBound(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Removes every recorded value. Values recorded concurrently may survive the reset.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+
+        mCount.reset();
+        mSum.reset();
+        mMax.reset();
+    }
+
+    /**
+     * Gets the bucket of a value.
+     * @param value Non-negative value.
+     * @return The index of the bucket.
+     */
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket =
+                (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Gets the highest value that a bucket holds.
+     * @param index Index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    private static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+
+        final int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+        return (SUB_BUCKET_COUNT + subBucket) * width + width - 1;
+    }
+}
@@ -0,0 +1,140 @@
+package app.bitenote.database;
+
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects calls to the methods of {@link BiteNoteSQLiteHelper} made from the main thread, where
+ * disk access blocks the UI. Depending on its {@link Mode}, calls are ignored, logged along with
+ * their stack trace and duration once they end, or rejected by throwing.
+ * <p>
+ * Only the outermost call is reported, so a method that calls other methods of the helper is
+ * reported once.
+ * @see BiteNoteSQLiteHelper#getMainThreadGuard()
+ * @author Daniel N.
+ */
+public final class MainThreadGuard {
+    /**
+     * Behaviour of the guard when the main thread accesses the database.
+     */
+    public enum Mode {
+        /**
+         * Main thread calls are ignored.
+         */
+        DISABLED,
+
+        /**
+         * Main thread calls are logged as warnings once they end.
+         */
+        LOG,
+
+        /**
+         * Main thread calls throw an {@link IllegalStateException} before touching the database.
+         */
+        STRICT
+    }
+
+    /**
+     * Current mode.
+     */
+    private volatile Mode mMode;
+
+    /**
+     * Amount of reported main thread calls.
+     */
+    private final LongAdder mViolationCount = new LongAdder();
+
+    /**
+     * Depth of the nested calls that are running in the main thread.
+     * @implNote Only accessed from the main thread, so it doesn't need synchronization.
+     */
+    private int mMainThreadDepth = 0;
+
+    /**
+     * Stack trace of the outermost call that is running in the main thread.
+     * @implNote Only accessed from the main thread, so it doesn't need synchronization.
+     */
+    private Throwable mMainThreadTrace = null;
+
+    /**
+     * Constructor for the guard.
+     * @param mode Initial mode.
+     */
+    public MainThreadGuard(@NonNull Mode mode) {
+        mMode = mode;
+    }
+
+    /**
+     * Gets the current mode.
+     * @return The current {@link Mode}.
+     */
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Sets the current mode.
+     * @param mode New {@link Mode}.
+     */
+    public void setMode(@NonNull Mode mode) {
+        mMode = mode;
+    }
+
+    /**
+     * Gets the amount of main thread calls that were reported.
+     * @return The amount of violations.
+     */
+    public long getViolationCount() {
+        return mViolationCount.sum();
+    }
+
+    /**
+     * Checks a call that is about to start. If it returns {@code true},
+     * {@link #exit(String, long)} must be called once the call ends.
+     * @param methodName Name of the called method.
+     * @return {@code true} if the call runs in the main thread and is being guarded.
+     * @throws IllegalStateException If the call runs in the main thread in {@link Mode#STRICT}.
+     */
+    boolean enter(@NonNull String methodName) {
+        if (mMode == Mode.DISABLED || Looper.myLooper() != Looper.getMainLooper()) return false;
+
+        if (mMainThreadDepth == 0) {
+            if (mMode == Mode.STRICT) {
+                throw new IllegalStateException(
+                        "Database accessed from the main thread by " + methodName + "."
+                );
+            }
+
+            mMainThreadTrace = new Throwable("Main thread call to " + methodName + ".");
+        }
+
+        mMainThreadDepth++;
+        return true;
+    }
+
+    /**
+     * Ends a call that was guarded by {@link #enter(String)}, and reports it if it was the
+     * outermost one.
+     * @param methodName Name of the called method.
+     * @param elapsedNanos Duration of the call, in nanoseconds.
+     */
+    void exit(@NonNull String methodName, long elapsedNanos) {
+        if (--mMainThreadDepth > 0) return;
+
+        mViolationCount.increment();
+        Log.w(
+                "db main thread",
+                String.format(
+                        Locale.ROOT,
+                        "%s blocked the main thread for %.3f ms.",
+                        methodName,
+                        elapsedNanos / 1e6
+                ),
+                mMainThreadTrace
+        );
+        mMainThreadTrace = null;
+    }
+}
@@ -0,0 +1,131 @@
+package app.bitenote.database;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import androidx.annotation.NonNull;
+
+/**
+ * Cursor that measures its query on the first read. SQLite only runs a query once its cursor
+ * fills the first window, so the latency of the query is the time it took to be prepared plus
+ * the time of the first read made by the caller. The rows are never counted just to be measured.
+ * @author Daniel N.
+ */
+final class MeasuredCursor extends CursorWrapper {
+    /**
+     * Listener of the measured query.
+     */
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * Called once, when the query has been measured.
+         * @param elapsedNanos Latency of the query, in nanoseconds.
+         * @param rowCount Amount of rows returned by the query, or {@code -1} if the cursor was
+         * closed without being read.
+         */
+        void onMeasured(long elapsedNanos, int rowCount);
+    }
+
+    /**
+     * Time it took to prepare the query, in nanoseconds.
+     */
+    private final long mPrepareNanos;
+
+    /**
+     * Listener of the measured query, or {@code null} once it has been called.
+     */
+    private Listener mListener;
+
+    /**
+     * Constructor.
+     * @param cursor {@link Cursor} instance returned by the query, which must not have been read.
+     * @param prepareNanos Time it took to prepare the query, in nanoseconds.
+     * @param listener {@link Listener} instance.
+     */
+    MeasuredCursor(@NonNull Cursor cursor, long prepareNanos, @NonNull Listener listener) {
+        super(cursor);
+
+        this.mPrepareNanos = prepareNanos;
+        this.mListener = listener;
+    }
+
+    @Override
+    public int getCount() {
+        final long startTime = System.nanoTime();
+        final int count = super.getCount();
+
+        measure(startTime);
+        return count;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        final long startTime = System.nanoTime();
+        final boolean isMoved = super.move(offset);
+
+        measure(startTime);
+        return isMoved;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        final long startTime = System.nanoTime();
+        final boolean isMoved = super.moveToPosition(position);
+
+        measure(startTime);
+        return isMoved;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        final long startTime = System.nanoTime();
+        final boolean isMoved = super.moveToFirst();
+
+        measure(startTime);
+        return isMoved;
+    }
+
+    @Override
+    public boolean moveToLast() {
+        final long startTime = System.nanoTime();
+        final boolean isMoved = super.moveToLast();
+
+        measure(startTime);
+        return isMoved;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        final long startTime = System.nanoTime();
+        final boolean isMoved = super.moveToNext();
+
+        measure(startTime);
+        return isMoved;
+    }
+
+    @Override
+    public void close() {
+        /// a query that was never read has only been prepared
+        if (mListener != null) {
+            final Listener listener = mListener;
+            mListener = null;
+            listener.onMeasured(mPrepareNanos, -1);
+        }
+
+        super.close();
+    }
+
+    /**
+     * Calls the listener after the first read.
+     * @param startTime Value of {@link System#nanoTime()} before the read.
+     */
+    private void measure(long startTime) {
+        if (mListener == null) return;
+
+        final long elapsedNanos = mPrepareNanos + System.nanoTime() - startTime;
+        final Listener listener = mListener;
+        mListener = null;
+
+        /// the first window has been filled, so the count is already known
+        listener.onMeasured(elapsedNanos, super.getCount());
+    }
+}
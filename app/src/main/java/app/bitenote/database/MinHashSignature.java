@@ -0,0 +1,228 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * MinHash signature of the set of ingredients and utensils of a recipe. The fraction of values
+ * two signatures share estimates the Jaccard similarity of their sets.
+ * <p>
+ * Signatures are split in {@link #BAND_COUNT} bands of {@link #ROWS_PER_BAND} values, and each
+ * band is hashed into a bucket of the 'recipe_signature_buckets' table. Recipes that share any
+ * bucket are the candidates of a similarity search, so only a few recipes are ever compared.
+ * @see BiteNoteSQLiteHelper#getSimilarRecipes(int, int)
+ * @author Daniel N.
+ */
+public final class MinHashSignature {
+    /**
+     * Amount of bands a signature is split in.
+     */
+    public static final int BAND_COUNT = 16;
+
+    /**
+     * Amount of values in each band. Two sets with a similarity of {@code s} share at least one
+     * bucket with a probability of {@code 1 - (1 - s^4)^16}, which is above 0.6 for {@code s} of
+     * 0.5, and below 0.03 for {@code s} of 0.2.
+     */
+    public static final int ROWS_PER_BAND = 4;
+
+    /**
+     * Amount of values in a signature.
+     */
+    public static final int LENGTH = BAND_COUNT * ROWS_PER_BAND;
+
+    /**
+     * Seeds of the hash functions, one per value. They must never change, since signatures are
+     * stored in the database.
+     */
+    private static final long[] SEEDS = new long[LENGTH];
+
+    static {
+        for (int i = 0; i < LENGTH; i++) {
+            SEEDS[i] = mix((i + 1) * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * Minimum hash of the set for each hash function. It's empty if the set is empty.
+     */
+    private final int[] mValues;
+
+    /**
+     * Incremental builder of {@link MinHashSignature}s. Elements can be added in any order.
+     */
+    public static final class Builder {
+        /**
+         * Minimum hash found so far for each hash function.
+         */
+        private final int[] mValues = new int[LENGTH];
+
+        /**
+         * Determines whether any element was added.
+         */
+        private boolean mHasElements = false;
+
+        /**
+         * Adds an ingredient to the set.
+         * @param ingredientId ID of the ingredient.
+         * @return This builder.
+         */
+        public Builder addIngredient(int ingredientId) {
+            add((long) ingredientId << 1);
+            return this;
+        }
+
+        /**
+         * Adds an utensil to the set.
+         * @param utensilId ID of the utensil.
+         * @return This builder.
+         */
+        public Builder addUtensil(int utensilId) {
+            add(((long) utensilId << 1) | 1);
+            return this;
+        }
+
+        /**
+         * Builds the signature of the added elements.
+         * @return A {@link MinHashSignature} instance.
+         */
+        public MinHashSignature build() {
+            return new MinHashSignature(mHasElements ? mValues.clone() : new int[0]);
+        }
+
+        /**
+         * Adds an element to the set. Ingredients and utensils are told apart by the lowest bit.
+         * @param element Element of the set.
+         */
+        private void add(long element) {
+            if (!mHasElements) {
+                Arrays.fill(mValues, Integer.MAX_VALUE);
+                mHasElements = true;
+            }
+
+            for (int i = 0; i < LENGTH; i++) {
+                mValues[i] = Math.min(mValues[i], (int) (mix(element ^ SEEDS[i]) >>> 33));
+            }
+        }
+    }
+
+    /**
+     * Signature constructor.
+     * @param values Minimum hash of the set for each hash function, or an empty array.
+     */
+    private MinHashSignature(@NonNull int[] values) {
+        mValues = values;
+    }
+
+    /**
+     * Computes the signature of the ingredients and utensils of a recipe.
+     * @param recipe {@link Recipe} instance.
+     * @return A {@link MinHashSignature} instance.
+     */
+    public static MinHashSignature of(@NonNull Recipe recipe) {
+        final Builder builder = new Builder();
+        recipe.forEachIngredient((ingredientId, properties) -> builder.addIngredient(ingredientId));
+        recipe.forEachUtensil(builder::addUtensil);
+
+        return builder.build();
+    }
+
+    /**
+     * Reads a signature stored in the 'recipe_signatures' table.
+     * @param bytes Bytes of the signature, as written by {@link #toBytes()}.
+     * @return A {@link MinHashSignature} instance.
+     * @throws IllegalArgumentException If the bytes aren't a signature.
+     */
+    public static MinHashSignature fromBytes(@NonNull byte[] bytes) {
+        if (bytes.length != 0 && bytes.length != LENGTH * Integer.BYTES) {
+            throw new IllegalArgumentException(
+                    "Malformed signature of " + bytes.length + " bytes."
+            );
+        }
+
+        final int[] values = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+
+        return new MinHashSignature(values);
+    }
+
+    /**
+     * Gets the bytes the signature is stored as.
+     * @return A big endian byte array, which is empty if the set is empty.
+     */
+    public byte[] toBytes() {
+        final ByteBuffer buffer = ByteBuffer.allocate(mValues.length * Integer.BYTES);
+        buffer.asIntBuffer().put(mValues);
+
+        return buffer.array();
+    }
+
+    /**
+     * Determines whether the set is empty. Empty sets aren't similar to any set, so they have no
+     * buckets.
+     * @return {@code true} if the signature has no values.
+     */
+    public boolean isEmpty() {
+        return mValues.length == 0;
+    }
+
+    /**
+     * Gets the bucket a band of the signature is hashed into.
+     * @param band Index of the band, from {@code 0} to {@link #BAND_COUNT} exclusive.
+     * @return The bucket of the band. Buckets of different bands are unrelated.
+     */
+    public int getBucket(int band) {
+        assert !isEmpty() : "Empty signatures have no buckets.";
+
+        long hash = band;
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            hash = mix(hash * 31 + mValues[i]);
+        }
+
+        return (int) hash;
+    }
+
+    /**
+     * Estimates the Jaccard similarity between the sets of two signatures.
+     * @param other {@link MinHashSignature} instance.
+     * @return A value between {@code 0} and {@code 1}. It's {@code 0} if any set is empty.
+     */
+    public float estimateSimilarity(@NonNull MinHashSignature other) {
+        if (isEmpty() || other.isEmpty()) return 0;
+
+        int sharedCount = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            if (mValues[i] == other.mValues[i]) sharedCount++;
+        }
+
+        return (float) sharedCount / LENGTH;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MinHashSignature that = (MinHashSignature) o;
+        return Arrays.equals(mValues, that.mValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mValues);
+    }
+
+    /**
+     * Mixes the bits of a value with the finalizer of SplitMix64. Stored hashes of this package
+     * are built on it, so it must never change.
+     * @param value Value to be mixed.
+     * @return The mixed value.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
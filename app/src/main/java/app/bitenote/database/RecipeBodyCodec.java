@@ -0,0 +1,130 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec for compressed recipe bodies. Bodies longer than {@link #COMPRESSION_THRESHOLD} bytes are
+ * stored in the 'body' column of the 'recipes' table as a BLOB, while shorter ones are stored as
+ * plain text. A compressed body has the following layout:
+ * <pre>
+ * | magic "BNZ" (3 bytes) | format (1 byte) | UTF-8 length (4 bytes, big endian) | deflate data |
+ * </pre>
+ * @author Daniel N.
+ */
+public final class RecipeBodyCodec {
+    /**
+     * Minimum size, in UTF-8 bytes, of a body to be compressed. Shorter bodies barely shrink, and
+     * aren't worth the decompression cost.
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    /**
+     * Magic bytes at the start of every compressed body.
+     */
+    private static final byte[] MAGIC = {'B', 'N', 'Z'};
+
+    /**
+     * Format of compressed bodies, which is raw deflate data.
+     */
+    private static final byte DEFLATE_FORMAT = 1;
+
+    /**
+     * Size of the header of compressed bodies.
+     */
+    private static final int HEADER_SIZE = MAGIC.length + 1 + Integer.BYTES;
+
+    /**
+     * Private constructor, since this class only contains static members.
+     */
+    private RecipeBodyCodec() {}
+
+    /**
+     * Compresses a body, if it's worth it.
+     * @param body Body text of a recipe.
+     * @return The compressed body, or {@code null} if the body is below the threshold or doesn't
+     * shrink when compressed, in which case it should be stored as plain text.
+     */
+    public static byte[] encode(@NonNull String body) {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < COMPRESSION_THRESHOLD) return null;
+
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+        final byte[] buffer = new byte[4096];
+
+        output.write(MAGIC, 0, MAGIC.length);
+        output.write(DEFLATE_FORMAT);
+        output.write(
+                ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array(),
+                0,
+                Integer.BYTES
+        );
+
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return output.size() < bytes.length ? output.toByteArray() : null;
+    }
+
+    /**
+     * Decompresses a body.
+     * @param compressedBody Body compressed by {@link #encode(String)}.
+     * @return The body text.
+     * @throws IllegalArgumentException If the compressed body is malformed.
+     */
+    public static String decode(@NonNull byte[] compressedBody) {
+        if (
+                compressedBody.length < HEADER_SIZE
+                        || compressedBody[0] != MAGIC[0]
+                        || compressedBody[1] != MAGIC[1]
+                        || compressedBody[2] != MAGIC[2]
+        ) {
+            throw new IllegalArgumentException("Not a compressed recipe body.");
+        }
+        if (compressedBody[MAGIC.length] != DEFLATE_FORMAT) {
+            throw new IllegalArgumentException(
+                    "Unsupported body format: " + compressedBody[MAGIC.length] + "."
+            );
+        }
+
+        final int length = ByteBuffer.wrap(compressedBody, MAGIC.length + 1, Integer.BYTES)
+                .getInt();
+        final byte[] bytes = new byte[length];
+        final Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(compressedBody, HEADER_SIZE, compressedBody.length - HEADER_SIZE);
+
+            int inflatedBytes = 0;
+            while (inflatedBytes < length && !inflater.finished()) {
+                final int readBytes = inflater.inflate(bytes, inflatedBytes, length - inflatedBytes);
+                if (readBytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+
+                inflatedBytes += readBytes;
+            }
+
+            if (inflatedBytes != length) {
+                throw new IllegalArgumentException("Truncated compressed body.");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed body.", e);
+        } finally {
+            inflater.end();
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,273 @@
+package app.bitenote.database;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Bounded cache of the recipes read by {@link BiteNoteSQLiteHelper}, where the key is the recipe
+ * ID and the least recently used recipes are evicted first. The cache is written through by the
+ * insertions, updates and deletions of the helper once their transaction is committed.
+ * <p>
+ * Recipes are mutable, so the cache keeps its own copies and hands out copies too.
+ * <p>
+ * Every write is counted, and the count at the last write of each recipe is its version, which
+ * tells whether a copy of a recipe obtained elsewhere is still current. Only the versions of the
+ * latest writes are kept, and older recipes share the version of the newest forgotten write, so
+ * copies that old are treated as outdated.
+ * @see BiteNoteSQLiteHelper#getRecipeCache()
+ * @author Daniel N.
+ */
+public final class RecipeCache {
+    /**
+     * Default maximum amount of cached recipes.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * Maximum amount of kept recipe versions. Copies of recipes are only kept by the last few
+     * screens, so they rarely outlive this many writes.
+     */
+    private static final int MAX_VERSION_COUNT = 256;
+
+    /**
+     * Cached recipes.
+     * @implNote Compound operations synchronize on this instance, see
+     * {@link #putIfUnchanged(int, Recipe, long)}.
+     */
+    private final LruCache<Integer, Recipe> mRecipes;
+
+    /**
+     * Maximum amount of cached recipes. The cache can be trimmed below it.
+     */
+    private final int mMaxSize;
+
+    /**
+     * Amount of writes made through the cache. A recipe read from the database is only cached
+     * if no write happened while it was being read, since it could be outdated.
+     * @implNote Guarded by {@link #mRecipes}.
+     */
+    private long mWriteCount = 0;
+
+    /**
+     * Write count at the last write of the latest written recipes, where the key is the recipe ID.
+     * Entries are kept in write order, so the oldest version is always the first one.
+     * @implNote Guarded by {@link #mRecipes}.
+     */
+    private final LinkedHashMap<Integer, Long> mRecipeVersions = new LinkedHashMap<>();
+
+    /**
+     * Highest version that was forgotten, either by {@link #clear()}, by trimming the versions,
+     * or by evicting the oldest ones. It's the version of every recipe without a kept version.
+     * @implNote Guarded by {@link #mRecipes}.
+     */
+    private long mForgottenVersion = 0;
+
+    /**
+     * Constructor for the cache.
+     * @param maxSize Maximum amount of cached recipes.
+     */
+    public RecipeCache(int maxSize) {
+        assert maxSize > 0 : "Cache size must be positive.";
+
+        mRecipes = new LruCache<>(maxSize);
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Gets a copy of a cached recipe.
+     * @param recipeId Recipe ID.
+     * @return An {@link Optional} instance that wraps the copy, which is empty on a miss.
+     */
+    public Optional<Recipe> get(int recipeId) {
+        return Optional.ofNullable(mRecipes.get(recipeId)).map(Recipe::new);
+    }
+
+    /**
+     * Gets the amount of writes made through the cache, which must be obtained before reading a
+     * recipe from the database. A recipe read afterwards is current as long as its version isn't
+     * greater than this count.
+     * @return The write count.
+     * @see #putIfUnchanged(int, Recipe, long)
+     * @see #getVersion(int)
+     */
+    public long getWriteCount() {
+        synchronized (mRecipes) {
+            return mWriteCount;
+        }
+    }
+
+    /**
+     * Gets the version of a recipe, which is the write count at its last write.
+     * @param recipeId Recipe ID.
+     * @return The version of the recipe, or {@code 0} if it hasn't been written since the
+     * database was opened.
+     */
+    public long getVersion(int recipeId) {
+        synchronized (mRecipes) {
+            return Math.max(mForgottenVersion, mRecipeVersions.getOrDefault(recipeId, 0L));
+        }
+    }
+
+    /**
+     * Caches a copy of a recipe read from the database, unless a write happened since the read
+     * started.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance.
+     * @param writeCount Write count obtained from {@link #getWriteCount()} before the read.
+     */
+    void putIfUnchanged(int recipeId, @NonNull Recipe recipe, long writeCount) {
+        synchronized (mRecipes) {
+            if (mWriteCount == writeCount) mRecipes.put(recipeId, new Recipe(recipe));
+        }
+    }
+
+    /**
+     * Caches a copy of a recipe that was just inserted.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance.
+     */
+    void writeInsert(int recipeId, @NonNull Recipe recipe) {
+        synchronized (mRecipes) {
+            recordWrite(recipeId);
+            mRecipes.put(recipeId, new Recipe(recipe));
+        }
+    }
+
+    /**
+     * Replaces a cached recipe that was just updated. The creation date isn't updated in the
+     * database, so it's kept from the cached recipe. Recipes that weren't cached stay uncached.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance which holds the new data.
+     */
+    void writeUpdate(int recipeId, @NonNull Recipe recipe) {
+        synchronized (mRecipes) {
+            recordWrite(recipeId);
+
+            final Recipe cachedRecipe = mRecipes.get(recipeId);
+            if (cachedRecipe == null) return;
+
+            final Recipe updatedRecipe = new Recipe(recipe);
+            updatedRecipe.creationDate = cachedRecipe.creationDate;
+            mRecipes.put(recipeId, updatedRecipe);
+        }
+    }
+
+    /**
+     * Removes a recipe that was just deleted.
+     * @param recipeId Recipe ID.
+     */
+    void writeDelete(int recipeId) {
+        synchronized (mRecipes) {
+            recordWrite(recipeId);
+            mRecipes.remove(recipeId);
+        }
+    }
+
+    /**
+     * Removes every cached recipe, and makes every recipe obtained before the call outdated.
+     */
+    void clear() {
+        synchronized (mRecipes) {
+            mForgottenVersion = ++mWriteCount;
+            mRecipeVersions.clear();
+            mRecipes.evictAll();
+        }
+    }
+
+    /**
+     * Shrinks the cache depending on how much memory the system needs back. Half of the cache is
+     * kept while the app is running, and all of it is dropped once the app is in the background.
+     * @param level Level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mRecipes.evictAll();
+
+            /// copies of recipes can still be handed out, but every one of them is now outdated
+            synchronized (mRecipes) {
+                mForgottenVersion = mWriteCount;
+                mRecipeVersions.clear();
+            }
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mRecipes.trimToSize(mMaxSize / 2);
+        }
+    }
+
+    /**
+     * Gets the amount of kept recipe versions.
+     * @return The amount of versions.
+     */
+    public int getVersionCount() {
+        synchronized (mRecipes) {
+            return mRecipeVersions.size();
+        }
+    }
+
+    /**
+     * Counts a write, and makes its count the version of the written recipe. The oldest version is
+     * forgotten once there are too many of them.
+     * @param recipeId Recipe ID.
+     * @implNote Must be called while synchronized on {@link #mRecipes}.
+     */
+    private void recordWrite(int recipeId) {
+        /// removed first, so the new version is moved to the end of the write order
+        mRecipeVersions.remove(recipeId);
+        mRecipeVersions.put(recipeId, ++mWriteCount);
+
+        if (mRecipeVersions.size() > MAX_VERSION_COUNT) {
+            final Iterator<Map.Entry<Integer, Long>> iterator =
+                    mRecipeVersions.entrySet().iterator();
+            mForgottenVersion = Math.max(mForgottenVersion, iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the amount of cached recipes.
+     * @return The amount of recipes.
+     */
+    public int size() {
+        return mRecipes.size();
+    }
+
+    /**
+     * Gets the amount of reads that found their recipe in the cache.
+     * @return The amount of hits.
+     */
+    public int getHitCount() {
+        return mRecipes.hitCount();
+    }
+
+    /**
+     * Gets the amount of reads that didn't find their recipe in the cache.
+     * @return The amount of misses.
+     */
+    public int getMissCount() {
+        return mRecipes.missCount();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        final int hitCount = getHitCount();
+        final int readCount = hitCount + getMissCount();
+
+        return String.format(
+                Locale.ROOT,
+                "Recipe cache: %d/%d recipes, %d hits, %d misses, %.1f%% hit rate",
+                size(),
+                mMaxSize,
+                hitCount,
+                readCount - hitCount,
+                readCount == 0 ? 0.0 : 100.0 * hitCount / readCount
+        );
+    }
+}
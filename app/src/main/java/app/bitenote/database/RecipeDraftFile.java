@@ -0,0 +1,154 @@
+package app.bitenote.database;
+
+import android.util.JsonReader;
+import android.util.JsonWriter;
+import android.util.Log;
+import android.util.Pair;
+import androidx.annotation.NonNull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.Recipe;
+
+/**
+ * File that holds the recipe being written, so it can be recovered if the process dies before
+ * the recipe is saved in the database. The draft is a single UTF-8 JSON document, where the
+ * recipe is written as described by {@link RecipeLibraryFormat}:
+ * <pre>
+ * {
+ *   "recipe_id": 0,
+ *   "recipe": {"name": "Garlic butter air fryer salmon", ...}
+ * }
+ * </pre>
+ * A recipe ID of 0 means that the recipe isn't in the database yet.
+ * @author Daniel N.
+ */
+public final class RecipeDraftFile {
+    /**
+     * Name of the member that holds the ID of the recipe in the database.
+     */
+    private static final String RECIPE_ID_KEY = "recipe_id";
+
+    /**
+     * Name of the member that holds the recipe.
+     */
+    private static final String RECIPE_KEY = "recipe";
+
+    /**
+     * Suffix of the temporary file that is written before replacing the draft.
+     */
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * File where the draft is stored.
+     */
+    private final File mFile;
+
+    /**
+     * Constructor for the draft file.
+     * @param file File where the draft is stored. It doesn't need to exist.
+     */
+    public RecipeDraftFile(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Writes a draft, replacing the previous one. The draft is written into a temporary file that
+     * replaces the previous one once synced, so a crash never leaves a partial draft behind.
+     * @param recipeId ID of the recipe in the database, or {@code 0} if it's a new recipe.
+     * @param recipe {@link Recipe} instance.
+     * @throws IOException If writing the file fails.
+     */
+    public void write(int recipeId, @NonNull Recipe recipe) throws IOException {
+        final File tempFile = new File(mFile.getPath() + TEMP_FILE_SUFFIX);
+
+        try (final FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+            final JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+            ));
+
+            writer.beginObject().name(RECIPE_ID_KEY).value(recipeId).name(RECIPE_KEY);
+            RecipeLibraryFormat.writeRecipe(writer, recipe);
+            writer.endObject();
+            writer.flush();
+
+            outputStream.getFD().sync();
+        }
+
+        if (!tempFile.renameTo(mFile)) {
+            throw new IOException("Couldn't replace the draft file " + mFile.getPath() + ".");
+        }
+    }
+
+    /**
+     * Reads the draft.
+     * @param ingredients {@link Map} of every ingredient in the database, where the key is the ID
+     * of the ingredient. Ingredients that aren't in the map are skipped.
+     * @param utensilIds {@link Set} of every utensil ID in the database. Utensils that aren't in
+     * the set are skipped.
+     * @return An {@link Optional} that contains a {@link Pair}, whose first element is the ID of
+     * the recipe in the database, and the second element is the {@link Recipe} instance. It's
+     * empty if there's no draft.
+     * @throws IOException If reading the file fails, or if the draft is malformed.
+     */
+    public Optional<Pair<Integer, Recipe>> read(
+            @NonNull Map<Integer, Ingredient> ingredients,
+            @NonNull Set<Integer> utensilIds
+    ) throws IOException {
+        final FileInputStream inputStream;
+        try {
+            inputStream = new FileInputStream(mFile);
+        } catch (FileNotFoundException e) {
+            return Optional.empty();
+        }
+
+        try (
+                final JsonReader reader = new JsonReader(new BufferedReader(
+                        new InputStreamReader(inputStream, StandardCharsets.UTF_8)
+                ))
+        ) {
+            int recipeId = 0;
+            Recipe recipe = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case RECIPE_ID_KEY:
+                        recipeId = reader.nextInt();
+                        break;
+                    case RECIPE_KEY:
+                        recipe = RecipeLibraryFormat.readRecipe(reader, ingredients, utensilIds);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (recipe == null) throw new IOException("Missing recipe in draft.");
+
+            return Optional.of(Pair.create(recipeId, recipe));
+        }
+    }
+
+    /**
+     * Deletes the draft, if there's any.
+     */
+    public void delete() {
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w("recipe draft", "Couldn't delete " + mFile.getName() + ".");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Objects;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Content fingerprint of a recipe, used to find near-duplicates without comparing against every
+ * recipe. It's made of a 64-bit SimHash of the normalized words of the name and body, and of a
+ * hash of the set of ingredients, which ignores their amounts.
+ * <p>
+ * Two recipes are near-duplicates if they have the same ingredients and their SimHashes differ in
+ * at most {@link #MAX_CONTENT_DISTANCE} bits. The SimHash is split in
+ * {@link #MAX_CONTENT_DISTANCE} + 1 blocks, so near-duplicates always share a block, and each
+ * block is stored as a lookup key in the 'recipe_fingerprint_keys' table.
+ * @see BiteNoteSQLiteHelper#importRecipes(java.nio.channels.ReadableByteChannel, int,
+ * DuplicateReport)
+ * @author Daniel N.
+ */
+public final class RecipeFingerprint {
+    /**
+     * Maximum amount of different bits between the SimHashes of near-duplicates. Editing a word of
+     * a short recipe changes about 4 bits, while unrelated texts differ in about 32.
+     */
+    public static final int MAX_CONTENT_DISTANCE = 7;
+
+    /**
+     * Amount of blocks the SimHash is split in, each of which is a lookup key.
+     */
+    public static final int BLOCK_COUNT = MAX_CONTENT_DISTANCE + 1;
+
+    /**
+     * SimHash of the normalized words and word pairs of the name and body.
+     */
+    public final long contentHash;
+
+    /**
+     * Hash of the set of ingredient IDs. It doesn't depend on their order nor on their amounts.
+     */
+    public final long ingredientSetHash;
+
+    /**
+     * Fingerprint constructor.
+     * @param contentHash SimHash of the name and body.
+     * @param ingredientSetHash Hash of the set of ingredient IDs.
+     */
+    public RecipeFingerprint(long contentHash, long ingredientSetHash) {
+        this.contentHash = contentHash;
+        this.ingredientSetHash = ingredientSetHash;
+    }
+
+    /**
+     * Computes the fingerprint of a recipe.
+     * @param recipe {@link Recipe} instance.
+     * @return A {@link RecipeFingerprint} instance.
+     */
+    public static RecipeFingerprint of(@NonNull Recipe recipe) {
+        final long[] ingredientSetHash = {0};
+        recipe.forEachIngredient((ingredientId, properties) ->
+                ingredientSetHash[0] += MinHashSignature.mix(ingredientId)
+        );
+
+        return new RecipeFingerprint(
+                computeContentHash(recipe.name + "\n" + recipe.getBody()),
+                ingredientSetHash[0]
+        );
+    }
+
+    /**
+     * Determines whether this fingerprint belongs to a near-duplicate of the recipe of another.
+     * @param other {@link RecipeFingerprint} instance.
+     * @return {@code true} if both recipes have the same ingredients, and similar texts.
+     */
+    public boolean isDuplicateOf(@NonNull RecipeFingerprint other) {
+        return ingredientSetHash == other.ingredientSetHash
+                && Long.bitCount(contentHash ^ other.contentHash) <= MAX_CONTENT_DISTANCE;
+    }
+
+    /**
+     * Gets the lookup key of a block of the SimHash. Keys of different blocks, or of different
+     * ingredient sets, are unrelated.
+     * @param block Index of the block, from {@code 0} to {@link #BLOCK_COUNT} exclusive.
+     * @return The lookup key of the block.
+     */
+    public long getLookupKey(int block) {
+        final int blockSize = Long.SIZE / BLOCK_COUNT;
+        final long blockValue = (contentHash >>> (block * blockSize)) & ((1L << blockSize) - 1);
+
+        return MinHashSignature.mix(
+                MinHashSignature.mix(ingredientSetHash + block) + blockValue
+        );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecipeFingerprint that = (RecipeFingerprint) o;
+        return contentHash == that.contentHash && ingredientSetHash == that.ingredientSetHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contentHash, ingredientSetHash);
+    }
+
+    /**
+     * Computes the SimHash of a text. The text is lower cased, its accents are removed, and it's
+     * split in words, so the hash doesn't change with formatting. Every word and every pair of
+     * consecutive words is a feature of the hash.
+     * @param text Text to be hashed.
+     * @return The SimHash of the text, or {@code 0} if it has no words.
+     */
+    static long computeContentHash(@NonNull String text) {
+        final String normalizedText = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        final String[] words = normalizedText.split("[^\\p{L}\\p{N}]+");
+        final int[] bitWeights = new int[Long.SIZE];
+        long previousWordHash = 0;
+        boolean hasWords = false;
+
+        for (final String word: words) {
+            if (word.isEmpty()) continue;
+
+            final long wordHash = MinHashSignature.mix(word.hashCode());
+            addFeature(bitWeights, wordHash);
+            if (hasWords) {
+                addFeature(bitWeights, MinHashSignature.mix(previousWordHash * 31 + wordHash));
+            }
+
+            previousWordHash = wordHash;
+            hasWords = true;
+        }
+
+        long hash = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (bitWeights[bit] > 0) hash |= 1L << bit;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Adds the hash of a feature to the bit weights of a SimHash.
+     * @param bitWeights Weight of each bit of the SimHash.
+     * @param featureHash Hash of the feature.
+     */
+    private static void addFeature(@NonNull int[] bitWeights, long featureHash) {
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            bitWeights[bit] += ((featureHash >>> bit) & 1) != 0 ? 1 : -1;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package app.bitenote.database;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.sql.Date;
+import java.util.Map;
+import java.util.Set;
+
+import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.Recipe;
+
+/**
+ * Streaming format of exported recipe libraries. A library is a single UTF-8 JSON document, whose
+ * header members must precede the recipe array, so it can be written and read one recipe at a
+ * time:
+ * <pre>
+ * {
+ *   "format": "bitenote-library",
+ *   "version": 1,
+ *   "recipes": [
+ *     {
+ *       "name": "Garlic butter air fryer salmon",
+ *       "body": "Cut the fresh salmon into tiny fillets...",
+ *       "budget": 7,
+ *       "diners": 2,
+ *       "creation_date": "2025-01-01",
+ *       "ingredients": [{"id": 54, "amount": 200, "is_measured_in_units": false}],
+ *       "utensils": [1]
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * Ingredient and utensil IDs reference the rows of the immutable 'ingredients' and 'utensils'
+ * tables. Unknown members are ignored when reading, so newer versions may add members without
+ * breaking older readers.
+ * @see BiteNoteSQLiteHelper#exportRecipes(java.nio.channels.WritableByteChannel, RecipeQuery)
+ * @see BiteNoteSQLiteHelper#importRecipes(java.nio.channels.ReadableByteChannel, int)
+ * @author Daniel N.
+ */
+public final class RecipeLibraryFormat {
+    /**
+     * Value of the {@code format} member of the library header.
+     */
+    public static final String FORMAT_NAME = "bitenote-library";
+
+    /**
+     * Latest version of the format. Libraries with a newer version are rejected.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Name of the header member that identifies the format.
+     */
+    private static final String FORMAT_KEY = "format";
+
+    /**
+     * Name of the header member that holds the format version.
+     */
+    private static final String VERSION_KEY = "version";
+
+    /**
+     * Name of the member that holds the recipe array.
+     */
+    private static final String RECIPES_KEY = "recipes";
+
+    /**
+     * Name of the recipe member that holds {@link Recipe#name}.
+     */
+    private static final String NAME_KEY = "name";
+
+    /**
+     * Name of the recipe member that holds {@link Recipe#getBody()}.
+     */
+    private static final String BODY_KEY = "body";
+
+    /**
+     * Name of the recipe member that holds {@link Recipe#budget}.
+     */
+    private static final String BUDGET_KEY = "budget";
+
+    /**
+     * Name of the recipe member that holds {@link Recipe#diners}.
+     */
+    private static final String DINERS_KEY = "diners";
+
+    /**
+     * Name of the recipe member that holds {@link Recipe#creationDate}.
+     */
+    private static final String CREATION_DATE_KEY = "creation_date";
+
+    /**
+     * Name of the recipe member that holds the ingredient array.
+     */
+    private static final String INGREDIENTS_KEY = "ingredients";
+
+    /**
+     * Name of the ingredient member that holds its ID.
+     */
+    private static final String INGREDIENT_ID_KEY = "id";
+
+    /**
+     * Name of the ingredient member that holds {@link Ingredient.InRecipeProperties#amount}.
+     */
+    private static final String INGREDIENT_AMOUNT_KEY = "amount";
+
+    /**
+     * Name of the ingredient member that holds
+     * {@link Ingredient.InRecipeProperties#isMeasuredInUnits}.
+     */
+    private static final String INGREDIENT_IS_MEASURED_IN_UNITS_KEY = "is_measured_in_units";
+
+    /**
+     * Name of the recipe member that holds the utensil ID array.
+     */
+    private static final String UTENSILS_KEY = "utensils";
+
+    /**
+     * Private constructor, since this class only contains static members.
+     */
+    private RecipeLibraryFormat() {}
+
+    /**
+     * Writes the library header and opens the recipe array.
+     * @param writer {@link JsonWriter} instance.
+     * @throws IOException If the writer fails.
+     */
+    public static void beginLibrary(@NonNull JsonWriter writer) throws IOException {
+        writer.beginObject()
+                .name(FORMAT_KEY).value(FORMAT_NAME)
+                .name(VERSION_KEY).value(FORMAT_VERSION)
+                .name(RECIPES_KEY).beginArray();
+    }
+
+    /**
+     * Closes the recipe array and the library.
+     * @param writer {@link JsonWriter} instance.
+     * @throws IOException If the writer fails.
+     */
+    public static void endLibrary(@NonNull JsonWriter writer) throws IOException {
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Reads and validates the library header, leaving the reader inside the recipe array.
+     * @param reader {@link JsonReader} instance.
+     * @throws IOException If the reader fails, or if the document isn't a supported library.
+     */
+    public static void beginLibrary(@NonNull JsonReader reader) throws IOException {
+        boolean isFormatChecked = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case FORMAT_KEY:
+                    if (!FORMAT_NAME.equals(reader.nextString())) {
+                        throw new IOException("Not a recipe library.");
+                    }
+                    isFormatChecked = true;
+                    break;
+                case VERSION_KEY:
+                    final int version = nextInt(reader);
+                    if (version > FORMAT_VERSION) {
+                        throw new IOException("Unsupported library version: " + version + ".");
+                    }
+                    break;
+                case RECIPES_KEY:
+                    if (!isFormatChecked) {
+                        throw new IOException("The library header must precede its recipes.");
+                    }
+                    reader.beginArray();
+                    return;
+                default:
+                    reader.skipValue();
+            }
+        }
+
+        throw new IOException("The library has no recipes member.");
+    }
+
+    /**
+     * Closes the recipe array, skipping any member that follows it, and the library.
+     * @param reader {@link JsonReader} instance.
+     * @throws IOException If the reader fails.
+     */
+    public static void endLibrary(@NonNull JsonReader reader) throws IOException {
+        reader.endArray();
+        while (reader.hasNext()) {
+            reader.nextName();
+            reader.skipValue();
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Writes a recipe as an element of the recipe array.
+     * @param writer {@link JsonWriter} instance.
+     * @param recipe {@link Recipe} instance.
+     * @throws IOException If the writer fails.
+     */
+    public static void writeRecipe(
+            @NonNull JsonWriter writer,
+            @NonNull Recipe recipe
+    ) throws IOException {
+        writer.beginObject()
+                .name(NAME_KEY).value(recipe.name)
+                .name(BODY_KEY).value(recipe.getBody())
+                .name(BUDGET_KEY).value(recipe.budget)
+                .name(DINERS_KEY).value(recipe.diners)
+                .name(CREATION_DATE_KEY).value(recipe.creationDate.toString());
+
+        writer.name(INGREDIENTS_KEY).beginArray();
+        for (
+                Map.Entry<Integer, Ingredient.InRecipeProperties> entry:
+                recipe.getIngredients().entrySet()
+        ) {
+            writer.beginObject()
+                    .name(INGREDIENT_ID_KEY).value(entry.getKey())
+                    .name(INGREDIENT_AMOUNT_KEY).value(entry.getValue().amount)
+                    .name(INGREDIENT_IS_MEASURED_IN_UNITS_KEY)
+                    .value(entry.getValue().isMeasuredInUnits)
+                    .endObject();
+        }
+        writer.endArray();
+
+        writer.name(UTENSILS_KEY).beginArray();
+        for (int utensilId: recipe.getUtensils()) {
+            writer.value(utensilId);
+        }
+        writer.endArray();
+
+        writer.endObject();
+    }
+
+    /**
+     * Reads the next recipe of the recipe array.
+     * @param reader {@link JsonReader} instance.
+     * @param ingredients {@link Map} of every ingredient in the database, where the key is the ID
+     * of the ingredient. Ingredients that aren't in the map are skipped.
+     * @param utensilIds {@link Set} of every utensil ID in the database. Utensils that aren't in
+     * the set are skipped.
+     * @return The read {@link Recipe} instance.
+     * @throws IOException If the reader fails, or if the recipe is malformed.
+     */
+    public static Recipe readRecipe(
+            @NonNull JsonReader reader,
+            @NonNull Map<Integer, Ingredient> ingredients,
+            @NonNull Set<Integer> utensilIds
+    ) throws IOException {
+        final Recipe recipe = new Recipe();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NAME_KEY:
+                    recipe.name = reader.nextString();
+                    break;
+                case BODY_KEY:
+                    recipe.setBody(reader.nextString());
+                    break;
+                case BUDGET_KEY:
+                    recipe.budget = nextInt(reader);
+                    break;
+                case DINERS_KEY:
+                    recipe.diners = nextInt(reader);
+                    break;
+                case CREATION_DATE_KEY:
+                    try {
+                        recipe.creationDate = Date.valueOf(reader.nextString());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Malformed creation date.", e);
+                    }
+                    break;
+                case INGREDIENTS_KEY:
+                    readIngredients(reader, recipe, ingredients);
+                    break;
+                case UTENSILS_KEY:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        final int utensilId = nextInt(reader);
+
+                        if (!utensilIds.contains(utensilId)) {
+                            Log.w("db transfer", "Skipped unknown utensil " + utensilId + ".");
+                            continue;
+                        }
+
+                        recipe.addUtensil(utensilId);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return recipe;
+    }
+
+    /**
+     * Reads the next integer of a library.
+     * @param reader {@link JsonReader} instance.
+     * @return The read integer.
+     * @throws IOException If the reader fails, or if the next value isn't an integer.
+     */
+    private static int nextInt(@NonNull JsonReader reader) throws IOException {
+        try {
+            return reader.nextInt();
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed integer.", e);
+        }
+    }
+
+    /**
+     * Reads the ingredient array of a recipe.
+     * @param reader {@link JsonReader} instance.
+     * @param recipe {@link Recipe} instance where the ingredients are put.
+     * @param ingredients {@link Map} of every ingredient in the database, where the key is the ID
+     * of the ingredient.
+     * @throws IOException If the reader fails.
+     */
+    private static void readIngredients(
+            @NonNull JsonReader reader,
+            @NonNull Recipe recipe,
+            @NonNull Map<Integer, Ingredient> ingredients
+    ) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = 0;
+            int amount = 0;
+            boolean isMeasuredInUnits = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case INGREDIENT_ID_KEY:
+                        id = nextInt(reader);
+                        break;
+                    case INGREDIENT_AMOUNT_KEY:
+                        amount = nextInt(reader);
+                        break;
+                    case INGREDIENT_IS_MEASURED_IN_UNITS_KEY:
+                        isMeasuredInUnits = reader.peek() == JsonToken.BOOLEAN
+                                ? reader.nextBoolean()
+                                : nextInt(reader) != 0;
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            final Ingredient ingredient = ingredients.get(id);
+            if (ingredient == null) {
+                Log.w("db transfer", "Skipped unknown ingredient " + id + ".");
+                continue;
+            }
+
+            recipe.putIngredient(
+                    id,
+                    new Ingredient.InRecipeProperties(ingredient, amount, isMeasuredInUnits)
+            );
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,233 @@
+package app.bitenote.database;
+
+import android.util.Log;
+import android.util.Pair;
+import androidx.annotation.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Binary file that holds a summary of the recipe list, so the list can be drawn on a cold start
+ * before the database is opened. Only the fields shown by the recipe cards are kept, so the
+ * recipes read from it have no body, ingredients or utensils, and must be reconciled against the
+ * database once it's open.
+ * <p>
+ * The file is read through a memory map. Every number is big-endian, and the layout is:
+ * <pre>
+ * header:  magic (int), format version (int), recipe count (int), payload length (int),
+ *          payload CRC32 (int)
+ * payload: for each recipe, ordered as in the list:
+ *          id (int), creation date in epoch milliseconds (long), diners (int), budget (int),
+ *          name length in bytes (int), name (UTF-8 bytes)
+ * </pre>
+ * Files with another magic, version, length or checksum are rejected.
+ * @author Daniel N.
+ */
+public final class RecipeListSnapshotFile {
+    /**
+     * Magic number at the start of the file, which spells "BNRL".
+     */
+    private static final int MAGIC = 0x424E524C;
+
+    /**
+     * Version of the format, which must be increased when the layout changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    /**
+     * Size of the chunks copied from the memory map to compute the checksum, in bytes.
+     */
+    private static final int CHECKSUM_CHUNK_SIZE = 8192;
+
+    /**
+     * Suffix of the temporary file that is written before replacing the snapshot.
+     */
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * File where the snapshot is stored.
+     */
+    private final File mFile;
+
+    /**
+     * Checksum of the payload that was last read or written, which skips writing an unchanged
+     * list. It's {@code null} if none was read or written yet.
+     * @implNote Guarded by {@code this}.
+     */
+    private Long mLastChecksum = null;
+
+    /**
+     * Constructor for the snapshot file.
+     * @param file File where the snapshot is stored. It doesn't need to exist.
+     */
+    public RecipeListSnapshotFile(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Writes a snapshot of a recipe list, replacing the previous one. The snapshot is written
+     * into a temporary file that replaces the previous one once synced. If the list is the same
+     * as the last one read or written, nothing is written.
+     * @param recipes List of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the recipe.
+     * @throws IOException If writing the file fails.
+     */
+    public synchronized void write(
+            @NonNull List<Pair<Integer, Recipe>> recipes
+    ) throws IOException {
+        final ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(payloadStream);
+
+        for (Pair<Integer, Recipe> pair: recipes) {
+            final byte[] name = pair.second.name.getBytes(StandardCharsets.UTF_8);
+
+            payload.writeInt(pair.first);
+            payload.writeLong(pair.second.creationDate.getTime());
+            payload.writeInt(pair.second.diners);
+            payload.writeInt(pair.second.budget);
+            payload.writeInt(name.length);
+            payload.write(name);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(payloadStream.toByteArray(), 0, payloadStream.size());
+        if (mLastChecksum != null && mLastChecksum == crc.getValue()) return;
+
+        final File tempFile = new File(mFile.getPath() + TEMP_FILE_SUFFIX);
+        try (final FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+            final DataOutputStream output = new DataOutputStream(outputStream);
+
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(recipes.size());
+            output.writeInt(payloadStream.size());
+            output.writeInt((int) crc.getValue());
+            payloadStream.writeTo(output);
+            output.flush();
+
+            outputStream.getFD().sync();
+        }
+
+        if (!tempFile.renameTo(mFile)) {
+            throw new IOException("Couldn't replace the snapshot file " + mFile.getPath() + ".");
+        }
+
+        mLastChecksum = crc.getValue();
+    }
+
+    /**
+     * Reads the snapshot through a memory map.
+     * @return An {@link Optional} that contains a list of {@link Pair}s, in which the first
+     * element represents the ID of the recipe, and the second element represents the summary of
+     * the recipe. It's empty if there's no snapshot.
+     * @throws IOException If reading the file fails, or if the snapshot is malformed.
+     */
+    public synchronized Optional<List<Pair<Integer, Recipe>>> read() throws IOException {
+        final RandomAccessFile file;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+        } catch (FileNotFoundException e) {
+            return Optional.empty();
+        }
+
+        try (final FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Malformed recipe list snapshot size.");
+            }
+
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a recipe list snapshot.");
+            }
+            if (buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported recipe list snapshot version.");
+            }
+
+            final int recipeCount = buffer.getInt();
+            final int payloadLength = buffer.getInt();
+            final long checksum = buffer.getInt() & 0xFFFFFFFFL;
+            if (recipeCount < 0 || payloadLength != buffer.remaining()) {
+                throw new IOException("Malformed recipe list snapshot header.");
+            }
+            if (getChecksum(buffer.slice()) != checksum) {
+                throw new IOException("Recipe list snapshot checksum mismatch.");
+            }
+
+            final List<Pair<Integer, Recipe>> recipes = new ArrayList<>(recipeCount);
+            for (int i = 0; i < recipeCount; i++) {
+                final int id = buffer.getInt();
+                final Recipe recipe = new Recipe();
+                recipe.creationDate = new Date(buffer.getLong());
+                recipe.diners = buffer.getInt();
+                recipe.budget = buffer.getInt();
+
+                final byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                recipe.name = new String(name, StandardCharsets.UTF_8);
+
+                recipes.add(Pair.create(id, recipe));
+            }
+
+            mLastChecksum = checksum;
+            return Optional.of(Collections.unmodifiableList(recipes));
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated recipe list snapshot.", e);
+        }
+    }
+
+    /**
+     * Deletes the snapshot, if there's any.
+     */
+    public synchronized void delete() {
+        mLastChecksum = null;
+
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w("recipe list snapshot", "Couldn't delete " + mFile.getName() + ".");
+        }
+    }
+
+    /**
+     * Computes the CRC32 of the remaining bytes of a buffer, consuming them.
+     * @param buffer Buffer.
+     * @return The checksum.
+     * @implNote {@link CRC32} can't read buffers directly below API level 26, so the bytes are
+     * copied in chunks.
+     */
+    private static long getChecksum(@NonNull ByteBuffer buffer) {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[CHECKSUM_CHUNK_SIZE];
+
+        while (buffer.hasRemaining()) {
+            final int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,75 @@
+package app.bitenote.database;
+
+import android.util.Pair;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Page of recipes read in a {@link RecipeSortOrder}, along with the boundary that the next page
+ * starts after.
+ * @see BiteNoteSQLiteHelper#getRecipePage(RecipeQuery, RecipeSortOrder, Boundary, int)
+ * @author Daniel N.
+ */
+public final class RecipePage {
+    /**
+     * Position of the last row of a page in its sort order. The sort key is kept as it was read
+     * by the query of the page, so the next page starts exactly after that row, even if the recipe
+     * has changed since, or if its key can't be computed again from a {@link Recipe} instance.
+     */
+    public static final class Boundary {
+        /**
+         * Sort order of the page.
+         */
+        final RecipeSortOrder mSortOrder;
+
+        /**
+         * Sort key of the row, as read from the database.
+         */
+        final String mKey;
+
+        /**
+         * ID of the recipe of the row.
+         */
+        final int mRecipeId;
+
+        /**
+         * Boundary constructor.
+         * @param sortOrder Sort order of the page.
+         * @param key Sort key of the row, as read from the database.
+         * @param recipeId ID of the recipe of the row.
+         */
+        Boundary(@NonNull RecipeSortOrder sortOrder, @NonNull String key, int recipeId) {
+            mSortOrder = sortOrder;
+            mKey = key;
+            mRecipeId = recipeId;
+        }
+    }
+
+    /**
+     * Recipes of the page. The first element of a pair represents the ID of the recipe, and the
+     * second element represents the recipe. Recipes deleted while the page was read are left out,
+     * so it may be shorter than the page size even if it isn't the last page.
+     */
+    public final List<Pair<Integer, Recipe>> recipes;
+
+    /**
+     * Boundary that the next page starts after, or {@code null} if this is the last page.
+     */
+    @Nullable
+    public final Boundary next;
+
+    /**
+     * Recipe page constructor.
+     * @param recipes Recipes of the page.
+     * @param next Boundary that the next page starts after, or {@code null} if this is the last
+     * page.
+     */
+    RecipePage(@NonNull List<Pair<Integer, Recipe>> recipes, @Nullable Boundary next) {
+        this.recipes = Collections.unmodifiableList(recipes);
+        this.next = next;
+    }
+}
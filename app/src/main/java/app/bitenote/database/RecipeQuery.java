@@ -1,12 +1,20 @@
 package app.bitenote.database;
 
-import android.annotation.SuppressLint;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.tracing.Trace;
+import java.sql.Date;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+
+import app.bitenote.instances.IngredientType;
+import app.bitenote.instances.IntObjectArrayMap;
 
 /**
  * Represents an object that allows the database to query recipes.
@@ -14,6 +22,60 @@ import java.util.Objects;
  * @author Daniel N.
  */
 public class RecipeQuery {
+    /**
+     * Inclusive range of amounts of an ingredient in a recipe.
+     * @see #includeIngredient(int, AmountRange, boolean)
+     */
+    public static final class AmountRange {
+        /**
+         * Minimum amount of the ingredient.
+         */
+        public final int minAmount;
+
+        /**
+         * Maximum amount of the ingredient.
+         */
+        public final int maxAmount;
+
+        /**
+         * Determines whether the amounts are measured in units, instead of the measurement type
+         * of the ingredient.
+         * @see app.bitenote.instances.Ingredient.InRecipeProperties#isMeasuredInUnits
+         */
+        public final boolean isMeasuredInUnits;
+
+        /**
+         * Amount range constructor.
+         * @param minAmount Minimum amount of the ingredient. Use {@code 0} for ranges with no
+         * lower bound.
+         * @param maxAmount Maximum amount of the ingredient. Use {@link Integer#MAX_VALUE} for
+         * ranges with no upper bound.
+         * @param isMeasuredInUnits Whether the amounts are measured in units.
+         */
+        public AmountRange(int minAmount, int maxAmount, boolean isMeasuredInUnits) {
+            assert minAmount <= maxAmount : "Minimum amount can't be greater than the maximum.";
+
+            this.minAmount = minAmount;
+            this.maxAmount = maxAmount;
+            this.isMeasuredInUnits = isMeasuredInUnits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AmountRange that = (AmountRange) o;
+            return minAmount == that.minAmount
+                    && maxAmount == that.maxAmount
+                    && isMeasuredInUnits == that.isMeasuredInUnits;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minAmount, maxAmount, isMeasuredInUnits);
+        }
+    }
+
     /**
      * Minimum diners of the recipe.
      */
@@ -25,20 +87,80 @@ public class RecipeQuery {
     public int maxBudget;
 
     /**
-     * Map of ingredients in the query. The key represents the ID of the ingredient, while the
-     * value is a {@code boolean} that represents whether the ingredient must be present or not. A
-     * {@code true} value means the ingredient MUST BE PRESENT in the recipe, on the other hand,
-     * {@code false} means the ingredient is BANNED.
+     * Earliest creation date of the recipe, inclusive. It's {@code null} if there's no lower
+     * bound.
+     */
+    @Nullable
+    public Date minCreationDate = null;
+
+    /**
+     * Latest creation date of the recipe, inclusive. It's {@code null} if there's no upper bound.
+     */
+    @Nullable
+    public Date maxCreationDate = null;
+
+    /**
+     * ID of the dietary profile applied to the query, or {@code 0} if there's none. The recipes
+     * excluded by the profile are never returned.
+     * @see app.bitenote.instances.DietaryProfile
+     */
+    public int dietaryProfileId = 0;
+
+    /**
+     * Maximum amount of ingredients of the recipe.
+     */
+    public int maxIngredientCount = Integer.MAX_VALUE;
+
+    /**
+     * Maximum amount of utensils of the recipe.
      */
-    private final HashMap<Integer, Boolean> mIngredientQuery;
+    public int maxUtensilCount = Integer.MAX_VALUE;
 
     /**
-     * Map of utensils in the query. The key represents the ID of the utensil, while the
-     * value is a {@code boolean} that represents whether the utensil must be present or not. A
-     * {@code true} value means the utensil MUST BE PRESENT in the recipe, on the other hand,
-     * {@code false} means the utensil is BANNED.
+     * Determines whether recipes with ingredients measured in units are excluded.
      */
-    private final HashMap<Integer, Boolean> mUtensilQuery;
+    public boolean excludesMeasuredInUnits = false;
+
+    /**
+     * Bit set of ingredients that MUST BE PRESENT in the recipe. Each set bit is an ingredient ID.
+     * An ingredient is never both included and banned.
+     */
+    private final BitSet mIncludedIngredients;
+
+    /**
+     * Bit set of ingredients that are BANNED from the recipe. Each set bit is an ingredient ID.
+     */
+    private final BitSet mBannedIngredients;
+
+    /**
+     * Amount ranges of included ingredients, where the key is an ingredient ID. An ingredient
+     * with a range must be in the recipe with an amount in that range.
+     */
+    private final IntObjectArrayMap<AmountRange> mIngredientAmountRanges;
+
+    /**
+     * Ingredient types that MUST BE PRESENT in the recipe, where the key is a type ID. A recipe
+     * meets them if it has any of their ingredients, or any of the included ingredients. A type is
+     * never both included and banned.
+     */
+    private final IntObjectArrayMap<IngredientType> mIncludedIngredientTypes;
+
+    /**
+     * Ingredient types that are BANNED from the recipe, where the key is a type ID. None of their
+     * ingredients can be in the recipe, even if they are included on their own.
+     */
+    private final IntObjectArrayMap<IngredientType> mBannedIngredientTypes;
+
+    /**
+     * Bit set of utensils that MUST BE PRESENT in the recipe. Each set bit is an utensil ID. An
+     * utensil is never both included and banned.
+     */
+    private final BitSet mIncludedUtensils;
+
+    /**
+     * Bit set of utensils that are BANNED from the recipe. Each set bit is an utensil ID.
+     */
+    private final BitSet mBannedUtensils;
 
     /**
      * Basic {@link RecipeQuery} constructor.
@@ -56,10 +178,12 @@ public class RecipeQuery {
      * Advanced {@link RecipeQuery} constructor.
      * @param ingredientQuery {@link HashMap} where the key is an ingredient ID, and the value is a
      * {@code boolean}. If the value is {@code true}, the ingredient ID must be present in the
-     * recipe, but if it's {@code false}, it must be banned from the recipe.
+     * recipe, but if it's {@code false}, it must be banned from the recipe. Its entries are
+     * copied.
      * @param utensilQuery {@link HashMap} where the key is an utensil ID, and the value is a
      * {@code boolean}. If the value is {@code true}, the utensil ID must be present in the
-     * recipe, but if it's {@code false}, it must be banned from the recipe.
+     * recipe, but if it's {@code false}, it must be banned from the recipe. Its entries are
+     * copied.
      * @param maxBudget Maximum budget of the recipe.
      * @param minDiners Minimum diners of the recipe.
      */
@@ -69,21 +193,46 @@ public class RecipeQuery {
             int maxBudget,
             int minDiners
     ) {
-        this.mIngredientQuery = ingredientQuery;
-        this.mUtensilQuery = utensilQuery;
+        this.mIncludedIngredients = new BitSet();
+        this.mBannedIngredients = new BitSet();
+        this.mIngredientAmountRanges = new IntObjectArrayMap<>();
+        this.mIncludedIngredientTypes = new IntObjectArrayMap<>();
+        this.mBannedIngredientTypes = new IntObjectArrayMap<>();
+        this.mIncludedUtensils = new BitSet();
+        this.mBannedUtensils = new BitSet();
         this.maxBudget = maxBudget;
         this.minDiners = minDiners;
+
+        ingredientQuery.forEach((ingredientId, isIncluded) ->
+                (isIncluded ? mIncludedIngredients : mBannedIngredients).set(ingredientId)
+        );
+        utensilQuery.forEach((utensilId, isIncluded) ->
+                (isIncluded ? mIncludedUtensils : mBannedUtensils).set(utensilId)
+        );
     }
 
     public RecipeQuery(@NonNull RecipeQuery base) {
         this.maxBudget = base.maxBudget;
         this.minDiners = base.minDiners;
+        this.minCreationDate = base.minCreationDate == null
+                ? null
+                : new Date(base.minCreationDate.getTime());
+        this.maxCreationDate = base.maxCreationDate == null
+                ? null
+                : new Date(base.maxCreationDate.getTime());
+        this.dietaryProfileId = base.dietaryProfileId;
+        this.maxIngredientCount = base.maxIngredientCount;
+        this.maxUtensilCount = base.maxUtensilCount;
+        this.excludesMeasuredInUnits = base.excludesMeasuredInUnits;
 
         /// for a true copy of a recipe, maps and sets must be deep copied.
-        this.mIngredientQuery = new HashMap<>();
-        this.mUtensilQuery = new HashMap<>();
-        this.mIngredientQuery.putAll(base.mIngredientQuery);
-        this.mUtensilQuery.putAll(base.mUtensilQuery);
+        this.mIncludedIngredients = (BitSet) base.mIncludedIngredients.clone();
+        this.mBannedIngredients = (BitSet) base.mBannedIngredients.clone();
+        this.mIngredientAmountRanges = new IntObjectArrayMap<>(base.mIngredientAmountRanges);
+        this.mIncludedIngredientTypes = new IntObjectArrayMap<>(base.mIncludedIngredientTypes);
+        this.mBannedIngredientTypes = new IntObjectArrayMap<>(base.mBannedIngredientTypes);
+        this.mIncludedUtensils = (BitSet) base.mIncludedUtensils.clone();
+        this.mBannedUtensils = (BitSet) base.mBannedUtensils.clone();
     }
 
     /**
@@ -91,15 +240,7 @@ public class RecipeQuery {
      * @return A list of integers, each representing a present ingredient ID.
      */
     public List<Integer> getIncludedIngredients() {
-        final ArrayList<Integer> idList = new ArrayList<>();
-
-        mIngredientQuery.forEach((ingredientId, isIncluded) -> {
-            if (!isIncluded) return;
-
-            idList.add(ingredientId);
-        });
-
-        return Collections.unmodifiableList(idList);
+        return toIdList(mIncludedIngredients);
     }
 
     /**
@@ -107,15 +248,7 @@ public class RecipeQuery {
      * @return A list of integers, each representing a banned ingredient ID.
      */
     public List<Integer> getBannedIngredients() {
-        final ArrayList<Integer> idList = new ArrayList<>();
-
-        mIngredientQuery.forEach((ingredientId, isIncluded) -> {
-            if (isIncluded) return;
-
-            idList.add(ingredientId);
-        });
-
-        return Collections.unmodifiableList(idList);
+        return toIdList(mBannedIngredients);
     }
 
     /**
@@ -123,11 +256,26 @@ public class RecipeQuery {
      * @return A list of integers, each representing an utensil ID.
      */
     public List<Integer> getQueriedIngredients() {
-        final ArrayList<Integer> idList = new ArrayList<>();
+        final BitSet queriedIngredients = (BitSet) mIncludedIngredients.clone();
+        queriedIngredients.or(mBannedIngredients);
 
-        mIngredientQuery.forEach((ingredientId, isIncluded) -> idList.add(ingredientId));
+        return toIdList(queriedIngredients);
+    }
 
-        return Collections.unmodifiableList(idList);
+    /**
+     * Gets the present ingredient types in the query.
+     * @return A list of integers, each representing a present ingredient type ID.
+     */
+    public List<Integer> getIncludedIngredientTypes() {
+        return toIdList(mIncludedIngredientTypes);
+    }
+
+    /**
+     * Gets the banned ingredient types in the query.
+     * @return A list of integers, each representing a banned ingredient type ID.
+     */
+    public List<Integer> getBannedIngredientTypes() {
+        return toIdList(mBannedIngredientTypes);
     }
 
     /**
@@ -135,15 +283,7 @@ public class RecipeQuery {
      * @return A list of integers, each representing a present utensil ID.
      */
     public List<Integer> getIncludedUtensils() {
-        final ArrayList<Integer> idList = new ArrayList<>();
-
-        mUtensilQuery.forEach((utensilId, isIncluded) -> {
-            if (!isIncluded) return;
-
-            idList.add(utensilId);
-        });
-
-        return Collections.unmodifiableList(idList);
+        return toIdList(mIncludedUtensils);
     }
 
     /**
@@ -151,15 +291,7 @@ public class RecipeQuery {
      * @return A list of integers, each representing a banned utensil ID.
      */
     public List<Integer> getBannedUtensils() {
-        final ArrayList<Integer> idList = new ArrayList<>();
-
-        mUtensilQuery.forEach((utensilId, isIncluded) -> {
-            if (isIncluded) return;
-
-            idList.add(utensilId);
-        });
-
-        return Collections.unmodifiableList(idList);
+        return toIdList(mBannedUtensils);
     }
 
     /**
@@ -167,11 +299,10 @@ public class RecipeQuery {
      * @return A list of integers, each representing an utensil ID.
      */
     public List<Integer> getQueriedUtensils() {
-        final ArrayList<Integer> idList = new ArrayList<>();
+        final BitSet queriedUtensils = (BitSet) mIncludedUtensils.clone();
+        queriedUtensils.or(mBannedUtensils);
 
-        mUtensilQuery.forEach((utensilId, utensil) -> idList.add(utensilId));
-
-        return Collections.unmodifiableList(idList);
+        return toIdList(queriedUtensils);
     }
 
     /**
@@ -182,17 +313,34 @@ public class RecipeQuery {
      * @return {@code true} if the ingredient was successfully included or updated.
      */
     public boolean includeIngredient(int ingredientId, boolean overrideBans) {
-        final Boolean previousValue = mIngredientQuery.putIfAbsent(ingredientId, true);
-        /// previousValue is null if the key/ingredientId was absent
+        if (!mark(mIncludedIngredients, mBannedIngredients, ingredientId, overrideBans)) {
+            return false;
+        }
 
-        if (previousValue == null) return true;
+        mIngredientAmountRanges.remove(ingredientId);
+        return true;
+    }
 
-        if (overrideBans) {
-            mIngredientQuery.put(ingredientId, true);
-            return true;
+    /**
+     * Includes (marks as present) an ingredient to the query, with a range its amount in the
+     * recipe must be in.
+     * @param ingredientId ID of the ingredient.
+     * @param amountRange Range of the amount of the ingredient.
+     * @param overrideBans Determines whether the ingredient should be included regardless of
+     * if it's already banned or not.
+     * @return {@code true} if the ingredient was successfully included or updated.
+     */
+    public boolean includeIngredient(
+            int ingredientId,
+            @NonNull AmountRange amountRange,
+            boolean overrideBans
+    ) {
+        if (!mark(mIncludedIngredients, mBannedIngredients, ingredientId, overrideBans)) {
+            return false;
         }
 
-        return false;
+        mIngredientAmountRanges.put(ingredientId, amountRange);
+        return true;
     }
 
     /**
@@ -203,17 +351,70 @@ public class RecipeQuery {
      * @return {@code true} if the ingredient was successfully banned.
      */
     public boolean banIngredient(int ingredientId, boolean overrideInclusions) {
-        final Boolean previousValue = mIngredientQuery.putIfAbsent(ingredientId, false);
-        /// previousValue is null if the key/ingredientId was absent
+        if (!mark(mBannedIngredients, mIncludedIngredients, ingredientId, overrideInclusions)) {
+            return false;
+        }
 
-        if (previousValue == null) return true;
+        mIngredientAmountRanges.remove(ingredientId);
+        return true;
+    }
 
-        if (overrideInclusions) {
-            mIngredientQuery.put(ingredientId, false);
-            return true;
-        }
+    /**
+     * Gets the amount range of an included ingredient.
+     * @param ingredientId ID of the ingredient.
+     * @return An {@link Optional} instance that wraps the range, which is empty if the ingredient
+     * isn't included, or if any amount of it is accepted.
+     */
+    public Optional<AmountRange> getIngredientAmountRange(int ingredientId) {
+        return Optional.ofNullable(mIngredientAmountRanges.get(ingredientId));
+    }
 
-        return false;
+    /**
+     * Includes an ingredient type to the query, so recipes must have at least one ingredient of
+     * the type or of its subtypes.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @param ingredientType {@link IngredientType} instance, whose ingredient range is queried.
+     * @param overrideBans Determines whether the type should be included regardless of if it's
+     * already banned or not.
+     * @return {@code true} if the type was successfully included.
+     * @see BiteNoteSQLiteHelper#getIngredientTypeFromId(int)
+     */
+    public boolean includeIngredientType(
+            int ingredientTypeId,
+            @NonNull IngredientType ingredientType,
+            boolean overrideBans
+    ) {
+        return mark(
+                mIncludedIngredientTypes,
+                mBannedIngredientTypes,
+                ingredientTypeId,
+                ingredientType,
+                overrideBans
+        );
+    }
+
+    /**
+     * Bans an ingredient type from the query, so recipes can't have any ingredient of the type or
+     * of its subtypes.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @param ingredientType {@link IngredientType} instance, whose ingredient range is queried.
+     * @param overrideInclusions Determines whether the type should be banned regardless of if
+     * it's already included or not.
+     * @return {@code true} if the type was successfully banned.
+     * @see BiteNoteSQLiteHelper#getIngredientTypeFromId(int)
+     */
+    public boolean banIngredientType(
+            int ingredientTypeId,
+            @NonNull IngredientType ingredientType,
+            boolean overrideInclusions
+    ) {
+        return mark(
+                mBannedIngredientTypes,
+                mIncludedIngredientTypes,
+                ingredientTypeId,
+                ingredientType,
+                overrideInclusions
+        );
     }
 
     /**
@@ -224,17 +425,7 @@ public class RecipeQuery {
      * @return {@code true} if the utensil was successfully banned.
      */
     public boolean includeUtensil(int utensilId, boolean overrideBans) {
-        final Boolean previousValue = mUtensilQuery.putIfAbsent(utensilId, true);
-        /// previousValue is null if the key/utensilId was absent
-
-        if (previousValue == null) return true;
-
-        if (overrideBans) {
-            mUtensilQuery.put(utensilId, true);
-            return true;
-        }
-
-        return false;
+        return mark(mIncludedUtensils, mBannedUtensils, utensilId, overrideBans);
     }
 
     /**
@@ -245,17 +436,7 @@ public class RecipeQuery {
      * @return {@code true} if the utensil was successfully banned.
      */
     public boolean banUtensil(int utensilId, boolean overrideInclusions) {
-        final Boolean previousValue = mUtensilQuery.putIfAbsent(utensilId, false);
-        /// previousValue is null if the key/utensilId was absent
-
-        if (previousValue == null) return true;
-
-        if (overrideInclusions) {
-            mUtensilQuery.put(utensilId, false);
-            return true;
-        }
-
-        return false;
+        return mark(mBannedUtensils, mIncludedUtensils, utensilId, overrideInclusions);
     }
 
     /**
@@ -264,8 +445,7 @@ public class RecipeQuery {
      * @return {@code true} if the ingredient ID is marked as present in the query.
      */
     public boolean isIngredientIncluded(int ingredientId) {
-        return mIngredientQuery.containsKey(ingredientId)
-                && Boolean.TRUE.equals(mIngredientQuery.get(ingredientId));
+        return ingredientId >= 0 && mIncludedIngredients.get(ingredientId);
     }
 
     /**
@@ -274,8 +454,25 @@ public class RecipeQuery {
      * @return {@code true} if the ingredient ID is marked as banned from the query.
      */
     public boolean isIngredientBanned(int ingredientId) {
-        return mIngredientQuery.containsKey(ingredientId)
-                && Boolean.FALSE.equals(mIngredientQuery.get(ingredientId));
+        return ingredientId >= 0 && mBannedIngredients.get(ingredientId);
+    }
+
+    /**
+     * Checks whether the ingredient type is present in the query.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @return {@code true} if the ingredient type ID is marked as present in the query.
+     */
+    public boolean isIngredientTypeIncluded(int ingredientTypeId) {
+        return mIncludedIngredientTypes.get(ingredientTypeId) != null;
+    }
+
+    /**
+     * Checks whether the ingredient type is banned from the query.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @return {@code true} if the ingredient type ID is marked as banned from the query.
+     */
+    public boolean isIngredientTypeBanned(int ingredientTypeId) {
+        return mBannedIngredientTypes.get(ingredientTypeId) != null;
     }
 
     /**
@@ -284,8 +481,7 @@ public class RecipeQuery {
      * @return {@code true} if the utensil ID is marked as present in the query.
      */
     public boolean isUtensilIncluded(int utensilId) {
-        return mUtensilQuery.containsKey(utensilId)
-                && Boolean.TRUE.equals(mUtensilQuery.get(utensilId));
+        return utensilId >= 0 && mIncludedUtensils.get(utensilId);
     }
 
     /**
@@ -294,130 +490,157 @@ public class RecipeQuery {
      * @return {@code true} if the utensil ID is marked as banned from the query.
      */
     public boolean isUtensilBanned(int utensilId) {
-        return mUtensilQuery.containsKey(utensilId)
-                && Boolean.FALSE.equals(mUtensilQuery.get(utensilId));
+        return utensilId >= 0 && mBannedUtensils.get(utensilId);
     }
 
     /**
      * Clears all included ingredients from the query.
      */
     public void clearIncludedIngredients() {
-        mIngredientQuery.forEach((ingredientId, isIncluded) ->
-                mIngredientQuery.remove(ingredientId, true)
-        );
+        mIncludedIngredients.clear();
+        mIngredientAmountRanges.clear();
     }
 
     /**
      * Clears all banned ingredients from the query.
      */
     public void clearBannedIngredients() {
-        mIngredientQuery.forEach((ingredientId, isIncluded) ->
-                mIngredientQuery.remove(ingredientId, false)
-        );
+        mBannedIngredients.clear();
     }
 
     /**
      * Clears all ingredients (present or banned) from the query.
      */
     public void clearAllIngredients() {
-        mIngredientQuery.clear();
+        mIncludedIngredients.clear();
+        mBannedIngredients.clear();
+        mIngredientAmountRanges.clear();
+    }
+
+    /**
+     * Clears all ingredient types (present or banned) from the query.
+     */
+    public void clearAllIngredientTypes() {
+        mIncludedIngredientTypes.clear();
+        mBannedIngredientTypes.clear();
     }
 
     /**
      * Clears all present utensils from the query.
      */
     public void clearIncludedUtensils() {
-        mUtensilQuery.forEach(mUtensilQuery::remove);
+        mIncludedUtensils.clear();
     }
 
     /**
      * Clears all banned utensils from the query.
      */
     public void clearBannedUtensils() {
-        mUtensilQuery.forEach((utensilId, isIncluded) ->
-                mUtensilQuery.remove(utensilId, !isIncluded)
-        );
+        mBannedUtensils.clear();
     }
 
     /**
      * Clears all the utensils (present or banned) from the query.
      */
     public void clearAllUtensils() {
-        mUtensilQuery.clear();
+        mIncludedUtensils.clear();
+        mBannedUtensils.clear();
     }
 
     /**
-     * Gets the {@link String} representation of the SQL query.
-     * @return A {@link String} that, if passed to a database raw query, will return a
-     * {@link android.database.Cursor} with all recipe IDs that meet the conditions defined in the
-     * query object.
+     * Gets the {@link String} representation of the conditions of the query.
+     * @return A {@link String} with an SQL expression over the columns of the 'recipes' table,
+     * which is true for every recipe that meets the conditions defined in the query object.
+     * @see BiteNoteSQLiteHelper#getRecipePage(RecipeQuery, RecipeSortOrder,
+     * RecipePage.Boundary, int)
      */
-    @SuppressLint("DefaultLocale")
-    String toSQLString() {
-        final List<Integer> includedIngredients = getIncludedIngredients();
-        final List<Integer> bannedIngredients = getBannedIngredients();
-        final List<Integer> includedUtensils = getIncludedUtensils();
-        final List<Integer> bannedUtensils = getBannedUtensils();
-
-        final StringBuilder queryStrBuilder = new StringBuilder("SELECT id FROM recipes WHERE ")
-                .append("budget <= ").append(maxBudget)
-                .append(" AND diners >= ").append(minDiners);
-
-        /// handle included ingredients
-        if (!includedIngredients.isEmpty()) {
-            queryStrBuilder.append(" AND id IN (SELECT recipe_id FROM recipe_ingredients WHERE " +
-                    "ingredient_id IN (");
-
-            for (int i = 0; i < includedIngredients.size(); i++) {
-                if (i > 0) queryStrBuilder.append(",");
-                queryStrBuilder.append(includedIngredients.get(i));
+    String toSQLCondition() {
+        Trace.beginSection("RecipeQuery.toSQLCondition");
+        try {
+            final StringBuilder queryStrBuilder = new StringBuilder()
+                    .append("budget <= ").append(maxBudget)
+                    .append(" AND diners >= ").append(minDiners);
+
+            /// handle creation date range, which is compared as epoch days to use its index
+            if (minCreationDate != null) {
+                queryStrBuilder.append(" AND creation_date >= ")
+                        .append(EpochDays.fromDate(minCreationDate));
             }
-
-            queryStrBuilder.append("))");
-        }
-
-        /// handle banned ingredients
-        if (!bannedIngredients.isEmpty()) {
-            queryStrBuilder.append(" AND id NOT IN (SELECT DISTINCT recipe_id FROM " +
-                            "recipe_ingredients WHERE ingredient_id IN (");
-
-            for (int i = 0; i < bannedIngredients.size(); i++) {
-                if (i > 0) queryStrBuilder.append(",");
-                queryStrBuilder.append(bannedIngredients.get(i));
+            if (maxCreationDate != null) {
+                queryStrBuilder.append(" AND creation_date <= ")
+                        .append(EpochDays.fromDate(maxCreationDate));
             }
 
-            queryStrBuilder.append("))");
-        }
-
-        /// handle included utensils
-        if (!includedUtensils.isEmpty()) {
-            queryStrBuilder.append(" AND id IN (SELECT recipe_id FROM recipe_utensils WHERE " +
-                    "utensil_id IN (");
+            /// handle the aggregates of the recipe, which are stored in indexed columns
+            if (maxIngredientCount != Integer.MAX_VALUE) {
+                queryStrBuilder.append(" AND ingredient_count <= ").append(maxIngredientCount);
+            }
+            if (maxUtensilCount != Integer.MAX_VALUE) {
+                queryStrBuilder.append(" AND utensil_count <= ").append(maxUtensilCount);
+            }
+            if (excludesMeasuredInUnits) queryStrBuilder.append(" AND needs_units = 0");
+
+            /// handle included ingredients and ingredient types
+            if (!mIncludedIngredients.isEmpty() || mIncludedIngredientTypes.size() > 0) {
+                queryStrBuilder.append(" AND id IN (SELECT recipe_id FROM recipe_ingredients " +
+                        "WHERE ");
+                appendIngredientCondition(
+                        queryStrBuilder,
+                        mIncludedIngredients,
+                        mIncludedIngredientTypes
+                );
+                queryStrBuilder.append(")");
+            }
 
-            for (int i = 0; i < includedUtensils.size(); i++) {
-                if (i > 0) queryStrBuilder.append(",");
-                queryStrBuilder.append(includedUtensils.get(i));
+            /// handle amount ranges, each one is a range scan over the amount index
+            mIngredientAmountRanges.forEach((ingredientId, amountRange) ->
+                    queryStrBuilder.append(" AND id IN (SELECT recipe_id FROM recipe_ingredients ")
+                            .append("WHERE ingredient_id = ").append(ingredientId)
+                            .append(" AND is_measured_in_units = ")
+                            .append(amountRange.isMeasuredInUnits ? 1 : 0)
+                            .append(" AND amount BETWEEN ").append(amountRange.minAmount)
+                            .append(" AND ").append(amountRange.maxAmount).append(")")
+            );
+
+            /// handle banned ingredients and ingredient types
+            if (!mBannedIngredients.isEmpty() || mBannedIngredientTypes.size() > 0) {
+                queryStrBuilder.append(" AND id NOT IN (SELECT DISTINCT recipe_id FROM " +
+                                "recipe_ingredients WHERE ");
+                appendIngredientCondition(
+                        queryStrBuilder,
+                        mBannedIngredients,
+                        mBannedIngredientTypes
+                );
+                queryStrBuilder.append(")");
             }
 
-            queryStrBuilder.append("))");
-        }
+            /// handle the dietary profile, whose exclusions are stored by the database
+            if (dietaryProfileId != 0) {
+                queryStrBuilder.append(" AND id NOT IN (SELECT recipe_id FROM " +
+                        "dietary_profile_excluded_recipes WHERE profile_id = ")
+                        .append(dietaryProfileId).append(")");
+            }
 
-        /// handle banned utensils
-        if (!bannedUtensils.isEmpty()) {
-            queryStrBuilder.append(" AND id NOT IN (SELECT DISTINCT recipe_id FROM " +
-                    "recipe_utensils WHERE utensil_id IN (");
+            /// handle included utensils
+            if (!mIncludedUtensils.isEmpty()) {
+                queryStrBuilder.append(" AND id IN (SELECT recipe_id FROM recipe_utensils WHERE " +
+                        "utensil_id IN (");
+                appendIdList(queryStrBuilder, mIncludedUtensils);
+                queryStrBuilder.append("))");
+            }
 
-            for (int i = 0; i < bannedUtensils.size(); i++) {
-                if (i > 0) queryStrBuilder.append(",");
-                queryStrBuilder.append(bannedUtensils.get(i));
+            /// handle banned utensils
+            if (!mBannedUtensils.isEmpty()) {
+                queryStrBuilder.append(" AND id NOT IN (SELECT DISTINCT recipe_id FROM " +
+                        "recipe_utensils WHERE utensil_id IN (");
+                appendIdList(queryStrBuilder, mBannedUtensils);
+                queryStrBuilder.append("))");
             }
 
-            queryStrBuilder.append("))");
+            return queryStrBuilder.toString();
+        } finally {
+            Trace.endSection();
         }
-
-        queryStrBuilder.append(" ORDER BY creation_date DESC;");
-
-        return queryStrBuilder.toString();
     }
 
     @Override
@@ -427,8 +650,19 @@ public class RecipeQuery {
         RecipeQuery that = (RecipeQuery) o;
         return minDiners == that.minDiners
                 && maxBudget == that.maxBudget
-                && Objects.equals(mIngredientQuery, that.mIngredientQuery)
-                && Objects.equals(mUtensilQuery, that.mUtensilQuery);
+                && dietaryProfileId == that.dietaryProfileId
+                && maxIngredientCount == that.maxIngredientCount
+                && maxUtensilCount == that.maxUtensilCount
+                && excludesMeasuredInUnits == that.excludesMeasuredInUnits
+                && Objects.equals(minCreationDate, that.minCreationDate)
+                && Objects.equals(maxCreationDate, that.maxCreationDate)
+                && mIncludedIngredients.equals(that.mIncludedIngredients)
+                && mBannedIngredients.equals(that.mBannedIngredients)
+                && mIngredientAmountRanges.equals(that.mIngredientAmountRanges)
+                && mIncludedIngredientTypes.equals(that.mIncludedIngredientTypes)
+                && mBannedIngredientTypes.equals(that.mBannedIngredientTypes)
+                && mIncludedUtensils.equals(that.mIncludedUtensils)
+                && mBannedUtensils.equals(that.mBannedUtensils);
     }
 
     @Override
@@ -436,8 +670,159 @@ public class RecipeQuery {
         return Objects.hash(
                 minDiners,
                 maxBudget,
-                mIngredientQuery,
-                mUtensilQuery
+                minCreationDate,
+                maxCreationDate,
+                dietaryProfileId,
+                maxIngredientCount,
+                maxUtensilCount,
+                excludesMeasuredInUnits,
+                mIncludedIngredients,
+                mBannedIngredients,
+                mIngredientAmountRanges,
+                mIncludedIngredientTypes,
+                mBannedIngredientTypes,
+                mIncludedUtensils,
+                mBannedUtensils
+        );
+    }
+
+    /**
+     * Marks an ID in a bit set, and unmarks it from the opposite one.
+     * @param marked Bit set where the ID is marked.
+     * @param opposite Bit set that must not contain the ID.
+     * @param id ID to be marked.
+     * @param override Determines whether the ID should be marked regardless of if it's already in
+     * the query or not.
+     * @return {@code true} if the ID was marked.
+     */
+    private static boolean mark(
+            @NonNull BitSet marked,
+            @NonNull BitSet opposite,
+            int id,
+            boolean override
+    ) {
+        /// like a map, IDs that are already in the query are only updated when overriding
+        if (!override && (marked.get(id) || opposite.get(id))) return false;
+
+        opposite.clear(id);
+        marked.set(id);
+        return true;
+    }
+
+    /**
+     * Marks an ID in a map, and removes it from the opposite one.
+     * @param marked Map where the ID is marked.
+     * @param opposite Map that must not contain the ID.
+     * @param id ID to be marked.
+     * @param value Value the ID is mapped to.
+     * @param override Determines whether the ID should be marked regardless of if it's already in
+     * the query or not.
+     * @return {@code true} if the ID was marked.
+     */
+    private static <V> boolean mark(
+            @NonNull IntObjectArrayMap<V> marked,
+            @NonNull IntObjectArrayMap<V> opposite,
+            int id,
+            @NonNull V value,
+            boolean override
+    ) {
+        if (!override && (marked.get(id) != null || opposite.get(id) != null)) return false;
+
+        opposite.remove(id);
+        marked.put(id, value);
+        return true;
+    }
+
+    /**
+     * Gets the IDs of a bit set.
+     * @param ids Bit set of IDs.
+     * @return An unmodifiable list of the IDs, in ascending order.
+     */
+    private static List<Integer> toIdList(@NonNull BitSet ids) {
+        final ArrayList<Integer> idList = new ArrayList<>(ids.cardinality());
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            idList.add(id);
+        }
+
+        return Collections.unmodifiableList(idList);
+    }
+
+    /**
+     * Gets the keys of a map.
+     * @param map {@link IntObjectArrayMap} instance.
+     * @return An unmodifiable list of the keys, in ascending order.
+     */
+    private static List<Integer> toIdList(@NonNull IntObjectArrayMap<?> map) {
+        final BitSet ids = new BitSet();
+        map.forEach((id, value) -> ids.set(id));
+
+        return toIdList(ids);
+    }
+
+    /**
+     * Appends an SQL condition over the 'recipe_ingredients' table that is true for the rows of
+     * some ingredients, and of the ingredients of some types.
+     * <p>
+     * Each type is a range of ingredient IDs, so nested and adjacent types are merged into a
+     * single range, and ingredients within the ranges are left out of the ID list. Every range is
+     * a range scan over the index that starts with the ingredient ID.
+     * @param builder {@link StringBuilder} instance.
+     * @param ingredientIds Bit set of ingredient IDs.
+     * @param ingredientTypes Map of ingredient types. It can't be empty if the bit set is.
+     */
+    private static void appendIngredientCondition(
+            @NonNull StringBuilder builder,
+            @NonNull BitSet ingredientIds,
+            @NonNull IntObjectArrayMap<IngredientType> ingredientTypes
+    ) {
+        final List<int[]> ranges = new ArrayList<>(ingredientTypes.size());
+        ingredientTypes.forEach((typeId, type) ->
+                ranges.add(new int[] {type.firstIngredientId, type.lastIngredientId})
         );
+        ranges.sort(Comparator.comparingInt(range -> range[0]));
+
+        final BitSet remainingIds = (BitSet) ingredientIds.clone();
+        int[] currentRange = null;
+        String separator = "";
+
+        /// one extra iteration appends the last range
+        for (int i = 0; i <= ranges.size(); i++) {
+            final int[] range = i < ranges.size() ? ranges.get(i) : null;
+
+            if (currentRange != null && range != null && range[0] <= currentRange[1] + 1) {
+                currentRange[1] = Math.max(currentRange[1], range[1]);
+                continue;
+            }
+
+            if (currentRange != null) {
+                remainingIds.clear(currentRange[0], currentRange[1] + 1);
+                builder.append(separator).append("ingredient_id BETWEEN ")
+                        .append(currentRange[0]).append(" AND ").append(currentRange[1]);
+                separator = " OR ";
+            }
+
+            currentRange = range == null ? null : range.clone();
+        }
+
+        if (!remainingIds.isEmpty()) {
+            builder.append(separator).append("ingredient_id IN (");
+            appendIdList(builder, remainingIds);
+            builder.append(')');
+        }
+    }
+
+    /**
+     * Appends the comma separated IDs of a bit set to an SQL string.
+     * @param builder {@link StringBuilder} instance.
+     * @param ids Non-empty bit set of IDs.
+     */
+    private static void appendIdList(@NonNull StringBuilder builder, @NonNull BitSet ids) {
+        int id = ids.nextSetBit(0);
+        builder.append(id);
+
+        for (id = ids.nextSetBit(id + 1); id >= 0; id = ids.nextSetBit(id + 1)) {
+            builder.append(',').append(id);
+        }
     }
 }
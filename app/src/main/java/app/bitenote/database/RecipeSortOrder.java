@@ -0,0 +1,135 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Orders in which recipe lists can be read. Every order is backed by an index of the 'recipes'
+ * table, and ties are broken by the recipe ID, so the order is total and pages can be read with
+ * keyset pagination straight from the index.
+ * @see BiteNoteSQLiteHelper#getRecipePage(RecipeQuery, RecipeSortOrder, RecipePage.Boundary,
+ * int)
+ * @author Daniel N.
+ */
+public enum RecipeSortOrder {
+    /**
+     * From newest to oldest creation date.
+     */
+    NEWEST("creation_date", true, false),
+
+    /**
+     * Alphabetical by name, collated with the rules of the device locale.
+     */
+    NAME("name COLLATE LOCALIZED", false, true),
+
+    /**
+     * From the lowest to the highest budget.
+     */
+    BUDGET("budget", false, false),
+
+    /**
+     * From the most to the fewest diners.
+     */
+    DINERS("diners", true, false),
+
+    /**
+     * From the lowest to the highest budget per diner.
+     */
+    BUDGET_PER_DINER(
+            "budget * " + RecipeSortOrder.BUDGET_PER_DINER_SCALE + " / MAX(diners, 1)",
+            false,
+            false
+    ),
+
+    /**
+     * From the fewest to the most ingredients.
+     */
+    INGREDIENT_COUNT("ingredient_count", false, false),
+
+    /**
+     * From the fewest to the most utensils.
+     */
+    UTENSIL_COUNT("utensil_count", false, false),
+
+    /**
+     * From the lowest to the highest total amount of the ingredients that aren't measured in
+     * units.
+     */
+    TOTAL_AMOUNT("total_amount", false, false);
+
+    /**
+     * Factor the budget is multiplied by before dividing it by the diners. The division is kept
+     * in integers, so keys compare exactly when they're bound as page boundaries. It must be the
+     * same as the one of the index in the schema resource.
+     */
+    static final int BUDGET_PER_DINER_SCALE = 1000;
+
+    /**
+     * SQL expression over the 'recipes' table the recipes are sorted by. It's the same expression
+     * as the one indexed, since SQLite only uses expression indexes that match the query.
+     */
+    private final String mKeyExpression;
+
+    /**
+     * Determines whether the recipes are sorted from the highest to the lowest key.
+     */
+    private final boolean mIsDescending;
+
+    /**
+     * Determines whether the key is text, instead of an integer.
+     */
+    private final boolean mIsTextKey;
+
+    /**
+     * Sort order constructor.
+     * @param keyExpression SQL expression the recipes are sorted by.
+     * @param isDescending Whether the recipes are sorted from the highest to the lowest key.
+     * @param isTextKey Whether the key is text, instead of an integer.
+     */
+    RecipeSortOrder(@NonNull String keyExpression, boolean isDescending, boolean isTextKey) {
+        mKeyExpression = keyExpression;
+        mIsDescending = isDescending;
+        mIsTextKey = isTextKey;
+    }
+
+    /**
+     * Gets the SQL ordering terms of this order.
+     * @return A {@link String} to be placed after {@code ORDER BY}.
+     */
+    String toOrderByClause() {
+        final String direction = mIsDescending ? " DESC" : " ASC";
+
+        return mKeyExpression + direction + ", id" + direction;
+    }
+
+    /**
+     * Gets the SQL expression of the key of this order, to be selected along the recipe IDs. The
+     * selected keys are bound back as page boundaries, so they always compare exactly like the
+     * keys of the index.
+     * @return A {@link String} with an SQL expression over the columns of the 'recipes' table.
+     */
+    String toKeySelection() {
+        return mKeyExpression;
+    }
+
+    /**
+     * Gets the SQL condition that selects the recipes that come after a page boundary in this
+     * order. The key of the boundary is bound as {@code ?1}, and its ID as {@code ?2}.
+     * @return A {@link String} with an SQL expression over the columns of the 'recipes' table.
+     * @see #toKeySelection()
+     * @implNote The first comparison bounds the index range scan on its own, since row values
+     * aren't available in the SQLite versions shipped with the lowest supported API level.
+     */
+    String toAfterCondition() {
+        /*
+         * Arguments are bound as text, which the key expressions don't convert since they have no
+         * affinity. Adding zero converts them to integers, unlike a CAST, which keeps SQLite from
+         * searching the expression index.
+         */
+        final String key = mIsTextKey ? "?1" : "(?1 + 0)";
+        final String comparison = mIsDescending ? " < " : " > ";
+        final String inclusiveComparison = mIsDescending ? " <= " : " >= ";
+
+        return mKeyExpression + inclusiveComparison + key + " AND (" +
+                mKeyExpression + comparison + key + " OR id" + comparison + "?2)";
+    }
+}
@@ -0,0 +1,296 @@
+package app.bitenote.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import app.bitenote.instances.Recipe;
+
+/**
+ * Write-behind queue in front of the recipe updates and deletions of
+ * {@link BiteNoteSQLiteHelper}. Writes are kept in memory for a short delay before they're
+ * handed to a {@link GroupCommitWriter}, and pending writes to the same recipe are coalesced, so
+ * only the latest one reaches the database.
+ * <p>
+ * Readers that need the queued writes to be durable must wait for {@link #flush()} first.
+ * @author Daniel N.
+ */
+public final class RecipeWriteQueue implements AutoCloseable {
+    /**
+     * Default delay between the first queued write and the flush, in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_DELAY_MILLIS = 500;
+
+    /**
+     * Write that is waiting to be flushed.
+     */
+    private static final class PendingWrite {
+        /**
+         * Latest recipe data, or {@code null} if the recipe is going to be deleted.
+         */
+        private Recipe mRecipe;
+
+        /**
+         * Amount of snapshots restored by the helper when the write was first queued. Writes queued
+         * before a restore are dropped instead of being replayed onto the restored database.
+         */
+        private final long mRestoreCount;
+
+        /**
+         * Future that completes once the write is flushed. It's shared by every coalesced write.
+         */
+        private final CompletableFuture<Void> mFuture = new CompletableFuture<>();
+
+        /**
+         * Pending write constructor.
+         * @param restoreCount Amount of snapshots restored by the helper when the write was
+         * queued.
+         */
+        private PendingWrite(long restoreCount) {
+            mRestoreCount = restoreCount;
+        }
+    }
+
+    /**
+     * Writer where the writes are flushed.
+     */
+    private final GroupCommitWriter mWriter;
+
+    /**
+     * Delay between the first queued write and the flush, in milliseconds.
+     */
+    private final long mFlushDelayMillis;
+
+    /**
+     * Executor that runs the flushes one at a time, in the same order as they were requested.
+     */
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Pending writes, in the order they were first queued, where the key is the recipe ID.
+     * @implNote Guarded by {@code this}.
+     */
+    private final LinkedHashMap<Integer, PendingWrite> mPendingWrites = new LinkedHashMap<>();
+
+    /**
+     * Flush scheduled by the first pending write, or {@code null} if there are no pending writes.
+     * @implNote Guarded by {@code this}.
+     */
+    private ScheduledFuture<?> mScheduledFlush = null;
+
+    /**
+     * Determines whether the queue has been closed.
+     * @implNote Guarded by {@code this}.
+     */
+    private boolean mIsClosed = false;
+
+    /**
+     * Amount of writes that were replaced by a later write before being flushed.
+     */
+    private final LongAdder mCoalescedCount = new LongAdder();
+
+    /**
+     * Constructor for the queue. Writes are flushed after {@link #DEFAULT_FLUSH_DELAY_MILLIS}.
+     * @param writer Writer where the writes are flushed.
+     */
+    public RecipeWriteQueue(@NonNull GroupCommitWriter writer) {
+        this(writer, DEFAULT_FLUSH_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor for the queue.
+     * @param writer Writer where the writes are flushed.
+     * @param flushDelayMillis Delay between the first queued write and the flush, in
+     * milliseconds.
+     */
+    public RecipeWriteQueue(@NonNull GroupCommitWriter writer, long flushDelayMillis) {
+        assert flushDelayMillis >= 0 : "Flush delay can't be negative.";
+
+        mWriter = writer;
+        mFlushDelayMillis = flushDelayMillis;
+    }
+
+    /**
+     * Queues an update of a recipe. It replaces any pending update of the same recipe, but not a
+     * pending deletion, in which case the update fails.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance which holds the new data. It's copied, so it can be
+     * mutated afterwards.
+     * @return A future that completes once the recipe is updated in the database, or
+     * exceptionally if the recipe is going to be deleted.
+     * @see BiteNoteSQLiteHelper#updateRecipe(int, Recipe)
+     */
+    public CompletableFuture<Void> enqueueUpdate(int recipeId, @NonNull Recipe recipe) {
+        assert recipeId != 0 : "Recipe ID can't be 0";
+
+        return enqueue(recipeId, new Recipe(recipe));
+    }
+
+    /**
+     * Queues a deletion of a recipe. It replaces any pending write to the same recipe.
+     * @param recipeId Recipe ID.
+     * @return A future that completes once the recipe is deleted from the database.
+     * @see BiteNoteSQLiteHelper#deleteRecipe(int)
+     */
+    public CompletableFuture<Void> enqueueDelete(int recipeId) {
+        assert recipeId != 0 : "Recipe ID can't be 0";
+
+        return enqueue(recipeId, null);
+    }
+
+    /**
+     * Flushes every pending write without waiting for the delay.
+     * @return A future that completes once every write queued before this call is in the
+     * database. It can be joined as a barrier by readers.
+     */
+    public CompletableFuture<Void> flush() {
+        try {
+            return CompletableFuture.runAsync(this::flushPendingWrites, mExecutor);
+        } catch (RejectedExecutionException e) {
+            /// a closed queue has already flushed every write
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Flushes every pending write, waits until they're committed, and stops the flush thread. The
+     * futures of the writes queued afterwards complete exceptionally with an
+     * {@link IllegalStateException}. It must be called before the writer is closed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (mIsClosed) return;
+
+            mIsClosed = true;
+        }
+
+        flush().join();
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Gets the amount of writes that are waiting to be flushed.
+     * @return The amount of pending writes.
+     */
+    public synchronized int getPendingCount() {
+        return mPendingWrites.size();
+    }
+
+    /**
+     * Gets the amount of writes that never reached the database, because a later write to the
+     * same recipe replaced them.
+     * @return The amount of coalesced writes.
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.sum();
+    }
+
+    /**
+     * Queues a write, and schedules a flush if there wasn't any.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance, or {@code null} to delete the recipe.
+     * @return A future that completes once the write is flushed.
+     */
+    private synchronized CompletableFuture<Void> enqueue(int recipeId, @Nullable Recipe recipe) {
+        if (mIsClosed) return failedFuture(new IllegalStateException("The queue is closed."));
+
+        final long restoreCount = mWriter.getRestoreCount();
+        PendingWrite pendingWrite = mPendingWrites.get(recipeId);
+
+        /// a write meant for a database that has since been restored is never coalesced
+        if (pendingWrite != null && pendingWrite.mRestoreCount != restoreCount) {
+            pendingWrite.mFuture.completeExceptionally(
+                    new IllegalStateException("A snapshot was restored before the write.")
+            );
+            mPendingWrites.remove(recipeId);
+            pendingWrite = null;
+        }
+
+        if (pendingWrite == null) {
+            pendingWrite = new PendingWrite(restoreCount);
+            mPendingWrites.put(recipeId, pendingWrite);
+        } else if (pendingWrite.mRecipe == null && recipe != null) {
+            /// a recipe that is going to be deleted can't be brought back by a later update
+            return failedFuture(new IllegalStateException("The recipe is being deleted."));
+        } else {
+            mCoalescedCount.increment();
+        }
+        pendingWrite.mRecipe = recipe;
+
+        if (mScheduledFlush == null) {
+            mScheduledFlush = mExecutor.schedule(
+                    this::flushPendingWrites,
+                    mFlushDelayMillis,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+
+        return pendingWrite.mFuture;
+    }
+
+    /**
+     * Creates a future that has already failed.
+     * @param e Exception of the future.
+     * @return A future that is completed exceptionally.
+     */
+    private static CompletableFuture<Void> failedFuture(@NonNull Exception e) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+
+        return future;
+    }
+
+    /**
+     * Hands every pending write to the writer, and waits until they're committed. Only called
+     * from {@link #mExecutor}.
+     */
+    private void flushPendingWrites() {
+        final List<Map.Entry<Integer, PendingWrite>> pendingWrites;
+        synchronized (this) {
+            if (mScheduledFlush != null) {
+                mScheduledFlush.cancel(false);
+                mScheduledFlush = null;
+            }
+
+            pendingWrites = new ArrayList<>(mPendingWrites.entrySet());
+            mPendingWrites.clear();
+        }
+
+        final CompletableFuture<?>[] writeFutures = new CompletableFuture<?>[pendingWrites.size()];
+        for (int i = 0; i < writeFutures.length; i++) {
+            final int recipeId = pendingWrites.get(i).getKey();
+            final PendingWrite pendingWrite = pendingWrites.get(i).getValue();
+
+            writeFutures[i] = (
+                    pendingWrite.mRecipe == null
+                            ? mWriter.deleteRecipe(recipeId, pendingWrite.mRestoreCount)
+                            : mWriter.updateRecipe(
+                                    recipeId,
+                                    pendingWrite.mRecipe,
+                                    pendingWrite.mRestoreCount
+                            )
+            ).whenComplete((result, e) -> {
+                if (e == null) {
+                    pendingWrite.mFuture.complete(null);
+                } else {
+                    pendingWrite.mFuture.completeExceptionally(e);
+                }
+            });
+        }
+
+        /// failures are already reported through the futures of the writes
+        CompletableFuture.allOf(writeFutures).exceptionally(e -> null).join();
+    }
+}
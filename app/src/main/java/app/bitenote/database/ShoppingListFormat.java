@@ -0,0 +1,130 @@
+package app.bitenote.database;
+
+import android.util.JsonWriter;
+import androidx.annotation.NonNull;
+import java.io.IOException;
+
+import app.bitenote.instances.ShoppingList;
+
+/**
+ * Format of exported shopping lists. A list is a single UTF-8 JSON document, whose items hold the
+ * catalog names of their ingredients and measurement types, so it can be read without the
+ * database:
+ * <pre>
+ * {
+ *   "format": "bitenote-shopping-list",
+ *   "version": 1,
+ *   "diners": 4,
+ *   "items": [
+ *     {
+ *       "id": 54,
+ *       "name": "seafood_fish_salmon",
+ *       "measurement": "weight",
+ *       "is_measured_in_units": false,
+ *       "amount": 400,
+ *       "recipe_count": 2
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * Amounts are rounded up, as in {@link ShoppingList.Item#getRoundedAmount()}.
+ * @see BiteNoteSQLiteHelper#exportShoppingList(java.nio.channels.WritableByteChannel,
+ * java.util.Set, int)
+ * @author Daniel N.
+ */
+public final class ShoppingListFormat {
+    /**
+     * Value of the {@code format} member of the list.
+     */
+    public static final String FORMAT_NAME = "bitenote-shopping-list";
+
+    /**
+     * Latest version of the format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Name of the member that identifies the format.
+     */
+    private static final String FORMAT_KEY = "format";
+
+    /**
+     * Name of the member that holds the format version.
+     */
+    private static final String VERSION_KEY = "version";
+
+    /**
+     * Name of the member that holds {@link ShoppingList#diners}.
+     */
+    private static final String DINERS_KEY = "diners";
+
+    /**
+     * Name of the member that holds the item array.
+     */
+    private static final String ITEMS_KEY = "items";
+
+    /**
+     * Name of the item member that holds {@link ShoppingList.Item#ingredientId}.
+     */
+    private static final String ITEM_ID_KEY = "id";
+
+    /**
+     * Name of the item member that holds the full name of the ingredient.
+     */
+    private static final String ITEM_NAME_KEY = "name";
+
+    /**
+     * Name of the item member that holds the name of the measurement type of the ingredient.
+     */
+    private static final String ITEM_MEASUREMENT_KEY = "measurement";
+
+    /**
+     * Name of the item member that holds {@link ShoppingList.Item#isMeasuredInUnits}.
+     */
+    private static final String ITEM_IS_MEASURED_IN_UNITS_KEY = "is_measured_in_units";
+
+    /**
+     * Name of the item member that holds {@link ShoppingList.Item#getRoundedAmount()}.
+     */
+    private static final String ITEM_AMOUNT_KEY = "amount";
+
+    /**
+     * Name of the item member that holds {@link ShoppingList.Item#recipeCount}.
+     */
+    private static final String ITEM_RECIPE_COUNT_KEY = "recipe_count";
+
+    /**
+     * Private constructor, since this class only contains static members.
+     */
+    private ShoppingListFormat() {}
+
+    /**
+     * Writes a shopping list as a whole document.
+     * @param writer {@link JsonWriter} instance.
+     * @param list {@link ShoppingList} instance.
+     * @throws IOException If the writer fails.
+     */
+    public static void writeShoppingList(
+            @NonNull JsonWriter writer,
+            @NonNull ShoppingList list
+    ) throws IOException {
+        writer.beginObject()
+                .name(FORMAT_KEY).value(FORMAT_NAME)
+                .name(VERSION_KEY).value(FORMAT_VERSION)
+                .name(DINERS_KEY).value(list.diners)
+                .name(ITEMS_KEY).beginArray();
+
+        for (ShoppingList.Item item: list.getItems()) {
+            writer.beginObject()
+                    .name(ITEM_ID_KEY).value(item.ingredientId)
+                    .name(ITEM_NAME_KEY).value(item.ingredient.fullName)
+                    .name(ITEM_MEASUREMENT_KEY).value(item.ingredient.measurementType.name)
+                    .name(ITEM_IS_MEASURED_IN_UNITS_KEY).value(item.isMeasuredInUnits)
+                    .name(ITEM_AMOUNT_KEY).value(item.getRoundedAmount())
+                    .name(ITEM_RECIPE_COUNT_KEY).value(item.recipeCount)
+                    .endObject();
+        }
+
+        writer.endArray().endObject();
+    }
+}
@@ -0,0 +1,535 @@
+package app.bitenote.database;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import android.util.SparseIntArray;
+import androidx.annotation.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Log of the SQL statements that take longer than a configurable threshold. Every slow statement
+ * is recorded with its shape, the amount of bound parameters, the amount of returned rows, its
+ * latency and its query plan.
+ * <p>
+ * Entries are kept in a ring buffer file of {@link #DEFAULT_CAPACITY} fixed-size slots, so
+ * recording an entry costs a single slot write, and the oldest entries are overwritten once the
+ * log is full. The file has the following layout, with big endian integers:
+ * <pre>
+ * | magic "BNSQ" | version | capacity | slot size | next slot | entry count | slots... |
+ * </pre>
+ * @author Daniel N.
+ */
+public final class SlowQueryLog {
+    /**
+     * Default latency, in milliseconds, over which statements are recorded.
+     */
+    public static final long DEFAULT_THRESHOLD_MILLIS = 50;
+
+    /**
+     * Amount of entries kept by the log.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Magic number at the start of the log file, which is "BNSQ" in ASCII.
+     */
+    private static final int MAGIC = 0x424E5351;
+
+    /**
+     * Version of the log file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of the header of the log file.
+     */
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    /**
+     * Size of each slot of the log file, including the length prefix of the entry.
+     */
+    private static final int SLOT_SIZE = 4096;
+
+    /**
+     * Maximum length of the shape of a recorded statement. Longer shapes are truncated.
+     */
+    private static final int MAX_SHAPE_LENGTH = 1024;
+
+    /**
+     * Matches SQL string literals.
+     */
+    private static final Pattern STRING_LITERAL_PATTERN = Pattern.compile("'(?:[^']|'')*'");
+
+    /**
+     * Matches SQL numeric literals that aren't part of an identifier.
+     */
+    private static final Pattern NUMERIC_LITERAL_PATTERN =
+            Pattern.compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    /**
+     * Matches lists of two or more placeholders.
+     */
+    private static final Pattern PLACEHOLDER_LIST_PATTERN = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    /**
+     * Matches whitespace runs.
+     */
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    /**
+     * A recorded slow statement.
+     */
+    public static final class Entry {
+        /**
+         * Time when the statement was recorded, in milliseconds since the epoch.
+         */
+        public final long timestamp;
+
+        /**
+         * Latency of the statement, in nanoseconds.
+         */
+        public final long elapsedNanos;
+
+        /**
+         * Shape of the statement, see {@link #getShape(String)}.
+         */
+        public final String shape;
+
+        /**
+         * Amount of bound parameters of the statement.
+         */
+        public final int parameterCount;
+
+        /**
+         * Amount of rows returned by the statement, or {@code -1} if it doesn't return rows.
+         */
+        public final int rowCount;
+
+        /**
+         * Output of EXPLAIN QUERY PLAN for the statement, with one line per plan step, indented
+         * by depth. Empty if the plan couldn't be obtained.
+         */
+        public final String queryPlan;
+
+        /**
+         * Constructor for an entry.
+         * @param timestamp Time when the statement was recorded, in milliseconds since the epoch.
+         * @param elapsedNanos Latency of the statement, in nanoseconds.
+         * @param shape Shape of the statement.
+         * @param parameterCount Amount of bound parameters of the statement.
+         * @param rowCount Amount of rows returned by the statement, or {@code -1}.
+         * @param queryPlan Query plan of the statement.
+         */
+        public Entry(
+                long timestamp,
+                long elapsedNanos,
+                @NonNull String shape,
+                int parameterCount,
+                int rowCount,
+                @NonNull String queryPlan
+        ) {
+            this.timestamp = timestamp;
+            this.elapsedNanos = elapsedNanos;
+            this.shape = shape;
+            this.parameterCount = parameterCount;
+            this.rowCount = rowCount;
+            this.queryPlan = queryPlan;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.ROOT,
+                    "%s  %.3f ms  params=%d  rows=%d%n%s%n%s",
+                    new Timestamp(timestamp),
+                    elapsedNanos / 1e6,
+                    parameterCount,
+                    rowCount,
+                    shape,
+                    queryPlan
+            );
+        }
+    }
+
+    /**
+     * Ring buffer file.
+     */
+    private final File mFile;
+
+    /**
+     * Amount of slots of the ring buffer file.
+     */
+    private final int mCapacity;
+
+    /**
+     * Latency, in nanoseconds, over which statements are recorded.
+     */
+    private volatile long mThresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    /**
+     * Constructor for a slow query log with {@link #DEFAULT_CAPACITY} entries.
+     * @param file Ring buffer file. It's created when the first entry is recorded.
+     */
+    public SlowQueryLog(@NonNull File file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a slow query log.
+     * @param file Ring buffer file. It's created when the first entry is recorded. If it was
+     * written with a different capacity, it's cleared.
+     * @param capacity Amount of entries kept by the log.
+     */
+    public SlowQueryLog(@NonNull File file, int capacity) {
+        assert capacity > 0 : "Capacity must be positive.";
+
+        mFile = file;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Gets the latency over which statements are recorded.
+     * @return The threshold in milliseconds.
+     */
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mThresholdNanos);
+    }
+
+    /**
+     * Sets the latency over which statements are recorded.
+     * @param thresholdMillis Threshold in milliseconds. {@code 0} records every statement.
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        assert thresholdMillis >= 0 : "Threshold can't be negative.";
+
+        mThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Checks whether a latency is over the threshold. This check is cheap, so it should be done
+     * before calling {@link #record(SQLiteDatabase, String, Object[], int, long)}.
+     * @param elapsedNanos Latency in nanoseconds.
+     * @return {@code true} if a statement with that latency must be recorded.
+     */
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= mThresholdNanos;
+    }
+
+    /**
+     * Records a slow statement, along with its query plan. Errors are logged, but never thrown,
+     * so a failing log doesn't break the statement that was recorded.
+     * @param database Open {@link SQLiteDatabase} instance where the statement ran. Its query plan
+     * is obtained from this database, with the same arguments.
+     * @param sql SQL statement.
+     * @param args Bound arguments of the statement.
+     * @param rowCount Amount of rows returned by the statement, or {@code -1}.
+     * @param elapsedNanos Latency of the statement, in nanoseconds.
+     */
+    public void record(
+            @NonNull SQLiteDatabase database,
+            @NonNull String sql,
+            @NonNull Object[] args,
+            int rowCount,
+            long elapsedNanos
+    ) {
+        final Entry entry = new Entry(
+                System.currentTimeMillis(),
+                elapsedNanos,
+                getShape(sql),
+                args.length,
+                rowCount,
+                getQueryPlan(database, sql, args)
+        );
+
+        Log.w("db slow query", entry.toString());
+
+        try {
+            write(entry);
+        } catch (IOException e) {
+            Log.e(
+                    "db slow query",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+        }
+    }
+
+    /**
+     * Gets the recorded entries.
+     * @return A list of entries, ordered from oldest to newest.
+     */
+    public synchronized List<Entry> getEntries() {
+        if (!mFile.exists()) return new ArrayList<>();
+
+        try (final RandomAccessFile file = new RandomAccessFile(mFile, "r")) {
+            if (!hasValidHeader(file)) return new ArrayList<>();
+
+            final int nextSlot = file.readInt();
+            final int count = file.readInt();
+            final List<Entry> entries = new ArrayList<>(count);
+            final byte[] slot = new byte[SLOT_SIZE];
+
+            for (int i = 0; i < count; i++) {
+                /// the oldest entry is the one that will be overwritten next
+                final int index = Math.floorMod(nextSlot - count + i, mCapacity);
+
+                file.seek(HEADER_SIZE + (long) index * SLOT_SIZE);
+                file.readFully(slot);
+                entries.add(readEntry(slot));
+            }
+
+            return Collections.unmodifiableList(entries);
+        } catch (IOException e) {
+            Log.e(
+                    "db slow query",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Writes the recorded entries into a text file, replacing its contents.
+     * @param file File where the entries are written.
+     * @throws IOException If the file can't be written.
+     */
+    public void dump(@NonNull File file) throws IOException {
+        try (
+                final Writer writer = new OutputStreamWriter(
+                        new FileOutputStream(file),
+                        StandardCharsets.UTF_8
+                )
+        ) {
+            writer.write(toString());
+        }
+    }
+
+    /**
+     * Removes every recorded entry.
+     */
+    public synchronized void clear() {
+        if (mFile.exists() && !mFile.delete()) {
+            Log.w("db slow query", "Couldn't delete " + mFile.getName() + ".");
+        }
+    }
+
+    /**
+     * Formats the recorded entries as plain text, from oldest to newest.
+     * @return The formatted entries.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("Slow queries (>= ")
+                .append(getThresholdMillis())
+                .append(" ms)\n");
+
+        for (Entry entry: getEntries()) {
+            builder.append('\n').append(entry).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Gets the shape of an SQL statement, which is the statement without its literal values, so
+     * that statements that only differ in their values share the same shape. Literals are
+     * replaced by placeholders, lists of placeholders are collapsed, and whitespace is normalized.
+     * @param sql SQL statement.
+     * @return The shape of the statement.
+     */
+    public static String getShape(@NonNull String sql) {
+        String shape = STRING_LITERAL_PATTERN.matcher(sql).replaceAll("?");
+        shape = NUMERIC_LITERAL_PATTERN.matcher(shape).replaceAll("?");
+        shape = PLACEHOLDER_LIST_PATTERN.matcher(shape).replaceAll("?, ...");
+        shape = WHITESPACE_PATTERN.matcher(shape).replaceAll(" ").trim();
+
+        return shape.length() > MAX_SHAPE_LENGTH
+                ? shape.substring(0, MAX_SHAPE_LENGTH) + "..."
+                : shape;
+    }
+
+    /**
+     * Gets the query plan of a statement.
+     * @param database Open {@link SQLiteDatabase} instance.
+     * @param sql SQL statement.
+     * @param args Bound arguments of the statement.
+     * @return The query plan, with one line per step, indented by depth. Empty if the plan
+     * couldn't be obtained.
+     */
+    private static String getQueryPlan(
+            @NonNull SQLiteDatabase database,
+            @NonNull String sql,
+            @NonNull Object[] args
+    ) {
+        final String[] planArgs = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            planArgs[i] = args[i] == null ? null : String.valueOf(args[i]);
+        }
+
+        final StringBuilder plan = new StringBuilder();
+        final SparseIntArray depths = new SparseIntArray();
+
+        try (final Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, planArgs)) {
+            /// SQLite 3.24 replaced the 'selectid' column with the 'id' and 'parent' tree columns
+            final int idIndex = cursor.getColumnIndex("id");
+            final int parentIndex = cursor.getColumnIndex("parent");
+            final int detailIndex = cursor.getColumnIndexOrThrow("detail");
+
+            while (cursor.moveToNext()) {
+                final int depth;
+                if (parentIndex >= 0) {
+                    final int parent = cursor.getInt(parentIndex);
+                    depth = parent == 0 ? 0 : depths.get(parent) + 1;
+                    depths.put(cursor.getInt(idIndex), depth);
+                } else {
+                    depth = cursor.getInt(cursor.getColumnIndexOrThrow("selectid"));
+                }
+
+                if (plan.length() > 0) plan.append('\n');
+                for (int i = 0; i <= depth; i++) {
+                    plan.append("  ");
+                }
+                plan.append(cursor.getString(detailIndex));
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            Log.w(
+                    "db slow query",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+        }
+
+        return plan.toString();
+    }
+
+    /**
+     * Writes an entry into the next slot of the ring buffer file.
+     * @param entry {@link Entry} instance.
+     * @throws IOException If the file can't be written.
+     */
+    private synchronized void write(@NonNull Entry entry) throws IOException {
+        final byte[] slot = writeEntry(entry);
+
+        try (final RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            if (!hasValidHeader(file)) {
+                file.setLength(0);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(mCapacity);
+                file.writeInt(SLOT_SIZE);
+                file.writeInt(0);
+                file.writeInt(0);
+            }
+
+            file.seek(HEADER_SIZE - 2 * Integer.BYTES);
+            final int nextSlot = file.readInt();
+            final int count = file.readInt();
+
+            file.seek(HEADER_SIZE + (long) nextSlot * SLOT_SIZE);
+            file.write(slot);
+
+            file.seek(HEADER_SIZE - 2 * Integer.BYTES);
+            file.writeInt((nextSlot + 1) % mCapacity);
+            file.writeInt(Math.min(count + 1, mCapacity));
+        }
+    }
+
+    /**
+     * Checks whether the header of the file matches this log, and leaves the file positioned
+     * right before the next slot index.
+     * @param file Open {@link RandomAccessFile} instance.
+     * @return {@code true} if the header is valid.
+     * @throws IOException If the file can't be read.
+     */
+    private boolean hasValidHeader(@NonNull RandomAccessFile file) throws IOException {
+        if (file.length() < HEADER_SIZE) return false;
+
+        file.seek(0);
+        return file.readInt() == MAGIC
+                && file.readInt() == VERSION
+                && file.readInt() == mCapacity
+                && file.readInt() == SLOT_SIZE;
+    }
+
+    /**
+     * Serializes an entry into a slot. Query plans that don't fit are truncated.
+     * @param entry {@link Entry} instance.
+     * @return A slot of {@link #SLOT_SIZE} bytes.
+     * @throws IOException If the entry can't be serialized.
+     */
+    private static byte[] writeEntry(@NonNull Entry entry) throws IOException {
+        String queryPlan = entry.queryPlan;
+
+        while (true) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(SLOT_SIZE);
+            final DataOutputStream output = new DataOutputStream(bytes);
+
+            output.writeInt(0); // length, written below
+            output.writeLong(entry.timestamp);
+            output.writeLong(entry.elapsedNanos);
+            output.writeInt(entry.parameterCount);
+            output.writeInt(entry.rowCount);
+            output.writeUTF(entry.shape);
+            output.writeUTF(queryPlan);
+            output.flush();
+
+            if (bytes.size() <= SLOT_SIZE) {
+                final byte[] slot = new byte[SLOT_SIZE];
+                final byte[] data = bytes.toByteArray();
+
+                System.arraycopy(data, 0, slot, 0, data.length);
+                ByteBuffer.wrap(slot).putInt(0, data.length);
+                return slot;
+            }
+
+            /// shapes are already bounded, so only the plan may need to shrink
+            queryPlan = queryPlan.substring(0, queryPlan.length() / 2);
+        }
+    }
+
+    /**
+     * Deserializes an entry from a slot.
+     * @param slot Slot of {@link #SLOT_SIZE} bytes.
+     * @return The {@link Entry} instance.
+     * @throws IOException If the slot is malformed.
+     */
+    private static Entry readEntry(@NonNull byte[] slot) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(slot));
+        final int length = input.readInt();
+        if (length < Integer.BYTES || length > SLOT_SIZE) {
+            throw new IOException("Malformed slow query log slot.");
+        }
+
+        final long timestamp = input.readLong();
+        final long elapsedNanos = input.readLong();
+        final int parameterCount = input.readInt();
+        final int rowCount = input.readInt();
+        final String shape = input.readUTF();
+        final String queryPlan = input.readUTF();
+
+        return new Entry(timestamp, elapsedNanos, shape, parameterCount, rowCount, queryPlan);
+    }
+}
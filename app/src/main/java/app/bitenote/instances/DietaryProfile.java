@@ -0,0 +1,145 @@
+package app.bitenote.instances;
+
+import androidx.annotation.NonNull;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Represents a stored dietary profile, such as an allergy or a diet. A profile bans ingredients
+ * and ingredient types, and the database keeps the recipes it excludes, so it can be applied to
+ * any query.
+ * @see app.bitenote.database.RecipeQuery#dietaryProfileId
+ * @see app.bitenote.database.BiteNoteSQLiteHelper#insertDietaryProfile(DietaryProfile)
+ * @author Daniel N.
+ */
+public final class DietaryProfile {
+    /**
+     * Name of the profile, written by the user.
+     */
+    public String name;
+
+    /**
+     * Bit set of banned ingredients. Each set bit is an ingredient ID.
+     */
+    private final BitSet mBannedIngredients;
+
+    /**
+     * Bit set of banned ingredient types. Each set bit is an ingredient type ID.
+     * @see IngredientType
+     */
+    private final BitSet mBannedIngredientTypes;
+
+    /**
+     * Dietary profile constructor.
+     * @param name Name of the profile.
+     * @implNote Using this constructor won't add a row in the 'dietary_profiles' database table.
+     */
+    public DietaryProfile(@NonNull String name) {
+        this.name = name;
+        this.mBannedIngredients = new BitSet();
+        this.mBannedIngredientTypes = new BitSet();
+    }
+
+    /**
+     * Copy constructor.
+     * @param base {@link DietaryProfile} instance to be copied.
+     */
+    public DietaryProfile(@NonNull DietaryProfile base) {
+        this.name = base.name;
+        this.mBannedIngredients = (BitSet) base.mBannedIngredients.clone();
+        this.mBannedIngredientTypes = (BitSet) base.mBannedIngredientTypes.clone();
+    }
+
+    /**
+     * Bans an ingredient in the profile.
+     * @param ingredientId ID of the ingredient.
+     */
+    public void banIngredient(int ingredientId) {
+        mBannedIngredients.set(ingredientId);
+    }
+
+    /**
+     * Removes an ingredient from the bans of the profile.
+     * @param ingredientId ID of the ingredient.
+     */
+    public void unbanIngredient(int ingredientId) {
+        mBannedIngredients.clear(ingredientId);
+    }
+
+    /**
+     * Checks whether an ingredient is banned on its own in the profile, regardless of its type.
+     * @param ingredientId ID of the ingredient.
+     * @return {@code true} if the ingredient is banned.
+     */
+    public boolean isIngredientBanned(int ingredientId) {
+        return ingredientId >= 0 && mBannedIngredients.get(ingredientId);
+    }
+
+    /**
+     * Performs an action for each banned ingredient, in ascending order of ID.
+     * @param action Action that receives the ingredient ID.
+     */
+    public void forEachBannedIngredient(@NonNull IntConsumer action) {
+        forEach(mBannedIngredients, action);
+    }
+
+    /**
+     * Bans an ingredient type in the profile, along with all of its subtypes.
+     * @param ingredientTypeId ID of the ingredient type.
+     */
+    public void banIngredientType(int ingredientTypeId) {
+        mBannedIngredientTypes.set(ingredientTypeId);
+    }
+
+    /**
+     * Removes an ingredient type from the bans of the profile.
+     * @param ingredientTypeId ID of the ingredient type.
+     */
+    public void unbanIngredientType(int ingredientTypeId) {
+        mBannedIngredientTypes.clear(ingredientTypeId);
+    }
+
+    /**
+     * Checks whether an ingredient type is banned in the profile.
+     * @param ingredientTypeId ID of the ingredient type.
+     * @return {@code true} if the ingredient type is banned.
+     */
+    public boolean isIngredientTypeBanned(int ingredientTypeId) {
+        return ingredientTypeId >= 0 && mBannedIngredientTypes.get(ingredientTypeId);
+    }
+
+    /**
+     * Performs an action for each banned ingredient type, in ascending order of ID.
+     * @param action Action that receives the ingredient type ID.
+     */
+    public void forEachBannedIngredientType(@NonNull IntConsumer action) {
+        forEach(mBannedIngredientTypes, action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DietaryProfile that = (DietaryProfile) o;
+        return Objects.equals(name, that.name)
+                && mBannedIngredients.equals(that.mBannedIngredients)
+                && mBannedIngredientTypes.equals(that.mBannedIngredientTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, mBannedIngredients, mBannedIngredientTypes);
+    }
+
+    /**
+     * Performs an action for each set bit of a bit set, in ascending order.
+     * @param ids Bit set of IDs.
+     * @param action Action that receives the ID.
+     */
+    private static void forEach(@NonNull BitSet ids, @NonNull IntConsumer action) {
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            action.accept(id);
+        }
+    }
+}
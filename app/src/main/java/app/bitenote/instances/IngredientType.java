@@ -0,0 +1,96 @@
+package app.bitenote.instances;
+
+import androidx.annotation.NonNull;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Stack;
+
+/**
+ * A container for data of one ingredient type or subtype in the database. The data in
+ * {@link IngredientType} instances can't be changed, because every possible type is pre-defined
+ * and immutable.
+ * <p>
+ * Ingredients are stored in the order of the {@code res/xml/ingredients.xml} document, so the
+ * ingredients of a type always have contiguous IDs, and nested types have nested ranges.
+ * @see app.bitenote.database.BiteNoteSQLiteHelper#getIngredientTypeFromId(int)
+ * @author Daniel N.
+ */
+public final class IngredientType {
+    /**
+     * Type's full name, which prefixes the full names of its ingredients. For example:
+     * "seafood_fish".
+     */
+    public final String fullName;
+
+    /**
+     * Type's regular name. For example: "fish".
+     */
+    public final String name;
+
+    /**
+     * ID of the parent type, or {@code 0} if this is a top-level type.
+     */
+    public final int parentId;
+
+    /**
+     * ID of the first ingredient of the type.
+     */
+    public final int firstIngredientId;
+
+    /**
+     * ID of the last ingredient of the type.
+     */
+    public final int lastIngredientId;
+
+    /**
+     * A basic {@link IngredientType} instance constructor.
+     * @param fullName Full name of the type (includes its parent type).
+     * @param parentId ID of the parent type, or {@code 0} if this is a top-level type.
+     * @param firstIngredientId ID of the first ingredient of the type.
+     * @param lastIngredientId ID of the last ingredient of the type.
+     * @implNote Using this constructor won't add a row in the 'ingredient_types' database table.
+     * @see app.bitenote.database.BiteNoteSQLiteHelper#getIngredientTypeFromId(int)
+     */
+    public IngredientType(
+            @NonNull String fullName,
+            int parentId,
+            int firstIngredientId,
+            int lastIngredientId
+    ) {
+        assert firstIngredientId <= lastIngredientId : "Ingredient range can't be empty.";
+
+        this.fullName = fullName;
+        this.parentId = parentId;
+        this.firstIngredientId = firstIngredientId;
+        this.lastIngredientId = lastIngredientId;
+
+        final Stack<String> fullNameStack = new Stack<>();
+        fullNameStack.addAll(Arrays.asList(fullName.split(Ingredient.NAME_DELIMITER)));
+        this.name = fullNameStack.pop();
+    }
+
+    /**
+     * Determines whether an ingredient belongs to this type, or to any of its subtypes.
+     * @param ingredientId ID of the ingredient.
+     * @return {@code true} if the ingredient belongs to the type.
+     */
+    public boolean containsIngredient(int ingredientId) {
+        return ingredientId >= firstIngredientId && ingredientId <= lastIngredientId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IngredientType that = (IngredientType) o;
+        return parentId == that.parentId
+                && firstIngredientId == that.firstIngredientId
+                && lastIngredientId == that.lastIngredientId
+                && Objects.equals(fullName, that.fullName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fullName, parentId, firstIngredientId, lastIngredientId);
+    }
+}
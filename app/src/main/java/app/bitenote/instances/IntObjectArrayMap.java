@@ -0,0 +1,305 @@
+package app.bitenote.instances;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with primitive {@code int} keys, backed by a sorted array of keys and a parallel array of
+ * values. Keys aren't boxed, no entry objects are stored, and lookups are binary searches.
+ * Insertions and removals shift the entries that follow, which is cheaper than hashing for the
+ * small maps of a recipe or a query.
+ *
+ * Entries are iterated in ascending key order straight from the arrays, so the order doesn't
+ * depend on how they were inserted, ingredients keep being listed by ID, and
+ * {@link #forEach(IntObjectConsumer)} doesn't allocate.
+ * @param <V> Type of the values. Values can't be {@code null}.
+ * @author Daniel N.
+ */
+public final class IntObjectArrayMap<V> {
+    /**
+     * Consumer of the entries of the map.
+     * @param <V> Type of the values.
+     */
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        /**
+         * Consumes an entry.
+         * @param key Key of the entry.
+         * @param value Value of the entry.
+         */
+        void accept(int key, V value);
+    }
+
+    /**
+     * Capacity of new maps.
+     */
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * Keys of the map, in ascending order. Only the first {@link #mSize} are in use.
+     */
+    private int[] mKeys;
+
+    /**
+     * Values of the map, at the same indexes as their keys.
+     */
+    private Object[] mValues;
+
+    /**
+     * Amount of entries in the map.
+     */
+    private int mSize;
+
+    /**
+     * Entries of the {@link #asMap()} view, built by its first iteration and dropped by any
+     * change, so the keys are only boxed once. It's {@code null} if they haven't been built.
+     */
+    private volatile Map.Entry<Integer, V>[] mEntries = null;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntObjectArrayMap() {
+        mKeys = new int[DEFAULT_CAPACITY];
+        mValues = new Object[DEFAULT_CAPACITY];
+        mSize = 0;
+    }
+
+    /**
+     * Copy constructor. Values are shared, not copied.
+     * @param base {@link IntObjectArrayMap} instance to be copied.
+     */
+    public IntObjectArrayMap(@NonNull IntObjectArrayMap<V> base) {
+        final int capacity = Math.max(base.mSize, DEFAULT_CAPACITY);
+        mKeys = Arrays.copyOf(base.mKeys, capacity);
+        mValues = Arrays.copyOf(base.mValues, capacity);
+        mSize = base.mSize;
+    }
+
+    /**
+     * Gets the amount of entries in the map.
+     * @return The amount of entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Checks whether the map is empty.
+     * @return {@code true} if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Gets the value of a key.
+     * @param key Key.
+     * @return The value, or {@code null} if the key isn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public V get(int key) {
+        final int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        return index < 0 ? null : (V) mValues[index];
+    }
+
+    /**
+     * Checks whether a key is in the map.
+     * @param key Key.
+     * @return {@code true} if the key is in the map.
+     */
+    public boolean containsKey(int key) {
+        return Arrays.binarySearch(mKeys, 0, mSize, key) >= 0;
+    }
+
+    /**
+     * Puts an entry into the map, replacing the previous value of the key.
+     * @param key Key.
+     * @param value Value.
+     * @return The previous value of the key, or {@code null} if it wasn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public V put(int key, @NonNull V value) {
+        mEntries = null;
+
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index >= 0) {
+            final V previousValue = (V) mValues[index];
+            mValues[index] = value;
+
+            return previousValue;
+        }
+
+        /// the search returns the insertion point of missing keys, encoded as a negative number
+        index = -(index + 1);
+        if (mSize == mKeys.length) {
+            mKeys = Arrays.copyOf(mKeys, mKeys.length * 2);
+            mValues = Arrays.copyOf(mValues, mValues.length * 2);
+        }
+
+        System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+        System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+        mKeys[index] = key;
+        mValues[index] = value;
+        mSize++;
+
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     * @param key Key.
+     * @return The removed value, or {@code null} if the key wasn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public V remove(int key) {
+        final int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index < 0) return null;
+
+        mEntries = null;
+        final V removedValue = (V) mValues[index];
+
+        System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+        mSize--;
+        mValues[mSize] = null;
+
+        return removedValue;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear() {
+        mEntries = null;
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * Performs an action for every entry of the map, in ascending key order.
+     * @param action Action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NonNull IntObjectConsumer<? super V> action) {
+        for (int i = 0; i < mSize; i++) {
+            action.accept(mKeys[i], (V) mValues[i]);
+        }
+    }
+
+    /**
+     * Gets an unmodifiable {@link Map} view of this map. Its entries are built the first time it's
+     * iterated after a change, and reused by later iterations.
+     * @return The map view.
+     */
+    public Map<Integer, V> asMap() {
+        return new MapView();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntObjectArrayMap<?> that = (IntObjectArrayMap<?>) o;
+        if (mSize != that.mSize) return false;
+
+        for (int i = 0; i < mSize; i++) {
+            if (mKeys[i] != that.mKeys[i] || !mValues[i].equals(that.mValues[i])) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+
+        /// same as the hash code of a java.util.Map with the same entries
+        for (int i = 0; i < mSize; i++) {
+            hashCode += mKeys[i] ^ mValues[i].hashCode();
+        }
+
+        return hashCode;
+    }
+
+    /**
+     * Gets the entries of the {@link #asMap()} view, building them if there's been a change since
+     * they were last built.
+     * @return Array of entries, in ascending key order.
+     */
+    @SuppressWarnings("unchecked")
+    private Map.Entry<Integer, V>[] getEntries() {
+        Map.Entry<Integer, V>[] entries = mEntries;
+        if (entries != null) return entries;
+
+        entries = new Map.Entry[mSize];
+        for (int i = 0; i < mSize; i++) {
+            entries[i] = new AbstractMap.SimpleImmutableEntry<>(mKeys[i], (V) mValues[i]);
+        }
+
+        mEntries = entries;
+        return entries;
+    }
+
+    /**
+     * Unmodifiable {@link Map} view of the map.
+     */
+    private final class MapView extends AbstractMap<Integer, V> {
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && IntObjectArrayMap.this.containsKey((Integer) key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return key instanceof Integer ? IntObjectArrayMap.this.get((Integer) key) : null;
+        }
+
+        @NonNull
+        @Override
+        public Set<Entry<Integer, V>> entrySet() {
+            return new AbstractSet<Entry<Integer, V>>() {
+                @Override
+                public int size() {
+                    return mSize;
+                }
+
+                @NonNull
+                @Override
+                public Iterator<Entry<Integer, V>> iterator() {
+                    return new Iterator<Entry<Integer, V>>() {
+                        private final Entry<Integer, V>[] mIteratedEntries = getEntries();
+                        private int mIndex = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return mIndex < mIteratedEntries.length;
+                        }
+
+                        @Override
+                        public Entry<Integer, V> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+
+                            return mIteratedEntries[mIndex++];
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
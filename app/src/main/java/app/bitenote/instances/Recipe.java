@@ -3,14 +3,19 @@ package app.bitenote.instances;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import java.sql.Date;
-import java.util.Collections;
+import java.util.AbstractSet;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntConsumer;
 
 import app.bitenote.database.BiteNoteSQLiteHelper;
+import app.bitenote.database.RecipeBodyCodec;
 import app.bitenote.database.RecipeQuery;
 import app.bitenote.instances.Ingredient.InRecipeProperties;
 
@@ -83,8 +88,18 @@ public class Recipe {
      */
     public String name;
 
-    /** Body text of the recipe. */
-    public String body;
+    /**
+     * Body text of the recipe, or {@code null} if it's still compressed.
+     * @see #getBody()
+     */
+    private String mBody;
+
+    /**
+     * Compressed body text of the recipe, as read from the database, or {@code null} if the body
+     * isn't compressed or has been modified since it was read.
+     * @see RecipeBodyCodec
+     */
+    private byte[] mCompressedBody;
 
     /**
      * Necessary budget for the recipe.
@@ -104,15 +119,16 @@ public class Recipe {
     public Date creationDate;
 
     /**
-     * Ingredient HashMap. The key is the ingredient ID, and the value stores the properties of
-     * that ingredient.
+     * Ingredient map. The key is the ingredient ID, and the value stores the properties of that
+     * ingredient.
      */
-    private final HashMap<Integer, InRecipeProperties> mIngredients;
+    private final IntObjectArrayMap<InRecipeProperties> mIngredients;
 
     /**
-     * Utensil HashSet. Each element is an utensil ID.
+     * Utensil bit set. Each set bit is an utensil ID. Utensil IDs are small and dense, so a bit
+     * set takes a few words instead of a boxed entry per utensil.
      */
-    private final HashSet<Integer> mUtensils;
+    private final BitSet mUtensils;
 
     /**
      * Basic Recipe constructor. Creates a new Recipe instance, with its creation date set to the
@@ -120,9 +136,10 @@ public class Recipe {
      */
     public Recipe() {
         this.name = "";
-        this.body = "";
-        this.mIngredients = new HashMap<>();
-        this.mUtensils = new HashSet<>();
+        this.mBody = "";
+        this.mCompressedBody = null;
+        this.mIngredients = new IntObjectArrayMap<>();
+        this.mUtensils = new BitSet();
         this.budget = 0;
         this.diners = 1;
         this.creationDate = new Date(System.currentTimeMillis());
@@ -132,9 +149,9 @@ public class Recipe {
      * Advanced Recipe constructor.
      * @param name Title of the recipe.
      * @param body Body text of the recipe.
-     * @param ingredients Recipe ingredients HashMap.
+     * @param ingredients Recipe ingredients HashMap, whose entries are copied.
      * @param creationDate Date when the recipe was created.
-     * @param utensils Recipe utensil HashSet.
+     * @param utensils Recipe utensil HashSet, whose elements are copied.
      * @param budget Necessary budget for the recipe.
      * @param diners Amount of diners the recipe is designed for.
      */
@@ -148,9 +165,12 @@ public class Recipe {
             int diners
     ) {
         this.name = name;
-        this.body = body;
-        this.mIngredients = ingredients;
-        this.mUtensils = utensils;
+        this.mBody = body;
+        this.mCompressedBody = null;
+        this.mIngredients = new IntObjectArrayMap<>();
+        this.mUtensils = new BitSet();
+        ingredients.forEach(this.mIngredients::put);
+        utensils.forEach(this.mUtensils::set);
         this.creationDate = creationDate;
         this.budget = budget;
         this.diners = diners;
@@ -162,25 +182,112 @@ public class Recipe {
      */
     public Recipe(@NonNull Recipe base) {
         this.name = base.name;
-        this.body = base.body;
+        this.mBody = base.mBody;
+        this.mCompressedBody = base.mCompressedBody; // never modified, so it can be shared
         this.budget = base.budget;
         this.diners = base.diners;
         this.creationDate = Date.valueOf(base.creationDate.toString());
 
         /// for a true copy of a recipe, maps and sets must be deep copied.
-        this.mIngredients = new HashMap<>();
-        this.mUtensils = new HashSet<>();
-        this.mIngredients.putAll(base.mIngredients);
-        this.mUtensils.addAll(base.mUtensils);
+        this.mIngredients = new IntObjectArrayMap<>(base.mIngredients);
+        this.mUtensils = (BitSet) base.mUtensils.clone();
+    }
+
+    /**
+     * Gets the body text of the recipe. If the body was read compressed from the database, it's
+     * decompressed on the first call.
+     * @return The body text.
+     */
+    public String getBody() {
+        if (mBody == null) {
+            mBody = RecipeBodyCodec.decode(mCompressedBody);
+        }
+
+        return mBody;
+    }
+
+    /**
+     * Sets the body text of the recipe.
+     * @param body Body text.
+     */
+    public void setBody(@NonNull String body) {
+        mBody = body;
+        mCompressedBody = null;
+    }
+
+    /**
+     * Gets the compressed body text of the recipe, as it was read from the database.
+     * @return The compressed body, or {@code null} if the body isn't compressed or has been
+     * modified since it was read.
+     * @see RecipeBodyCodec#encode(String)
+     */
+    public byte[] getCompressedBody() {
+        return mCompressedBody;
+    }
+
+    /**
+     * Sets the body text of the recipe from its compressed form, which won't be decompressed until
+     * the body is accessed.
+     * @param compressedBody Body compressed by {@link RecipeBodyCodec#encode(String)}.
+     * @see #getBody()
+     */
+    public void setCompressedBody(@NonNull byte[] compressedBody) {
+        mBody = null;
+        mCompressedBody = compressedBody;
     }
 
     /**
      * Gets the utensils of the recipe.
-     * @return An unmodifiable set view of the utensils. Each element represents an ID of an
-     * utensil.
+     * @return An unmodifiable set view of the utensils, in ascending ID order. Each element
+     * represents an ID of an utensil.
+     * @see #forEachUtensil(IntConsumer)
      */
     public Set<Integer> getUtensils() {
-        return Collections.unmodifiableSet(mUtensils);
+        return new AbstractSet<Integer>() {
+            @Override
+            public int size() {
+                return mUtensils.cardinality();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsUtensil((Integer) o);
+            }
+
+            @NonNull
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int mNextId = mUtensils.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return mNextId >= 0;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (mNextId < 0) throw new NoSuchElementException();
+
+                        final int id = mNextId;
+                        mNextId = mUtensils.nextSetBit(id + 1);
+
+                        return id;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Performs an action for every utensil of the recipe, in ascending ID order, without boxing
+     * the IDs.
+     * @param action Action, which receives the ID of the utensil.
+     */
+    public void forEachUtensil(@NonNull IntConsumer action) {
+        for (int id = mUtensils.nextSetBit(0); id >= 0; id = mUtensils.nextSetBit(id + 1)) {
+            action.accept(id);
+        }
     }
 
     /**
@@ -188,10 +295,12 @@ public class Recipe {
      * @param utensilId ID of the utensil.
      */
     public void addUtensil(int utensilId) {
-        final boolean addedId = mUtensils.add(utensilId);
-        if (!addedId) {
+        if (mUtensils.get(utensilId)) {
             Log.w("recipe", "Attempted to add an utensil that was already present.");
+            return;
         }
+
+        mUtensils.set(utensilId);
     }
 
     /**
@@ -199,10 +308,12 @@ public class Recipe {
      * @param utensilId ID of the utensil.
      */
     public void removeUtensil(int utensilId) {
-        final boolean containedId = mUtensils.remove(utensilId);
-        if (!containedId) {
+        if (!mUtensils.get(utensilId)) {
             Log.w("recipe", "Attempted to remove an utensil that wasn't present.");
+            return;
         }
+
+        mUtensils.clear(utensilId);
     }
 
     /**
@@ -218,16 +329,28 @@ public class Recipe {
      * @return True if the utensil is present.
      */
     public boolean containsUtensil(int utensilId) {
-        return mUtensils.contains(utensilId);
+        return utensilId >= 0 && mUtensils.get(utensilId);
     }
 
     /**
      * Gets the ingredients of the recipe.
-     * @return An unmodifiable map view of the ingredients. The key represents the ingredient ID,
-     * and the value represents the properties of that ingredient.
+     * @return An unmodifiable map view of the ingredients, in ascending ID order. The key
+     * represents the ingredient ID, and the value represents the properties of that ingredient.
+     * @see #forEachIngredient(IntObjectArrayMap.IntObjectConsumer)
      */
     public Map<Integer, InRecipeProperties> getIngredients() {
-        return Collections.unmodifiableMap(mIngredients);
+        return mIngredients.asMap();
+    }
+
+    /**
+     * Performs an action for every ingredient of the recipe, in ascending ID order, without boxing
+     * the IDs.
+     * @param action Action, which receives the ID and the properties of the ingredient.
+     */
+    public void forEachIngredient(
+            @NonNull IntObjectArrayMap.IntObjectConsumer<? super InRecipeProperties> action
+    ) {
+        mIngredients.forEach(action);
     }
 
     /**
@@ -283,7 +406,7 @@ public class Recipe {
         return budget == recipe.budget
                 && diners == recipe.diners
                 && Objects.equals(name, recipe.name)
-                && Objects.equals(body, recipe.body)
+                && Objects.equals(getBody(), recipe.getBody())
                 && Objects.equals(creationDate, recipe.creationDate)
                 && Objects.equals(mIngredients, recipe.mIngredients)
                 && Objects.equals(mUtensils, recipe.mUtensils);
@@ -291,6 +414,6 @@ public class Recipe {
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, body, budget, diners, creationDate, mIngredients, mUtensils);
+        return Objects.hash(name, getBody(), budget, diners, creationDate, mIngredients, mUtensils);
     }
 }
@@ -0,0 +1,151 @@
+package app.bitenote.instances;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Combined shopping list of several recipes. The amounts of each ingredient are added up across
+ * the recipes, after scaling every recipe to the same amount of diners.
+ * @see app.bitenote.database.BiteNoteSQLiteHelper#getShoppingList(java.util.Set, int)
+ * @see app.bitenote.database.ShoppingListFormat
+ * @author Daniel N.
+ */
+public final class ShoppingList {
+    /**
+     * Amount that a scaled amount may exceed a whole number by and still be rounded down to it,
+     * so amounts that were scaled back and forth aren't rounded up by the floating point error.
+     */
+    private static final float ROUNDING_TOLERANCE = 0.001f;
+
+    /**
+     * An ingredient of the list. An ingredient that some recipes measure in units and others don't
+     * is listed twice, since units can't be added to weights nor volumes.
+     */
+    public static final class Item {
+        /**
+         * ID of the ingredient in the database.
+         */
+        public final int ingredientId;
+
+        /**
+         * {@link Ingredient} instance, read from the catalog along with the amounts.
+         */
+        public final Ingredient ingredient;
+
+        /**
+         * Determines whether the amount is measured in units, instead of in the
+         * {@link MeasurementType} of the ingredient.
+         */
+        public final boolean isMeasuredInUnits;
+
+        /**
+         * Sum of the scaled amounts of the ingredient.
+         */
+        public final float amount;
+
+        /**
+         * Amount of recipes of the list that use the ingredient.
+         */
+        public final int recipeCount;
+
+        /**
+         * Item constructor.
+         * @param ingredientId ID of the ingredient in the database.
+         * @param ingredient {@link Ingredient} instance.
+         * @param isMeasuredInUnits Determines whether the amount is measured in units.
+         * @param amount Sum of the scaled amounts of the ingredient.
+         * @param recipeCount Amount of recipes that use the ingredient.
+         */
+        public Item(
+                int ingredientId,
+                @NonNull Ingredient ingredient,
+                boolean isMeasuredInUnits,
+                float amount,
+                int recipeCount
+        ) {
+            this.ingredientId = ingredientId;
+            this.ingredient = ingredient;
+            this.isMeasuredInUnits = isMeasuredInUnits;
+            this.amount = amount;
+            this.recipeCount = recipeCount;
+        }
+
+        /**
+         * Gets the amount to be bought, which is never less than the needed one.
+         * @return The amount, rounded up to a whole number.
+         */
+        public int getRoundedAmount() {
+            return (int) Math.ceil(amount - ROUNDING_TOLERANCE);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Item item = (Item) o;
+            return ingredientId == item.ingredientId
+                    && isMeasuredInUnits == item.isMeasuredInUnits
+                    && Float.compare(item.amount, amount) == 0
+                    && recipeCount == item.recipeCount
+                    && Objects.equals(ingredient, item.ingredient);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ingredientId, ingredient, isMeasuredInUnits, amount, recipeCount);
+        }
+    }
+
+    /**
+     * Amount of diners every recipe was scaled to.
+     */
+    public final int diners;
+
+    /**
+     * Items of the list, grouped by measurement type and by whether they're measured in units.
+     */
+    private final List<Item> mItems;
+
+    /**
+     * Shopping list constructor.
+     * @param diners Amount of diners every recipe was scaled to.
+     * @param items List of {@link Item}s. The list is copied.
+     */
+    public ShoppingList(int diners, @NonNull List<Item> items) {
+        this.diners = diners;
+        this.mItems = new ArrayList<>(items);
+    }
+
+    /**
+     * Gets the items of the list.
+     * @return An unmodifiable list of {@link Item}s, grouped by measurement type and by whether
+     * they're measured in units, and in ascending order of ingredient ID within each group.
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(mItems);
+    }
+
+    /**
+     * Checks whether the list has no items.
+     * @return {@code true} if none of the recipes has ingredients.
+     */
+    public boolean isEmpty() {
+        return mItems.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ShoppingList that = (ShoppingList) o;
+        return diners == that.diners && mItems.equals(that.mItems);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(diners, mItems);
+    }
+}
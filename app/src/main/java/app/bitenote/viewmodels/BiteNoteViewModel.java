@@ -1,15 +1,32 @@
 package app.bitenote.viewmodels;
 
 import android.app.Application;
+import android.util.Log;
 import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import app.bitenote.database.BiteNoteSQLiteHelper;
+import app.bitenote.database.GroupCommitWriter;
+import app.bitenote.database.RecipeDraftFile;
+import app.bitenote.database.RecipeListSnapshotFile;
 import app.bitenote.database.RecipeQuery;
+import app.bitenote.database.RecipeSortOrder;
+import app.bitenote.database.RecipeWriteQueue;
+import app.bitenote.instances.Ingredient;
 import app.bitenote.instances.Recipe;
 
 /**
@@ -19,11 +36,37 @@ import app.bitenote.instances.Recipe;
  * @author Daniel N.
  */
 public class BiteNoteViewModel extends AndroidViewModel {
+    /**
+     * Name of the file where the draft of the recipe being written is stored.
+     */
+    public static final String DRAFT_FILE_NAME = "recipe_draft.json";
+
+    /**
+     * Name of the file where the summary of the recipe list is stored.
+     */
+    public static final String RECIPE_LIST_SNAPSHOT_FILE_NAME = "recipe_list.snapshot";
+
     /**
      * SQLite database helper.
      */
     public final BiteNoteSQLiteHelper sqliteHelper;
 
+    /**
+     * Single writer that commits the writes of every thread in shared transactions.
+     */
+    public final GroupCommitWriter groupCommitWriter;
+
+    /**
+     * Write-behind queue for recipe updates and deletions. Readers that need them must flush it
+     * first.
+     */
+    public final RecipeWriteQueue recipeWriteQueue;
+
+    /**
+     * Snapshots of the recipes handed from one activity to the next.
+     */
+    public final RecipeSnapshotRegistry recipeSnapshots;
+
     /**
      * Live data of the recipe query currently being edited.
      */
@@ -34,6 +77,12 @@ public class BiteNoteViewModel extends AndroidViewModel {
      */
     public final LiveData<Pair<Integer, Recipe>> recipeLiveData;
 
+    /**
+     * Live data of the order of the recipe lists. It's not persisted, so every launch starts with
+     * the newest recipes first, which is the order of the stored summary of the recipe list.
+     */
+    public final LiveData<RecipeSortOrder> sortOrderLiveData;
+
     /**
      * Mutable live data for {@link #queryLiveData}.
      */
@@ -44,6 +93,34 @@ public class BiteNoteViewModel extends AndroidViewModel {
      */
     private final MutableLiveData<Pair<Integer, Recipe>> mMutableRecipeLiveData;
 
+    /**
+     * Mutable live data for {@link #sortOrderLiveData}.
+     */
+    private final MutableLiveData<RecipeSortOrder> mMutableSortOrderLiveData;
+
+    /**
+     * File where the draft of the recipe being written is stored.
+     */
+    private final RecipeDraftFile mDraftFile;
+
+    /**
+     * File where the summary of the recipe list is stored, so it can be drawn on a cold start.
+     */
+    private final RecipeListSnapshotFile mRecipeListSnapshotFile;
+
+    /**
+     * Executor that writes and deletes the draft file in the background, in the same order as
+     * they were requested.
+     */
+    private final Executor mDraftExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Amount of drafts posted. A discard that runs late only deletes the draft file if no draft
+     * was posted after the one it belongs to.
+     * @see #discardDraft(long)
+     */
+    private final AtomicLong mDraftGeneration = new AtomicLong();
+
     /**
      * BiteNoteViewModel constructor.
      * @param application {@link Application} instance. It is used as context for the database
@@ -53,20 +130,51 @@ public class BiteNoteViewModel extends AndroidViewModel {
         super(application);
 
         sqliteHelper = new BiteNoteSQLiteHelper(application);
+        groupCommitWriter = new GroupCommitWriter(sqliteHelper);
+        recipeWriteQueue = new RecipeWriteQueue(groupCommitWriter);
+        recipeSnapshots = new RecipeSnapshotRegistry(sqliteHelper.getRecipeCache());
+        mDraftFile = new RecipeDraftFile(new File(application.getFilesDir(), DRAFT_FILE_NAME));
+        mRecipeListSnapshotFile = new RecipeListSnapshotFile(
+                new File(application.getNoBackupFilesDir(), RECIPE_LIST_SNAPSHOT_FILE_NAME)
+        );
 
         mMutableQueryLiveData = new MutableLiveData<>(new RecipeQuery());
         mMutableRecipeLiveData = new MutableLiveData<>(Pair.create(0, new Recipe()));
+        mMutableSortOrderLiveData = new MutableLiveData<>(RecipeSortOrder.NEWEST);
 
         queryLiveData = mMutableQueryLiveData;
         recipeLiveData = mMutableRecipeLiveData;
+        sortOrderLiveData = mMutableSortOrderLiveData;
     }
 
     @Override
     protected void onCleared() {
+        recipeWriteQueue.close();
+        groupCommitWriter.close();
         sqliteHelper.close();
         super.onCleared();
     }
 
+    /**
+     * Gets the current snapshot of a recipe from {@link #recipeSnapshots}. If there's none, the
+     * queued writes are flushed and the recipe is read from the database, then its snapshot is
+     * kept. Must not be called from the main thread.
+     * @param recipeId Recipe ID.
+     * @return An {@link Optional} instance that wraps the snapshot, which is empty if the recipe
+     * isn't in the database.
+     */
+    public Optional<RecipeSnapshotRegistry.Snapshot> readRecipeSnapshot(int recipeId) {
+        final Optional<RecipeSnapshotRegistry.Snapshot> snapshotOption =
+                recipeSnapshots.get(recipeId);
+        if (snapshotOption.isPresent()) return snapshotOption;
+
+        recipeWriteQueue.flush().join();
+        final long writeCount = sqliteHelper.getRecipeCache().getWriteCount();
+
+        return sqliteHelper.getRecipeFromId(recipeId)
+                .map(recipe -> recipeSnapshots.put(recipeId, recipe, writeCount));
+    }
+
     /**
      * Atomically posts a new recipe ID into {@link #recipeLiveData}.
      * @param id ID of the recipe in the database.
@@ -99,4 +207,153 @@ public class BiteNoteViewModel extends AndroidViewModel {
     public void postQuery(@NonNull RecipeQuery query) {
         mMutableQueryLiveData.postValue(query);
     }
+
+    /**
+     * Sets the order of the recipe lists in {@link #sortOrderLiveData}. Unlike posting, the order
+     * is set right away, so it must be called from the main thread.
+     * @param sortOrder Order of the recipe lists.
+     */
+    public void setSortOrder(@NonNull RecipeSortOrder sortOrder) {
+        mMutableSortOrderLiveData.setValue(sortOrder);
+    }
+
+    /**
+     * Gets the order of the recipe lists.
+     * @return The current value of {@link #sortOrderLiveData}.
+     */
+    public RecipeSortOrder getSortOrder() {
+        return Objects.requireNonNull(mMutableSortOrderLiveData.getValue());
+    }
+
+    /**
+     * Atomically posts a new recipe draft into {@link #recipeLiveData}, and stores it in the
+     * draft file. Drafts aren't written into the database until the recipe is saved.
+     * @param recipe {@link Recipe} instance.
+     */
+    public void postDraft(@NonNull Recipe recipe) {
+        postDraftWithId(Objects.requireNonNull(mMutableRecipeLiveData.getValue()).first, recipe);
+    }
+
+    /**
+     * Atomically posts a new recipe draft along with its ID into {@link #recipeLiveData}, and
+     * stores it in the draft file.
+     * @param id ID of the recipe in the database, or {@code 0} if it's a new recipe.
+     * @param recipe {@link Recipe} instance.
+     */
+    public void postDraftWithId(int id, @NonNull Recipe recipe) {
+        postRecipeWithId(id, recipe);
+        mDraftGeneration.incrementAndGet();
+
+        /// the copy can't be mutated by the activities while it's being written
+        final Recipe recipeCopy = new Recipe(recipe);
+        mDraftExecutor.execute(() -> {
+            try {
+                mDraftFile.write(id, recipeCopy);
+            } catch (IOException e) {
+                Log.e(
+                        "recipe draft",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+            }
+        });
+    }
+
+    /**
+     * Deletes the stored draft. It should be called once the recipe is saved or discarded.
+     */
+    public void discardDraft() {
+        mDraftExecutor.execute(mDraftFile::delete);
+    }
+
+    /**
+     * Gets the generation of the latest posted draft, to be discarded later on.
+     * @return The amount of drafts posted.
+     * @see #discardDraft(long)
+     */
+    public long getDraftGeneration() {
+        return mDraftGeneration.get();
+    }
+
+    /**
+     * Deletes the stored draft, unless a newer draft was posted since it was obtained. It should be
+     * called when a recipe is saved in the background, since the user may have started writing
+     * another recipe by then.
+     * @param draftGeneration Generation of the draft, obtained from
+     * {@link #getDraftGeneration()} when the recipe was saved.
+     */
+    public void discardDraft(long draftGeneration) {
+        mDraftExecutor.execute(() -> {
+            if (mDraftGeneration.get() == draftGeneration) mDraftFile.delete();
+        });
+    }
+
+    /**
+     * Reads the stored draft, which is left behind if the process died while a recipe was being
+     * written. Malformed drafts are discarded.
+     * @return An {@link Optional} that contains a {@link Pair}, whose first element is the ID of
+     * the recipe in the database, or {@code 0} if it's a new recipe, and the second element is the
+     * {@link Recipe} instance. It's empty if there's no draft.
+     * @implNote It accesses the disk and the database, so it should not be called from the main
+     * thread.
+     */
+    public Optional<Pair<Integer, Recipe>> readDraft() {
+        final HashMap<Integer, Ingredient> ingredients = new HashMap<>();
+        final HashSet<Integer> utensilIds = new HashSet<>();
+        sqliteHelper.getAllIngredients().forEach(pair -> ingredients.put(pair.first, pair.second));
+        sqliteHelper.getAllUtensils().forEach(pair -> utensilIds.add(pair.first));
+
+        /// read after the pending writes and deletions of the draft
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return mDraftFile.read(ingredients, utensilIds);
+            } catch (IOException e) {
+                Log.e(
+                        "recipe draft",
+                        Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+                );
+                mDraftFile.delete();
+
+                return Optional.<Pair<Integer, Recipe>>empty();
+            }
+        }, mDraftExecutor).join();
+    }
+
+    /**
+     * Reads the summary of the recipe list that was stored the last time it was loaded. It doesn't
+     * open the database, but it may be outdated. Malformed summaries are discarded.
+     * @return An {@link Optional} that contains a list of {@link Pair}s, in which the first
+     * element represents the ID of the recipe, and the second element represents a recipe that
+     * only holds the fields shown by the recipe cards. It's empty if there's no summary.
+     * @implNote It accesses the disk, so it should not be called from the main thread.
+     */
+    public Optional<List<Pair<Integer, Recipe>>> readRecipeListSnapshot() {
+        try {
+            return mRecipeListSnapshotFile.read();
+        } catch (IOException e) {
+            Log.e(
+                    "recipe list snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+            mRecipeListSnapshotFile.delete();
+
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the summary of the recipe list, if it changed since it was last read or stored.
+     * @param recipes List of {@link Pair}s, in which the first element represents the ID of the
+     * recipe, and the second element represents the recipe, ordered as in the list.
+     * @implNote It accesses the disk, so it should not be called from the main thread.
+     */
+    public void writeRecipeListSnapshot(@NonNull List<Pair<Integer, Recipe>> recipes) {
+        try {
+            mRecipeListSnapshotFile.write(recipes);
+        } catch (IOException e) {
+            Log.e(
+                    "recipe list snapshot",
+                    Optional.ofNullable(e.getMessage()).orElse("Missing message.")
+            );
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package app.bitenote.viewmodels;
+
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import java.util.Optional;
+
+import app.bitenote.database.RecipeCache;
+import app.bitenote.instances.Recipe;
+
+/**
+ * In-process registry of recipes that a screen hands to the next one, so the next screen can be
+ * drawn right away instead of reading the recipe again from the database.
+ * <p>
+ * Every snapshot is stamped with the write count of the {@link RecipeCache} that was obtained
+ * before its recipe was read, and it's only handed out while the version of its recipe isn't
+ * greater than the stamp. Otherwise, the recipe must be read again.
+ * @author Daniel N.
+ */
+public final class RecipeSnapshotRegistry {
+    /**
+     * Maximum amount of kept snapshots. Only the last few screens need them.
+     */
+    private static final int MAX_SNAPSHOT_COUNT = 8;
+
+    /**
+     * Snapshot of a recipe, stamped with the write count it was read at.
+     */
+    public static final class Snapshot {
+        /**
+         * Copy of the recipe.
+         */
+        private final Recipe mRecipe;
+
+        /**
+         * Write count of the {@link RecipeCache} obtained before the recipe was read.
+         */
+        public final long writeCount;
+
+        /**
+         * Snapshot constructor.
+         * @param recipe {@link Recipe} instance. It's copied.
+         * @param writeCount Write count obtained before the recipe was read.
+         */
+        private Snapshot(@NonNull Recipe recipe, long writeCount) {
+            mRecipe = new Recipe(recipe);
+            this.writeCount = writeCount;
+        }
+
+        /**
+         * Gets a copy of the recipe, which can be mutated.
+         * @return {@link Recipe} instance.
+         */
+        public Recipe getRecipe() {
+            return new Recipe(mRecipe);
+        }
+    }
+
+    /**
+     * Cache whose versions tell if a snapshot is current.
+     */
+    private final RecipeCache mRecipeCache;
+
+    /**
+     * Kept snapshots, where the key is the recipe ID.
+     */
+    private final LruCache<Integer, Snapshot> mSnapshots = new LruCache<>(MAX_SNAPSHOT_COUNT);
+
+    /**
+     * Constructor for the registry.
+     * @param recipeCache Cache whose versions tell if a snapshot is current.
+     */
+    public RecipeSnapshotRegistry(@NonNull RecipeCache recipeCache) {
+        mRecipeCache = recipeCache;
+    }
+
+    /**
+     * Keeps a snapshot of a recipe, replacing any other snapshot of the same recipe.
+     * @param recipeId Recipe ID.
+     * @param recipe {@link Recipe} instance. It's copied, so it can be mutated afterwards.
+     * @param writeCount Write count obtained from {@link RecipeCache#getWriteCount()} before the
+     * recipe was read.
+     * @return The kept snapshot.
+     */
+    public Snapshot put(int recipeId, @NonNull Recipe recipe, long writeCount) {
+        assert recipeId != 0 : "Recipe ID can't be 0";
+
+        final Snapshot snapshot = new Snapshot(recipe, writeCount);
+        mSnapshots.put(recipeId, snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshot of a recipe that is going to be deleted.
+     * @param recipeId Recipe ID.
+     */
+    public void remove(int recipeId) {
+        mSnapshots.remove(recipeId);
+    }
+
+    /**
+     * Gets the snapshot of a recipe, if it's still current. Outdated snapshots are dropped.
+     * @param recipeId Recipe ID.
+     * @return An {@link Optional} instance that wraps the snapshot, which is empty if there's no
+     * snapshot or if the recipe was written after it.
+     */
+    public Optional<Snapshot> get(int recipeId) {
+        final Snapshot snapshot = mSnapshots.get(recipeId);
+        if (snapshot == null) return Optional.empty();
+
+        if (mRecipeCache.getVersion(recipeId) > snapshot.writeCount) {
+            mSnapshots.remove(recipeId);
+            return Optional.empty();
+        }
+
+        return Optional.of(snapshot);
+    }
+}
@@ -0,0 +1,27 @@
+-- Populates the 'ingredient_types' table from the full names of the ingredients, which must have
+-- already been inserted. It is read by BiteNoteSQLiteTableHelper and by the generateSeedDatabase
+-- Gradle task, so types get the same IDs in both databases. The name delimiter,
+-- Ingredient.NAME_DELIMITER, is bound as ?1.
+-- Ingredients are inserted in document order, so the IDs of the ingredients of a type are
+-- contiguous, and its range is given by the lowest and highest of them.
+
+INSERT INTO ingredient_types(name, parent_id, first_ingredient_id, last_ingredient_id)
+SELECT substr(name, 1, instr(name, ?1) - 1) AS type_name, NULL, MIN(id), MAX(id)
+FROM ingredients
+GROUP BY type_name
+ORDER BY MIN(id);
+
+-- only the names with a second delimiter have a subtype
+INSERT INTO ingredient_types(name, parent_id, first_ingredient_id, last_ingredient_id)
+SELECT subtype_name, (SELECT id FROM ingredient_types WHERE name = type_name), MIN(id), MAX(id)
+FROM (
+    SELECT id,
+        substr(name, 1, instr(name, ?1) - 1) AS type_name,
+        substr(name, 1, instr(name, ?1) + instr(substr(name, instr(name, ?1) + 1), ?1) - 1)
+            AS subtype_name,
+        instr(substr(name, instr(name, ?1) + 1), ?1) AS subtype_delimiter
+    FROM ingredients
+)
+WHERE subtype_delimiter > 0
+GROUP BY subtype_name
+ORDER BY MIN(id);
@@ -0,0 +1,165 @@
+-- Schema of the latest database version. It is read by BiteNoteSQLiteTableHelper to create the
+-- tables on the device, and by the generateSeedDatabase Gradle task to build the seed database,
+-- so both always match. Existing databases reach it through BiteNoteSQLiteMigrationHelper.
+-- Statements are separated by semicolons, and lines starting with "--" are ignored.
+
+CREATE TABLE utensils (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL
+);
+
+CREATE TABLE measurement_types (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL
+);
+
+CREATE TABLE recipes (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL,
+    body MEDIUMTEXT NOT NULL DEFAULT '',
+    budget INTEGER NOT NULL,
+    diners INTEGER NOT NULL,
+    creation_date INTEGER NOT NULL,
+    ingredient_count INTEGER NOT NULL DEFAULT 0,
+    utensil_count INTEGER NOT NULL DEFAULT 0,
+    total_amount INTEGER NOT NULL DEFAULT 0,
+    needs_units BOOLEAN NOT NULL DEFAULT 0
+);
+
+-- creation dates are epoch days, see EpochDays
+CREATE INDEX recipes_creation_date_index ON recipes(creation_date);
+
+-- each sort order is read from its own index, see RecipeSortOrder
+CREATE INDEX recipes_name_index ON recipes(name COLLATE LOCALIZED);
+
+CREATE INDEX recipes_budget_index ON recipes(budget);
+
+CREATE INDEX recipes_diners_index ON recipes(diners);
+
+-- the scale must be the same as RecipeSortOrder.BUDGET_PER_DINER_SCALE
+CREATE INDEX recipes_budget_per_diner_index ON recipes(budget * 1000 / MAX(diners, 1));
+
+-- aggregates of the ingredients and utensils, kept by the helper on every write
+CREATE INDEX recipes_ingredient_count_index ON recipes(ingredient_count);
+
+CREATE INDEX recipes_utensil_count_index ON recipes(utensil_count);
+
+CREATE INDEX recipes_total_amount_index ON recipes(total_amount);
+
+CREATE INDEX recipes_needs_units_index ON recipes(needs_units);
+
+CREATE TABLE ingredients (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL,
+    measurement_id INTEGER NOT NULL,
+    can_be_measured_in_units BOOLEAN NOT NULL,
+    FOREIGN KEY (measurement_id) REFERENCES measurement_types(id)
+);
+
+CREATE TABLE ingredient_types (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL,
+    parent_id INTEGER,
+    first_ingredient_id INTEGER NOT NULL,
+    last_ingredient_id INTEGER NOT NULL,
+    FOREIGN KEY (parent_id) REFERENCES ingredient_types(id)
+);
+
+CREATE TABLE recipe_ingredients (
+    recipe_id INTEGER NOT NULL,
+    ingredient_id INTEGER NOT NULL,
+    amount FLOAT NOT NULL,
+    is_measured_in_units BOOLEAN NOT NULL,
+    PRIMARY KEY (recipe_id, ingredient_id),
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id),
+    FOREIGN KEY (ingredient_id) REFERENCES ingredients(id)
+);
+
+-- covers the ingredient amount ranges of queries, see RecipeQuery.AmountRange
+CREATE INDEX recipe_ingredients_amount_index
+    ON recipe_ingredients(ingredient_id, is_measured_in_units, amount, recipe_id);
+
+CREATE TABLE recipe_utensils (
+    recipe_id INTEGER NOT NULL,
+    utensil_id INTEGER NOT NULL,
+    PRIMARY KEY (recipe_id, utensil_id),
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id),
+    FOREIGN KEY (utensil_id) REFERENCES utensils(id)
+);
+
+CREATE TABLE dietary_profiles (
+    id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,
+    name VARCHAR(64) NOT NULL
+);
+
+CREATE TABLE dietary_profile_ingredients (
+    profile_id INTEGER NOT NULL,
+    ingredient_id INTEGER NOT NULL,
+    PRIMARY KEY (profile_id, ingredient_id),
+    FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id),
+    FOREIGN KEY (ingredient_id) REFERENCES ingredients(id)
+);
+
+CREATE TABLE dietary_profile_ingredient_types (
+    profile_id INTEGER NOT NULL,
+    ingredient_type_id INTEGER NOT NULL,
+    PRIMARY KEY (profile_id, ingredient_type_id),
+    FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id),
+    FOREIGN KEY (ingredient_type_id) REFERENCES ingredient_types(id)
+);
+
+-- recipes excluded by each profile, kept up to date as recipes are written
+CREATE TABLE dietary_profile_excluded_recipes (
+    profile_id INTEGER NOT NULL,
+    recipe_id INTEGER NOT NULL,
+    PRIMARY KEY (profile_id, recipe_id),
+    FOREIGN KEY (profile_id) REFERENCES dietary_profiles(id),
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id)
+);
+
+CREATE INDEX dietary_profile_excluded_recipes_recipe_index
+    ON dietary_profile_excluded_recipes(recipe_id);
+
+-- similarity index of the ingredients and utensils of each recipe
+CREATE TABLE recipe_signatures (
+    recipe_id INTEGER NOT NULL PRIMARY KEY,
+    signature BLOB NOT NULL,
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id)
+);
+
+CREATE TABLE recipe_signature_buckets (
+    band INTEGER NOT NULL,
+    bucket INTEGER NOT NULL,
+    recipe_id INTEGER NOT NULL,
+    PRIMARY KEY (band, bucket, recipe_id),
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id)
+);
+
+CREATE INDEX recipe_signature_buckets_recipe_index ON recipe_signature_buckets(recipe_id);
+
+-- near-duplicate lookup of the content of each recipe
+CREATE TABLE recipe_fingerprints (
+    recipe_id INTEGER NOT NULL PRIMARY KEY,
+    content_hash INTEGER NOT NULL,
+    ingredient_set_hash INTEGER NOT NULL,
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id)
+);
+
+CREATE TABLE recipe_fingerprint_keys (
+    lookup_key INTEGER NOT NULL,
+    recipe_id INTEGER NOT NULL,
+    PRIMARY KEY (lookup_key, recipe_id),
+    FOREIGN KEY (recipe_id) REFERENCES recipes(id)
+);
+
+CREATE INDEX recipe_fingerprint_keys_recipe_index ON recipe_fingerprint_keys(recipe_id);
+
+-- amount of recipes that use each pair of ingredients, stored in both directions
+CREATE TABLE ingredient_pairs (
+    ingredient_id INTEGER NOT NULL,
+    other_ingredient_id INTEGER NOT NULL,
+    recipe_count INTEGER NOT NULL,
+    PRIMARY KEY (ingredient_id, other_ingredient_id),
+    FOREIGN KEY (ingredient_id) REFERENCES ingredients(id),
+    FOREIGN KEY (other_ingredient_id) REFERENCES ingredients(id)
+);
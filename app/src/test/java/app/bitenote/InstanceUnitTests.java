@@ -2,15 +2,29 @@ package app.bitenote;
 
 import org.junit.Test;
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
+import app.bitenote.database.EpochDays;
+import app.bitenote.database.LatencyHistogram;
+import app.bitenote.database.MinHashSignature;
+import app.bitenote.database.RecipeBodyCodec;
+import app.bitenote.database.RecipeFingerprint;
 import app.bitenote.database.RecipeQuery;
+import app.bitenote.database.SlowQueryLog;
+import app.bitenote.instances.DietaryProfile;
 import app.bitenote.instances.Ingredient;
+import app.bitenote.instances.IngredientType;
+import app.bitenote.instances.IntObjectArrayMap;
 import app.bitenote.instances.MeasurementType;
 import app.bitenote.instances.Recipe;
+import app.bitenote.instances.ShoppingList;
 import app.bitenote.instances.Utensil;
 
 /**
@@ -85,6 +99,130 @@ public class InstanceUnitTests {
         assertEquals(r1, r2);
     }
 
+    @Test
+    public void areCompressedBodiesCorrect() {
+        final String shortBody = "This is a recipe body.";
+        final String longBody = "Stir the sauce until it thickens. ".repeat(100);
+
+        /// short bodies aren't compressed
+        assertNull(RecipeBodyCodec.encode(shortBody));
+
+        final byte[] compressedBody = RecipeBodyCodec.encode(longBody);
+        assertNotNull(compressedBody);
+        assertTrue(compressedBody.length < longBody.length());
+        assertEquals(longBody, RecipeBodyCodec.decode(compressedBody));
+
+        /// compressed recipes are equal to their decompressed counterparts
+        final Recipe r1 = new Recipe();
+        final Recipe r2 = new Recipe(r1);
+        r1.setBody(longBody);
+        r2.setCompressedBody(compressedBody);
+
+        assertSame(compressedBody, r2.getCompressedBody());
+        assertEquals(r1, r2);
+        assertEquals(longBody, r2.getBody());
+    }
+
+    @Test
+    public void isIntObjectArrayMapCorrect() {
+        final IntObjectArrayMap<Integer> map = new IntObjectArrayMap<>();
+        final HashMap<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(42);
+
+        /// random puts and removes over a small key range force insertions and removals in between
+        for (int i = 0; i < 10000; i++) {
+            final int key = random.nextInt(64);
+
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(expected, map.asMap());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        assertEquals(map, new IntObjectArrayMap<>(map));
+        assertEquals(map.hashCode(), new IntObjectArrayMap<>(map).hashCode());
+
+        /// entries are iterated by key, regardless of the insertion order
+        final List<Integer> keys = new ArrayList<>(map.asMap().keySet());
+        final List<Integer> sortedKeys = new ArrayList<>(expected.keySet());
+        sortedKeys.sort(null);
+        assertEquals(sortedKeys, keys);
+
+        final List<Integer> consumedKeys = new ArrayList<>();
+        map.forEach((key, value) -> consumedKeys.add(key));
+        assertEquals(sortedKeys, consumedKeys);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    public void isLatencyHistogramCorrect() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+
+        /// 1 to 1000 microseconds
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMean());
+        assertEquals(1_000_000, histogram.getMax());
+
+        /// percentiles are bucket upper bounds, so they may exceed the exact value by 12.5%
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.125);
+        assertEquals(950_000, histogram.getPercentile(95), 950_000 * 0.125);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.125);
+        assertTrue(histogram.getPercentile(50) >= 500_000);
+        assertTrue(histogram.getPercentile(100) <= histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void areSlowQueryShapesCorrect() {
+        final String sql = "SELECT id FROM recipes WHERE budget <= 25\n" +
+                "  AND id IN (SELECT recipe_id FROM recipe_ingredients " +
+                "WHERE ingredient_id IN (1, 5, 7)) AND name = 'it''s';";
+        final String shape = "SELECT id FROM recipes WHERE budget <= ? " +
+                "AND id IN (SELECT recipe_id FROM recipe_ingredients " +
+                "WHERE ingredient_id IN (?, ...)) AND name = ?;";
+
+        assertEquals(shape, SlowQueryLog.getShape(sql));
+
+        /// queries that only differ in their values share the same shape
+        assertEquals(
+                SlowQueryLog.getShape("SELECT * FROM recipe_utensils WHERE utensil_id IN (3);"),
+                SlowQueryLog.getShape("SELECT * FROM recipe_utensils WHERE utensil_id IN (12);")
+        );
+        assertEquals(
+                "SELECT * FROM t1 WHERE x IN (?, ...);",
+                SlowQueryLog.getShape("SELECT * FROM t1 WHERE x IN (?, ?, ?);")
+        );
+    }
+
+    @Test
+    public void areEpochDaysCorrect() {
+        assertEquals(0, EpochDays.fromDate(Date.valueOf("1970-1-1")));
+        assertEquals(-1, EpochDays.fromDate(Date.valueOf("1969-12-31")));
+        assertEquals(20089, EpochDays.fromDate(Date.valueOf("2025-01-01")));
+
+        /// test that every day in a few years survives a round trip, leap days included
+        for (long epochDay = 19000; epochDay < 20500; epochDay++) {
+            assertEquals(epochDay, EpochDays.fromDate(EpochDays.toDate(epochDay)));
+        }
+        assertEquals(Date.valueOf("2024-02-29"), EpochDays.toDate(19782));
+    }
+
     @Test
     public void areInclusionsAndBansCorrect() {
         final RecipeQuery rq = new RecipeQuery();
@@ -124,6 +262,7 @@ public class InstanceUnitTests {
         rq1.includeUtensil(3, false);
         rq1.banIngredient(10, false);
         rq1.banUtensil(4, false);
+        rq1.minCreationDate = Date.valueOf("2025-01-01");
 
         final RecipeQuery rq2 = new RecipeQuery(
                 new HashMap<>(), new HashMap<>(), maxBudget, minDiners
@@ -132,7 +271,217 @@ public class InstanceUnitTests {
         rq2.includeUtensil(3, false);
         rq2.banIngredient(10, false);
         rq2.banUtensil(4, false);
+        rq2.minCreationDate = Date.valueOf("2025-01-01");
 
         assertEquals(rq1, rq2);
     }
+
+    @Test
+    public void areIngredientTypesQueried() {
+        final IngredientType meat = new IngredientType("meat", 0, 1, 11);
+        final IngredientType redMeat = new IngredientType("meat_red", 1, 1, 3);
+
+        assertEquals("red", redMeat.name);
+        assertTrue(redMeat.containsIngredient(1));
+        assertTrue(redMeat.containsIngredient(3));
+        assertFalse(redMeat.containsIngredient(4));
+
+        final RecipeQuery rq = new RecipeQuery();
+        assertTrue(rq.includeIngredientType(1, meat, false));
+        assertTrue(rq.banIngredientType(2, redMeat, false));
+
+        /// like ingredients, types are only moved between inclusions and bans when overriding
+        assertFalse(rq.includeIngredientType(2, redMeat, false));
+        assertTrue(rq.isIngredientTypeBanned(2));
+        assertTrue(rq.includeIngredientType(2, redMeat, true));
+        assertTrue(rq.isIngredientTypeIncluded(2));
+        assertFalse(rq.isIngredientTypeBanned(2));
+
+        final RecipeQuery copy = new RecipeQuery(rq);
+        assertEquals(rq, copy);
+        assertArrayEquals(new Integer[] {1, 2}, copy.getIncludedIngredientTypes().toArray());
+
+        /// clearing the ingredients leaves the types
+        copy.clearAllIngredients();
+        assertEquals(rq, copy);
+        copy.clearAllIngredientTypes();
+        assertTrue(copy.getIncludedIngredientTypes().isEmpty());
+        assertNotEquals(rq, copy);
+    }
+
+    @Test
+    public void areIngredientAmountRangesKept() {
+        final RecipeQuery.AmountRange range = new RecipeQuery.AmountRange(100, 300, false);
+
+        final RecipeQuery rq1 = new RecipeQuery(new HashMap<>(), new HashMap<>(), 25, 2);
+        rq1.includeIngredient(2, range, false);
+        rq1.includeIngredient(3, false);
+
+        final RecipeQuery copy = new RecipeQuery(rq1);
+        assertEquals(rq1, copy);
+        assertEquals(range, copy.getIngredientAmountRange(2).get());
+        assertFalse(copy.getIngredientAmountRange(3).isPresent());
+
+        /// a different range makes a different query
+        copy.includeIngredient(2, new RecipeQuery.AmountRange(100, 300, true), true);
+        assertNotEquals(rq1, copy);
+
+        /// banning or plainly including the ingredient again drops its range
+        copy.banIngredient(2, true);
+        assertFalse(copy.getIngredientAmountRange(2).isPresent());
+        rq1.includeIngredient(2, true);
+        assertFalse(rq1.getIngredientAmountRange(2).isPresent());
+    }
+
+    @Test
+    public void areDietaryProfilesCopiedAndQueried() {
+        final DietaryProfile profile = new DietaryProfile("test_profile");
+        profile.banIngredient(3);
+        profile.banIngredient(1);
+        profile.banIngredientType(2);
+
+        final DietaryProfile copy = new DietaryProfile(profile);
+        assertEquals(profile, copy);
+        assertEquals(profile.hashCode(), copy.hashCode());
+
+        final HashSet<Integer> bannedIngredients = new HashSet<>();
+        copy.forEachBannedIngredient(bannedIngredients::add);
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), bannedIngredients);
+        assertTrue(copy.isIngredientTypeBanned(2));
+
+        copy.unbanIngredient(3);
+        assertFalse(copy.isIngredientBanned(3));
+        assertTrue(profile.isIngredientBanned(3));
+        assertNotEquals(profile, copy);
+
+        /// the profile applied to a query takes part in its equality
+        final RecipeQuery rq = new RecipeQuery();
+        rq.dietaryProfileId = 4;
+        final RecipeQuery rqCopy = new RecipeQuery(rq);
+        assertEquals(rq, rqCopy);
+        rqCopy.dietaryProfileId = 0;
+        assertNotEquals(rq, rqCopy);
+    }
+
+    @Test
+    public void areMinHashSimilaritiesEstimated() {
+        final Recipe r1 = new Recipe();
+        final Recipe r2 = new Recipe();
+
+        /// both sets share 20 of their 60 elements
+        for (int i = 1; i <= 40; i++) {
+            r1.putIngredient(i, 100);
+            r2.putIngredient(i + 20, 100);
+        }
+        final MinHashSignature s1 = MinHashSignature.of(r1);
+        final MinHashSignature s2 = MinHashSignature.of(r2);
+        assertEquals(1f / 3, s1.estimateSimilarity(s2), 0.2f);
+        assertEquals(1f, s1.estimateSimilarity(s1), 0f);
+        assertEquals(s1, MinHashSignature.fromBytes(s1.toBytes()));
+
+        /// equal sets share every bucket, no matter the order of their elements
+        final MinHashSignature.Builder builder = new MinHashSignature.Builder();
+        for (int i = 40; i >= 1; i--) builder.addIngredient(i);
+        final MinHashSignature s3 = builder.build();
+        assertEquals(s1, s3);
+        for (int band = 0; band < MinHashSignature.BAND_COUNT; band++) {
+            assertEquals(s1.getBucket(band), s3.getBucket(band));
+        }
+
+        /// ingredients and utensils with the same ID are different elements
+        final Recipe r3 = new Recipe();
+        r3.putIngredient(1, 100);
+        final Recipe r4 = new Recipe();
+        r4.addUtensil(1);
+        assertEquals(0f, MinHashSignature.of(r3).estimateSimilarity(MinHashSignature.of(r4)), 0f);
+        assertTrue(MinHashSignature.of(new Recipe()).isEmpty());
+    }
+
+    @Test
+    public void areNearDuplicateRecipesFingerprinted() {
+        final Recipe r1 = new Recipe();
+        r1.name = "Potato omelette";
+        r1.setBody("Peel and slice the potatoes thinly. Fry them in plenty of oil over medium " +
+                "heat until tender. Beat the eggs with salt, mix them with the drained potatoes " +
+                "and set the omelette on both sides in a frying pan.");
+        r1.putIngredient(1, 500);
+        r1.putIngredient(2, 4);
+
+        /// formatting, accents and a changed word keep it a duplicate
+        final Recipe r2 = new Recipe(r1);
+        r2.name = "POTATO  OMELETTE";
+        r2.setBody(r1.getBody().replace("medium", "low").replace("eggs", "éggs"));
+        r2.putIngredient(1, 300);
+        final RecipeFingerprint f1 = RecipeFingerprint.of(r1);
+        final RecipeFingerprint f2 = RecipeFingerprint.of(r2);
+        assertTrue(f1.isDuplicateOf(f2));
+
+        /// near-duplicates share a lookup key
+        boolean isKeyShared = false;
+        for (int block = 0; block < RecipeFingerprint.BLOCK_COUNT; block++) {
+            isKeyShared |= f1.getLookupKey(block) == f2.getLookupKey(block);
+        }
+        assertTrue(isKeyShared);
+
+        /// a different ingredient set, or a different text, isn't a duplicate
+        final Recipe r3 = new Recipe(r1);
+        r3.putIngredient(3, 100);
+        assertFalse(f1.isDuplicateOf(RecipeFingerprint.of(r3)));
+        final Recipe r4 = new Recipe(r1);
+        r4.name = "Gazpacho";
+        r4.setBody("Blend the tomatoes, cucumber, pepper and garlic with oil, vinegar and salt. " +
+                "Chill it before serving.");
+        assertFalse(f1.isDuplicateOf(RecipeFingerprint.of(r4)));
+    }
+
+    @Test
+    public void areShoppingListAmountsRoundedUp() {
+        final Ingredient egg = new Ingredient(
+                "egg_chicken",
+                new MeasurementType(MeasurementType.WEIGHT_TYPE_STRING),
+                true
+        );
+
+        /// amounts scaled back and forth aren't rounded up by their floating point error
+        final ShoppingList.Item exactItem = new ShoppingList.Item(1, egg, true, 3.0004f, 2);
+        final ShoppingList.Item partialItem = new ShoppingList.Item(1, egg, false, 100.5f, 1);
+        assertEquals(3, exactItem.getRoundedAmount());
+        assertEquals(101, partialItem.getRoundedAmount());
+
+        /// the list keeps its own copy of the items
+        final List<ShoppingList.Item> items = new ArrayList<>(Arrays.asList(exactItem));
+        final ShoppingList list = new ShoppingList(4, items);
+        items.add(partialItem);
+        assertEquals(1, list.getItems().size());
+        assertEquals(new ShoppingList(4, Arrays.asList(exactItem)), list);
+        assertNotEquals(new ShoppingList(2, Arrays.asList(exactItem)), list);
+        assertThrows(UnsupportedOperationException.class, () ->
+                list.getItems().add(partialItem)
+        );
+    }
+
+    @Test
+    public void areRecipeAggregateFiltersCopied() {
+        final RecipeQuery rq = new RecipeQuery();
+        assertEquals(Integer.MAX_VALUE, rq.maxIngredientCount);
+        assertEquals(Integer.MAX_VALUE, rq.maxUtensilCount);
+        assertFalse(rq.excludesMeasuredInUnits);
+
+        rq.maxIngredientCount = 5;
+        rq.maxUtensilCount = 2;
+        rq.excludesMeasuredInUnits = true;
+        final RecipeQuery rqCopy = new RecipeQuery(rq);
+        assertEquals(rq, rqCopy);
+        assertEquals(rq.hashCode(), rqCopy.hashCode());
+
+        /// each filter takes part in the equality on its own
+        rqCopy.maxIngredientCount = 6;
+        assertNotEquals(rq, rqCopy);
+        rqCopy.maxIngredientCount = 5;
+        rqCopy.maxUtensilCount = 3;
+        assertNotEquals(rq, rqCopy);
+        rqCopy.maxUtensilCount = 2;
+        rqCopy.excludesMeasuredInUnits = false;
+        assertNotEquals(rq, rqCopy);
+    }
 }